@@ -0,0 +1,40 @@
+package pt.up.fe.comp2024.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp.jmm.parser.JmmParserResult;
+import pt.up.fe.comp2024.analysis.JmmAnalysisImpl;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link JmmAnalysisImpl}, symbol table construction and analysis passes, over an already parsed AST.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AnalysisBenchmark extends BenchmarkInput {
+
+    private JmmParserResult parserResult;
+
+    @Override
+    protected void prepare() {
+        parserResult = parseInput();
+    }
+
+    @Benchmark
+    public JmmSemanticsResult analyse() {
+        return new JmmAnalysisImpl().semanticAnalysis(parserResult);
+    }
+}
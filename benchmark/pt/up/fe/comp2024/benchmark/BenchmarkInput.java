@@ -0,0 +1,92 @@
+package pt.up.fe.comp2024.benchmark;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp.jmm.parser.JmmParserResult;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.analysis.JmmAnalysisImpl;
+import pt.up.fe.comp2024.optimization.JmmOptimizationImpl;
+import pt.up.fe.comp2024.parser.JmmParserImpl;
+import pt.up.fe.comp2024.utils.ReportUtils;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * J-- source used as input by the stage benchmarks, either a test resource or a generated program.
+ * <p>
+ * The generator parameters only apply to the synthetic input. To see how a stage scales, override one of them from
+ * the command line, e.g. {@code gradle jmh -Pjmh="-p source=synthetic -p methodCount=1,4,16,64"}.
+ */
+@State(Scope.Benchmark)
+public abstract class BenchmarkInput {
+
+    public static final String SYNTHETIC = "synthetic";
+
+    @Param({SYNTHETIC,
+            "pt/up/fe/comp/cp2/ollir/CompileArithmetic.jmm",
+            "pt/up/fe/comp/cpf/4_jasmin/control_flow/SimpleIfElseStat.jmm",
+            "pt/up/fe/comp/cpf/4_jasmin/arrays/ArrayAccess.jmm"})
+    public String source;
+
+    @Param("8")
+    public int classSize;
+
+    @Param("8")
+    public int methodCount;
+
+    @Param("3")
+    public int expressionDepth;
+
+    @Param("2")
+    public int loopNesting;
+
+    protected String code;
+    protected Map<String, String> config;
+
+    @Setup
+    public void loadSource() {
+        code = source.equals(SYNTHETIC)
+                ? new JmmProgramGenerator(classSize, methodCount, expressionDepth, loopNesting).generate()
+                : SpecsIo.getResource(source);
+        config = CompilerConfig.getDefault();
+
+        prepare();
+    }
+
+    /**
+     * Runs the stages before the one being measured, called once the source is loaded.
+     */
+    protected void prepare() {
+    }
+
+    protected JmmParserResult parseInput() {
+        var parserResult = new JmmParserImpl().parse(code, config);
+        checkNoErrors(parserResult.getReports());
+        return parserResult;
+    }
+
+    protected JmmSemanticsResult analyseInput() {
+        var semanticsResult = new JmmAnalysisImpl().semanticAnalysis(parseInput());
+        checkNoErrors(semanticsResult.getReports());
+        return semanticsResult;
+    }
+
+    protected OllirResult ollirInput() {
+        var ollirResult = new JmmOptimizationImpl().toOllir(analyseInput());
+        checkNoErrors(ollirResult.getReports());
+        return ollirResult;
+    }
+
+    private void checkNoErrors(List<Report> reports) {
+        if (ReportUtils.anyError(reports)) {
+            throw new RuntimeException("Benchmark input '" + source + "' does not compile: " + reports);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package pt.up.fe.comp2024.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp2024.backend.JasminGenerator;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the OLLIR backend, {@link JasminGenerator}, over an already parsed OLLIR class.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JasminGeneratorBenchmark extends BenchmarkInput {
+
+    private OllirResult ollirResult;
+
+    @Override
+    protected void prepare() {
+        ollirResult = ollirInput();
+    }
+
+    @Benchmark
+    public String generateJasmin() {
+        return new JasminGenerator(ollirResult).build();
+    }
+}
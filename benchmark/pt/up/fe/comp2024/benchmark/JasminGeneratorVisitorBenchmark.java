@@ -0,0 +1,41 @@
+package pt.up.fe.comp2024.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp2024.backend.JasminWriter;
+import pt.up.fe.comp2024.optimization_jasmin.JasminGeneratorVisitor;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the AST backend, {@link JasminGeneratorVisitor}, over an analysed AST.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JasminGeneratorVisitorBenchmark extends BenchmarkInput {
+
+    private JmmSemanticsResult semanticsResult;
+
+    @Override
+    protected void prepare() {
+        semanticsResult = analyseInput();
+    }
+
+    @Benchmark
+    public String generateJasmin() {
+        var generator = new JasminGeneratorVisitor(semanticsResult.getSymbolTable());
+        return JasminWriter.write(generator.generate(semanticsResult.getRootNode()));
+    }
+}
@@ -0,0 +1,108 @@
+package pt.up.fe.comp2024.benchmark;
+
+/**
+ * Generates valid J-- programs whose size grows along independent dimensions, to measure how each stage scales.
+ * <ul>
+ *     <li>class size: number of fields, and number of statements in each method body</li>
+ *     <li>method count: number of instance methods, besides main</li>
+ *     <li>expression depth: height of the arithmetic expression trees assigned in the statements</li>
+ *     <li>loop nesting: number of while loops nested around the statements of each method</li>
+ * </ul>
+ */
+public class JmmProgramGenerator {
+
+    private static final String NL = "\n";
+    private static final String[] OPERATORS = {"+", "-", "*"};
+
+    private final int classSize;
+    private final int methodCount;
+    private final int expressionDepth;
+    private final int loopNesting;
+
+    public JmmProgramGenerator(int classSize, int methodCount, int expressionDepth, int loopNesting) {
+        this.classSize = classSize;
+        this.methodCount = methodCount;
+        this.expressionDepth = expressionDepth;
+        this.loopNesting = loopNesting;
+    }
+
+    public String generate() {
+        var code = new StringBuilder();
+
+        code.append("import io;").append(NL).append(NL);
+        code.append("class Synthetic {").append(NL);
+
+        for (int i = 0; i < classSize; i++) {
+            code.append("    int f").append(i).append(";").append(NL);
+        }
+        code.append(NL);
+
+        for (int i = 0; i < methodCount; i++) {
+            generateMethod(i, code);
+        }
+
+        code.append("    public static void main(String[] args) {").append(NL);
+        code.append("    }").append(NL);
+        code.append("}").append(NL);
+
+        return code.toString();
+    }
+
+    private void generateMethod(int index, StringBuilder code) {
+        code.append("    public int m").append(index).append("(int a, int b) {").append(NL);
+
+        for (int i = 0; i < classSize; i++) {
+            code.append("        int x").append(i).append(";").append(NL);
+        }
+        for (int i = 0; i < loopNesting; i++) {
+            code.append("        int i").append(i).append(";").append(NL);
+        }
+
+        code.append("        x0 = a;").append(NL);
+        for (int i = 1; i < classSize; i++) {
+            code.append("        x").append(i).append(" = b;").append(NL);
+        }
+
+        var indent = "        ";
+        for (int i = 0; i < loopNesting; i++) {
+            code.append(indent).append("i").append(i).append(" = 0;").append(NL);
+            code.append(indent).append("while (i").append(i).append(" < 10) {").append(NL);
+            indent += "    ";
+        }
+
+        for (int i = 0; i < classSize; i++) {
+            code.append(indent).append("x").append(i).append(" = ");
+            generateExpression(expressionDepth, i, code);
+            code.append(";").append(NL);
+        }
+
+        for (int i = loopNesting - 1; i >= 0; i--) {
+            code.append(indent).append("i").append(i).append(" = i").append(i).append(" + 1;").append(NL);
+            indent = indent.substring(4);
+            code.append(indent).append("}").append(NL);
+        }
+
+        code.append("        return x0;").append(NL);
+        code.append("    }").append(NL).append(NL);
+    }
+
+    /**
+     * Appends a balanced expression tree of the given height. Leaves alternate between locals and literals.
+     */
+    private void generateExpression(int depth, int seed, StringBuilder code) {
+        if (depth == 0) {
+            if (seed % 2 == 0) {
+                code.append("x").append(seed % classSize);
+            } else {
+                code.append(seed % 100);
+            }
+            return;
+        }
+
+        code.append("(");
+        generateExpression(depth - 1, seed * 2 + 1, code);
+        code.append(" ").append(OPERATORS[seed % OPERATORS.length]).append(" ");
+        generateExpression(depth - 1, seed * 2 + 2, code);
+        code.append(")");
+    }
+}
@@ -0,0 +1,57 @@
+package pt.up.fe.comp2024.benchmark;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.BailErrorStrategy;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import pt.up.fe.comp.jmm.ast.antlr.AntlrParser;
+import pt.up.fe.comp.jmm.parser.JmmParserResult;
+import pt.up.fe.comp2024.JavammLexer;
+import pt.up.fe.comp2024.JavammParser;
+import pt.up.fe.comp2024.parser.JmmParserImpl;
+import pt.up.fe.comp2024.parser.ParserPool;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Steady-state cost of parsing with the pooled lexer/parser pairs of {@link ParserPool}, compared with creating a new
+ * pair for every parse and with parsing after the shared prediction caches were dropped.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserPoolBenchmark extends BenchmarkInput {
+
+    @Benchmark
+    public JmmParserResult pooled() {
+        return new JmmParserImpl().parse(code, config);
+    }
+
+    @Benchmark
+    public JmmParserResult newInstances() {
+        var lex = new JavammLexer(new ANTLRInputStream(code));
+        var parser = new JavammParser(new CommonTokenStream(lex));
+        parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+        parser.setErrorHandler(new BailErrorStrategy());
+
+        return AntlrParser.parse(lex, parser, "program", config);
+    }
+
+    @Benchmark
+    public JmmParserResult clearedCaches() {
+        ParserPool.clearCaches();
+        return new JmmParserImpl().parse(code, config);
+    }
+}
@@ -0,0 +1,99 @@
+package pt.up.fe.comp2024.benchmark;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CommonTokenStream;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.JavammLexer;
+import pt.up.fe.comp2024.parser.JmmParserImpl;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Peak heap used to get a large source into the compiler, reading it into a String first or straight from the file.
+ * <p>
+ * Run each mode in its own JVM, so that the peaks do not mix:
+ * <pre>
+ *     SourceHeapMeasurement generate &lt;file&gt; &lt;size in MB&gt;
+ *     SourceHeapMeasurement string|file load|lex|parse &lt;file&gt;
+ * </pre>
+ * The 'load' phase only builds the lexer input, 'lex' also runs the lexer over all of it and 'parse' does a full
+ * JmmParserImpl parse. For big inputs the tokens and the AST dominate the heap in the last two.
+ */
+public class SourceHeapMeasurement {
+
+    public static void main(String[] args) throws IOException {
+        if (args[0].equals("generate")) {
+            generate(new File(args[1]), Integer.parseInt(args[2]));
+            return;
+        }
+
+        var fromFile = args[0].equals("file");
+        var phase = args[1];
+        var source = new File(args[2]);
+
+        resetPeaks();
+        var start = System.nanoTime();
+
+        if (phase.equals("parse")) {
+            var config = CompilerConfig.getDefault();
+            var parser = new JmmParserImpl();
+            var result = fromFile ? parser.parse(source, config) : parser.parse(SpecsIo.read(source), config);
+            System.out.println("Reports: " + result.getReports().size());
+        } else {
+            CharStream input;
+            if (fromFile) {
+                try (var reader = Files.newBufferedReader(source.toPath(), StandardCharsets.UTF_8)) {
+                    input = new ANTLRInputStream(reader, (int) source.length() + 64 * 1024, 64 * 1024);
+                }
+            } else {
+                input = new ANTLRInputStream(SpecsIo.read(source));
+            }
+
+            if (phase.equals("lex")) {
+                var tokens = new CommonTokenStream(new JavammLexer(input));
+                tokens.fill();
+                System.out.println("Tokens: " + tokens.size());
+            } else {
+                System.out.println("Chars: " + input.size());
+            }
+        }
+
+        System.out.printf("%s/%s: %.1f MB source, peak heap %.1f MB, %.2f s%n", args[0], args[1],
+                source.length() / 1e6, getPeakHeap() / 1e6, (System.nanoTime() - start) / 1e9);
+    }
+
+    private static void generate(File output, int megabytes) throws IOException {
+        // each generated method takes a few KB, add methods until reaching the requested size
+        var methodBytes = new JmmProgramGenerator(16, 1, 4, 2).generate().length();
+        var methods = (int) ((long) megabytes * 1_000_000 / methodBytes);
+
+        try (Writer writer = Files.newBufferedWriter(output.toPath(), StandardCharsets.UTF_8)) {
+            writer.write(new JmmProgramGenerator(16, methods, 4, 2).generate());
+        }
+    }
+
+    private static void resetPeaks() {
+        System.gc();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    private static long getPeakHeap() {
+        return ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(pool -> pool.getType() == MemoryType.HEAP)
+                .mapToLong(pool -> pool.getPeakUsage().getUsed())
+                .sum();
+    }
+}
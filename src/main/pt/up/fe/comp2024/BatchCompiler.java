@@ -0,0 +1,155 @@
+package pt.up.fe.comp2024;
+
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.ReportType;
+import pt.up.fe.comp2024.CompilerPipeline.Step;
+import pt.up.fe.comp2024.cache.StageCache;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Compiles every .jmm file of a directory inside the same JVM, using a fixed pool of worker threads.
+ */
+public class BatchCompiler {
+
+    private final CompilerPipeline pipeline;
+    private final int numThreads;
+
+    public BatchCompiler(CompilerPipeline pipeline, int numThreads) {
+        this.pipeline = pipeline;
+        this.numThreads = numThreads;
+    }
+
+    public BatchCompiler(CompilerPipeline pipeline) {
+        this(pipeline, Runtime.getRuntime().availableProcessors());
+    }
+
+    public BatchCompiler() {
+        this(new CompilerPipeline());
+    }
+
+    public static List<File> findSources(File folder) {
+        var sources = new ArrayList<>(SpecsIo.getFilesRecursive(folder, "jmm"));
+        sources.sort(null);
+        return sources;
+    }
+
+    public BatchSummary compile(List<File> sources, Map<String, String> config) {
+        var executor = Executors.newFixedThreadPool(numThreads);
+        var start = System.nanoTime();
+
+        try {
+            var futures = new ArrayList<Future<FileResult>>();
+            for (var source : sources) {
+                futures.add(executor.submit(compileTask(source, config)));
+            }
+
+            var results = new ArrayList<FileResult>();
+            for (var future : futures) {
+                results.add(future.get());
+            }
+
+            return new BatchSummary(results, System.nanoTime() - start, numThreads, pipeline.getCache());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while compiling batch", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Unexpected exception while compiling batch", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Callable<FileResult> compileTask(File source, Map<String, String> config) {
+        return () -> {
+            // each file gets its own copy of the configuration, pointing to itself as input
+            var fileConfig = new HashMap<>(config);
+            fileConfig.put(CompilerConfig.INPUT_FILE, source.getAbsolutePath());
+
+            var result = pipeline.run(source, fileConfig);
+            return new FileResult(source, result);
+        };
+    }
+
+    public record FileResult(File source, CompilerPipeline.PipelineResult result) {
+
+        public boolean isSuccess() {
+            return !result.hasErrors();
+        }
+    }
+
+    public static class BatchSummary {
+
+        private final List<FileResult> results;
+        private final long wallNanos;
+        private final int numThreads;
+        private final StageCache cache;
+
+        BatchSummary(List<FileResult> results, long wallNanos, int numThreads, StageCache cache) {
+            this.results = results;
+            this.wallNanos = wallNanos;
+            this.numThreads = numThreads;
+            this.cache = cache;
+        }
+
+        public List<FileResult> getResults() {
+            return results;
+        }
+
+        public long getFailedCount() {
+            return results.stream().filter(result -> !result.isSuccess()).count();
+        }
+
+        /**
+         * @return the sum of the time spent by every worker in the given step
+         */
+        public long getStepNanos(Step step) {
+            return results.stream().mapToLong(result -> result.result().getStepNanos(step)).sum();
+        }
+
+        public double getFilesPerSecond() {
+            return results.size() / (wallNanos / 1e9);
+        }
+
+        public String toReport() {
+            var report = new StringBuilder();
+
+            for (var result : results) {
+                var errors = result.result().getReports().stream()
+                        .filter(r -> r.getType() == ReportType.ERROR)
+                        .toList();
+
+                if (errors.isEmpty()) {
+                    continue;
+                }
+
+                report.append("FAILED ").append(result.source()).append("\n");
+                for (Report error : errors) {
+                    report.append("   ").append(error).append("\n");
+                }
+            }
+
+            report.append(String.format("Compiled %d files (%d failed) in %.3f s with %d threads, %.1f files/s%n",
+                    results.size(), getFailedCount(), wallNanos / 1e9, numThreads, getFilesPerSecond()));
+
+            for (var step : Step.values()) {
+                report.append(String.format("   %-8s %10.3f s%n", step, getStepNanos(step) / 1e9));
+            }
+
+            if (cache != null) {
+                report.append(cache.toReport());
+            }
+
+            return report.toString();
+        }
+    }
+}
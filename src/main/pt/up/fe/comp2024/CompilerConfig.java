@@ -1,23 +1,54 @@
 package pt.up.fe.comp2024;
 
+import pt.up.fe.comp2024.backend.PeepholePattern;
+import pt.up.fe.comp2024.backend.PeepholePatterns;
+
 import java.io.File;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
 public class CompilerConfig {
 
-    private static final String INPUT_FILE = "inputFile";
+    static final String INPUT_FILE = "inputFile";
+    private static final String INPUT_DIR = "inputDir";
     private static final String OPTIMIZE = "optimize";
     private static final String REGISTER = "registerAllocation";
+    private static final String SERVE = "daemonServe";
+    private static final String CONNECT = "daemonConnect";
+    private static final String TIMEOUT = "timeout";
+    private static final String CACHE_DIR = "cacheDir";
+    private static final String STATS = "stats";
+    private static final String PROFILE_PARSER = "profileParser";
+    private static final String LIBRARY_PATH = "libraryPath";
+    private static final String OUTPUT_DIR = "outputDir";
+    private static final String PROJECT = "project";
+    private static final String PEEPHOLE = "peephole";
+    private static final String CLASS_FILE = "classFile";
+
+    private static final String DEFAULT_LIBRARY_PATH = "libs-jmm/compiled";
 
 
     static Map<String, String> shortToLong = new HashMap<>();
 
     static {
         shortToLong.put("i", CompilerConfig.INPUT_FILE);
+        shortToLong.put("d", CompilerConfig.INPUT_DIR);
         shortToLong.put("o", CompilerConfig.OPTIMIZE);
         shortToLong.put("r", CompilerConfig.REGISTER);
+        shortToLong.put("s", CompilerConfig.SERVE);
+        shortToLong.put("c", CompilerConfig.CONNECT);
+        shortToLong.put("t", CompilerConfig.TIMEOUT);
+        shortToLong.put("k", CompilerConfig.CACHE_DIR);
+        shortToLong.put("m", CompilerConfig.STATS);
+        shortToLong.put("p", CompilerConfig.PROFILE_PARSER);
+        shortToLong.put("l", CompilerConfig.LIBRARY_PATH);
+        shortToLong.put("b", CompilerConfig.OUTPUT_DIR);
+        shortToLong.put("j", CompilerConfig.PROJECT);
+        shortToLong.put("e", CompilerConfig.PEEPHOLE);
+        shortToLong.put("f", CompilerConfig.CLASS_FILE);
     }
 
 
@@ -32,6 +63,16 @@ public class CompilerConfig {
         return Optional.of(new File(inputFile));
     }
 
+    public static Optional<File> getInputDir(Map<String, String> config) {
+        var inputDir = config.get(INPUT_DIR);
+
+        if (inputDir == null) {
+            return Optional.empty();
+        }
+
+        return Optional.of(new File(inputDir));
+    }
+
     public static boolean getOptimize(Map<String, String> config) {
         return Boolean.parseBoolean(config.getOrDefault(OPTIMIZE, "false"));
     }
@@ -41,6 +82,94 @@ public class CompilerConfig {
     }
 
 
+    /**
+     * @return the port where the compile daemon should listen, if the compiler should run as a daemon
+     */
+    public static Optional<Integer> getDaemonServePort(Map<String, String> config) {
+        return Optional.ofNullable(config.get(SERVE)).map(Integer::parseInt);
+    }
+
+    /**
+     * @return the port of the compile daemon that should handle this compilation, if any
+     */
+    public static Optional<Integer> getDaemonConnectPort(Map<String, String> config) {
+        return Optional.ofNullable(config.get(CONNECT)).map(Integer::parseInt);
+    }
+
+    /**
+     * @return timeout for a single daemon request, in milliseconds
+     */
+    public static long getTimeout(Map<String, String> config) {
+        return Long.parseLong(config.getOrDefault(TIMEOUT, "30000"));
+    }
+
+    /**
+     * @return the folder where the output of each stage is cached between compilations, if caching is enabled
+     */
+    public static Optional<File> getCacheDir(Map<String, String> config) {
+        return Optional.ofNullable(config.get(CACHE_DIR)).map(File::new);
+    }
+
+    /**
+     * @return where to write the JSON stats report, "true" meaning the standard output, if stats are enabled
+     */
+    public static Optional<String> getStats(Map<String, String> config) {
+        return Optional.ofNullable(config.get(STATS));
+    }
+
+    /**
+     * @return true if the parser should collect per-decision prediction statistics
+     */
+    public static boolean getProfileParser(Map<String, String> config) {
+        return Boolean.parseBoolean(config.getOrDefault(PROFILE_PARSER, "false"));
+    }
+
+    /**
+     * @return folders and jars with the compiled classes that the code may import, in search order
+     */
+    public static List<File> getLibraryPath(Map<String, String> config) {
+        return Arrays.stream(config.getOrDefault(LIBRARY_PATH, DEFAULT_LIBRARY_PATH).split(File.pathSeparator))
+                .filter(path -> !path.isBlank())
+                .map(File::new)
+                .toList();
+    }
+
+    /**
+     * @return the folder where the generated code and the interface summary of each class are written, if any
+     */
+    public static Optional<File> getOutputDir(Map<String, String> config) {
+        return Optional.ofNullable(config.get(OUTPUT_DIR)).map(File::new);
+    }
+
+    /**
+     * @return true if the files of the input folder import each other, and should be compiled in dependency order
+     */
+    public static boolean getProject(Map<String, String> config) {
+        return Boolean.parseBoolean(config.getOrDefault(PROJECT, "false"));
+    }
+
+    /**
+     * @return the peephole patterns to apply to the generated Jasmin code: all of them by default, none if '-e=false',
+     * or the ones named in a comma separated list
+     */
+    public static List<PeepholePattern> getPeepholePatterns(Map<String, String> config) {
+        var value = config.getOrDefault(PEEPHOLE, "true");
+        if (value.equals("true")) {
+            return PeepholePatterns.ALL;
+        }
+        if (value.equals("false")) {
+            return List.of();
+        }
+        return PeepholePatterns.getPatterns(Arrays.stream(value.split(",")).map(String::strip).toList());
+    }
+
+    /**
+     * @return true if the backend should write class files directly, instead of Jasmin code for the assembler
+     */
+    public static boolean getClassFile(Map<String, String> config) {
+        return Boolean.parseBoolean(config.getOrDefault(CLASS_FILE, "false"));
+    }
+
     public static Map<String, String> getDefault() {
 
         var config = new HashMap<String, String>();
@@ -89,23 +218,47 @@ public class CompilerConfig {
             config.put(getLongOpt(shortOption), value);
         }
 
-        if (!config.containsKey(INPUT_FILE)) {
+        if (config.containsKey(INPUT_DIR)) {
 
-            throw new RuntimeException("Expected an input file, use '-i=<PATH_TO_FILE>'");
-        }
+            // batch mode, make sure we save the absolute path of the input folder
+            var inputDir = new File(config.get(INPUT_DIR));
+            if (!inputDir.isDirectory()) {
+                throw new RuntimeException("Could not find input folder '" + inputDir + "'");
+            }
 
-        // make sure we save the absolute path of the input file
-        var inputFile = new File(config.get(INPUT_FILE));
-        if (!inputFile.isFile()) {
-            throw new RuntimeException("Could not find input file '" + inputFile + "'");
-        }
+            config.put(INPUT_DIR, inputDir.getAbsolutePath());
+        } else if (config.containsKey(SERVE) || (config.containsKey(CONNECT) && !config.containsKey(INPUT_FILE))) {
+
+            // daemon process, or a client asking the daemon for its stats, no input needed
+        } else {
+
+            if (!config.containsKey(INPUT_FILE)) {
+
+                throw new RuntimeException("Expected an input file, use '-i=<PATH_TO_FILE>' or '-d=<PATH_TO_FOLDER>'");
+            }
 
-        var absolutePath = inputFile.getAbsolutePath();
-        config.put(INPUT_FILE, absolutePath);
+            // make sure we save the absolute path of the input file
+            var inputFile = new File(config.get(INPUT_FILE));
+            if (!inputFile.isFile()) {
+                throw new RuntimeException("Could not find input file '" + inputFile + "'");
+            }
+
+            var absolutePath = inputFile.getAbsolutePath();
+            config.put(INPUT_FILE, absolutePath);
+        }
 
         // Verify if values are valid
         getOptimize(config);
         getRegisterAllocation(config);
+        getDaemonServePort(config);
+        getDaemonConnectPort(config);
+        getTimeout(config);
+        getPeepholePatterns(config);
+
+        if (getProject(config) && (!config.containsKey(INPUT_DIR) || !config.containsKey(OUTPUT_DIR))) {
+            throw new RuntimeException("Option '-j' compiles a folder into an output folder, use '-d=<PATH_TO_FOLDER>' "
+                    + "and '-b=<PATH_TO_FOLDER>'");
+        }
 
         return config;
     }
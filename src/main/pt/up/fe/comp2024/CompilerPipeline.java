@@ -0,0 +1,425 @@
+package pt.up.fe.comp2024;
+
+import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+import pt.up.fe.comp.jmm.jasmin.JasminResult;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp.jmm.parser.JmmParserResult;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.ReportType;
+import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2024.analysis.JmmAnalysisImpl;
+import pt.up.fe.comp2024.backend.JasminBackendImpl;
+import pt.up.fe.comp2024.cache.CompilerBuild;
+import pt.up.fe.comp2024.cache.StageCache;
+import pt.up.fe.comp2024.cache.StageCodec;
+import pt.up.fe.comp2024.classfile.ClassFileBackend;
+import pt.up.fe.comp2024.classfile.ClassFileResult;
+import pt.up.fe.comp2024.optimization.JmmOptimizationImpl;
+import pt.up.fe.comp2024.parser.JmmParserImpl;
+import pt.up.fe.comp2024.stats.CompilerStats;
+import pt.up.fe.comp2024.symboltable.InterfaceSummary;
+import pt.up.fe.comp2024.symboltable.JmmSymbolTable;
+import pt.up.fe.comp2024.utils.ReportUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.function.Supplier;
+
+/**
+ * Chains the compiler stages (parser, semantic analysis, OLLIR generation and Jasmin backend) for a single J-- source.
+ * <p>
+ * Every call to {@link #run(String, Map)} uses fresh stage instances, so one pipeline can be shared by several
+ * threads. The run stops at the first stage that reports errors.
+ * <p>
+ * A run checks whether its thread was interrupted before each stage, and if so stops with a
+ * {@link CancellationException}, so that a compilation that is no longer wanted does not keep its thread busy.
+ * <p>
+ * When given a {@link StageCache}, the run starts from the last stage found in the cache, and stores the output of
+ * the stages it executes. Only stages without warnings or errors are stored, so warnings are never lost. Log reports,
+ * e.g. what an optimization did, do not prevent storing and are not kept in the cache.
+ * <p>
+ * With {@link CompilerConfig#getClassFile(Map)} the backend writes the class file directly instead of Jasmin code.
+ * Class files are not cached, the run starts at most from the cached OLLIR code.
+ */
+public class CompilerPipeline {
+
+    /**
+     * Salt of the cache key. The key already changes with every build of the compiler, see {@link CompilerBuild}, so
+     * this only needs to change to drop entries written by the same build, e.g. after a change of the cache format.
+     */
+    public static final String VERSION = "2024.14";
+
+    public enum Step {
+        PARSE,
+        ANALYSIS,
+        OLLIR,
+        JASMIN
+    }
+
+    private final StageCache cache;
+
+    public CompilerPipeline(StageCache cache) {
+        this.cache = cache;
+    }
+
+    public CompilerPipeline() {
+        this(null);
+    }
+
+    public StageCache getCache() {
+        return cache;
+    }
+
+    public PipelineResult run(String code, Map<String, String> config) {
+        return run(() -> cache.key(code, config), () -> new JmmParserImpl().parse(code, config), config);
+    }
+
+    /**
+     * Compiles a source file, which the parser reads directly instead of going through a String.
+     */
+    public PipelineResult run(File source, Map<String, String> config) {
+        return run(() -> cache.key(source, config), () -> new JmmParserImpl().parse(source, config), config);
+    }
+
+    private PipelineResult run(Supplier<String> cacheKey, Supplier<JmmParserResult> parse, Map<String, String> config) {
+        var key = cache != null ? cacheKey.get() : null;
+
+        if (!CompilerConfig.getStats(config).isPresent()) {
+            return writeOutputs(runStages(key, parse, config, new PipelineResult(null)), key, config);
+        }
+
+        var stats = new CompilerStats(config.get(CompilerConfig.INPUT_FILE));
+        stats.start();
+        try {
+            return writeOutputs(runStages(key, parse, config, new PipelineResult(stats)), key, config);
+        } finally {
+            stats.stop();
+        }
+    }
+
+    private PipelineResult runStages(String key, Supplier<JmmParserResult> parse, Map<String, String> config,
+                                     PipelineResult result) {
+        // Look for the furthest stage already in the cache
+        if (key != null) {
+            var start = System.nanoTime();
+
+            var jasmin = CompilerConfig.getClassFile(config) ? Optional.<String>empty() : cache.get(key, Step.JASMIN);
+            if (jasmin.isPresent()) {
+                result.jasminResult = StageCodec.decodeJasmin(jasmin.get(), config);
+                result.finishCachedStep(Step.JASMIN, start);
+                return result;
+            }
+
+            var ollir = cache.get(key, Step.OLLIR);
+            if (ollir.isPresent()) {
+                // the passes over the OLLIR class, e.g. register allocation, are not in the cached code
+                var ollirResult = new JmmOptimizationImpl().optimize(new OllirResult(ollir.get(), config));
+                result.finishCachedStep(Step.OLLIR, start);
+                result.reports.addAll(ollirResult.getReports());
+                if (result.hasErrors()) {
+                    return result;
+                }
+                return runBackend(ollirResult, key, result);
+            }
+
+            var semantics = cache.get(key, Step.ANALYSIS);
+            if (semantics.isPresent()) {
+                var semanticsResult = new JmmSemanticsResult(StageCodec.decodeSemanticsAst(semantics.get()),
+                        StageCodec.decodeSemanticsTable(semantics.get()), Collections.emptyList(), config);
+                result.symbolTable = semanticsResult.getSymbolTable();
+                result.finishCachedStep(Step.ANALYSIS, start);
+                return runOptimization(semanticsResult, key, result);
+            }
+
+            var ast = cache.get(key, Step.PARSE);
+            if (ast.isPresent()) {
+                var parserResult = new JmmParserResult(StageCodec.decodeAst(ast.get()), Collections.emptyList(), config);
+                result.finishCachedStep(Step.PARSE, start);
+                return runAnalysis(parserResult, key, result);
+            }
+        }
+
+        // Parsing stage
+        checkInterrupted(Step.PARSE);
+        var start = System.nanoTime();
+        JmmParserResult parserResult = CompilerStats.measure(Step.PARSE.name(), parse);
+        result.finishStep(Step.PARSE, start, parserResult.getReports());
+        if (result.hasErrors()) {
+            return result;
+        }
+        store(key, Step.PARSE, parserResult.getReports(), () -> StageCodec.encodeAst(parserResult.getRootNode()));
+
+        return runAnalysis(parserResult, key, result);
+    }
+
+    private PipelineResult runAnalysis(JmmParserResult parserResult, String key, PipelineResult result) {
+        checkInterrupted(Step.ANALYSIS);
+
+        // Semantic Analysis stage
+        var start = System.nanoTime();
+        JmmSemanticsResult semanticsResult;
+        try {
+            semanticsResult = CompilerStats.measure(Step.ANALYSIS.name(),
+                    () -> new JmmAnalysisImpl().semanticAnalysis(parserResult));
+        } catch (Exception e) {
+            result.finishStep(Step.ANALYSIS, start, List.of(stageError(Step.ANALYSIS, e)));
+            return result;
+        }
+        var reports = newReports(parserResult.getReports(), semanticsResult.getReports());
+        result.finishStep(Step.ANALYSIS, start, reports);
+        result.symbolTable = semanticsResult.getSymbolTable();
+        if (result.hasErrors()) {
+            return result;
+        }
+
+        // the summaries of imported classes are not part of the key, code typed against them is never cached
+        var stageKey = JmmSymbolTable.of(semanticsResult.getSymbolTable()).hasImportedSummaries() ? null : key;
+        store(stageKey, Step.ANALYSIS, reports,
+                () -> StageCodec.encodeSemantics(semanticsResult.getRootNode(), semanticsResult.getSymbolTable()));
+
+        return runOptimization(semanticsResult, stageKey, result);
+    }
+
+    private PipelineResult runOptimization(JmmSemanticsResult semanticsResult, String key, PipelineResult result) {
+        checkInterrupted(Step.OLLIR);
+
+        // Optimization stage
+        var start = System.nanoTime();
+        OllirResult ollirResult;
+        try {
+            var ollirGen = new JmmOptimizationImpl();
+            ollirResult = CompilerStats.measure(Step.OLLIR.name(),
+                    () -> ollirGen.optimize(ollirGen.toOllir(ollirGen.optimize(semanticsResult))));
+        } catch (Exception e) {
+            result.finishStep(Step.OLLIR, start, List.of(stageError(Step.OLLIR, e)));
+            return result;
+        }
+        var reports = newReports(semanticsResult.getReports(), ollirResult.getReports());
+        result.finishStep(Step.OLLIR, start, reports);
+        if (result.hasErrors()) {
+            return result;
+        }
+        // the code as generated, the passes over the OLLIR class run again when it is read from the cache
+        store(key, Step.OLLIR, reports, ollirResult::getOllirCode);
+
+        return runBackend(ollirResult, key, result);
+    }
+
+    private PipelineResult runBackend(OllirResult ollirResult, String key, PipelineResult result) {
+        checkInterrupted(Step.JASMIN);
+
+        if (CompilerConfig.getClassFile(ollirResult.getConfig())) {
+            return runClassFileBackend(ollirResult, result);
+        }
+
+        // Code generation stage
+        var start = System.nanoTime();
+        JasminResult jasminResult;
+        try {
+            jasminResult = CompilerStats.measure(Step.JASMIN.name(),
+                    () -> new JasminBackendImpl().toJasmin(ollirResult));
+        } catch (Exception e) {
+            result.finishStep(Step.JASMIN, start, List.of(stageError(Step.JASMIN, e)));
+            return result;
+        }
+        var reports = newReports(ollirResult.getReports(), jasminResult.getReports());
+        result.finishStep(Step.JASMIN, start, reports);
+        result.jasminResult = jasminResult;
+        if (result.hasErrors()) {
+            return result;
+        }
+        store(key, Step.JASMIN, reports, () -> StageCodec.encodeJasmin(jasminResult));
+
+        return result;
+    }
+
+    private PipelineResult runClassFileBackend(OllirResult ollirResult, PipelineResult result) {
+        // Code generation stage, straight to the class file
+        var start = System.nanoTime();
+        ClassFileResult classFileResult;
+        try {
+            classFileResult = CompilerStats.measure(Step.JASMIN.name(),
+                    () -> new ClassFileBackend().toClassFile(ollirResult));
+        } catch (Exception e) {
+            result.finishStep(Step.JASMIN, start, List.of(stageError(Step.JASMIN, e)));
+            return result;
+        }
+        result.finishStep(Step.JASMIN, start, newReports(ollirResult.getReports(), classFileResult.reports()));
+        result.classFileResult = classFileResult;
+
+        return result;
+    }
+
+    /**
+     * Writes the generated code and the interface summary of the class to the output folder, if there is one and the
+     * run succeeded. When the backend came from the cache the symbol table is taken from the cached analysis, and
+     * only the code is written if that entry is gone.
+     */
+    private PipelineResult writeOutputs(PipelineResult result, String key, Map<String, String> config) {
+        var outputDir = CompilerConfig.getOutputDir(config);
+        if (outputDir.isEmpty() || result.hasErrors()
+                || (result.jasminResult == null && result.classFileResult == null)) {
+            return result;
+        }
+
+        var table = result.symbolTable;
+        if (table == null && key != null) {
+            table = cache.get(key, Step.ANALYSIS).map(StageCodec::decodeSemanticsTable).orElse(null);
+        }
+
+        try {
+            Files.createDirectories(outputDir.get().toPath());
+            if (result.classFileResult != null) {
+                var className = table != null ? table.getClassName() : result.classFileResult.className();
+                Files.write(new File(outputDir.get(), className + ".class").toPath(),
+                        result.classFileResult.classFile());
+            } else {
+                var className = table != null ? table.getClassName() : result.jasminResult.getClassName();
+                Files.writeString(new File(outputDir.get(), className + ".j").toPath(),
+                        result.jasminResult.getJasminCode());
+            }
+            if (table != null) {
+                InterfaceSummary.of(table).write(outputDir.get());
+            }
+        } catch (IOException | UncheckedIOException e) {
+            result.reports.add(Report.newError(Stage.GENERATION, -1, -1,
+                    "Could not write output to folder '" + outputDir.get() + "'", e));
+        }
+
+        return result;
+    }
+
+    private static void checkInterrupted(Step step) {
+        if (Thread.interrupted()) {
+            throw new CancellationException("Compilation interrupted before stage " + step);
+        }
+    }
+
+    private void store(String key, Step step, List<Report> reports, Supplier<String> encoder) {
+        if (key == null || reports.stream().anyMatch(report -> report.getType() != ReportType.LOG)) {
+            return;
+        }
+
+        cache.put(key, step, encoder.get());
+    }
+
+    /**
+     * Stage results carry over the reports of the previous stages, this returns only the ones that are new.
+     */
+    private static List<Report> newReports(List<Report> previous, List<Report> current) {
+        if (current.size() >= previous.size() && current.subList(0, previous.size()).equals(previous)) {
+            return current.subList(previous.size(), current.size());
+        }
+
+        return current;
+    }
+
+    private static Report stageError(Step step, Exception e) {
+        var stage = switch (step) {
+            case PARSE -> Stage.SYNTATIC;
+            case ANALYSIS -> Stage.SEMANTIC;
+            case OLLIR -> Stage.LLIR;
+            case JASMIN -> Stage.GENERATION;
+        };
+        return Report.newError(stage, -1, -1, "Exception during stage " + step, e);
+    }
+
+    public static class PipelineResult {
+
+        private final List<Report> reports;
+        private final long[] stepNanos;
+        private final boolean[] cachedSteps;
+        private final CompilerStats stats;
+        private JasminResult jasminResult;
+        private ClassFileResult classFileResult;
+        private SymbolTable symbolTable;
+
+        private PipelineResult(CompilerStats stats) {
+            this.stats = stats;
+            reports = new ArrayList<>();
+            stepNanos = new long[Step.values().length];
+            cachedSteps = new boolean[Step.values().length];
+            jasminResult = null;
+            classFileResult = null;
+            symbolTable = null;
+        }
+
+        /**
+         * @return the result of a source the pipeline did not run on, with the reports that explain why
+         */
+        public static PipelineResult notRun(List<Report> reports) {
+            var result = new PipelineResult(null);
+            result.reports.addAll(reports);
+            return result;
+        }
+
+        private void finishStep(Step step, long startNanos, List<Report> stepReports) {
+            stepNanos[step.ordinal()] = System.nanoTime() - startNanos;
+            reports.addAll(stepReports);
+        }
+
+        /**
+         * Marks the given step, and every step before it, as loaded from the cache.
+         */
+        private void finishCachedStep(Step step, long startNanos) {
+            stepNanos[step.ordinal()] = System.nanoTime() - startNanos;
+            for (int i = 0; i <= step.ordinal(); i++) {
+                cachedSteps[i] = true;
+            }
+        }
+
+        public List<Report> getReports() {
+            return reports;
+        }
+
+        public boolean hasErrors() {
+            return ReportUtils.anyError(reports);
+        }
+
+        /**
+         * @return the Jasmin result, or null if the pipeline stopped before the backend
+         */
+        public JasminResult getJasminResult() {
+            return jasminResult;
+        }
+
+        /**
+         * @return the class file written directly by the backend, or null if the backend wrote Jasmin code or did not
+         * run
+         */
+        public ClassFileResult getClassFileResult() {
+            return classFileResult;
+        }
+
+        /**
+         * @return the symbol table of the class, or null if the analysis did not run or came from a cached backend
+         */
+        public SymbolTable getSymbolTable() {
+            return symbolTable;
+        }
+
+        public long getStepNanos(Step step) {
+            return stepNanos[step.ordinal()];
+        }
+
+        /**
+         * @return the detailed stats of the run, or null if stats were not enabled
+         */
+        public CompilerStats getStats() {
+            return stats;
+        }
+
+        public boolean isCached(Step step) {
+            return cachedSteps[step.ordinal()];
+        }
+    }
+}
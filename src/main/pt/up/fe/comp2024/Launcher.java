@@ -1,17 +1,19 @@
 package pt.up.fe.comp2024;
 
 import pt.up.fe.comp.TestUtils;
-import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
-import pt.up.fe.comp.jmm.jasmin.JasminResult;
-import pt.up.fe.comp.jmm.ollir.OllirResult;
-import pt.up.fe.comp.jmm.parser.JmmParserResult;
-import pt.up.fe.comp2024.analysis.JmmAnalysisImpl;
-import pt.up.fe.comp2024.backend.JasminBackendImpl;
-import pt.up.fe.comp2024.optimization.JmmOptimizationImpl;
-import pt.up.fe.comp2024.parser.JmmParserImpl;
+import pt.up.fe.comp2024.cache.StageCache;
+import pt.up.fe.comp2024.daemon.CompileDaemon;
+import pt.up.fe.comp2024.daemon.DaemonClient;
+import pt.up.fe.comp2024.daemon.DaemonProtocol;
+import pt.up.fe.comp2024.daemon.DaemonProtocol.ReportMessage;
+import pt.up.fe.comp2024.parser.ParserTelemetry;
+import pt.up.fe.comp2024.stats.CompilerStats;
 import pt.up.fe.specs.util.SpecsIo;
 import pt.up.fe.specs.util.SpecsSystem;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
 import java.util.Map;
 
 public class Launcher {
@@ -21,41 +23,119 @@ public class Launcher {
 
         Map<String, String> config = CompilerConfig.parseArgs(args);
 
+        var servePort = CompilerConfig.getDaemonServePort(config);
+        if (servePort.isPresent()) {
+            serve(servePort.get(), config);
+            return;
+        }
+
+        var connectPort = CompilerConfig.getDaemonConnectPort(config);
+        if (connectPort.isPresent()) {
+            compileWithDaemon(connectPort.get(), config);
+            return;
+        }
+
+        var inputDir = CompilerConfig.getInputDir(config);
+        if (inputDir.isPresent()) {
+            compileFolder(inputDir.get(), config);
+            return;
+        }
+
         var inputFile = CompilerConfig.getInputFile(config).orElseThrow();
         if (!inputFile.isFile()) {
             throw new RuntimeException("Option '-i' expects a path to an existing input file, got '" + args[0] + "'.");
         }
-        String code = SpecsIo.read(inputFile);
 
-        // Parsing stage
-        JmmParserImpl parser = new JmmParserImpl();
-        JmmParserResult parserResult = parser.parse(code, config);
-        TestUtils.noErrors(parserResult.getReports());
+        // Parsing, semantic analysis, optimization and code generation stages
+        var result = newPipeline(config).run(inputFile, config);
+        // without -m the run has no stats
+        if (result.getStats() != null) {
+            writeStats(config, List.of(result.getStats()));
+        }
+        if (CompilerConfig.getProfileParser(config)) {
+            System.out.print(ParserTelemetry.toReport());
+        }
+        TestUtils.noErrors(result.getReports());
 
-        // Print AST
-        //System.out.println(parserResult.getRootNode().toTree());
+        // Print Jasmin code
+        //System.out.println(result.getJasminResult().getJasminCode());
+    }
 
-        // Semantic Analysis stage
-        JmmAnalysisImpl sema = new JmmAnalysisImpl();
-        JmmSemanticsResult semanticsResult = sema.semanticAnalysis(parserResult);
-        TestUtils.noErrors(semanticsResult.getReports());
+    private static CompilerPipeline newPipeline(Map<String, String> config) {
+        var cache = CompilerConfig.getCacheDir(config).map(StageCache::new).orElse(null);
+        return new CompilerPipeline(cache);
+    }
 
+    private static void writeStats(Map<String, String> config, List<CompilerStats> stats) {
+        var output = CompilerConfig.getStats(config);
+        if (output.isEmpty()) {
+            return;
+        }
 
-        // Optimization stage
-        JmmOptimizationImpl ollirGen = new JmmOptimizationImpl();
-        OllirResult ollirResult = ollirGen.toOllir(semanticsResult);
-        TestUtils.noErrors(ollirResult.getReports());
+        var json = CompilerStats.toJson(stats);
+        if (output.get().equals("true")) {
+            System.out.println(json);
+        } else {
+            SpecsIo.write(new File(output.get()), json);
+        }
+    }
 
-        // Print OLLIR code
-        //System.out.println(ollirResult.getOllirCode());
+    private static void serve(int port, Map<String, String> config) {
+        try (var daemon = new CompileDaemon(newPipeline(config), port, CompilerConfig.getTimeout(config))) {
+            System.out.println("Compile daemon listening on port " + daemon.getPort());
+            daemon.serve();
+        } catch (IOException e) {
+            throw new RuntimeException("Could not start compile daemon on port " + port, e);
+        }
+    }
 
-        // Code generation stage
-        JasminBackendImpl jasminGen = new JasminBackendImpl();
-        JasminResult jasminResult = jasminGen.toJasmin(ollirResult);
-        TestUtils.noErrors(jasminResult.getReports());
+    private static void compileWithDaemon(int port, Map<String, String> config) {
+        // give the daemon the chance to answer with a timeout of its own before giving up
+        var client = new DaemonClient(port, (int) CompilerConfig.getTimeout(config) + 5_000);
 
-        // Print Jasmin code
-        //System.out.println(jasminResult.getJasminCode());
+        var inputFile = CompilerConfig.getInputFile(config);
+        if (inputFile.isEmpty()) {
+            var stats = client.stats().stats;
+            System.out.printf("uptime: %.1f s, requests: %d (%d failed, %d timed out), active: %d%n",
+                    stats.uptimeMillis / 1e3, stats.requests, stats.failed, stats.timedOut, stats.activeRequests);
+            System.out.printf("latency p50: %.2f ms, p99: %.2f ms%n", stats.p50Millis, stats.p99Millis);
+            return;
+        }
+
+        var response = client.compile(SpecsIo.read(inputFile.get()), config);
+        if (DaemonProtocol.STATUS_TIMEOUT.equals(response.status)) {
+            throw new RuntimeException("Compilation timed out after " + CompilerConfig.getTimeout(config) + " ms");
+        }
+
+        TestUtils.noErrors(response.reports.stream().map(ReportMessage::toReport).toList());
+    }
+
+    private static void compileFolder(File inputDir, Map<String, String> config) {
+        var sources = BatchCompiler.findSources(inputDir);
+        if (sources.isEmpty()) {
+            throw new RuntimeException("Could not find any .jmm file in folder '" + inputDir + "'");
+        }
+
+        var summary = CompilerConfig.getProject(config) ? compileProject(sources, config)
+                : new BatchCompiler(newPipeline(config)).compile(sources, config);
+        System.out.print(summary.toReport());
+        System.out.print(ParserTelemetry.toReport());
+        writeStats(config, summary.getResults().stream().map(result -> result.result().getStats()).toList());
+
+        if (summary.getFailedCount() > 0) {
+            throw new RuntimeException(summary.getFailedCount() + " of " + sources.size() + " files failed to compile");
+        }
+    }
+
+    private static BatchCompiler.BatchSummary compileProject(List<File> sources, Map<String, String> config) {
+        var compiler = new ProjectCompiler(newPipeline(config));
+
+        var graph = compiler.scan(sources);
+        var waves = graph.getWaves();
+        System.out.printf("Scheduled %d files in %d waves, widest wave has %d files%n", sources.size(),
+                waves.size(), waves.stream().mapToInt(List::size).max().orElse(0));
+
+        return compiler.compile(graph, config);
     }
 
 }
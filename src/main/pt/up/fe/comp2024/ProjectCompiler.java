@@ -0,0 +1,172 @@
+package pt.up.fe.comp2024;
+
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2024.BatchCompiler.BatchSummary;
+import pt.up.fe.comp2024.BatchCompiler.FileResult;
+import pt.up.fe.comp2024.CompilerPipeline.PipelineResult;
+import pt.up.fe.comp2024.project.DependencyGraph;
+import pt.up.fe.comp2024.project.DependencyScanner;
+import pt.up.fe.comp2024.project.SourceHeader;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+/**
+ * Compiles the .jmm files of a project whose classes import and extend each other.
+ * <p>
+ * The imports and super class of every file are first read with the lexer alone. The files are then compiled in
+ * waves that follow the dependency graph: the files of a wave are compiled in parallel, and only depend on files of
+ * earlier waves, whose interface summaries are already in the output folder. Files in a dependency cycle, declaring
+ * the same class as another file, or depending on a file that failed, are reported and not compiled.
+ */
+public class ProjectCompiler {
+
+    private final CompilerPipeline pipeline;
+    private final int numThreads;
+
+    public ProjectCompiler(CompilerPipeline pipeline, int numThreads) {
+        this.pipeline = pipeline;
+        this.numThreads = numThreads;
+    }
+
+    public ProjectCompiler(CompilerPipeline pipeline) {
+        this(pipeline, Runtime.getRuntime().availableProcessors());
+    }
+
+    public ProjectCompiler() {
+        this(new CompilerPipeline());
+    }
+
+    /**
+     * Reads the header of every source, in parallel, and builds their dependency graph.
+     */
+    public DependencyGraph scan(List<File> sources) {
+        var executor = Executors.newFixedThreadPool(numThreads);
+        try {
+            var headers = invokeAll(executor, sources.stream()
+                    .<Callable<SourceHeader>>map(source -> () -> DependencyScanner.scan(source))
+                    .toList());
+            return DependencyGraph.of(headers);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    public BatchSummary compile(List<File> sources, Map<String, String> config) {
+        return compile(scan(sources), config);
+    }
+
+    public BatchSummary compile(DependencyGraph graph, Map<String, String> config) {
+        if (CompilerConfig.getOutputDir(config).isEmpty()) {
+            throw new IllegalArgumentException("Compiling a project needs an output folder, use '-b=<PATH_TO_FOLDER>'");
+        }
+
+        var executor = Executors.newFixedThreadPool(numThreads);
+        var start = System.nanoTime();
+
+        try {
+            var results = new IdentityHashMap<SourceHeader, FileResult>();
+            reportDuplicates(graph, results);
+            reportCycles(graph, results);
+
+            for (var wave : graph.getWaves()) {
+                var scheduled = new ArrayList<SourceHeader>();
+                for (var source : wave) {
+                    if (results.containsKey(source)) {
+                        continue;
+                    }
+
+                    var failed = graph.getDependencies(source).stream()
+                            .filter(dependency -> !results.get(dependency).isSuccess())
+                            .findFirst();
+                    if (failed.isPresent()) {
+                        results.put(source, notRun(source, "Not compiled, it depends on class '"
+                                + failed.get().className() + "' which failed to compile"));
+                    } else {
+                        scheduled.add(source);
+                    }
+                }
+
+                var waveResults = invokeAll(executor, scheduled.stream()
+                        .map(source -> compileTask(source.source(), config))
+                        .toList());
+                for (int i = 0; i < scheduled.size(); i++) {
+                    results.put(scheduled.get(i), waveResults.get(i));
+                }
+            }
+
+            // the only sources outside the waves are the ones that need a cycle to be compiled first
+            for (var source : graph.getSources()) {
+                results.computeIfAbsent(source, key -> notRun(key, "Not compiled, it depends on a dependency cycle"));
+            }
+
+            var ordered = graph.getSources().stream().map(results::get).toList();
+            return new BatchSummary(ordered, System.nanoTime() - start, numThreads, pipeline.getCache());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void reportDuplicates(DependencyGraph graph, Map<SourceHeader, FileResult> results) {
+        graph.getDuplicateClasses().forEach((className, declaring) -> {
+            var files = declaring.stream().map(source -> source.source().toString()).collect(Collectors.joining(", "));
+            for (var source : declaring) {
+                results.put(source, notRun(source, "Class '" + className + "' is declared by several files: " + files));
+            }
+        });
+    }
+
+    private static void reportCycles(DependencyGraph graph, Map<SourceHeader, FileResult> results) {
+        for (var cycle : graph.getCycles()) {
+            var names = cycle.stream().map(SourceHeader::className).collect(Collectors.toList());
+            names.add(cycle.get(0).className());
+            var message = "Cyclic dependency between classes: " + String.join(" -> ", names);
+
+            for (var source : cycle) {
+                results.putIfAbsent(source, notRun(source, message));
+            }
+        }
+    }
+
+    private static FileResult notRun(SourceHeader source, String message) {
+        var report = Report.newError(Stage.SEMANTIC, -1, -1, message, null);
+        return new FileResult(source.source(), PipelineResult.notRun(List.of(report)));
+    }
+
+    private Callable<FileResult> compileTask(File source, Map<String, String> config) {
+        return () -> {
+            // each file gets its own copy of the configuration, pointing to itself as input
+            var fileConfig = new HashMap<>(config);
+            fileConfig.put(CompilerConfig.INPUT_FILE, source.getAbsolutePath());
+
+            var result = pipeline.run(source, fileConfig);
+            return new FileResult(source, result);
+        };
+    }
+
+    private static <T> List<T> invokeAll(ExecutorService executor, List<Callable<T>> tasks) {
+        try {
+            var values = new ArrayList<T>(tasks.size());
+            for (Future<T> future : executor.invokeAll(tasks)) {
+                values.add(future.get());
+            }
+            return values;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while compiling project", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Unexpected exception while compiling project", e.getCause());
+        }
+    }
+}
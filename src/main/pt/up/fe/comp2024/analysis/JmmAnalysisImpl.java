@@ -7,7 +7,11 @@ import pt.up.fe.comp.jmm.ast.JmmNode;
 import pt.up.fe.comp.jmm.parser.JmmParserResult;
 import pt.up.fe.comp.jmm.report.Report;
 import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2024.CompilerConfig;
 import pt.up.fe.comp2024.analysis.passes.*;
+import pt.up.fe.comp2024.classfile.ClassHierarchy;
+import pt.up.fe.comp2024.stats.CompilerStats;
+import pt.up.fe.comp2024.symboltable.InterfaceSummaries;
 import pt.up.fe.comp2024.symboltable.JmmSymbolTableBuilder;
 
 import java.util.ArrayList;
@@ -15,13 +19,12 @@ import java.util.List;
 
 public class JmmAnalysisImpl implements JmmAnalysis {
 
-    private final List<AnalysisPass> analysisPasses;
-
-    public JmmAnalysisImpl() {
-        this.analysisPasses = List.of(
+    private List<AnalysisPass> buildPasses(ClassHierarchy hierarchy) {
+        return List.of(
                 //new UndeclaredVariable(),
                 //new CheckIdentifiers(),
-                new Analyser()
+                new TypeAnnotation(),
+                new Analyser(hierarchy)
                 );
     }
 
@@ -29,8 +32,14 @@ public class JmmAnalysisImpl implements JmmAnalysis {
     public JmmSemanticsResult semanticAnalysis(JmmParserResult parserResult) {
         JmmNode rootNode = parserResult.getRootNode();
 
+        // classes and summaries read from the library path are remembered for the rest of this compilation
+        var hierarchy = new ClassHierarchy(CompilerConfig.getLibraryPath(parserResult.getConfig()));
+        var summaries = InterfaceSummaries.fromConfig(parserResult.getConfig());
+        var analysisPasses = buildPasses(hierarchy);
+
         // Build symbol table
-        SymbolTable table = JmmSymbolTableBuilder.build(rootNode);
+        SymbolTable table = CompilerStats.measure("ANALYSIS/JmmSymbolTableBuilder",
+                () -> JmmSymbolTableBuilder.build(rootNode, summaries));
 
         // List to hold semantic analysis reports
         List<Report> reports = new ArrayList<>();
@@ -38,7 +47,8 @@ public class JmmAnalysisImpl implements JmmAnalysis {
         // Perform semantic analysis passes
         for (var analysisPass : analysisPasses) {
             try {
-                List<Report> passReports = analysisPass.analyze(rootNode, table);
+                List<Report> passReports = CompilerStats.measure("ANALYSIS/" + analysisPass.getClass().getSimpleName(),
+                        () -> analysisPass.analyze(rootNode, table));
                 reports.addAll(passReports);
             } catch (Exception e) {
                 // Add error report if an exception occurs during analysis pass execution
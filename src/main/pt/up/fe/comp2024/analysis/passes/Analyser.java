@@ -7,15 +7,29 @@ import pt.up.fe.comp.jmm.ast.JmmNode;
 import pt.up.fe.comp.jmm.report.Report;
 import pt.up.fe.comp.jmm.report.ReportType;
 import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2024.CompilerConfig;
 import pt.up.fe.comp2024.analysis.AnalysisVisitor;
 import pt.up.fe.comp2024.ast.Kind;
 import pt.up.fe.comp2024.ast.NodeUtils;
 import pt.up.fe.comp2024.ast.TypeUtils;
+import pt.up.fe.comp2024.classfile.ClassHierarchy;
+import pt.up.fe.comp2024.symboltable.JmmSymbolTable;
 
 import java.util.*;
 import java.util.stream.Collectors;
 
 public class Analyser extends AnalysisVisitor {
+
+    private final ClassHierarchy hierarchy;
+
+    public Analyser(ClassHierarchy hierarchy) {
+        this.hierarchy = hierarchy;
+    }
+
+    public Analyser() {
+        this(new ClassHierarchy(CompilerConfig.getLibraryPath(CompilerConfig.getDefault())));
+    }
+
     @Override
     public void buildVisitor() {
         addVisit(Kind.VAR_DECL, this::visitVarDecl);
@@ -72,16 +86,10 @@ public class Analyser extends AnalysisVisitor {
         int s= node.get("value").lastIndexOf(",");
 
         String importName = node.get("value").substring(s+1).replace("[","").replace("]","").replace(" ","");
-        boolean isImport=false;
-        for (String import_ : table.getImports()) {
-            if (import_.endsWith(importName)) {
-                if(isImport){
-                    addReport(new Report(ReportType.ERROR, Stage.SEMANTIC, NodeUtils.getLine(node), NodeUtils.getColumn(node),
-                            "Import duplicated " + importName));
-                    return null;
-                }
-                isImport=true;
-            }
+        if (JmmSymbolTable.of(table).countImports(importName) > 1) {
+            addReport(new Report(ReportType.ERROR, Stage.SEMANTIC, NodeUtils.getLine(node), NodeUtils.getColumn(node),
+                    "Import duplicated " + importName));
+            return null;
         }
         if( importName.equals(table.getClassName())){
             addReport(new Report(ReportType.ERROR, Stage.SEMANTIC, NodeUtils.getLine(node), NodeUtils.getColumn(node),
@@ -91,86 +99,56 @@ public class Analyser extends AnalysisVisitor {
         return null;
     }
 
-    private Void visitVarDecl(JmmNode varDecl, SymbolTable table) {
+    private Void visitVarDecl(JmmNode varDecl, SymbolTable symbolTable) {
+        var table = JmmSymbolTable.of(symbolTable);
         String method = get_Caller_method(varDecl);
-        boolean isField=false;
+        String name = varDecl.get("name");
         boolean isParam=false;
         boolean isLocal=false;
         if(method==null){ // is field or
             // check form reapeated fields
-            for (Symbol field : table.getFields()) {
-                if (field.getName().equals(varDecl.get("name"))) {
-                    if(isField){
-                        addReport(new Report(ReportType.ERROR, Stage.SEMANTIC, NodeUtils.getLine(varDecl), NodeUtils.getColumn(varDecl),
-                                "Field duplicated " + varDecl.get("name")));
-                        return null;
-                    }
-                    isField=true;
-                }
+            if (table.countFields(name) > 1) {
+                addReport(new Report(ReportType.ERROR, Stage.SEMANTIC, NodeUtils.getLine(varDecl), NodeUtils.getColumn(varDecl),
+                        "Field duplicated " + name));
+                return null;
             }
             for (String method_ : table.getMethods()) {
-                method = method_;
-
-                for (Symbol local : table.getLocalVariables(method)) {
-                    if (local.getName().equals(varDecl.get("name"))) {
-                        if ( isLocal) {
-                            addReport(new Report(ReportType.ERROR, Stage.SEMANTIC, NodeUtils.getLine(varDecl), NodeUtils.getColumn(varDecl),
-                                    "Variable duplicated " + varDecl.get("name")));
-                            return null;
-                        }
-                        isLocal = true;
+                int locals = table.countLocalVariables(method_, name);
+                if (locals > 0) {
+                    if (isLocal || locals > 1) {
+                        addReport(new Report(ReportType.ERROR, Stage.SEMANTIC, NodeUtils.getLine(varDecl), NodeUtils.getColumn(varDecl),
+                                "Variable duplicated " + name));
+                        return null;
                     }
+                    isLocal = true;
                 }
-                for (Symbol param : table.getParameters(method)) {
-                    if (param.getName().equals(varDecl.get("name"))) {
-                        if ((isLocal ) || (isParam)) {
-                            addReport(new Report(ReportType.ERROR, Stage.SEMANTIC, NodeUtils.getLine(varDecl), NodeUtils.getColumn(varDecl),
-                                    "Variable duplicated " + varDecl.get("name")));
-                            return null;
-                        }
-                        isParam = true;
+                int params = table.countParameters(method_, name);
+                if (params > 0) {
+                    if (isLocal || isParam || params > 1) {
+                        addReport(new Report(ReportType.ERROR, Stage.SEMANTIC, NodeUtils.getLine(varDecl), NodeUtils.getColumn(varDecl),
+                                "Variable duplicated " + name));
+                        return null;
                     }
+                    isParam = true;
                 }
             }
             return null;
         }
-        for (Symbol local : table.getLocalVariables(method) ){
-            if (local.getName().equals(varDecl.get("name"))){
-                if(isLocal){
-                    addReport(new Report(ReportType.ERROR, Stage.SEMANTIC, NodeUtils.getLine(varDecl), NodeUtils.getColumn(varDecl),
-                            "Variable duplicated " + varDecl.get("name")));
-                    return null;
-                }
-                isLocal=true;
-            }
-        }
-        for (Symbol param : table.getParameters(method) ){
-            if (param.getName().equals(varDecl.get("name"))){
-                if(isLocal  ||  isParam){
-                    addReport(new Report(ReportType.ERROR, Stage.SEMANTIC, NodeUtils.getLine(varDecl), NodeUtils.getColumn(varDecl),
-                            "Variable duplicated " + varDecl.get("name")));
-                    return null;
-                }
-                isParam=true;
-            }
+        int locals = table.countLocalVariables(method, name);
+        int params = table.countParameters(method, name);
+        if (locals > 1 || (locals > 0 && params > 0) || params > 1) {
+            addReport(new Report(ReportType.ERROR, Stage.SEMANTIC, NodeUtils.getLine(varDecl), NodeUtils.getColumn(varDecl),
+                    "Variable duplicated " + name));
         }
 
-
         return null;
     }
 
     private Void dealWithParam(JmmNode node, SymbolTable table) {
         String method = get_Caller_method(node);
-        boolean isParam=false;
-        for (Symbol local : table.getParameters(method) ){
-            if (local.getName().equals(node.get("name"))){
-                if(isParam){
-                    addReport(new Report(ReportType.ERROR, Stage.SEMANTIC, NodeUtils.getLine(node), NodeUtils.getColumn(node),
-                            "Variable duplicated " + node.get("name")));
-                    return null;
-                }
-                isParam=true;
-            }
+        if (JmmSymbolTable.of(table).countParameters(method, node.get("name")) > 1) {
+            addReport(new Report(ReportType.ERROR, Stage.SEMANTIC, NodeUtils.getLine(node), NodeUtils.getColumn(node),
+                    "Variable duplicated " + node.get("name")));
         }
         return null;
     }
@@ -233,13 +211,13 @@ public class Analyser extends AnalysisVisitor {
                 typeName.equals("float") || typeName.equals("double");
     }
 
-    private Class<?> getClassFromName(String className) {
-        try {
-            return Class.forName(className);
-        } catch (ClassNotFoundException e) {
-            e.printStackTrace();
-            return null;
-        }
+    /**
+     * Internal name of a class, e.g. "foo/bar/A", through the import that brings it into scope.
+     */
+    private String getInternalName(String className, SymbolTable table) {
+        return JmmSymbolTable.of(table).getImport(className)
+                .map(ClassHierarchy::toInternalName)
+                .orElseGet(() -> ClassHierarchy.toInternalName(className));
     }
     private boolean isSubtypeOf(Type assigned, Type assignee, SymbolTable table) {
         // Check if types are equal
@@ -270,14 +248,11 @@ public class Analyser extends AnalysisVisitor {
             assignedName = superType.getName();
         }
 
-        // Check if assigned type is a subclass of assignee by class inheritance
-        Class<?> assignedClass = getClassFromName(assigned.getName());
-        Class<?> assigneeClass = getClassFromName(assignee.getName());
-        if (assignedClass != null && assigneeClass != null) {
-            return assigneeClass.isAssignableFrom(assignedClass);
+        // Check if assigned type is a subclass of assignee by class inheritance, read from the compiled libraries
+        if (assigned.getName() == null || assignee.getName() == null) {
+            return false;
         }
-
-        return false;
+        return hierarchy.isSubclassOf(getInternalName(assigned.getName(), table), getInternalName(assignee.getName(), table));
     }
 
 
@@ -513,7 +488,6 @@ public class Analyser extends AnalysisVisitor {
 
 
         Type exp1 = TypeUtils.getExprType(assign_stm.getChildren().get(0),table,MethodName);
-        System.out.println((assign_stm.toTree()));
         Type exp2 = TypeUtils.getExprType(assign_stm.getChildren().get(1),table,MethodName);
         if (exp1.getName()==null || exp2.getName()==null){
             addReport(new Report(ReportType.ERROR, Stage.SEMANTIC, NodeUtils.getLine(assign_stm), NodeUtils.getColumn(assign_stm),
@@ -589,28 +563,19 @@ public class Analyser extends AnalysisVisitor {
         return null;
     }
 
-    private Void Check_decl(JmmNode node, SymbolTable table) {
+    private Void Check_decl(JmmNode node, SymbolTable symbolTable) {
+        var table = JmmSymbolTable.of(symbolTable);
         String method = get_Caller_method(node);
+        String name = node.get("name");
         Type objectType = TypeUtils.getVarExprType(node, table, method);
 
-        for (Symbol param : table.getParameters(method)) {
-            if (param.getName().equals(node.get("name"))) {
-                return null;
-            }
-        }
-        for (Symbol local : table.getLocalVariables(method)) {
-            if (local.getName().equals(node.get("name"))) {
-                return null;
-            }
+        if (table.getParameter(method, name).isPresent() || table.getLocalVariable(method, name).isPresent()) {
+            return null;
         }
         //check if var is field
-        for (Symbol field : table.getFields()) {
-            if (field.getName().equals(node.get("name"))) {
-                if(method.equals("main")){
-                    addReport(new Report(ReportType.ERROR, Stage.SEMANTIC, NodeUtils.getLine(node), NodeUtils.getColumn(node),
-                            "Field cannot be accessed in static main function"));
-                }
-            }
+        if (table.getField(name).isPresent() && method.equals("main")) {
+            addReport(new Report(ReportType.ERROR, Stage.SEMANTIC, NodeUtils.getLine(node), NodeUtils.getColumn(node),
+                    "Field cannot be accessed in static main function"));
         }
 
         if (objectType.getName()==null){
@@ -713,13 +678,7 @@ public class Analyser extends AnalysisVisitor {
         return null;
     }
     private String get_Caller_method(JmmNode node){
-        while (!(node.getKind()).equals("MethodDecl") && !(node.getKind()).equals("MainMethodDecl")){
-            if(node.getParent()==null){
-                return null;
-            }
-            node=node.getParent();
-        }
-        return node.get("name");
+        return NodeUtils.getEnclosingMethod(node);
     }
 
     private Void dealWithArray(JmmNode node, SymbolTable table) {
@@ -0,0 +1,68 @@
+package pt.up.fe.comp2024.analysis.passes;
+
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp2024.analysis.AnalysisPass;
+import pt.up.fe.comp2024.ast.Kind;
+import pt.up.fe.comp2024.ast.NodeUtils;
+import pt.up.fe.comp2024.ast.TypeUtils;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Annotates every node inside a method with the name of that method, and every expression with its type, so that
+ * the passes and generators that follow read them instead of computing them again.
+ * <p>
+ * Children are annotated before their parents, the type of an expression is computed from the types already stored
+ * on its operands. Reports nothing, type errors are reported by {@link Analyser}.
+ */
+public class TypeAnnotation implements AnalysisPass {
+
+    private static final Set<Kind> TYPED_EXPRESSIONS = EnumSet.of(Kind.BINARY_EXPR, Kind.INTEGER_LITERAL,
+            Kind.VAR_REF_EXPR, Kind.NOT_EXPR, Kind.PAREN_EXPR, Kind.MEMBER_CALL_EXPR, Kind.LENGTH_EXPR,
+            Kind.ARRAY_ACCESS_EXPR, Kind.BOOLEAN_LITERAL, Kind.ARRAY, Kind.NEW_INT_ARRAY, Kind.NEW_OBJECT,
+            Kind.THIS_REF_EXPR);
+
+    @Override
+    public List<Report> analyze(JmmNode root, SymbolTable table) {
+        annotate(root, null, table);
+        return Collections.emptyList();
+    }
+
+    private void annotate(JmmNode node, String method, SymbolTable table) {
+        if (Kind.METHOD_DECL.check(node) || Kind.MAIN_METHOD_DECL.check(node)) {
+            method = node.get("name");
+        }
+
+        if (method != null) {
+            node.put(NodeUtils.ENCLOSING_METHOD, method);
+        }
+
+        for (var child : node.getChildren()) {
+            annotate(child, method, table);
+        }
+
+        if (!isTypedExpression(node)) {
+            return;
+        }
+
+        try {
+            TypeUtils.getExprType(node, table, method);
+        } catch (RuntimeException e) {
+            // ill-typed code the analysis reports on its own, leave the node without a type
+        }
+    }
+
+    private static boolean isTypedExpression(JmmNode node) {
+        for (var kind : TYPED_EXPRESSIONS) {
+            if (kind.check(node)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -4,6 +4,30 @@ import pt.up.fe.comp.jmm.ast.JmmNode;
 
 public class NodeUtils {
 
+    /**
+     * Attribute where {@link pt.up.fe.comp2024.analysis.passes.TypeAnnotation} stores the name of the method each node
+     * belongs to.
+     */
+    public static final String ENCLOSING_METHOD = "enclosingMethod";
+
+    /**
+     * @return the name of the method declaring the node, or null if it is outside a method
+     */
+    public static String getEnclosingMethod(JmmNode node) {
+        var annotated = node.getOptional(ENCLOSING_METHOD);
+        if (annotated.isPresent()) {
+            return annotated.get();
+        }
+
+        while (!(node.getKind()).equals("MethodDecl") && !(node.getKind()).equals("MainMethodDecl")){
+            if(node.getParent()==null){
+                return null;
+            }
+            node=node.getParent();
+        }
+        return node.get("name");
+    }
+
     public static int getLine(JmmNode node) {
 
         return getIntegerAttribute(node, "lineStart", "-1");
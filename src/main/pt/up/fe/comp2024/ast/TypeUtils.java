@@ -1,27 +1,57 @@
 package pt.up.fe.comp2024.ast;
 
+import pt.up.fe.comp.jmm.analysis.table.Symbol;
 import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
 import pt.up.fe.comp.jmm.analysis.table.Type;
 import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp2024.symboltable.InterfaceSummary;
+import pt.up.fe.comp2024.symboltable.JmmSymbolTable;
+
+import java.util.Optional;
 
-import java.util.List;
 
 public class TypeUtils {
 
     private static final String INT_TYPE_NAME = "int";
 
+    /**
+     * Attribute where {@link pt.up.fe.comp2024.analysis.passes.TypeAnnotation} stores the {@link Type} of each
+     * expression.
+     */
+    public static final String EXPR_TYPE = "exprType";
+
     public static String getIntTypeName() {
         return INT_TYPE_NAME;
     }
 
     /**
      * Gets the {@link Type} of an arbitrary expression.
+     * <p>
+     * Returns the type annotated on the node when it was computed for the same method, otherwise computes it and
+     * annotates the node.
      *
      * @param expr
      * @param table
      * @return
      */
     public static Type getExprType(JmmNode expr, SymbolTable table, String method_name) {
+        var enclosingMethod = NodeUtils.getEnclosingMethod(expr);
+        var sameMethod = method_name == null || method_name.equals(enclosingMethod);
+
+        // annotations read back from JSON are only text, compute those again
+        var cached = expr.getOptionalObject(EXPR_TYPE);
+        if (sameMethod && cached.isPresent() && cached.get() instanceof Type type) {
+            return type;
+        }
+
+        var type = computeExprType(expr, table, sameMethod ? enclosingMethod : method_name);
+        if (sameMethod) {
+            expr.putObject(EXPR_TYPE, type);
+        }
+        return type;
+    }
+
+    private static Type computeExprType(JmmNode expr, SymbolTable table, String method_name) {
 
         var kind = Kind.fromString(expr.getKind());
 
@@ -70,10 +100,11 @@ public class TypeUtils {
                     yield new Type(null, false);
                 }
                 for(var c : expr.getChildren()){
-                    if (getExprType(c, table, method_name).getName()==null){
+                    var childType = getExprType(c, table, method_name);
+                    if (childType.getName()==null){
                         yield new Type(null, false);
                     }
-                    if(!getExprType(c, table, method_name).getName().equals(t.getName()) && !getExprType(c, table, method_name).isArray() && !check_for_imports_type(getExprType(c, table,method_name),table)){
+                    if(!childType.getName().equals(t.getName()) && !childType.isArray() && !check_for_imports_type(childType,table)){
                         yield new Type(null, false);
                     }
                 }
@@ -97,10 +128,8 @@ public class TypeUtils {
                 if(table.getClassName().endsWith(t)){
                     yield new Type(t, false);
                 }
-                for(var i : table.getImports()){
-                    if(i.endsWith(t)){
-                        yield new Type(t, false);
-                    }
+                if(JmmSymbolTable.of(table).isImported(t)){
+                    yield new Type(t, false);
                 }
                 yield new Type(null, false);
             }
@@ -125,151 +154,65 @@ public class TypeUtils {
         return type;
     }
 
+    /**
+     * Same as {@link #getExprType(JmmNode, SymbolTable, String)}, except that a reference to a class, the one being
+     * compiled or an imported one, has its name followed by '_', which tells static calls from calls on objects.
+     */
     public static Type getExprType_Ollir(JmmNode expr, SymbolTable table, String method_name) {
+        var type = getExprType(expr, table, method_name);
+        return isClassReference(expr, table) ? new Type(type.getName() + "_", false) : type;
+    }
 
-        var kind = Kind.fromString(expr.getKind());
-
-        Type type = switch (kind) {
-            case BINARY_EXPR -> getBinExprType(expr,table, method_name);
-            case VAR_REF_EXPR -> getVarExprType_Ollir(expr, table, method_name);
-            case INTEGER_LITERAL -> new Type(INT_TYPE_NAME, false);
-            case TYPE_ARRAY -> new Type(expr.get("name"), true);
-            case NOT_EXPR -> Not_op(expr, table, method_name);
-            case PAREN_EXPR -> getExprType_Ollir(expr.getChildren().get(0), table, method_name);
-            case MEMBER_CALL_EXPR -> get_member_call_expr_Ollir(expr, table, method_name);
-
-            case LENGTH_EXPR -> {
-                var t = getExprType_Ollir(expr.getChildren().get(0), table, method_name);
-                if(t.isArray()){
-                    yield new Type("int", false);
-                }else{
-                    yield new Type(null, false);
-                }
-            }
-            case ARRAY_ACCESS_EXPR -> {
-                var t = getExprType_Ollir(expr.getChildren().get(0), table, method_name);
-                var t2 = getExprType_Ollir(expr.getChildren().get(1), table, method_name);
-                if(t.getName()==null || t2.getName()==null){
-                    yield new Type(null, false);
-                }
-                if((t.isArray() || check_for_imports_type(t,table)) && ((t2.getName().equals("int") && !t2.isArray()) || check_for_imports_type(t2,table) )){
-                    if (t.getName()=="_varargs"){
-                        yield new Type("int", false);
-                    }else{
-                        yield new Type(t.getName(), false);
-                    }
-                }
-                yield new Type(null, false);
-            }
-            case BOOLEAN_LITERAL -> new Type("boolean", false);
-            case ARRAY ->{
-                Type t =  new Type(null, false);
-                if (expr.getChildren().isEmpty()) {
-                    t =  new Type("empty", true);  // TODO : empty array when comparing should igone empty type
-                    yield t;
-                }else{
-                    t = getExprType_Ollir(expr.getChildren().get(0), table, method_name);
-                }
-                if(t.getName()==null){
-                    yield new Type(null, false);
-                }
-                for(var c : expr.getChildren()){
-                    if (getExprType_Ollir(c, table, method_name).getName()==null){
-                        yield new Type(null, false);
-                    }
-                    if(!getExprType_Ollir(c, table, method_name).getName().equals(t.getName()) && !getExprType_Ollir(c, table, method_name).isArray() && !check_for_imports_type(getExprType_Ollir(c, table,method_name),table)){
-                        yield new Type(null, false);
-                    }
-                }
-                yield new Type(t.getName(),true);
-            }
-            case NEW_INT_ARRAY -> {
-                var t = getExprType_Ollir(expr.getChildren().get(0), table, method_name);
-                if (t.getName()==null){
-                    yield new Type(null, false);
-                }
-                if((t.getName().equals("int") || check_for_imports_type(t,table)) && !t.isArray()){
-                    yield new Type(expr.get("name"), true);
-                }
-                yield new Type(null, true);
-            }
-            case NEW_OBJECT -> {
-                var t = expr.get("classname");
-                if (t==null){
-                    yield new Type(null, false);
-                }
-                if(table.getClassName().endsWith(t)){
-                    yield new Type(t, false);
-                }
-                for(var i : table.getImports()){
-                    if(i.endsWith(t)){
-                        yield new Type(t, false);
-                    }
-                }
-                yield new Type(null, false);
-            }
-            case METHOD_CALL_EXPR -> {
-                var method = expr.get("funcname");
-                for(var m : table.getMethods()){
-                    if(m.equals(method)){
-                        yield table.getReturnType(m);
-                    }
-                }
-                yield new Type(null, false);
-            }
-            case THIS_REF_EXPR -> new Type(table.getClassName(), false);
-
-
-
-
-
-            default -> throw new UnsupportedOperationException("Can't compute type for expression kind '" + kind + "'");
-        };
+    private static boolean isClassReference(JmmNode expr, SymbolTable table) {
+        while (Kind.PAREN_EXPR.check(expr)) {
+            expr = expr.getJmmChild(0);
+        }
+        if (!Kind.VAR_REF_EXPR.check(expr)) {
+            return false;
+        }
 
-        return type;
+        var name = expr.get("name");
+        return name.equals(table.getClassName()) || JmmSymbolTable.of(table).isImported(name);
     }
 
     private static Type getBinExprType(JmmNode binaryExpr, SymbolTable table, String method_name) {
 
         String operator = binaryExpr.get("op");
-        String exp1_name=getExprType(binaryExpr.getChildren().get(0), table, method_name).getName();
-        var test=getExprType(binaryExpr.getChildren().get(1), table, method_name);
-        String exp2_name=getExprType(binaryExpr.getChildren().get(1), table, method_name).getName();
-        if(exp1_name==null || exp2_name==null){
+        Type left = getExprType(binaryExpr.getChildren().get(0), table, method_name);
+        Type right = getExprType(binaryExpr.getChildren().get(1), table, method_name);
+        if(left.getName()==null || right.getName()==null){
             return new Type(null, false);
         }
+        boolean imported = check_for_imports_type(left,table) || check_for_imports_type(right,table);
         switch (operator) {
 
             case "+", "*", "/","-" :
-                if ( (getExprType(binaryExpr.getChildren().get(0), table, method_name).getName().equals(INT_TYPE_NAME)   &&
-                        getExprType(binaryExpr.getChildren().get(1), table, method_name ).getName().equals(INT_TYPE_NAME) &&
-                        !getExprType(binaryExpr.getChildren().get(0), table, method_name).isArray()                      &&
-                        !getExprType(binaryExpr.getChildren().get(0), table, method_name).isArray()                  ) ||
-                        check_for_imports_type(getExprType(binaryExpr.getChildren().get(0), table, method_name),table) ||
-                        check_for_imports_type(getExprType(binaryExpr.getChildren().get(1), table, method_name),table)) {
+                if ( (left.getName().equals(INT_TYPE_NAME)   &&
+                        right.getName().equals(INT_TYPE_NAME) &&
+                        !left.isArray()                      &&
+                        !left.isArray()                  ) ||
+                        imported) {
                     return new Type(INT_TYPE_NAME, false);
                 } else {
                     return new Type(null, false);
                 }
 
             case "&&":
-                if ( (getExprType(binaryExpr.getChildren().get(0), table, method_name).getName().equals("boolean") &&
-                        !getExprType(binaryExpr.getChildren().get(0), table, method_name).isArray() &&
-                        getExprType(binaryExpr.getChildren().get(1), table, method_name).getName().equals("boolean") &&
-                        !getExprType(binaryExpr.getChildren().get(1), table, method_name).isArray() ) ||
-                        check_for_imports_type(getExprType(binaryExpr.getChildren().get(0), table, method_name),table) ||
-                        check_for_imports_type(getExprType(binaryExpr.getChildren().get(1), table, method_name),table)) {
+                if ( (left.getName().equals("boolean") &&
+                        !left.isArray() &&
+                        right.getName().equals("boolean") &&
+                        !right.isArray() ) ||
+                        imported) {
                     return new Type("boolean", false);
                 } else {
                     return new Type(null, false);
                 }
             case "<":
-                if ( (getExprType(binaryExpr.getChildren().get(0), table, method_name).getName().equals("int") &&
-                    !getExprType(binaryExpr.getChildren().get(0), table, method_name).isArray() &&
-                    getExprType(binaryExpr.getChildren().get(1), table, method_name).getName().equals("int") &&
-                    !getExprType(binaryExpr.getChildren().get(1), table, method_name).isArray() ) ||
-                    check_for_imports_type(getExprType(binaryExpr.getChildren().get(0), table, method_name),table) ||
-                    check_for_imports_type(getExprType(binaryExpr.getChildren().get(1), table, method_name),table)) {
+                if ( (left.getName().equals("int") &&
+                    !left.isArray() &&
+                    right.getName().equals("int") &&
+                    !right.isArray() ) ||
+                    imported) {
                 return new Type("boolean", false);
             } else {
                 return new Type(null, false);
@@ -281,80 +224,26 @@ public class TypeUtils {
     }
 
 
-    public static Type getVarExprType(JmmNode varRefExpr, SymbolTable table, String method_name) {
+    public static Type getVarExprType(JmmNode varRefExpr, SymbolTable symbolTable, String method_name) {
 
-        var imports= table.getImports();
+        var table = JmmSymbolTable.of(symbolTable);
         String name=varRefExpr.get("name");
 
         if (name.equals(table.getClassName())) {
             return new Type(name, false);
         }
 
-        for(String i : imports){
-            if(i.endsWith(name)){
-                return new Type(name, false);
-            }
-        }
-        for (var method : table.getMethods()) {
-            for (var local : table.getLocalVariables(method)) {
-                if (local.getName().equals(varRefExpr.get("name")) && (method.equals(method_name) || method_name==null)) {
-                    return local.getType();
-                }
-            }
-
-        }
-        for(var method : table.getMethods()){
-            for(var param : table.getParameters(method)){
-                if(param.getName().equals(varRefExpr.get("name")) && (method.equals(method_name) || method_name==null)){
-                    return param.getType();
-                }
-            }
-        }
-        for (var symbol : table.getFields()) {
-            if (symbol.getName().equals(varRefExpr.get("name"))) {
-                return symbol.getType();
-            }
-        }
-        return new Type(null, false);
-    }
-    private static Type getVarExprType_Ollir(JmmNode varRefExpr, SymbolTable table, String method_name) {
-
-        var imports= table.getImports();
-        String name=varRefExpr.get("name");
-
-        if (name.equals(table.getClassName())) {
-            return new Type((name+"_"), false);
-        }
-
-        for(String i : imports){
-            if(i.endsWith(name)){
-                return new Type(name+"_", false);
-            }
+        if (table.isImported(name)) {
+            return new Type(name, false);
         }
-        for (var method : table.getMethods()) {
-            for (var local : table.getLocalVariables(method)) {
-                if (local.getName().equals(varRefExpr.get("name")) && (method.equals(method_name) || method_name==null)) {
-                    return local.getType();
-                }
-            }
 
-        }
-        for(var method : table.getMethods()){
-            for(var param : table.getParameters(method)){
-                if(param.getName().equals(varRefExpr.get("name")) && (method.equals(method_name) || method_name==null)){
-                    return param.getType();
-                }
-            }
-        }
-        for (var symbol : table.getFields()) {
-            if (symbol.getName().equals(varRefExpr.get("name"))) {
-                return symbol.getType();
-            }
-        }
-        return new Type(null, false);
+        return table.getLocalVariable(method_name, name)
+                .or(() -> table.getParameter(method_name, name))
+                .or(() -> table.getField(name))
+                .map(Symbol::getType)
+                .orElseGet(() -> new Type(null, false));
     }
 
-
     /**
      * @param sourceType
      * @param destinationType
@@ -392,51 +281,34 @@ public class TypeUtils {
                             return table.getReturnType(m);
                         }
                     }
-                    return new Type(null, false);
-                }
-
-                return new Type("#"+t.getName(), false);
-            }
-        }
-        return new Type(null, false);
-    }
-    private static Type get_member_call_expr_Ollir(JmmNode node, SymbolTable table, String method_name){
-        var method = node.get("name");
-        if (!node.getChildren().isEmpty()){
-            Type t= getExprType_Ollir(node.getJmmChild(0), table, method_name);
-            if (t.getName()==null){
-                return new Type(null, false);
-            }
-            if (!t.isArray() && !t.getName().equals("int") && !t.getName().equals("boolean")) {
-                if (t.getName().equals(table.getClassName())) {
-                    for(var m : table.getMethods()){
-                        if(m.equals(method)){
-                            return table.getReturnType(m);
-                        }
+                    // inherited from an imported J-- class
+                    if (table.getSuper() != null) {
+                        return getSummaryReturnType(table.getSuper(), method, table).orElse(new Type(null, false));
                     }
                     return new Type(null, false);
                 }
 
-                return new Type("#"+t.getName(), false);
+                return getSummaryReturnType(t.getName(), method, table).orElse(new Type("#"+t.getName(), false));
             }
         }
         return new Type(null, false);
     }
+    /**
+     * Return type of a method of an imported J-- class, as declared in its interface summary.
+     */
+    private static Optional<Type> getSummaryReturnType(String className, String method, SymbolTable table) {
+        return JmmSymbolTable.of(table).getImportedSummary(className)
+                .flatMap(summary -> summary.getMethod(method))
+                .map(InterfaceSummary.Method::getReturnType);
+    }
 
     public static Boolean check_for_imports_type(Type t1,SymbolTable table){
-        List<String> imports = table.getImports();
         if (t1.getName() == null){
             return false;
         }
-        for(String i : imports){
-            if(i.endsWith(t1.getName())){
-                return true;
-            }
-        }
-        return false;
+        return JmmSymbolTable.of(table).isImportedType(t1.getName());
     }
     public static Boolean check_for_imports_derivs(Type t1,SymbolTable table){
-        List<String> imports = table.getImports();
         if (t1.getName() == null){
             return false;
         }
@@ -444,11 +316,6 @@ public class TypeUtils {
             return false;
         }
         String imp=t1.getName().replace("#", "");
-        for(String i : imports){
-            if(i.endsWith(imp)){
-                return true;
-            }
-        }
-        return false;
+        return JmmSymbolTable.of(table).isImported(imp);
     }
 }
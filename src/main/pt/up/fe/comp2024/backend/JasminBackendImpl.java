@@ -3,6 +3,8 @@ package pt.up.fe.comp2024.backend;
 import pt.up.fe.comp.jmm.jasmin.JasminBackend;
 import pt.up.fe.comp.jmm.jasmin.JasminResult;
 import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.stats.CompilerStats;
 
 public class JasminBackendImpl implements JasminBackend {
 
@@ -10,9 +12,17 @@ public class JasminBackendImpl implements JasminBackend {
     public JasminResult toJasmin(OllirResult ollirResult) {
 
         var jasminGenerator = new JasminGenerator(ollirResult);
-        var jasminCode = jasminGenerator.build();
+        var jasminClass = CompilerStats.measure("JASMIN/JasminGenerator", jasminGenerator::generate);
 
-        return new JasminResult(ollirResult, jasminCode, jasminGenerator.getReports());
+        var peephole = new PeepholeOptimizer(CompilerConfig.getPeepholePatterns(ollirResult.getConfig()));
+        CompilerStats.measure("JASMIN/PeepholeOptimizer", () -> peephole.optimize(jasminClass));
+
+        var jasminCode = CompilerStats.measure("JASMIN/JasminWriter", () -> JasminWriter.write(jasminClass));
+
+        var reports = jasminGenerator.getReports();
+        reports.addAll(peephole.getReports());
+
+        return new JasminResult(ollirResult, jasminCode, reports);
     }
 
 }
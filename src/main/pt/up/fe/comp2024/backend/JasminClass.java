@@ -0,0 +1,69 @@
+package pt.up.fe.comp2024.backend;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The Jasmin code of a class, as the generators build it and before {@link JasminWriter} writes it as text.
+ */
+public class JasminClass {
+
+    private final List<String> modifiers;
+    private final String name;
+    private final String superName;
+    private final List<JasminField> fields;
+    private final List<JasminMethod> methods;
+
+    /**
+     * @param name      the internal name of the class, e.g. "pkg/Foo"
+     * @param superName the internal name of the superclass
+     */
+    public JasminClass(List<String> modifiers, String name, String superName) {
+        this.modifiers = List.copyOf(modifiers);
+        this.name = name;
+        this.superName = superName;
+        this.fields = new ArrayList<>();
+        this.methods = new ArrayList<>();
+    }
+
+    public List<String> getModifiers() {
+        return modifiers;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getSuperName() {
+        return superName;
+    }
+
+    public List<JasminField> getFields() {
+        return fields;
+    }
+
+    public void addField(JasminField field) {
+        fields.add(field);
+    }
+
+    public List<JasminMethod> getMethods() {
+        return methods;
+    }
+
+    public void addMethod(JasminMethod method) {
+        methods.add(method);
+    }
+
+    /**
+     * Adds the constructor that takes no arguments and only calls the one of the superclass.
+     */
+    public void addDefaultConstructor() {
+        var constructor = new JasminMethod(List.of("public"), "<init>", "()V");
+        constructor.add("aload_0");
+        constructor.add("invokespecial", superName + "/<init>()V");
+        constructor.add("return");
+        constructor.setStackLimit(1);
+        constructor.setLocalsLimit(1);
+        methods.add(constructor);
+    }
+}
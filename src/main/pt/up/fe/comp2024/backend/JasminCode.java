@@ -0,0 +1,21 @@
+package pt.up.fe.comp2024.backend;
+
+/**
+ * One element of the body of a Jasmin method, either an instruction or a label.
+ * <p>
+ * The generators build method bodies out of these, and the passes after them, like {@link StackAnalysis} and the
+ * {@link PeepholeOptimizer}, look at them directly. Only {@link JasminWriter} turns them into text.
+ */
+public sealed interface JasminCode permits JasminInstruction, JasminLabel {
+
+    /**
+     * @param line a line of a method body, where labels end with a colon
+     */
+    static JasminCode parse(String line) {
+        var stripped = line.strip();
+        if (stripped.endsWith(":")) {
+            return new JasminLabel(stripped.substring(0, stripped.length() - 1));
+        }
+        return JasminInstruction.parse(stripped);
+    }
+}
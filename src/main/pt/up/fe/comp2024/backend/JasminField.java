@@ -0,0 +1,16 @@
+package pt.up.fe.comp2024.backend;
+
+import java.util.List;
+
+/**
+ * A field of a {@link JasminClass}.
+ *
+ * @param modifiers  e.g. "private" and "final", in the order they are written
+ * @param descriptor the type of the field, e.g. "[I"
+ */
+public record JasminField(List<String> modifiers, String name, String descriptor) {
+
+    public JasminField {
+        modifiers = List.copyOf(modifiers);
+    }
+}
@@ -6,46 +6,38 @@ import pt.up.fe.comp.jmm.ollir.OllirResult;
 import pt.up.fe.comp.jmm.report.Report;
 import pt.up.fe.specs.util.classmap.FunctionClassMap;
 import pt.up.fe.specs.util.exceptions.NotImplementedException;
-import pt.up.fe.specs.util.utilities.StringLines;
 
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
-import java.util.stream.Collectors;
 
 /**
- * Generates Jasmin code from an OllirResult.
+ * Generates Jasmin code from an OllirResult, as a {@link JasminClass} written by {@link JasminWriter}.
  * <p>
  * One JasminGenerator instance per OllirResult.
  */
 public class JasminGenerator {
 
-    private static final String NL = "\n";
-    private static final String TAB = "   ";
-    private static final String SPACE = " ";
-
     private final OllirResult ollirResult;
 
     List<Report> reports;
 
-    String code;
+    JasminClass jasminClass;
 
     Method currentMethod;
 
     HashMap<String, Descriptor> FieldvarTable = new HashMap<>();
 
-    private final FunctionClassMap<TreeNode, String> generators;
+    private final FunctionClassMap<TreeNode, List<JasminCode>> generators;
 
     public JasminGenerator(OllirResult ollirResult) {
         this.ollirResult = ollirResult;
 
         reports = new ArrayList<>();
-        code = null;
+        jasminClass = null;
         currentMethod = null;
 
         this.generators = new FunctionClassMap<>();
-        generators.put(ClassUnit.class, this::generateClassUnit);
-        generators.put(Method.class, this::generateMethod);
         generators.put(PutFieldInstruction.class, this::generateField);
         generators.put(GetFieldInstruction.class, this::getField);
         generators.put(AssignInstruction.class, this::generateAssign);
@@ -61,70 +53,45 @@ public class JasminGenerator {
         return reports;
     }
 
-    public String build() {
+    /**
+     * @return the class, built only the first time, so later passes can change it before it is written
+     */
+    public JasminClass generate() {
 
-        // This way, build is idempotent
-        if (code == null) {
-            code = generators.apply(ollirResult.getOllirClass());
+        // This way, generate is idempotent
+        if (jasminClass == null) {
+            jasminClass = generateClassUnit(ollirResult.getOllirClass());
         }
 
-        return code;
+        return jasminClass;
     }
 
+    public String build() {
+        return JasminWriter.write(generate());
+    }
 
-    private String generateClassUnit(ClassUnit classUnit) {
 
-        var code = new StringBuilder();
+    private JasminClass generateClassUnit(ClassUnit classUnit) {
 
         // generate class name
-        var className = ollirResult.getOllirClass().getClassName();
-        code.append(".class ").append(className).append(NL).append(NL);
+        var className = classUnit.getClassName();
 
         // TODO: Hardcoded to Object, needs to be expanded
+        var superClass = classUnit.getSuperClass() != null ? classUnit.getSuperClass() : "java/lang/Object";
+        var jasminClass = new JasminClass(List.of(), className, superClass);
 
-        if (ollirResult.getOllirClass().getSuperClass() != null) {
-            code.append(".super ").append(ollirResult.getOllirClass().getSuperClass()).append(NL);
-
-            ArrayList<Field> fields= ollirResult.getOllirClass().getFields();
-            for (Field field : fields) {
-                code.append(".field ").append(this.getFieldAcess(field)).append(field.getFieldName()).append(SPACE).append(this.getTypeToStr(field.getFieldType())).append(NL);
-                break;
-
-            }
-            code.append( """
-                ;default constructor
-                .method public <init>()V
-                    aload_0
-                    invokespecial""").append(SPACE).append(ollirResult.getOllirClass().getSuperClass());
-            code.append("""
-                             /<init>()V
-                                 return
-                             .end method
-                              """);
-
-        } else{
-            code.append(".super java/lang/Object").append(NL);
-            ArrayList<Field> fields= ollirResult.getOllirClass().getFields();
-            for (Field field : fields) {
-                code.append(".field ").append(this.getFieldAcess(field)).append(field.getFieldName()).append(SPACE).append(this.getTypeToStr(field.getFieldType())).append(NL);
-                break;
-
-            }
-            code.append( """
-                ;default constructor
-                .method public <init>()V
-                    aload_0
-                    invokespecial java/lang/Object/<init>()V
-                    return
-                .end method
-                """);
+        for (Field field : classUnit.getFields()) {
+            jasminClass.addField(new JasminField(this.getFieldAcess(field), field.getFieldName(),
+                    this.getTypeToStr(field.getFieldType())));
+            break;
 
         }
 
         // generate a single constructor method
+        jasminClass.addDefaultConstructor();
 
         // generate code for all other methods
-        for (var method : ollirResult.getOllirClass().getMethods()) {
+        for (var method : classUnit.getMethods()) {
 
             // Ignore constructor, since there is always one constructor
             // that receives no arguments, and has been already added
@@ -133,65 +100,52 @@ public class JasminGenerator {
                 continue;
             }
 
-            code.append(generators.apply(method));
+            jasminClass.addMethod(generateMethod(method));
         }
 
-        return code.toString();
+        return jasminClass;
     }
 
 
-    private String generateMethod(Method method) {
+    private JasminMethod generateMethod(Method method) {
 
         // set method
         currentMethod = method;
 
-        var code = new StringBuilder();
-
         // calculate modifier
-        var modifier = method.getMethodAccessModifier() != AccessModifier.DEFAULT ?
-                method.getMethodAccessModifier().name().toLowerCase() + " " :
-                "";
-
-        var methodName = method.getMethodName();
+        var modifiers = new ArrayList<String>();
+        if (method.getMethodAccessModifier() != AccessModifier.DEFAULT) {
+            modifiers.add(method.getMethodAccessModifier().name().toLowerCase());
+        }
+        if (method.isStaticMethod()) {
+            modifiers.add("static");
+        }
 
         // TODO: Hardcoded param types and return type, needs to be expanded
-
-        if (method.isStaticMethod()){
-            code.append("\n.method ").append(modifier).append("static ").append(methodName);
-        }else{
-            code.append("\n.method ").append(modifier).append(methodName);
-        }
-        code.append("(");
+        var descriptor = new StringBuilder("(");
         for (var param : method.getParams()) {
-            code.append(this.getTypeToStr(param.getType()));
+            descriptor.append(this.getTypeToStr(param.getType()));
         }
-        code.append(")");
-        code.append(this.getTypeToStr(method.getReturnType())).append(NL);
-
-        // Add limits
-        code.append(TAB).append(".limit stack 99").append(NL);
-        code.append(TAB).append(".limit locals 99").append(NL);
+        descriptor.append(")").append(this.getTypeToStr(method.getReturnType()));
 
+        var jasminMethod = new JasminMethod(modifiers, method.getMethodName(), descriptor.toString());
         for (var inst : method.getInstructions()) {
-            var instCode = StringLines.getLines(generators.apply(inst)).stream()
-                    .collect(Collectors.joining(NL + TAB, TAB, NL));
-
-            code.append(instCode);
+            jasminMethod.getCode().addAll(generators.apply(inst));
         }
 
-        code.append(".end method\n");
+        // Add limits
+        jasminMethod.setStackLimit(StackAnalysis.getMaxDepth(jasminMethod.getCode()));
+        jasminMethod.setLocalsLimit(getLocalsLimit(method));
 
         // unset method
         currentMethod = null;
 
-        return code.toString();
+        return jasminMethod;
     }
 
-    private String generateAssign(AssignInstruction assign) {
-        var code = new StringBuilder();
-
+    private List<JasminCode> generateAssign(AssignInstruction assign) {
         // generate code for loading what's on the right
-        code.append(generators.apply(assign.getRhs()));
+        var code = new ArrayList<>(generators.apply(assign.getRhs()));
 
         // store value in the stack in destination
         var lhs = assign.getDest();
@@ -205,56 +159,69 @@ public class JasminGenerator {
         // get register
         var reg = currentMethod.getVarTable().get(operand.getName()).getVirtualReg();
         if (reg == -1){
-            return "";
+            return List.of();
         }
 
         // TODO: Hardcoded for int type, needs to be expanded
         switch(operand.getType().getTypeOfElement().toString()) {
             case "ARRAYREF", "STRING", "THIS", "OBJECTREF" :
-                code.append("astore ").append(reg).append(NL);
+                code.add(JasminInstruction.of("astore", reg));
                 break;
             case "INT32", "BOOLEAN":
                 // TODO: Hardcoded to int, needs to be expanded
-                code.append("istore ").append(reg).append(NL);
+                code.add(JasminInstruction.of("istore", reg));
                 break;
         }
 
-        return code.toString();
+        return code;
+    }
+
+    /**
+     * @return one more than the highest register of the method, whose first registers hold "this" and the parameters
+     */
+    private static int getLocalsLimit(Method method) {
+        var limit = (method.isStaticMethod() ? 0 : 1) + method.getParams().size();
+        for (var descriptor : method.getVarTable().values()) {
+            if (descriptor.getScope() != VarScope.FIELD) {
+                limit = Math.max(limit, descriptor.getVirtualReg() + 1);
+            }
+        }
+        return limit;
     }
 
-    private String generateSingleOp(SingleOpInstruction singleOp) {
+    private List<JasminCode> generateSingleOp(SingleOpInstruction singleOp) {
         return generators.apply(singleOp.getSingleOperand());
     }
 
-    private String generateLiteral(LiteralElement literal) {
-        return "ldc " + literal.getLiteral() + NL;
+    private List<JasminCode> generateLiteral(LiteralElement literal) {
+        return List.of(JasminInstruction.of("ldc", literal.getLiteral()));
     }
 
-    private String generateOperand(Operand operand) {
+    private List<JasminCode> generateOperand(Operand operand) {
         // get register
         var reg = currentMethod.getVarTable().get(operand.getName()).getVirtualReg();
         if (reg == -1){
-            return "";
+            return List.of();
         }
         String t = operand.getType().toString();
         switch (t){
             case "INT32":
-                return "iload " + reg + NL;
+                return List.of(JasminInstruction.of("iload", reg));
             case "BOOLEAN":
-                return "iload " + reg + NL;
+                return List.of(JasminInstruction.of("iload", reg));
             default:
-                return "aload " + reg + NL;
+                return List.of(JasminInstruction.of("aload", reg));
 
         }
 
     }
 
-    private String generateBinaryOp(BinaryOpInstruction binaryOp) {
-        var code = new StringBuilder();
+    private List<JasminCode> generateBinaryOp(BinaryOpInstruction binaryOp) {
+        var code = new ArrayList<JasminCode>();
 
         // load values on the left and on the right
-        code.append(generators.apply(binaryOp.getLeftOperand()));
-        code.append(generators.apply(binaryOp.getRightOperand()));
+        code.addAll(generators.apply(binaryOp.getLeftOperand()));
+        code.addAll(generators.apply(binaryOp.getRightOperand()));
 
         // apply operation
         var op = switch (binaryOp.getOperation().getOpType()) {
@@ -266,74 +233,74 @@ public class JasminGenerator {
             default -> throw new NotImplementedException(binaryOp.getOperation().getOpType());
         };
 
-        code.append(op).append(NL);
+        code.add(JasminInstruction.of(op));
 
-        return code.toString();
+        return code;
     }
 
-    private String generateReturn(ReturnInstruction returnInst) {
-        var code = new StringBuilder();
+    private List<JasminCode> generateReturn(ReturnInstruction returnInst) {
+        var code = new ArrayList<JasminCode>();
 
         // TODO: Hardcoded to int return type, needs to be expanded
         String type = returnInst.getReturnType().getTypeOfElement().toString();
         switch (type){
             case "INT32":
-                code.append(generators.apply(returnInst.getOperand()));
-                code.append("ireturn").append(NL);
+                code.addAll(generators.apply(returnInst.getOperand()));
+                code.add(JasminInstruction.of("ireturn"));
                 break;
             case "BOOLEAN":
-                code.append(generators.apply(returnInst.getOperand()));
-                code.append("ireturn").append(NL);
+                code.addAll(generators.apply(returnInst.getOperand()));
+                code.add(JasminInstruction.of("ireturn"));
                 break;
             case "STRING":
-                code.append(generators.apply(returnInst.getOperand()));
-                code.append("areturn").append(NL);
+                code.addAll(generators.apply(returnInst.getOperand()));
+                code.add(JasminInstruction.of("areturn"));
                 break;
             case "VOID":
-                code.append("return").append(NL);
+                code.add(JasminInstruction.of("return"));
                 break;
             default:
-                code.append(generators.apply(returnInst.getOperand()));
-                code.append("areturn").append(NL);
+                code.addAll(generators.apply(returnInst.getOperand()));
+                code.add(JasminInstruction.of("areturn"));
         }
 
 
-        return code.toString();
+        return code;
     }
 
-    private String generateField(PutFieldInstruction field) {
-        var code = new StringBuilder();
-        code.append("aload_0").append(NL);
+    private List<JasminCode> generateField(PutFieldInstruction field) {
+        var code = new ArrayList<JasminCode>();
+        code.add(JasminInstruction.of("aload_0"));
         var ops= field.getOperands();
         var firstop = ops.get(0);
         var secondop = ops.get(1);
         var thirdop = ops.get(2);
 
-        code.append(generators.apply(thirdop));
-        code.append("putfield ").append(ollirResult.getOllirClass().getClassName()).append("/").append(field.getField().getName()).append(SPACE).append(this.getTypeToStr(field.getField().getType())).append(NL);
-        return code.toString();
+        code.addAll(generators.apply(thirdop));
+        code.add(JasminInstruction.of("putfield", ollirResult.getOllirClass().getClassName() + "/" + field.getField().getName(), this.getTypeToStr(field.getField().getType())));
+        return code;
     }
 
-    private String getFieldAcess(Field field){
-        String access = "";
+    private List<String> getFieldAcess(Field field){
+        var access = new ArrayList<String>();
         switch (field.getFieldAccessModifier()){
             case PRIVATE:
-                access = "private ";
+                access.add("private");
                 break;
             case PROTECTED:
-                access = "protected ";
+                access.add("protected");
                 break;
             case PUBLIC:
-                access = "public ";
+                access.add("public");
                 break;
             case DEFAULT:
                 break;
         }
         if (field.isFinalField()){
-            access += "final ";
+            access.add("final");
         }
         if (field.isStaticField()){
-            access += "static ";
+            access.add("static");
         }
         return access;
     }
@@ -368,100 +335,82 @@ public class JasminGenerator {
                 return null;
         }
     }
-    private String getField(GetFieldInstruction field) {
-        var code = new StringBuilder();
-        code.append("aload_0").append(NL);
-        code.append("getfield ").append(ollirResult.getOllirClass().getClassName()).append("/").append(field.getField().getName()).append(SPACE).append(this.getTypeToStr(field.getFieldType())).append(NL);
-        code.append("dup").append(NL);
+    private List<JasminCode> getField(GetFieldInstruction field) {
+        var code = new ArrayList<JasminCode>();
+        code.add(JasminInstruction.of("aload_0"));
+        code.add(JasminInstruction.of("getfield", ollirResult.getOllirClass().getClassName() + "/" + field.getField().getName(), this.getTypeToStr(field.getFieldType())));
+        code.add(JasminInstruction.of("dup"));
         // generate code for loading what's on the right
 
         // store value in the stack in destination
 
-        return code.toString();
+        return code;
     }
-    private String generateCall(CallInstruction call) {
-        var code = new StringBuilder();
+    private List<JasminCode> generateCall(CallInstruction call) {
+        var code = new ArrayList<JasminCode>();
         // generate code for loading what's on the right
         switch (call.getInvocationType()){
             case invokespecial:
                 String method = (((LiteralElement)call.getOperands().get(1)).getLiteral());
                 String elemtype= this.getClassName(((ClassType) call.getOperands().get(0).getType()).getName());
                 for (Element op : call.getArguments()){
-                    code.append(generators.apply(op));
-                }
-                code.append("invokespecial ").append(elemtype).append("/").append(this.remove_quotes(method));
-
-                //arguments
-                code.append("(");
-                for (Element op : call.getArguments()){
-                    code.append(this.getTypeToStr(op.getType()));
+                    code.addAll(generators.apply(op));
                 }
-                code.append(")");
-                code.append(this.getTypeToStr(call.getReturnType())).append(NL);
+                code.add(JasminInstruction.of("invokespecial", elemtype + "/" + this.remove_quotes(method) + this.getArgumentsDescriptor(call)));
                 break;
             case invokestatic:
                 var elemt= ( (Operand) call.getOperands().get(0)).getName();
                 method = (((LiteralElement) call.getOperands().get(1)).getLiteral());
                 for (Element op : call.getArguments()) {
-                    code.append(generators.apply(op));
-                }
-                code.append("invokestatic ").append(elemt).append("/").append(this.remove_quotes(method));
-                code.append("(");
-                for (Element op : call.getArguments()){
-                    code.append(this.getTypeToStr(op.getType()));
+                    code.addAll(generators.apply(op));
                 }
-                code.append(")");
-                code.append(this.getTypeToStr(call.getReturnType())).append(NL);
+                code.add(JasminInstruction.of("invokestatic", elemt + "/" + this.remove_quotes(method) + this.getArgumentsDescriptor(call)));
 
 
 
                 break;
             case invokevirtual:
-                code.append(this.generators.apply(call.getOperands().get(0)));
+                code.addAll(this.generators.apply(call.getOperands().get(0)));
                 var elem= ( (Operand) call.getOperands().get(0)).getName();
                 method = this.remove_quotes((((LiteralElement) call.getOperands().get(1)).getLiteral()));
                 elemtype= this.getClassName(((ClassType) call.getOperands().get(0).getType()).getName());
                 for (Element op : call.getArguments()){
-                    code.append(generators.apply(op));
+                    code.addAll(generators.apply(op));
                 }
-                code.append("invokevirtual ").append(elemtype).append("/").append(method).append("(");
-                for (Element op : call.getArguments()){
-                    code.append(this.getTypeToStr(op.getType()));
-                }
-                code.append(")");
-                code.append(this.getTypeToStr(call.getReturnType())).append(NL);
+                code.add(JasminInstruction.of("invokevirtual", elemtype + "/" + method + this.getArgumentsDescriptor(call)));
                 break;
             case NEW:
                 if (call.getReturnType().getTypeOfElement() == ElementType.OBJECTREF){
-                    for (Element op : call.getArguments()){
-                        code.append(this.getTypeToStr(op.getType()));
-                    }
                     var obj=this.getClassName(((ClassType)call.getReturnType()).getName());
-                    code.append("new ").append(obj).append(NL);
-                    code.append("dup").append(NL);
+                    code.add(JasminInstruction.of("new", obj));
+                    code.add(JasminInstruction.of("dup"));
                 }else{
                     for (Element op : call.getArguments()){
-                        code.append(generators.apply(op));
+                        code.addAll(generators.apply(op));
                     }
-                    code.append("newarray ");
-                    switch (call.getReturnType().getTypeOfElement()){
+                    // the return type is the array, what newarray needs is the type of its elements
+                    var elementType = ((ArrayType) call.getReturnType()).getElementType().getTypeOfElement();
+                    switch (elementType){
                         case INT32:
-                            code.append("int");
+                            code.add(JasminInstruction.of("newarray", "int"));
                             break;
                         case BOOLEAN:
-                            code.append("boolean");
+                            code.add(JasminInstruction.of("newarray", "boolean"));
                             break;
                         case STRING:
-                            code.append("java/lang/String");
+                            code.add(JasminInstruction.of("anewarray", "java/lang/String"));
                             break;
+                        default:
+                            throw new NotImplementedException(elementType);
                     }
-                    code.append(NL);
                 }
 
                 break;
             case ldc:
                 break;
             case arraylength:
+                code.addAll(generators.apply(call.getCaller()));
+                code.add(JasminInstruction.of("arraylength"));
                 break;
             default:
                 throw new NotImplementedException(call.getInvocationType());
@@ -470,7 +419,20 @@ public class JasminGenerator {
 
 
 
-        return code.toString();
+        return code;
+    }
+
+    /**
+     * @return the types of the arguments and of the return of the called method, e.g. "(I[I)Z"
+     */
+    private String getArgumentsDescriptor(CallInstruction call) {
+        var descriptor = new StringBuilder("(");
+        for (Element op : call.getArguments()){
+            descriptor.append(this.getTypeToStr(op.getType()));
+        }
+        descriptor.append(")");
+        descriptor.append(this.getTypeToStr(call.getReturnType()));
+        return descriptor.toString();
     }
 
     private String getClassName(String className){
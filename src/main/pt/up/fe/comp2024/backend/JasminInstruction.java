@@ -0,0 +1,116 @@
+package pt.up.fe.comp2024.backend;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A Jasmin instruction, e.g. {@code iinc 1 2}, with opcode "iinc" and operands "1" and "2".
+ * <p>
+ * Operands are kept as Jasmin writes them: a method or field reference, its descriptor, a register, a constant or the
+ * name of a label. The short forms of loads and stores, like {@code iload_1}, are opcodes of their own.
+ *
+ * @param opcode   the name of the instruction
+ * @param operands the operands, in order
+ */
+public record JasminInstruction(String opcode, List<String> operands) implements JasminCode {
+
+    public JasminInstruction {
+        operands = List.copyOf(operands);
+    }
+
+    /**
+     * @param operands written with their toString
+     */
+    public static JasminInstruction of(String opcode, Object... operands) {
+        return new JasminInstruction(opcode, Arrays.stream(operands).map(String::valueOf).toList());
+    }
+
+    /**
+     * @param text an instruction as Jasmin writes it, where a quoted string is a single operand
+     */
+    public static JasminInstruction parse(String text) {
+        var stripped = text.strip();
+        var space = stripped.indexOf(' ');
+        if (space < 0) {
+            return new JasminInstruction(stripped, List.of());
+        }
+
+        var opcode = stripped.substring(0, space);
+        var rest = stripped.substring(space + 1).strip();
+        if (rest.startsWith("\"")) {
+            return new JasminInstruction(opcode, List.of(rest));
+        }
+        return new JasminInstruction(opcode, List.of(rest.split("\\s+")));
+    }
+
+    /**
+     * @param opcode e.g. "iload", for which registers 0 to 3 have a short form
+     */
+    public static JasminInstruction local(String opcode, int register) {
+        return register <= 3 ? of(opcode + "_" + register) : of(opcode, register);
+    }
+
+    /**
+     * @return the shortest instruction that pushes the integer
+     */
+    public static JasminInstruction constant(int value) {
+        if (value == -1) {
+            return of("iconst_m1");
+        }
+        if (value >= 0 && value <= 5) {
+            return of("iconst_" + value);
+        }
+        if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            return of("bipush", value);
+        }
+        if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            return of("sipush", value);
+        }
+        return of("ldc", value);
+    }
+
+    /**
+     * @return the first operand, or an empty string if there is none
+     */
+    public String getOperand() {
+        return operands.isEmpty() ? "" : operands.get(0);
+    }
+
+    /**
+     * @param opcode e.g. "iload", which also matches the short forms like "iload_1"
+     * @return the register the instruction uses, or -1 if it is not that instruction
+     */
+    public int getLocal(String opcode) {
+        if (this.opcode.startsWith(opcode + "_")) {
+            return Integer.parseInt(this.opcode.substring(opcode.length() + 1));
+        }
+        if (this.opcode.equals(opcode)) {
+            return Integer.parseInt(getOperand());
+        }
+        return -1;
+    }
+
+    /**
+     * @return the integer the instruction pushes, or null if it is not an integer constant
+     */
+    public Integer getConstant() {
+        if (opcode.startsWith("iconst_")) {
+            var value = opcode.substring("iconst_".length());
+            return value.equals("m1") ? -1 : Integer.parseInt(value);
+        }
+        if (opcode.equals("bipush") || opcode.equals("sipush") || opcode.equals("ldc")) {
+            try {
+                return Integer.parseInt(getOperand());
+            } catch (NumberFormatException e) {
+                // a string or another kind of constant
+                return null;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return operands.isEmpty() ? opcode : opcode + " " + String.join(" ", operands);
+    }
+}
@@ -0,0 +1,14 @@
+package pt.up.fe.comp2024.backend;
+
+/**
+ * A label jumps can go to.
+ *
+ * @param name the name jumps use, without the colon
+ */
+public record JasminLabel(String name) implements JasminCode {
+
+    @Override
+    public String toString() {
+        return name + ":";
+    }
+}
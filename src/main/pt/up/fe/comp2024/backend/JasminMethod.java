@@ -0,0 +1,100 @@
+package pt.up.fe.comp2024.backend;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A method of a {@link JasminClass}: its header, its limits and the instructions and labels of its body.
+ */
+public class JasminMethod {
+
+    private final List<String> modifiers;
+    private final String name;
+    private final String descriptor;
+    private List<JasminCode> code;
+    private int stackLimit;
+    private int localsLimit;
+
+    /**
+     * @param modifiers  e.g. "public" and "static", in the order they are written
+     * @param descriptor the types of the parameters and of the return, e.g. "(I[I)Z"
+     */
+    public JasminMethod(List<String> modifiers, String name, String descriptor) {
+        this.modifiers = List.copyOf(modifiers);
+        this.name = name;
+        this.descriptor = descriptor;
+        this.code = new ArrayList<>();
+        this.stackLimit = 0;
+        this.localsLimit = 0;
+    }
+
+    public List<String> getModifiers() {
+        return modifiers;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getDescriptor() {
+        return descriptor;
+    }
+
+    public boolean isStatic() {
+        return modifiers.contains("static");
+    }
+
+    /**
+     * @return the body of the method, which can be changed in place
+     */
+    public List<JasminCode> getCode() {
+        return code;
+    }
+
+    public void setCode(List<JasminCode> code) {
+        this.code = new ArrayList<>(code);
+    }
+
+    /**
+     * Adds an instruction at the end of the body.
+     */
+    public void add(String opcode, Object... operands) {
+        code.add(JasminInstruction.of(opcode, operands));
+    }
+
+    /**
+     * Adds instructions or labels at the end of the body.
+     */
+    public void add(JasminCode... codes) {
+        code.addAll(List.of(codes));
+    }
+
+    /**
+     * Adds a label at the end of the body.
+     */
+    public void addLabel(String name) {
+        code.add(new JasminLabel(name));
+    }
+
+    /**
+     * @return the value of the ".limit stack" of the method
+     */
+    public int getStackLimit() {
+        return stackLimit;
+    }
+
+    public void setStackLimit(int stackLimit) {
+        this.stackLimit = stackLimit;
+    }
+
+    /**
+     * @return the value of the ".limit locals" of the method
+     */
+    public int getLocalsLimit() {
+        return localsLimit;
+    }
+
+    public void setLocalsLimit(int localsLimit) {
+        this.localsLimit = localsLimit;
+    }
+}
@@ -0,0 +1,44 @@
+package pt.up.fe.comp2024.backend;
+
+import java.util.List;
+
+/**
+ * Writes a {@link JasminClass} as the text the Jasmin assembler reads, the last step of both backends.
+ */
+public class JasminWriter {
+
+    private static final String NL = "\n";
+    private static final String TAB = "   ";
+
+    private JasminWriter() {
+    }
+
+    public static String write(JasminClass jasminClass) {
+        var code = new StringBuilder();
+
+        code.append(".class ").append(withModifiers(jasminClass.getModifiers(), jasminClass.getName())).append(NL);
+        code.append(".super ").append(jasminClass.getSuperName()).append(NL);
+        for (var field : jasminClass.getFields()) {
+            code.append(".field ").append(withModifiers(field.modifiers(), field.name()))
+                    .append(" ").append(field.descriptor()).append(NL);
+        }
+
+        for (var method : jasminClass.getMethods()) {
+            code.append(NL);
+            code.append(".method ").append(withModifiers(method.getModifiers(), method.getName()))
+                    .append(method.getDescriptor()).append(NL);
+            code.append(TAB).append(".limit stack ").append(method.getStackLimit()).append(NL);
+            code.append(TAB).append(".limit locals ").append(method.getLocalsLimit()).append(NL);
+            for (var line : method.getCode()) {
+                code.append(TAB).append(line).append(NL);
+            }
+            code.append(".end method").append(NL);
+        }
+
+        return code.toString();
+    }
+
+    private static String withModifiers(List<String> modifiers, String name) {
+        return modifiers.isEmpty() ? name : String.join(" ", modifiers) + " " + name;
+    }
+}
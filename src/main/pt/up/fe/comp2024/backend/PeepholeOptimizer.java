@@ -0,0 +1,92 @@
+package pt.up.fe.comp2024.backend;
+
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.Stage;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rewrites the instructions of each method of a {@link JasminClass} with a table of peephole patterns, until none of
+ * them matches anymore.
+ * <p>
+ * Rewrites can change how deep the stack gets, so the ".limit stack" of each method is computed again afterwards, with
+ * {@link StackAnalysis}. How many times each pattern fired is counted over every class the optimizer is given.
+ */
+public class PeepholeOptimizer {
+
+    private final List<PeepholePattern> patterns;
+    private final Map<String, Integer> counts;
+
+    public PeepholeOptimizer(List<PeepholePattern> patterns) {
+        this.patterns = patterns;
+        this.counts = new LinkedHashMap<>();
+        patterns.forEach(pattern -> counts.put(pattern.name(), 0));
+    }
+
+    /**
+     * @return the number of times each pattern fired, in table order
+     */
+    public Map<String, Integer> getCounts() {
+        return counts;
+    }
+
+    /**
+     * @return a log report for each pattern that fired
+     */
+    public List<Report> getReports() {
+        var reports = new ArrayList<Report>();
+        counts.forEach((name, count) -> {
+            if (count > 0) {
+                reports.add(Report.newLog(Stage.OPTIMIZATION, -1, -1, "Peephole pattern '" + name + "' fired "
+                        + count + " times", null));
+            }
+        });
+        return reports;
+    }
+
+    /**
+     * Optimizes the body of every method of the class in place.
+     */
+    public void optimize(JasminClass jasminClass) {
+        for (var method : jasminClass.getMethods()) {
+            method.setCode(optimizeMethod(method.getCode()));
+            method.setStackLimit(StackAnalysis.getMaxDepth(method.getCode()));
+        }
+    }
+
+    /**
+     * @param instructions the instructions and labels of a method
+     * @return the instructions once no pattern matches them
+     */
+    public List<JasminCode> optimizeMethod(List<JasminCode> instructions) {
+        var optimized = new ArrayList<>(instructions);
+
+        var changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = 0; i < optimized.size(); i++) {
+                for (var pattern : patterns) {
+                    if (i + pattern.size() > optimized.size()) {
+                        continue;
+                    }
+
+                    var window = optimized.subList(i, i + pattern.size());
+                    var rewritten = pattern.rewrite().apply(List.copyOf(window));
+                    if (rewritten == null) {
+                        continue;
+                    }
+
+                    window.clear();
+                    window.addAll(rewritten);
+                    counts.merge(pattern.name(), 1, Integer::sum);
+                    changed = true;
+                }
+            }
+        }
+
+        return optimized;
+    }
+}
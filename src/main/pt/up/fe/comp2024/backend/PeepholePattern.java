@@ -0,0 +1,15 @@
+package pt.up.fe.comp2024.backend;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Rewrite of a fixed number of consecutive Jasmin instructions into shorter or cheaper ones that leave the same values
+ * in the same places.
+ *
+ * @param name    how the pattern is selected and reported
+ * @param size    the number of instructions it looks at
+ * @param rewrite from the instructions to the ones replacing them, or null if it does not match
+ */
+public record PeepholePattern(String name, int size, Function<List<JasminCode>, List<JasminCode>> rewrite) {
+}
@@ -0,0 +1,135 @@
+package pt.up.fe.comp2024.backend;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The table of peephole patterns, in the order they are tried, and what they look for in the body of a Jasmin method.
+ * <p>
+ * A pattern only matches instructions written one after the other, so no label and therefore no jump can come between
+ * them, except for the label a pattern looks for itself.
+ */
+public class PeepholePatterns {
+
+    private static final Map<String, String> ZERO_COMPARISONS = Map.of(
+            "if_icmpeq", "ifeq", "if_icmpne", "ifne", "if_icmplt", "iflt",
+            "if_icmpge", "ifge", "if_icmpgt", "ifgt", "if_icmple", "ifle");
+
+    private static final JasminInstruction DUP = JasminInstruction.of("dup");
+
+    /**
+     * Integer constants loaded with the shortest instruction for their value.
+     */
+    public static final PeepholePattern CONSTANT = new PeepholePattern("constant", 1, window -> {
+        var value = getConstant(window.get(0));
+        return value == null || window.get(0).equals(JasminInstruction.constant(value))
+                ? null
+                : List.of(JasminInstruction.constant(value));
+    });
+
+    /**
+     * {@code iload x; iconst_1; iadd; istore x} and the like, replaced by {@code iinc x 1}.
+     */
+    public static final PeepholePattern INCREMENT = new PeepholePattern("increment", 4, window -> {
+        var load = getLocal(window.get(0), "iload");
+        var value = getConstant(window.get(1));
+        if (load < 0 || value == null) {
+            // the constant may come first in additions
+            load = getLocal(window.get(1), "iload");
+            value = getConstant(window.get(0));
+            if (load < 0 || value == null || !getOpcode(window.get(2)).equals("iadd")) {
+                return null;
+            }
+        }
+
+        var opcode = getOpcode(window.get(2));
+        var increment = opcode.equals("iadd") ? value : opcode.equals("isub") ? -value : null;
+        if (increment == null || increment < Byte.MIN_VALUE || increment > Byte.MAX_VALUE
+                || getLocal(window.get(3), "istore") != load) {
+            return null;
+        }
+        return List.of(JasminInstruction.of("iinc", load, increment));
+    });
+
+    /**
+     * Comparisons with the constant 0 done with the branches that compare with 0 themselves.
+     */
+    public static final PeepholePattern COMPARE_ZERO = new PeepholePattern("compare-zero", 2, window -> {
+        var branch = ZERO_COMPARISONS.get(getOpcode(window.get(1)));
+        if (!Integer.valueOf(0).equals(getConstant(window.get(0))) || branch == null) {
+            return null;
+        }
+        return List.of(JasminInstruction.of(branch, ((JasminInstruction) window.get(1)).getOperand()));
+    });
+
+    /**
+     * A variable stored and loaded right away, whose value is kept on the stack with a dup instead.
+     */
+    public static final PeepholePattern STORE_LOAD = new PeepholePattern("store-load", 2, window -> {
+        for (var kind : List.of("i", "a")) {
+            var store = getLocal(window.get(0), kind + "store");
+            if (store >= 0 && getLocal(window.get(1), kind + "load") == store) {
+                return List.of(DUP, window.get(0));
+            }
+        }
+        return null;
+    });
+
+    /**
+     * Gotos to the label right after them.
+     */
+    public static final PeepholePattern JUMP_NEXT = new PeepholePattern("jump-next", 2, window ->
+            getOpcode(window.get(0)).equals("goto") && window.get(1) instanceof JasminLabel label
+                    && label.name().equals(((JasminInstruction) window.get(0)).getOperand())
+                    ? List.of(window.get(1))
+                    : null);
+
+    /**
+     * Values pushed only to be popped.
+     */
+    public static final PeepholePattern PUSH_POP = new PeepholePattern("push-pop", 2, window -> {
+        var push = window.get(0);
+        var pushesOnly = getConstant(push) != null || getOpcode(push).equals("ldc") || getOpcode(push).equals("dup")
+                || getLocal(push, "iload") >= 0 || getLocal(push, "aload") >= 0;
+        return pushesOnly && getOpcode(window.get(1)).equals("pop") ? Collections.<JasminCode>emptyList() : null;
+    });
+
+    /**
+     * Every pattern, in the order they are tried.
+     */
+    public static final List<PeepholePattern> ALL = List.of(
+            CONSTANT, INCREMENT, COMPARE_ZERO, STORE_LOAD, JUMP_NEXT, PUSH_POP);
+
+    private PeepholePatterns() {
+    }
+
+    /**
+     * @param names the names of the patterns to use, in any order
+     * @return the patterns of the table with those names, in table order
+     */
+    public static List<PeepholePattern> getPatterns(List<String> names) {
+        for (var name : names) {
+            if (ALL.stream().noneMatch(pattern -> pattern.name().equals(name))) {
+                throw new IllegalArgumentException("Unknown peephole pattern '" + name + "', expected one of "
+                        + ALL.stream().map(PeepholePattern::name).toList());
+            }
+        }
+        return ALL.stream().filter(pattern -> names.contains(pattern.name())).toList();
+    }
+
+    /**
+     * @return the opcode of the instruction, or an empty string for labels
+     */
+    private static String getOpcode(JasminCode code) {
+        return code instanceof JasminInstruction instruction ? instruction.opcode() : "";
+    }
+
+    private static int getLocal(JasminCode code, String opcode) {
+        return code instanceof JasminInstruction instruction ? instruction.getLocal(opcode) : -1;
+    }
+
+    private static Integer getConstant(JasminCode code) {
+        return code instanceof JasminInstruction instruction ? instruction.getConstant() : null;
+    }
+}
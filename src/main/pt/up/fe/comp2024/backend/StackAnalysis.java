@@ -0,0 +1,190 @@
+package pt.up.fe.comp2024.backend;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Depth of the operand stack along the Jasmin instructions of a method, to find the value of its ".limit stack".
+ * <p>
+ * Each instruction pops and pushes a known number of words, read from the descriptors for calls and fields. The
+ * depth is followed along every path, through jumps to labels, and must be the same whichever way a label is reached,
+ * as the JVM requires. The depth can never go below zero, which the generated code is asserted not to do.
+ */
+public class StackAnalysis {
+
+    private static final Map<String, int[]> EFFECTS = new HashMap<>();
+
+    static {
+        // {words popped, words pushed}
+        for (var push : List.of("iload", "aload", "ldc", "ldc_w", "bipush", "sipush", "aconst_null", "iconst_m1",
+                "iconst_0", "iconst_1", "iconst_2", "iconst_3", "iconst_4", "iconst_5", "new", "getstatic")) {
+            EFFECTS.put(push, new int[]{0, 1});
+        }
+        for (int i = 0; i <= 3; i++) {
+            EFFECTS.put("iload_" + i, new int[]{0, 1});
+            EFFECTS.put("aload_" + i, new int[]{0, 1});
+            EFFECTS.put("istore_" + i, new int[]{1, 0});
+            EFFECTS.put("astore_" + i, new int[]{1, 0});
+        }
+        for (var store : List.of("istore", "astore", "pop", "ifeq", "ifne", "iflt", "ifge", "ifgt", "ifle", "ifnull",
+                "ifnonnull", "ireturn", "areturn", "athrow", "putstatic")) {
+            EFFECTS.put(store, new int[]{1, 0});
+        }
+        for (var binary : List.of("iadd", "isub", "imul", "idiv", "irem", "iand", "ior", "ixor", "ishl", "ishr",
+                "iushr", "iaload", "baload", "aaload")) {
+            EFFECTS.put(binary, new int[]{2, 1});
+        }
+        for (var unary : List.of("ineg", "arraylength", "newarray", "anewarray", "checkcast", "instanceof")) {
+            EFFECTS.put(unary, new int[]{1, 1});
+        }
+        for (var compare : List.of("if_icmpeq", "if_icmpne", "if_icmplt", "if_icmpge", "if_icmpgt", "if_icmple",
+                "if_acmpeq", "if_acmpne", "pop2")) {
+            EFFECTS.put(compare, new int[]{2, 0});
+        }
+        for (var store : List.of("iastore", "bastore", "aastore")) {
+            EFFECTS.put(store, new int[]{3, 0});
+        }
+        for (var none : List.of("goto", "return", "iinc", "nop")) {
+            EFFECTS.put(none, new int[]{0, 0});
+        }
+        EFFECTS.put("dup", new int[]{1, 2});
+        EFFECTS.put("dup_x1", new int[]{2, 3});
+        EFFECTS.put("dup_x2", new int[]{3, 4});
+        EFFECTS.put("dup2", new int[]{2, 4});
+        EFFECTS.put("swap", new int[]{2, 2});
+    }
+
+    private StackAnalysis() {
+    }
+
+    /**
+     * @param code the body of a method
+     * @return the highest depth the stack reaches
+     */
+    public static int getMaxDepth(List<JasminCode> code) {
+        var labels = new HashMap<String, Integer>();
+        for (int i = 0; i < code.size(); i++) {
+            if (code.get(i) instanceof JasminLabel label) {
+                labels.put(label.name(), i);
+            }
+        }
+
+        // the depth on entry to each element reached so far
+        var depths = new Integer[code.size()];
+        var pending = new ArrayDeque<Integer>();
+        var maxDepth = 0;
+        if (!code.isEmpty()) {
+            depths[0] = 0;
+            pending.push(0);
+        }
+
+        while (!pending.isEmpty()) {
+            int index = pending.pop();
+            var depth = depths[index];
+
+            // follows the straight line code until it jumps away or reaches an element already done
+            while (index < code.size()) {
+                var element = code.get(index);
+                var next = index + 1;
+
+                if (element instanceof JasminInstruction instruction) {
+                    var opcode = instruction.opcode();
+                    var effect = getEffect(instruction);
+                    assert depth >= effect[0] : "Stack underflow at '" + element + "', with depth " + depth;
+                    depth = depth - effect[0] + effect[1];
+                    maxDepth = Math.max(maxDepth, depth);
+
+                    if (isJump(opcode)) {
+                        var target = instruction.getOperand();
+                        var targetIndex = labels.get(target);
+                        if (targetIndex == null) {
+                            throw new IllegalArgumentException("Unknown label '" + target + "' in '" + element + "'");
+                        }
+                        if (merge(depths, targetIndex, depth, element)) {
+                            pending.push(targetIndex);
+                        }
+                    }
+                    if (opcode.equals("goto") || opcode.endsWith("return") || opcode.equals("athrow")) {
+                        break;
+                    }
+                }
+
+                if (next < code.size() && !merge(depths, next, depth, element)) {
+                    break;
+                }
+                index = next;
+            }
+        }
+
+        return maxDepth;
+    }
+
+    /**
+     * Records the depth an element is reached with.
+     *
+     * @return true if the element had not been reached before
+     */
+    private static boolean merge(Integer[] depths, int index, int depth, JasminCode from) {
+        if (depths[index] == null) {
+            depths[index] = depth;
+            return true;
+        }
+
+        assert depths[index] == depth : "Stack depth " + depth + " after '" + from + "' differs from "
+                + depths[index] + ", the one it is reached with on another path";
+        return false;
+    }
+
+    private static boolean isJump(String opcode) {
+        return opcode.startsWith("if") || opcode.equals("goto");
+    }
+
+    private static int[] getEffect(JasminInstruction instruction) {
+        var opcode = instruction.opcode();
+        var effect = EFFECTS.get(opcode);
+        if (effect != null) {
+            return effect;
+        }
+
+        var operands = instruction.operands();
+        var operand = instruction.getOperand();
+        switch (opcode) {
+            case "getfield":
+                return new int[]{1, getSize(operands.get(operands.size() - 1))};
+            case "putfield":
+                return new int[]{1 + getSize(operands.get(operands.size() - 1)), 0};
+            case "invokestatic":
+            case "invokevirtual":
+            case "invokespecial":
+            case "invokeinterface":
+                var arguments = operand.substring(operand.indexOf('(') + 1, operand.indexOf(')'));
+                var words = opcode.equals("invokestatic") ? 0 : 1;
+                for (int i = 0; i < arguments.length(); i++) {
+                    var start = i;
+                    while (arguments.charAt(i) == '[') {
+                        i++;
+                    }
+                    if (arguments.charAt(i) == 'L') {
+                        i = arguments.indexOf(';', i);
+                    }
+                    words += i == start ? getSize(String.valueOf(arguments.charAt(i))) : 1;
+                }
+                return new int[]{words, getSize(operand.substring(operand.indexOf(')') + 1))};
+            default:
+                throw new IllegalArgumentException("Unknown stack effect of Jasmin instruction '" + instruction + "'");
+        }
+    }
+
+    /**
+     * @return the number of stack words a value of the type descriptor takes
+     */
+    private static int getSize(String descriptor) {
+        return switch (descriptor.charAt(0)) {
+            case 'V' -> 0;
+            case 'J', 'D' -> 2;
+            default -> 1;
+        };
+    }
+}
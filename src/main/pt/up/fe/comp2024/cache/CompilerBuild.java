@@ -0,0 +1,89 @@
+package pt.up.fe.comp2024.cache;
+
+import org.specs.comp.ollir.ClassUnit;
+import pt.up.fe.comp.jmm.jasmin.JasminResult;
+import pt.up.fe.comp2024.CompilerPipeline;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Identifies the build of the compiler, by a hash of the classes it is made of: its own, either the class folder
+ * written by Gradle or the jar, and the OLLIR and course libraries it generates code with. A cache key that includes it
+ * never serves code generated by another build, even if {@link CompilerPipeline#VERSION} was not changed.
+ * <p>
+ * The classes are read once per process, the first time the hash is needed.
+ */
+public class CompilerBuild {
+
+    private CompilerBuild() {
+    }
+
+    public static String getHash() {
+        return Holder.HASH;
+    }
+
+    private static class Holder {
+        private static final String HASH = hash(List.of(CompilerPipeline.class, ClassUnit.class, JasminResult.class));
+    }
+
+    private static String hash(List<Class<?>> classes) {
+        // the classes may come from the same folder or jar
+        var locations = new LinkedHashSet<Path>();
+        for (var aClass : classes) {
+            locations.add(getLocation(aClass));
+        }
+
+        try {
+            var digest = MessageDigest.getInstance("SHA-256");
+            for (var location : locations) {
+                update(digest, location);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-256 is not available", e);
+        } catch (IOException e) {
+            throw new RuntimeException("Could not read the classes of the compiler", e);
+        }
+    }
+
+    private static Path getLocation(Class<?> aClass) {
+        var codeSource = aClass.getProtectionDomain().getCodeSource();
+        if (codeSource == null) {
+            throw new RuntimeException("Could not find where class " + aClass.getName() + " was loaded from");
+        }
+
+        try {
+            return Path.of(codeSource.getLocation().toURI());
+        } catch (URISyntaxException e) {
+            throw new RuntimeException("Could not find where class " + aClass.getName() + " was loaded from", e);
+        }
+    }
+
+    /**
+     * Hashes the contents of the jar, or the name and contents of every class of the folder.
+     */
+    private static void update(MessageDigest digest, Path location) throws IOException {
+        if (Files.isRegularFile(location)) {
+            digest.update(Files.readAllBytes(location));
+            return;
+        }
+
+        try (Stream<Path> files = Files.walk(location)) {
+            for (var file : files.filter(file -> file.toString().endsWith(".class")).sorted().toList()) {
+                digest.update(location.relativize(file).toString().getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+                digest.update(Files.readAllBytes(file));
+            }
+        }
+    }
+}
@@ -0,0 +1,271 @@
+package pt.up.fe.comp2024.cache;
+
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.CompilerPipeline;
+import pt.up.fe.comp2024.CompilerPipeline.Step;
+import pt.up.fe.comp2024.backend.PeepholePattern;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Content-addressed cache for the output of each compiler stage, kept in a folder on disk.
+ * <p>
+ * Entries are keyed by a hash of the source code, the contents of config.properties, the options that change the
+ * generated code, the build of the compiler (see {@link CompilerBuild}) and the library path, whose files are hashed
+ * by name, size and modification time, so that changing a library the analysis reads invalidates the entries compiled
+ * against it. The library path is only hashed the first time it is seen, so a library changed while the cache is in
+ * use, e.g. by a daemon, is noticed by the next process. Writes go to a temporary file that is atomically moved into
+ * place, so several processes or batch workers can share the same folder.
+ * <p>
+ * The size of the folder is counted once, when the cache is created, and then kept up to date with the entries this
+ * cache writes. When it grows past the size limit, the folder is listed again and the least recently used entries are
+ * deleted until it is back to three quarters of the limit, so that the next writes do not list it again.
+ */
+public class StageCache {
+
+    public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+    private static final String CONFIG_PROPERTIES = "config.properties";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final Path folder;
+    private final long maxBytes;
+    private final String configProperties;
+    private final Map<List<File>, byte[]> libraryHashes;
+    private final AtomicLong totalBytes;
+
+    private final AtomicLongArray hits;
+    private final AtomicLongArray misses;
+
+    public StageCache(File folder, long maxBytes) {
+        this.folder = folder.toPath();
+        this.maxBytes = maxBytes;
+
+        var properties = new File(CONFIG_PROPERTIES);
+        this.configProperties = properties.isFile() ? SpecsIo.read(properties) : "";
+        this.libraryHashes = new ConcurrentHashMap<>();
+
+        this.hits = new AtomicLongArray(Step.values().length);
+        this.misses = new AtomicLongArray(Step.values().length);
+
+        try {
+            Files.createDirectories(this.folder);
+        } catch (IOException e) {
+            throw new RuntimeException("Could not create cache folder '" + folder + "'", e);
+        }
+
+        this.totalBytes = new AtomicLong(listEntries().stream().mapToLong(CacheFile::size).sum());
+    }
+
+    public StageCache(File folder) {
+        this(folder, DEFAULT_MAX_BYTES);
+    }
+
+    public String key(String code, Map<String, String> config) {
+        var digest = newDigest(config);
+        update(digest, code);
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Same key as {@link #key(String, Map)} for the contents of the file, which is hashed without being decoded.
+     */
+    public String key(File source, Map<String, String> config) {
+        var digest = newDigest(config);
+
+        try (var input = new DigestInputStream(Files.newInputStream(source.toPath()), digest)) {
+            input.transferTo(OutputStream.nullOutputStream());
+        } catch (IOException e) {
+            throw new RuntimeException("Could not read source file '" + source + "'", e);
+        }
+        digest.update((byte) 0);
+
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private MessageDigest newDigest(Map<String, String> config) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256");
+            update(digest, CompilerPipeline.VERSION);
+            update(digest, CompilerBuild.getHash());
+            update(digest, configProperties);
+            update(digest, Boolean.toString(CompilerConfig.getOptimize(config)));
+            update(digest, Integer.toString(CompilerConfig.getRegisterAllocation(config)));
+            update(digest, CompilerConfig.getPeepholePatterns(config).stream()
+                    .map(PeepholePattern::name)
+                    .collect(Collectors.joining(",")));
+            digest.update(libraryHashes.computeIfAbsent(CompilerConfig.getLibraryPath(config), StageCache::hashLibraries));
+            return digest;
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-256 is not available", e);
+        }
+    }
+
+    private static byte[] hashLibraries(List<File> libraryPath) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256");
+            for (var library : libraryPath) {
+                updateLibrary(digest, library.toPath().toAbsolutePath());
+            }
+            return digest.digest();
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Hashes the name, size and modification time of the jar, or of every file in the folder, without reading them.
+     */
+    private static void updateLibrary(MessageDigest digest, Path library) {
+        update(digest, library.toString());
+        if (!Files.exists(library)) {
+            return;
+        }
+
+        try (Stream<Path> files = Files.walk(library)) {
+            for (var file : files.filter(Files::isRegularFile).sorted().toList()) {
+                update(digest, library.relativize(file).toString());
+                update(digest, Files.size(file) + ":" + Files.getLastModifiedTime(file).toMillis());
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Could not read library path entry '" + library + "'", e);
+        }
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        // separator, so that moving text between two values changes the hash
+        digest.update((byte) 0);
+    }
+
+    public Optional<String> get(String key, Step step) {
+        var entry = entryPath(key, step);
+
+        try {
+            var content = Files.readString(entry, StandardCharsets.UTF_8);
+
+            // reading does not always update the access time, touch the entry so that eviction sees it as recent
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+
+            hits.incrementAndGet(step.ordinal());
+            return Optional.of(content);
+        } catch (NoSuchFileException e) {
+            misses.incrementAndGet(step.ordinal());
+            return Optional.empty();
+        } catch (IOException e) {
+            // entry evicted by another worker while being read, treat as a miss
+            misses.incrementAndGet(step.ordinal());
+            return Optional.empty();
+        }
+    }
+
+    public void put(String key, Step step, String content) {
+        var bytes = content.getBytes(StandardCharsets.UTF_8);
+        try {
+            var temp = Files.createTempFile(folder, key, TEMP_SUFFIX);
+            Files.write(temp, bytes);
+            Files.move(temp, entryPath(key, step), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new RuntimeException("Could not write cache entry for step " + step, e);
+        }
+
+        // an entry replaced by another worker is counted twice, until the next eviction lists the folder
+        if (totalBytes.addAndGet(bytes.length) > maxBytes) {
+            evict();
+        }
+    }
+
+    public long getHits(Step step) {
+        return hits.get(step.ordinal());
+    }
+
+    public long getMisses(Step step) {
+        return misses.get(step.ordinal());
+    }
+
+    public String toReport() {
+        var report = new StringBuilder("Cache " + folder + "\n");
+        for (var step : Step.values()) {
+            report.append(String.format("   %-8s %6d hits %6d misses%n", step, getHits(step), getMisses(step)));
+        }
+        return report.toString();
+    }
+
+    private Path entryPath(String key, Step step) {
+        return folder.resolve(key + "." + step.name().toLowerCase());
+    }
+
+    /**
+     * Deletes the least recently used entries until the folder is at three quarters of the size limit. The folder is
+     * listed again, since other processes may have written or deleted entries.
+     */
+    private synchronized void evict() {
+        // another thread may have evicted while this one waited
+        if (totalBytes.get() <= maxBytes) {
+            return;
+        }
+
+        var entries = listEntries();
+        var bytes = entries.stream().mapToLong(CacheFile::size).sum();
+        var targetBytes = maxBytes / 4 * 3;
+
+        entries.sort(Comparator.comparingLong(CacheFile::lastUsed));
+        for (var entry : entries) {
+            if (bytes <= targetBytes) {
+                break;
+            }
+
+            try {
+                Files.deleteIfExists(entry.path());
+            } catch (IOException e) {
+                // another worker got to it first
+            }
+            bytes -= entry.size();
+        }
+
+        totalBytes.set(bytes);
+    }
+
+    private List<CacheFile> listEntries() {
+        var entries = new ArrayList<CacheFile>();
+        try (Stream<Path> files = Files.list(folder)) {
+            files.filter(file -> !file.getFileName().toString().endsWith(TEMP_SUFFIX))
+                    .forEach(file -> {
+                        try {
+                            entries.add(new CacheFile(file, Files.size(file), Files.getLastModifiedTime(file).toMillis()));
+                        } catch (IOException e) {
+                            // deleted meanwhile by another worker
+                        }
+                    });
+        } catch (IOException e) {
+            throw new RuntimeException("Could not list cache folder '" + folder + "'", e);
+        }
+        return entries;
+    }
+
+    private record CacheFile(Path path, long size, long lastUsed) {
+    }
+}
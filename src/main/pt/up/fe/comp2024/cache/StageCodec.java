@@ -0,0 +1,80 @@
+package pt.up.fe.comp2024.cache;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.ast.JmmNodeImpl;
+import pt.up.fe.comp.jmm.ast.JmmSerializer;
+import pt.up.fe.comp.jmm.jasmin.JasminResult;
+import pt.up.fe.comp2024.symboltable.JmmSymbolTable;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Converts the results of the compiler stages to and from the text stored in the {@link StageCache}.
+ */
+public class StageCodec {
+
+    /**
+     * Attributes that the parser stores as Boolean objects, JSON only keeps their text.
+     */
+    private static final List<String> BOOLEAN_ATTRIBUTES = List.of("isPublic", "isStatic");
+
+    private static final String AST = "ast";
+    private static final String TABLE = "table";
+
+    private static final Gson GSON = new GsonBuilder()
+            .registerTypeAdapter(JmmNode.class, new JmmSerializer())
+            .create();
+
+    public static String encodeAst(JmmNode rootNode) {
+        return GSON.toJson(rootNode, JmmNode.class);
+    }
+
+    public static JmmNode decodeAst(String json) {
+        var rootNode = JmmNodeImpl.fromJson(json);
+        restoreBooleans(rootNode);
+        return rootNode;
+    }
+
+    public static String encodeSemantics(JmmNode rootNode, SymbolTable table) {
+        var json = new JsonObject();
+        json.add(AST, GSON.toJsonTree(rootNode, JmmNode.class));
+        json.add(TABLE, GSON.toJsonTree(table, JmmSymbolTable.class));
+        return GSON.toJson(json);
+    }
+
+    public static JmmNode decodeSemanticsAst(String json) {
+        var ast = JsonParser.parseString(json).getAsJsonObject().get(AST);
+        return decodeAst(GSON.toJson(ast));
+    }
+
+    public static SymbolTable decodeSemanticsTable(String json) {
+        var table = JsonParser.parseString(json).getAsJsonObject().get(TABLE);
+        return GSON.fromJson(table, JmmSymbolTable.class);
+    }
+
+    public static String encodeJasmin(JasminResult result) {
+        return result.getClassName() + "\n" + result.getJasminCode();
+    }
+
+    public static JasminResult decodeJasmin(String text, Map<String, String> config) {
+        var newline = text.indexOf('\n');
+        return new JasminResult(text.substring(0, newline), text.substring(newline + 1), Collections.emptyList(), config);
+    }
+
+    private static void restoreBooleans(JmmNode node) {
+        for (var attribute : BOOLEAN_ATTRIBUTES) {
+            if (node.hasAttribute(attribute)) {
+                node.putObject(attribute, Boolean.parseBoolean(node.get(attribute)));
+            }
+        }
+
+        node.getChildren().forEach(StageCodec::restoreBooleans);
+    }
+}
@@ -0,0 +1,32 @@
+package pt.up.fe.comp2024.classfile;
+
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.backend.JasminGenerator;
+import pt.up.fe.comp2024.backend.PeepholeOptimizer;
+import pt.up.fe.comp2024.stats.CompilerStats;
+
+/**
+ * Backend that writes the class file of an OLLIR class directly, instead of writing Jasmin text for the assembler.
+ * <p>
+ * The code is generated and optimized exactly as in {@link pt.up.fe.comp2024.backend.JasminBackendImpl}, only the
+ * last step changes, so both backends produce the same class.
+ */
+public class ClassFileBackend {
+
+    public ClassFileResult toClassFile(OllirResult ollirResult) {
+
+        var jasminGenerator = new JasminGenerator(ollirResult);
+        var jasminClass = CompilerStats.measure("JASMIN/JasminGenerator", jasminGenerator::generate);
+
+        var peephole = new PeepholeOptimizer(CompilerConfig.getPeepholePatterns(ollirResult.getConfig()));
+        CompilerStats.measure("JASMIN/PeepholeOptimizer", () -> peephole.optimize(jasminClass));
+
+        var classFile = CompilerStats.measure("JASMIN/ClassFileWriter", () -> ClassFileWriter.write(jasminClass));
+
+        var reports = jasminGenerator.getReports();
+        reports.addAll(peephole.getReports());
+
+        return new ClassFileResult(jasminClass.getName(), classFile, reports);
+    }
+}
@@ -0,0 +1,136 @@
+package pt.up.fe.comp2024.classfile;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the class name, super class, interfaces, fields and methods of a .class file, straight from its constant
+ * pool. Attributes, including the code of the methods, are skipped.
+ */
+public class ClassFileReader {
+
+    private static final int MAGIC = 0xCAFEBABE;
+
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_INTEGER = 3;
+    private static final int CONSTANT_FLOAT = 4;
+    private static final int CONSTANT_LONG = 5;
+    private static final int CONSTANT_DOUBLE = 6;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_STRING = 8;
+    private static final int CONSTANT_FIELDREF = 9;
+    private static final int CONSTANT_METHODREF = 10;
+    private static final int CONSTANT_INTERFACE_METHODREF = 11;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+    private static final int CONSTANT_METHOD_HANDLE = 15;
+    private static final int CONSTANT_METHOD_TYPE = 16;
+    private static final int CONSTANT_DYNAMIC = 17;
+    private static final int CONSTANT_INVOKE_DYNAMIC = 18;
+    private static final int CONSTANT_MODULE = 19;
+    private static final int CONSTANT_PACKAGE = 20;
+
+    private ClassFileReader() {
+    }
+
+    public static ClassInfo read(byte[] classFile) throws IOException {
+        var input = new DataInputStream(new ByteArrayInputStream(classFile));
+
+        if (input.readInt() != MAGIC) {
+            throw new IOException("Not a class file, wrong magic number");
+        }
+
+        // minor and major version
+        input.readUnsignedShort();
+        input.readUnsignedShort();
+
+        var pool = readConstantPool(input);
+
+        var access = input.readUnsignedShort();
+        var name = pool.className(input.readUnsignedShort());
+        var superIndex = input.readUnsignedShort();
+        var superName = superIndex == 0 ? null : pool.className(superIndex);
+
+        var interfaces = new ArrayList<String>();
+        var interfacesCount = input.readUnsignedShort();
+        for (int i = 0; i < interfacesCount; i++) {
+            interfaces.add(pool.className(input.readUnsignedShort()));
+        }
+
+        var fields = readMembers(input, pool);
+        var methods = readMembers(input, pool);
+
+        return new ClassInfo(name, superName, interfaces, access, fields, methods);
+    }
+
+    private static ConstantPool readConstantPool(DataInputStream input) throws IOException {
+        var count = input.readUnsignedShort();
+        var utf8 = new String[count];
+        var classNames = new int[count];
+
+        // entry 0 is unused, long and double take two entries
+        for (int i = 1; i < count; i++) {
+            var tag = input.readUnsignedByte();
+            switch (tag) {
+                case CONSTANT_UTF8 -> utf8[i] = input.readUTF();
+                case CONSTANT_CLASS -> classNames[i] = input.readUnsignedShort();
+                case CONSTANT_STRING, CONSTANT_METHOD_TYPE, CONSTANT_MODULE, CONSTANT_PACKAGE -> input.skipNBytes(2);
+                case CONSTANT_METHOD_HANDLE -> input.skipNBytes(3);
+                case CONSTANT_INTEGER, CONSTANT_FLOAT, CONSTANT_FIELDREF, CONSTANT_METHODREF,
+                        CONSTANT_INTERFACE_METHODREF, CONSTANT_NAME_AND_TYPE, CONSTANT_DYNAMIC,
+                        CONSTANT_INVOKE_DYNAMIC -> input.skipNBytes(4);
+                case CONSTANT_LONG, CONSTANT_DOUBLE -> {
+                    input.skipNBytes(8);
+                    i++;
+                }
+                default -> throw new IOException("Unknown constant pool tag " + tag + " at entry " + i);
+            }
+        }
+
+        return new ConstantPool(utf8, classNames);
+    }
+
+    private static List<ClassInfo.Member> readMembers(DataInputStream input, ConstantPool pool) throws IOException {
+        var count = input.readUnsignedShort();
+        var members = new ArrayList<ClassInfo.Member>(count);
+
+        for (int i = 0; i < count; i++) {
+            var access = input.readUnsignedShort();
+            var name = pool.utf8(input.readUnsignedShort());
+            var descriptor = pool.utf8(input.readUnsignedShort());
+            skipAttributes(input);
+
+            members.add(new ClassInfo.Member(name, descriptor, access));
+        }
+
+        return members;
+    }
+
+    private static void skipAttributes(DataInputStream input) throws IOException {
+        var count = input.readUnsignedShort();
+        for (int i = 0; i < count; i++) {
+            // name index, then the length of the attribute
+            input.readUnsignedShort();
+            input.skipNBytes(input.readInt() & 0xFFFFFFFFL);
+        }
+    }
+
+    private record ConstantPool(String[] utf8, int[] classNames) {
+
+        String utf8(int index) throws IOException {
+            if (index <= 0 || index >= utf8.length || utf8[index] == null) {
+                throw new IOException("Constant pool entry " + index + " is not a UTF8 entry");
+            }
+            return utf8[index];
+        }
+
+        String className(int index) throws IOException {
+            if (index <= 0 || index >= classNames.length || classNames[index] == 0) {
+                throw new IOException("Constant pool entry " + index + " is not a class entry");
+            }
+            return utf8(classNames[index]);
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package pt.up.fe.comp2024.classfile;
+
+import pt.up.fe.comp.jmm.report.Report;
+
+import java.util.List;
+
+/**
+ * The output of {@link ClassFileBackend}, the counterpart of a JasminResult when the class file is written directly.
+ *
+ * @param className the internal name of the class, e.g. "pkg/Foo"
+ * @param classFile the bytes of the .class file
+ * @param reports   the reports of the backend
+ */
+public record ClassFileResult(String className, byte[] classFile, List<Report> reports) {
+}
@@ -0,0 +1,465 @@
+package pt.up.fe.comp2024.classfile;
+
+import pt.up.fe.comp2024.backend.JasminClass;
+import pt.up.fe.comp2024.backend.JasminCode;
+import pt.up.fe.comp2024.backend.JasminField;
+import pt.up.fe.comp2024.backend.JasminInstruction;
+import pt.up.fe.comp2024.backend.JasminLabel;
+import pt.up.fe.comp2024.backend.JasminMethod;
+import pt.up.fe.comp2024.backend.StackAnalysis;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes a {@link JasminClass} straight to the bytes of a .class file, the same class the Jasmin assembler would
+ * build from the text of {@link pt.up.fe.comp2024.backend.JasminWriter}.
+ * <p>
+ * The limits of each method are computed from its code rather than taken from the class: max_stack with
+ * {@link StackAnalysis} and max_locals from the highest register used. The class file version is 49 (Java 5), the
+ * last one the JVM verifies without StackMapTable frames, which the generated code does not have.
+ */
+public class ClassFileWriter {
+
+    private static final int MAGIC = 0xCAFEBABE;
+    private static final int MAJOR_VERSION = 49;
+
+    private static final int ACC_PUBLIC = 0x0001;
+    private static final int ACC_PRIVATE = 0x0002;
+    private static final int ACC_PROTECTED = 0x0004;
+    private static final int ACC_STATIC = 0x0008;
+    private static final int ACC_FINAL = 0x0010;
+    private static final int ACC_SUPER = 0x0020;
+    private static final int ACC_ABSTRACT = 0x0400;
+
+    private static final int MAX_CODE_LENGTH = 0xFFFF;
+
+    private static final Map<String, Integer> OPCODES = new HashMap<>();
+
+    static {
+        var simple = List.of("nop", "aconst_null", "iconst_m1", "iconst_0", "iconst_1", "iconst_2", "iconst_3",
+                "iconst_4", "iconst_5");
+        for (int i = 0; i < simple.size(); i++) {
+            OPCODES.put(simple.get(i), 0x00 + i);
+        }
+        OPCODES.put("bipush", 0x10);
+        OPCODES.put("sipush", 0x11);
+        OPCODES.put("ldc", 0x12);
+        OPCODES.put("ldc_w", 0x13);
+        OPCODES.put("iload", 0x15);
+        OPCODES.put("aload", 0x19);
+        OPCODES.put("istore", 0x36);
+        OPCODES.put("astore", 0x3a);
+        for (int i = 0; i <= 3; i++) {
+            OPCODES.put("iload_" + i, 0x1a + i);
+            OPCODES.put("aload_" + i, 0x2a + i);
+            OPCODES.put("istore_" + i, 0x3b + i);
+            OPCODES.put("astore_" + i, 0x4b + i);
+        }
+        OPCODES.put("iaload", 0x2e);
+        OPCODES.put("aaload", 0x32);
+        OPCODES.put("baload", 0x33);
+        OPCODES.put("iastore", 0x4f);
+        OPCODES.put("aastore", 0x53);
+        OPCODES.put("bastore", 0x54);
+        OPCODES.put("pop", 0x57);
+        OPCODES.put("pop2", 0x58);
+        OPCODES.put("dup", 0x59);
+        OPCODES.put("dup_x1", 0x5a);
+        OPCODES.put("dup_x2", 0x5b);
+        OPCODES.put("dup2", 0x5c);
+        OPCODES.put("swap", 0x5f);
+        OPCODES.put("iadd", 0x60);
+        OPCODES.put("isub", 0x64);
+        OPCODES.put("imul", 0x68);
+        OPCODES.put("idiv", 0x6c);
+        OPCODES.put("irem", 0x70);
+        OPCODES.put("ineg", 0x74);
+        OPCODES.put("ishl", 0x78);
+        OPCODES.put("ishr", 0x7a);
+        OPCODES.put("iushr", 0x7c);
+        OPCODES.put("iand", 0x7e);
+        OPCODES.put("ior", 0x80);
+        OPCODES.put("ixor", 0x82);
+        OPCODES.put("iinc", 0x84);
+        var branches = List.of("ifeq", "ifne", "iflt", "ifge", "ifgt", "ifle", "if_icmpeq", "if_icmpne", "if_icmplt",
+                "if_icmpge", "if_icmpgt", "if_icmple", "if_acmpeq", "if_acmpne", "goto");
+        for (int i = 0; i < branches.size(); i++) {
+            OPCODES.put(branches.get(i), 0x99 + i);
+        }
+        OPCODES.put("ireturn", 0xac);
+        OPCODES.put("areturn", 0xb0);
+        OPCODES.put("return", 0xb1);
+        OPCODES.put("getstatic", 0xb2);
+        OPCODES.put("putstatic", 0xb3);
+        OPCODES.put("getfield", 0xb4);
+        OPCODES.put("putfield", 0xb5);
+        OPCODES.put("invokevirtual", 0xb6);
+        OPCODES.put("invokespecial", 0xb7);
+        OPCODES.put("invokestatic", 0xb8);
+        OPCODES.put("invokeinterface", 0xb9);
+        OPCODES.put("new", 0xbb);
+        OPCODES.put("newarray", 0xbc);
+        OPCODES.put("anewarray", 0xbd);
+        OPCODES.put("arraylength", 0xbe);
+        OPCODES.put("athrow", 0xbf);
+        OPCODES.put("checkcast", 0xc0);
+        OPCODES.put("instanceof", 0xc1);
+        OPCODES.put("wide", 0xc4);
+        OPCODES.put("ifnull", 0xc6);
+        OPCODES.put("ifnonnull", 0xc7);
+    }
+
+    private static final Map<String, Integer> ARRAY_TYPES = Map.of(
+            "boolean", 4, "char", 5, "float", 6, "double", 7, "byte", 8, "short", 9, "int", 10, "long", 11);
+
+    private static final List<String> LOCAL_OPCODES = List.of("iload", "aload", "istore", "astore", "iinc");
+
+    private ClassFileWriter() {
+    }
+
+    /**
+     * @return the bytes of the .class file of the class
+     * @throws IllegalArgumentException if the class uses an instruction or modifier that cannot be written, or is too
+     *                                  large for a class file
+     */
+    public static byte[] write(JasminClass jasminClass) {
+        var pool = new ConstantPoolBuilder();
+        var thisClass = pool.classRef(jasminClass.getName());
+        var superClass = pool.classRef(jasminClass.getSuperName());
+
+        // fields and methods go after the constant pool, but add their constants to it
+        var members = new ByteArrayOutputStream();
+        try {
+            var output = new DataOutputStream(members);
+
+            output.writeShort(jasminClass.getFields().size());
+            for (var field : jasminClass.getFields()) {
+                writeField(field, pool, output);
+            }
+
+            output.writeShort(jasminClass.getMethods().size());
+            for (var method : jasminClass.getMethods()) {
+                writeMethod(method, pool, output);
+            }
+
+            var classFile = new ByteArrayOutputStream();
+            output = new DataOutputStream(classFile);
+            output.writeInt(MAGIC);
+            output.writeShort(0);
+            output.writeShort(MAJOR_VERSION);
+            pool.write(output);
+            output.writeShort(getAccessFlags(jasminClass.getModifiers()) | ACC_SUPER);
+            output.writeShort(thisClass);
+            output.writeShort(superClass);
+            // interfaces
+            output.writeShort(0);
+            members.writeTo(output);
+            // attributes
+            output.writeShort(0);
+
+            return classFile.toByteArray();
+        } catch (IOException e) {
+            // written to memory
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return the number of registers the method uses: its arguments, "this" if it is not static, and every register
+     * its code loads or stores
+     */
+    public static int getMaxLocals(JasminMethod method) {
+        var maxLocals = getArgumentsSize(method.getDescriptor()) + (method.isStatic() ? 0 : 1);
+        for (var code : method.getCode()) {
+            if (!(code instanceof JasminInstruction instruction)) {
+                continue;
+            }
+            for (var opcode : LOCAL_OPCODES) {
+                var register = instruction.getLocal(opcode);
+                if (register >= 0) {
+                    maxLocals = Math.max(maxLocals, register + 1);
+                }
+            }
+        }
+        return maxLocals;
+    }
+
+    private static void writeField(JasminField field, ConstantPoolBuilder pool, DataOutputStream output)
+            throws IOException {
+        output.writeShort(getAccessFlags(field.modifiers()));
+        output.writeShort(pool.utf8(field.name()));
+        output.writeShort(pool.utf8(field.descriptor()));
+        // attributes
+        output.writeShort(0);
+    }
+
+    private static void writeMethod(JasminMethod method, ConstantPoolBuilder pool, DataOutputStream output)
+            throws IOException {
+        output.writeShort(getAccessFlags(method.getModifiers()));
+        output.writeShort(pool.utf8(method.getName()));
+        output.writeShort(pool.utf8(method.getDescriptor()));
+
+        var code = assemble(method.getCode(), pool);
+
+        // one attribute, the code
+        output.writeShort(1);
+        output.writeShort(pool.utf8("Code"));
+        // max_stack, max_locals, code_length, code, exception_table_length, attributes_count
+        output.writeInt(2 + 2 + 4 + code.length + 2 + 2);
+        output.writeShort(StackAnalysis.getMaxDepth(method.getCode()));
+        output.writeShort(getMaxLocals(method));
+        output.writeInt(code.length);
+        output.write(code);
+        output.writeShort(0);
+        output.writeShort(0);
+    }
+
+    /**
+     * Translates the body of a method to bytecode in two passes: the first finds the size of each instruction, and
+     * so the offset of each label, and the second writes the instructions with the offsets of their jumps.
+     */
+    static byte[] assemble(List<JasminCode> code, ConstantPoolBuilder pool) {
+        var labels = new HashMap<String, Integer>();
+        var offsets = new int[code.size()];
+        var offset = 0;
+        for (int i = 0; i < code.size(); i++) {
+            offsets[i] = offset;
+            if (code.get(i) instanceof JasminLabel label) {
+                labels.put(label.name(), offset);
+            } else {
+                offset += getSize((JasminInstruction) code.get(i), pool);
+            }
+        }
+
+        if (offset > MAX_CODE_LENGTH) {
+            throw new IllegalArgumentException("Method has " + offset + " bytes of code, the limit is "
+                    + MAX_CODE_LENGTH);
+        }
+
+        var bytes = new ByteArrayOutputStream();
+        var output = new DataOutputStream(bytes);
+        try {
+            for (int i = 0; i < code.size(); i++) {
+                if (code.get(i) instanceof JasminInstruction instruction) {
+                    writeInstruction(instruction, offsets[i], labels, pool, output);
+                }
+            }
+        } catch (IOException e) {
+            // written to memory
+            throw new IllegalStateException(e);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    private static int getSize(JasminInstruction instruction, ConstantPoolBuilder pool) {
+        var opcode = instruction.opcode();
+        if (!OPCODES.containsKey(opcode)) {
+            throw new IllegalArgumentException("Unsupported instruction '" + instruction + "'");
+        }
+
+        return switch (opcode) {
+            case "bipush", "newarray" -> 2;
+            case "sipush", "goto", "getstatic", "putstatic", "getfield", "putfield", "invokevirtual", "invokespecial",
+                    "invokestatic", "new", "anewarray", "checkcast", "instanceof", "ifnull", "ifnonnull" -> 3;
+            case "invokeinterface" -> 5;
+            case "ldc", "ldc_w" -> getConstantIndex(instruction, pool) > 0xFF ? 3 : 2;
+            case "iload", "aload", "istore", "astore" -> isWide(instruction) ? 4 : 2;
+            case "iinc" -> isWide(instruction) ? 6 : 3;
+            default -> opcode.startsWith("if") ? 3 : 1;
+        };
+    }
+
+    private static void writeInstruction(JasminInstruction instruction, int offset, Map<String, Integer> labels,
+                                         ConstantPoolBuilder pool, DataOutputStream output) throws IOException {
+        var opcode = instruction.opcode();
+        var operand = instruction.getOperand();
+
+        if (isWide(instruction)) {
+            output.writeByte(OPCODES.get("wide"));
+        }
+
+        if (opcode.equals("ldc") || opcode.equals("ldc_w")) {
+            var index = getConstantIndex(instruction, pool);
+            if (index > 0xFF) {
+                output.writeByte(OPCODES.get("ldc_w"));
+                output.writeShort(index);
+            } else {
+                output.writeByte(OPCODES.get("ldc"));
+                output.writeByte(index);
+            }
+            return;
+        }
+
+        output.writeByte(OPCODES.get(opcode));
+
+        switch (opcode) {
+            case "bipush" -> output.writeByte(Integer.parseInt(operand));
+            case "sipush" -> output.writeShort(Integer.parseInt(operand));
+            case "iload", "aload", "istore", "astore" -> writeLocal(Integer.parseInt(operand), instruction, output);
+            case "iinc" -> {
+                var value = Integer.parseInt(instruction.operands().get(1));
+                writeLocal(Integer.parseInt(operand), instruction, output);
+                if (isWide(instruction)) {
+                    output.writeShort(value);
+                } else {
+                    output.writeByte(value);
+                }
+            }
+            case "getstatic", "putstatic", "getfield", "putfield" -> {
+                var slash = operand.lastIndexOf('/');
+                output.writeShort(pool.fieldRef(operand.substring(0, slash), operand.substring(slash + 1),
+                        instruction.operands().get(1)));
+            }
+            case "invokevirtual", "invokespecial", "invokestatic" -> output.writeShort(getMethodRef(operand, pool));
+            case "invokeinterface" -> {
+                var paren = operand.indexOf('(');
+                var slash = operand.lastIndexOf('/', paren);
+                var descriptor = operand.substring(paren);
+                output.writeShort(pool.interfaceMethodRef(operand.substring(0, slash),
+                        operand.substring(slash + 1, paren), descriptor));
+                output.writeByte(getArgumentsSize(descriptor) + 1);
+                output.writeByte(0);
+            }
+            case "new", "anewarray", "checkcast", "instanceof" -> output.writeShort(pool.classRef(operand));
+            case "newarray" -> {
+                var type = ARRAY_TYPES.get(operand);
+                if (type == null) {
+                    throw new IllegalArgumentException("Unsupported array type '" + operand + "'");
+                }
+                output.writeByte(type);
+            }
+            default -> {
+                if (opcode.startsWith("if") || opcode.equals("goto")) {
+                    var target = labels.get(operand);
+                    if (target == null) {
+                        throw new IllegalArgumentException("Undefined label '" + operand + "'");
+                    }
+                    var jump = target - offset;
+                    if (jump < Short.MIN_VALUE || jump > Short.MAX_VALUE) {
+                        throw new IllegalArgumentException("Jump to label '" + operand + "' is too far");
+                    }
+                    output.writeShort(jump);
+                }
+            }
+        }
+    }
+
+    private static void writeLocal(int register, JasminInstruction instruction, DataOutputStream output)
+            throws IOException {
+        if (isWide(instruction)) {
+            output.writeShort(register);
+        } else {
+            output.writeByte(register);
+        }
+    }
+
+    /**
+     * @return true if the register, or the increment of an iinc, does not fit in a byte
+     */
+    private static boolean isWide(JasminInstruction instruction) {
+        return switch (instruction.opcode()) {
+            case "iload", "aload", "istore", "astore" -> Integer.parseInt(instruction.getOperand()) > 0xFF;
+            case "iinc" -> {
+                var value = Integer.parseInt(instruction.operands().get(1));
+                yield Integer.parseInt(instruction.getOperand()) > 0xFF
+                        || value < Byte.MIN_VALUE || value > Byte.MAX_VALUE;
+            }
+            default -> false;
+        };
+    }
+
+    /**
+     * @param operand e.g. "io/println(I)V"
+     */
+    private static int getMethodRef(String operand, ConstantPoolBuilder pool) {
+        var paren = operand.indexOf('(');
+        var slash = operand.lastIndexOf('/', paren);
+        return pool.methodRef(operand.substring(0, slash), operand.substring(slash + 1, paren),
+                operand.substring(paren));
+    }
+
+    /**
+     * @return the index of the constant of an ldc, which is a quoted string or an integer
+     */
+    private static int getConstantIndex(JasminInstruction instruction, ConstantPoolBuilder pool) {
+        var operand = instruction.getOperand();
+        if (operand.startsWith("\"")) {
+            return pool.string(unquote(operand));
+        }
+
+        try {
+            return pool.integer(Integer.parseInt(operand));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Unsupported constant '" + operand + "'", e);
+        }
+    }
+
+    private static String unquote(String literal) {
+        var value = new StringBuilder();
+        for (int i = 1; i < literal.length() - 1; i++) {
+            var c = literal.charAt(i);
+            if (c == '\\' && i + 1 < literal.length() - 1) {
+                c = literal.charAt(++i);
+                value.append(switch (c) {
+                    case 'n' -> '\n';
+                    case 't' -> '\t';
+                    case 'r' -> '\r';
+                    default -> c;
+                });
+            } else {
+                value.append(c);
+            }
+        }
+        return value.toString();
+    }
+
+    /**
+     * @param descriptor e.g. "(I[ILFoo;)V"
+     * @return the number of words the arguments take, where long and double take two
+     */
+    private static int getArgumentsSize(String descriptor) {
+        var size = 0;
+        var i = 1;
+        while (descriptor.charAt(i) != ')') {
+            var c = descriptor.charAt(i);
+            if (c == '[') {
+                while (descriptor.charAt(i) == '[') {
+                    i++;
+                }
+                if (descriptor.charAt(i) == 'L') {
+                    i = descriptor.indexOf(';', i);
+                }
+                size += 1;
+            } else if (c == 'L') {
+                i = descriptor.indexOf(';', i);
+                size += 1;
+            } else {
+                size += c == 'J' || c == 'D' ? 2 : 1;
+            }
+            i++;
+        }
+        return size;
+    }
+
+    private static int getAccessFlags(List<String> modifiers) {
+        var flags = 0;
+        for (var modifier : modifiers) {
+            flags |= switch (modifier) {
+                case "public" -> ACC_PUBLIC;
+                case "private" -> ACC_PRIVATE;
+                case "protected" -> ACC_PROTECTED;
+                case "static" -> ACC_STATIC;
+                case "final" -> ACC_FINAL;
+                case "abstract" -> ACC_ABSTRACT;
+                default -> throw new IllegalArgumentException("Unsupported modifier '" + modifier + "'");
+            };
+        }
+        return flags;
+    }
+}
@@ -0,0 +1,98 @@
+package pt.up.fe.comp2024.classfile;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Answers questions about the classes on the library path by reading their .class files, without loading them.
+ * <p>
+ * Each class is read at most once, hits and misses are both remembered, so one instance should live as long as a
+ * compilation session. The library path holds folders and jar files, searched in order.
+ */
+public class ClassHierarchy {
+
+    public static final String OBJECT = "java/lang/Object";
+
+    private final List<File> libraryPath;
+    private final Map<String, Optional<ClassInfo>> classes;
+
+    public ClassHierarchy(List<File> libraryPath) {
+        this.libraryPath = libraryPath;
+        this.classes = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Converts an import, as kept by the symbol table ("java, io, File"), or a Java name ("java.io.File") to the
+     * internal name of the class ("java/io/File").
+     */
+    public static String toInternalName(String className) {
+        return className.replace("[", "").replace("]", "").replace(" ", "")
+                .replace(',', '/').replace('.', '/');
+    }
+
+    /**
+     * @param internalName name of the class in internal form, e.g. "foo/bar/A"
+     * @return the class, if it is on the library path and could be read
+     */
+    public Optional<ClassInfo> find(String internalName) {
+        return classes.computeIfAbsent(internalName, this::load);
+    }
+
+    /**
+     * @return true if the class is the given super class, or extends or implements it, directly or not. A class that
+     * is not on the library path is only a subclass of itself
+     */
+    public boolean isSubclassOf(String internalName, String superName) {
+        if (superName.equals(OBJECT) || internalName.equals(superName)) {
+            return true;
+        }
+
+        var pending = new ArrayDeque<String>();
+        var visited = new HashSet<String>();
+        pending.add(internalName);
+
+        while (!pending.isEmpty()) {
+            var current = pending.poll();
+            if (!visited.add(current)) {
+                continue;
+            }
+
+            if (current.equals(superName)) {
+                return true;
+            }
+
+            find(current).ifPresent(info -> {
+                if (info.superName() != null) {
+                    pending.add(info.superName());
+                }
+                pending.addAll(info.interfaces());
+            });
+        }
+
+        return false;
+    }
+
+    /**
+     * @return number of classes looked up so far, found or not
+     */
+    public int getLookups() {
+        return classes.size();
+    }
+
+    private Optional<ClassInfo> load(String internalName) {
+        return LibraryPath.read(libraryPath, internalName + ".class").flatMap(bytes -> {
+            try {
+                return Optional.of(ClassFileReader.read(bytes));
+            } catch (IOException e) {
+                // corrupted class, same as a missing one
+                return Optional.empty();
+            }
+        });
+    }
+}
@@ -0,0 +1,38 @@
+package pt.up.fe.comp2024.classfile;
+
+import java.util.List;
+
+/**
+ * What the compiler needs to know about a compiled class, read from its .class file.
+ * <p>
+ * Class names are in internal form, e.g. "java/lang/Object". The super name is null only for java/lang/Object.
+ */
+public record ClassInfo(String name, String superName, List<String> interfaces, int access, List<Member> fields,
+                        List<Member> methods) {
+
+    public static final int ACC_STATIC = 0x0008;
+    public static final int ACC_VARARGS = 0x0080;
+    public static final int ACC_INTERFACE = 0x0200;
+
+    /**
+     * @return the class name without its package
+     */
+    public String simpleName() {
+        return name.substring(name.lastIndexOf('/') + 1);
+    }
+
+    public boolean isInterface() {
+        return (access & ACC_INTERFACE) != 0;
+    }
+
+    public record Member(String name, String descriptor, int access) {
+
+        public boolean isStatic() {
+            return (access & ACC_STATIC) != 0;
+        }
+
+        public boolean isVarargs() {
+            return (access & ACC_VARARGS) != 0;
+        }
+    }
+}
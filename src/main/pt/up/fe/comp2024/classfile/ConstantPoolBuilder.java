@@ -0,0 +1,120 @@
+package pt.up.fe.comp2024.classfile;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The constant pool of a class file being written. Each constant is added once, and later additions of the same
+ * constant return the index it already has.
+ */
+class ConstantPoolBuilder {
+
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_INTEGER = 3;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_STRING = 8;
+    private static final int CONSTANT_FIELDREF = 9;
+    private static final int CONSTANT_METHODREF = 10;
+    private static final int CONSTANT_INTERFACE_METHODREF = 11;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+    private static final int MAX_ENTRIES = 0xFFFF;
+
+    private final Map<String, Integer> indexes;
+    private final ByteArrayOutputStream bytes;
+    private final DataOutputStream output;
+    private int count;
+
+    ConstantPoolBuilder() {
+        this.indexes = new HashMap<>();
+        this.bytes = new ByteArrayOutputStream();
+        this.output = new DataOutputStream(bytes);
+        // entry 0 is unused
+        this.count = 1;
+    }
+
+    int utf8(String value) {
+        return add(CONSTANT_UTF8, value, out -> out.writeUTF(value));
+    }
+
+    int integer(int value) {
+        return add(CONSTANT_INTEGER, String.valueOf(value), out -> out.writeInt(value));
+    }
+
+    /**
+     * @param internalName e.g. "java/lang/Object", or a descriptor for array classes
+     */
+    int classRef(String internalName) {
+        var name = utf8(internalName);
+        return add(CONSTANT_CLASS, internalName, out -> out.writeShort(name));
+    }
+
+    int string(String value) {
+        var utf8 = utf8(value);
+        return add(CONSTANT_STRING, value, out -> out.writeShort(utf8));
+    }
+
+    int fieldRef(String owner, String name, String descriptor) {
+        return memberRef(CONSTANT_FIELDREF, owner, name, descriptor);
+    }
+
+    int methodRef(String owner, String name, String descriptor) {
+        return memberRef(CONSTANT_METHODREF, owner, name, descriptor);
+    }
+
+    int interfaceMethodRef(String owner, String name, String descriptor) {
+        return memberRef(CONSTANT_INTERFACE_METHODREF, owner, name, descriptor);
+    }
+
+    /**
+     * Writes the number of entries and the entries themselves.
+     */
+    void write(DataOutputStream out) throws IOException {
+        out.writeShort(count);
+        bytes.writeTo(out);
+    }
+
+    private int memberRef(int tag, String owner, String name, String descriptor) {
+        var ownerIndex = classRef(owner);
+        var nameIndex = utf8(name);
+        var descriptorIndex = utf8(descriptor);
+        var nameAndType = add(CONSTANT_NAME_AND_TYPE, name + ":" + descriptor, out -> {
+            out.writeShort(nameIndex);
+            out.writeShort(descriptorIndex);
+        });
+        return add(tag, owner + "." + name + ":" + descriptor, out -> {
+            out.writeShort(ownerIndex);
+            out.writeShort(nameAndType);
+        });
+    }
+
+    private int add(int tag, String value, EntryWriter entry) {
+        var key = tag + ":" + value;
+        var index = indexes.get(key);
+        if (index != null) {
+            return index;
+        }
+
+        if (count >= MAX_ENTRIES) {
+            throw new IllegalStateException("Constant pool has more than " + (MAX_ENTRIES - 1) + " entries");
+        }
+
+        try {
+            output.writeByte(tag);
+            entry.write(output);
+        } catch (IOException e) {
+            // written to memory
+            throw new IllegalStateException(e);
+        }
+
+        indexes.put(key, count);
+        return count++;
+    }
+
+    private interface EntryWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+}
@@ -0,0 +1,58 @@
+package pt.up.fe.comp2024.classfile;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Optional;
+import java.util.zip.ZipFile;
+
+/**
+ * Reads files from a library path, a list of folders and jar files searched in order.
+ */
+public class LibraryPath {
+
+    private LibraryPath() {
+    }
+
+    /**
+     * @param entryName path of the file inside a folder or jar of the library path, e.g. "foo/bar/A.class"
+     * @return the contents of the first readable match
+     */
+    public static Optional<byte[]> read(List<File> libraryPath, String entryName) {
+        for (var entry : libraryPath) {
+            try {
+                var bytes = entry.isDirectory() ? readFromFolder(entry, entryName) : readFromJar(entry, entryName);
+                if (bytes != null) {
+                    return Optional.of(bytes);
+                }
+            } catch (IOException e) {
+                // unreadable folder or jar, try the next entry of the library path
+            }
+        }
+
+        return Optional.empty();
+    }
+
+    private static byte[] readFromFolder(File folder, String entryName) throws IOException {
+        var file = new File(folder, entryName);
+        return file.isFile() ? Files.readAllBytes(file.toPath()) : null;
+    }
+
+    private static byte[] readFromJar(File jar, String entryName) throws IOException {
+        if (!jar.isFile()) {
+            return null;
+        }
+
+        try (var zip = new ZipFile(jar)) {
+            var entry = zip.getEntry(entryName);
+            if (entry == null) {
+                return null;
+            }
+
+            try (var input = zip.getInputStream(entry)) {
+                return input.readAllBytes();
+            }
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package pt.up.fe.comp2024.daemon;
+
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2024.CompilerPipeline;
+import pt.up.fe.comp2024.CompilerPipeline.PipelineResult;
+import pt.up.fe.comp2024.daemon.DaemonProtocol.ReportMessage;
+import pt.up.fe.comp2024.daemon.DaemonProtocol.Request;
+import pt.up.fe.comp2024.daemon.DaemonProtocol.Response;
+import pt.up.fe.comp2024.daemon.DaemonProtocol.Stats;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Long-lived compiler process that answers requests from {@link DaemonClient} over a loopback socket.
+ * <p>
+ * Keeps the compiler classes loaded and warm between compilations. Each connection is handled on its own thread,
+ * while the compilations themselves run on a bounded pool, so that many clients can be connected at once without
+ * oversubscribing the CPU.
+ * <p>
+ * A compilation that exceeds the timeout is answered with a timeout status and interrupted. The pipeline only checks
+ * for the interruption between stages, so the stage that is running finishes first, but no further stage runs.
+ */
+public class CompileDaemon implements AutoCloseable {
+
+    public static final long DEFAULT_TIMEOUT_MILLIS = 30_000;
+
+    private final CompilerPipeline pipeline;
+    private final long timeoutMillis;
+    private final ServerSocket serverSocket;
+    private final ExecutorService connectionPool;
+    private final ExecutorService compilePool;
+
+    private final LatencyStats latencies;
+    private final AtomicLong requests;
+    private final AtomicLong failed;
+    private final AtomicLong timedOut;
+    private final AtomicInteger activeRequests;
+    private final long startNanos;
+
+    /**
+     * Binds the daemon to the given port of the loopback interface. Port 0 picks any free port.
+     */
+    public CompileDaemon(CompilerPipeline pipeline, int port, long timeoutMillis) throws IOException {
+        this.pipeline = pipeline;
+        this.timeoutMillis = timeoutMillis;
+        this.serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        this.connectionPool = Executors.newCachedThreadPool();
+        this.compilePool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+
+        this.latencies = new LatencyStats();
+        this.requests = new AtomicLong();
+        this.failed = new AtomicLong();
+        this.timedOut = new AtomicLong();
+        this.activeRequests = new AtomicInteger();
+        this.startNanos = System.nanoTime();
+    }
+
+    public CompileDaemon(int port, long timeoutMillis) throws IOException {
+        this(new CompilerPipeline(), port, timeoutMillis);
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Accepts connections until the daemon is closed, either by {@link #close()} or by a shutdown request.
+     */
+    public void serve() {
+        while (!serverSocket.isClosed()) {
+            try {
+                var socket = serverSocket.accept();
+                connectionPool.submit(() -> handle(socket));
+            } catch (SocketException e) {
+                // server socket was closed
+                break;
+            } catch (IOException e) {
+                throw new RuntimeException("Could not accept daemon connection", e);
+            }
+        }
+    }
+
+    /**
+     * Starts serving on a background thread.
+     */
+    public Thread start() {
+        var thread = new Thread(this::serve, "jmm-daemon");
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    public Stats getStats() {
+        var stats = new Stats();
+        stats.uptimeMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        stats.requests = requests.get();
+        stats.failed = failed.get();
+        stats.timedOut = timedOut.get();
+        stats.activeRequests = activeRequests.get();
+        stats.p50Millis = latencies.getPercentile(50) / 1e6;
+        stats.p99Millis = latencies.getPercentile(99) / 1e6;
+        return stats;
+    }
+
+    @Override
+    public void close() {
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            throw new RuntimeException("Could not close daemon socket", e);
+        } finally {
+            connectionPool.shutdownNow();
+            compilePool.shutdownNow();
+        }
+    }
+
+    private void handle(Socket socket) {
+        try (socket;
+             var in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             var out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8))) {
+
+            // do not let a stalled client hold a connection thread forever
+            socket.setSoTimeout((int) timeoutMillis);
+
+            var request = DaemonProtocol.fromLine(in.readLine(), Request.class);
+            var response = switch (request.command) {
+                case DaemonProtocol.COMPILE -> compile(request);
+                case DaemonProtocol.STATS -> statsResponse();
+                case DaemonProtocol.SHUTDOWN -> {
+                    var reply = statsResponse();
+                    out.println(DaemonProtocol.toLine(reply));
+                    out.flush();
+                    close();
+                    yield null;
+                }
+                default -> throw new RuntimeException("Unknown daemon command '" + request.command + "'");
+            };
+
+            if (response != null) {
+                out.println(DaemonProtocol.toLine(response));
+            }
+        } catch (IOException | RuntimeException e) {
+            // the client is gone or sent garbage, nothing to answer to
+        }
+    }
+
+    private Response compile(Request request) {
+        requests.incrementAndGet();
+        activeRequests.incrementAndGet();
+        var start = System.nanoTime();
+
+        try {
+            var future = compilePool.submit(() -> pipeline.run(request.code, request.config));
+            PipelineResult result;
+            try {
+                result = future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                future.cancel(true);
+                latencies.record(System.nanoTime() - start);
+                timedOut.incrementAndGet();
+
+                var response = new Response();
+                response.status = DaemonProtocol.STATUS_TIMEOUT;
+                return response;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while compiling", e);
+            } catch (ExecutionException e) {
+                latencies.record(System.nanoTime() - start);
+                failed.incrementAndGet();
+
+                var response = new Response();
+                response.status = DaemonProtocol.STATUS_FAILED;
+                response.reports = List.of(ReportMessage.fromReport(Report.newError(Stage.GENERATION, -1, -1,
+                        "Unexpected exception while compiling: " + e.getCause(), e)));
+                return response;
+            }
+
+            latencies.record(System.nanoTime() - start);
+            if (result.hasErrors()) {
+                failed.incrementAndGet();
+            }
+
+            var response = new Response();
+            response.status = result.hasErrors() ? DaemonProtocol.STATUS_FAILED : DaemonProtocol.STATUS_OK;
+            response.reports = result.getReports().stream().map(ReportMessage::fromReport).toList();
+
+            var jasminResult = result.getJasminResult();
+            if (jasminResult != null) {
+                response.className = jasminResult.getClassName();
+                response.jasminCode = jasminResult.getJasminCode();
+            }
+
+            return response;
+        } finally {
+            activeRequests.decrementAndGet();
+        }
+    }
+
+    private Response statsResponse() {
+        var response = new Response();
+        response.status = DaemonProtocol.STATUS_OK;
+        response.stats = getStats();
+        return response;
+    }
+}
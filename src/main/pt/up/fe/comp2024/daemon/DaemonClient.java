@@ -0,0 +1,65 @@
+package pt.up.fe.comp2024.daemon;
+
+import pt.up.fe.comp2024.daemon.DaemonProtocol.Request;
+import pt.up.fe.comp2024.daemon.DaemonProtocol.Response;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Sends requests to a {@link CompileDaemon} running on the loopback interface.
+ */
+public class DaemonClient {
+
+    private final int port;
+    private final int timeoutMillis;
+
+    public DaemonClient(int port, int timeoutMillis) {
+        this.port = port;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public Response compile(String code, Map<String, String> config) {
+        var request = new Request();
+        request.command = DaemonProtocol.COMPILE;
+        request.code = code;
+        request.config = config;
+        return send(request);
+    }
+
+    public Response stats() {
+        var request = new Request();
+        request.command = DaemonProtocol.STATS;
+        return send(request);
+    }
+
+    public Response shutdown() {
+        var request = new Request();
+        request.command = DaemonProtocol.SHUTDOWN;
+        return send(request);
+    }
+
+    private Response send(Request request) {
+        try (var socket = new Socket()) {
+            socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), timeoutMillis);
+            socket.setSoTimeout(timeoutMillis);
+
+            var out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+            out.println(DaemonProtocol.toLine(request));
+            out.flush();
+
+            var in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            return DaemonProtocol.fromLine(in.readLine(), Response.class);
+        } catch (IOException e) {
+            throw new RuntimeException("Could not reach compile daemon on port " + port, e);
+        }
+    }
+}
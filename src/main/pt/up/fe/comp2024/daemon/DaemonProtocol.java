@@ -0,0 +1,85 @@
+package pt.up.fe.comp2024.daemon;
+
+import com.google.gson.Gson;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.ReportType;
+import pt.up.fe.comp.jmm.report.Stage;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Messages exchanged between the daemon and its clients.
+ * <p>
+ * Each message is a single line of JSON, a connection carries exactly one request followed by its response.
+ */
+public class DaemonProtocol {
+
+    public static final String COMPILE = "compile";
+    public static final String STATS = "stats";
+    public static final String SHUTDOWN = "shutdown";
+
+    public static final String STATUS_OK = "ok";
+    public static final String STATUS_FAILED = "failed";
+    public static final String STATUS_TIMEOUT = "timeout";
+
+    private static final Gson GSON = new Gson();
+
+    public static class Request {
+        public String command;
+        public Map<String, String> config;
+        public String code;
+    }
+
+    public static class Response {
+        public String status;
+        public List<ReportMessage> reports;
+        public String className;
+        public String jasminCode;
+        public Stats stats;
+    }
+
+    public static class Stats {
+        public long uptimeMillis;
+        public long requests;
+        public long failed;
+        public long timedOut;
+        public int activeRequests;
+        public double p50Millis;
+        public double p99Millis;
+    }
+
+    public static class ReportMessage {
+        public String type;
+        public String stage;
+        public int line;
+        public int column;
+        public String message;
+
+        public static ReportMessage fromReport(Report report) {
+            var message = new ReportMessage();
+            message.type = report.getType().name();
+            message.stage = report.getStage().name();
+            message.line = report.getLine();
+            message.column = report.getColumn();
+            message.message = report.getMessage();
+            return message;
+        }
+
+        public Report toReport() {
+            return new Report(ReportType.valueOf(type), Stage.valueOf(stage), line, column, message);
+        }
+    }
+
+    public static String toLine(Object message) {
+        return GSON.toJson(message);
+    }
+
+    public static <T> T fromLine(String line, Class<T> messageClass) {
+        if (line == null) {
+            throw new RuntimeException("Connection closed before a message was received");
+        }
+
+        return GSON.fromJson(line, messageClass);
+    }
+}
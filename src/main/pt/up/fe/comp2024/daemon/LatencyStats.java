@@ -0,0 +1,59 @@
+package pt.up.fe.comp2024.daemon;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the latency of the last compile requests handled by the daemon, and computes percentiles over them.
+ */
+public class LatencyStats {
+
+    private static final int DEFAULT_WINDOW = 1024;
+
+    private final long[] window;
+    private int next;
+    private int size;
+    private long total;
+
+    public LatencyStats(int windowSize) {
+        this.window = new long[windowSize];
+        this.next = 0;
+        this.size = 0;
+        this.total = 0;
+    }
+
+    public LatencyStats() {
+        this(DEFAULT_WINDOW);
+    }
+
+    public synchronized void record(long nanos) {
+        window[next] = nanos;
+        next = (next + 1) % window.length;
+        size = Math.min(size + 1, window.length);
+        total++;
+    }
+
+    /**
+     * @return the number of latencies recorded since the start, including the ones that left the window
+     */
+    public synchronized long getCount() {
+        return total;
+    }
+
+    /**
+     * Nearest-rank percentile over the latencies currently in the window.
+     *
+     * @param percentile value between 0 and 100
+     * @return the latency in nanoseconds, or 0 if nothing was recorded yet
+     */
+    public synchronized long getPercentile(double percentile) {
+        if (size == 0) {
+            return 0;
+        }
+
+        var sorted = Arrays.copyOf(window, size);
+        Arrays.sort(sorted);
+
+        var rank = (int) Math.ceil(percentile / 100.0 * size);
+        return sorted[Math.max(0, Math.min(size, rank) - 1)];
+    }
+}
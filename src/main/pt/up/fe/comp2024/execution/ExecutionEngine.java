@@ -0,0 +1,224 @@
+package pt.up.fe.comp2024.execution;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs the main method of compiled programs inside the current JVM, instead of starting a java process for each.
+ * <p>
+ * Every run gets its own class loader, which defines the classes of the program from memory and searches the
+ * classpath of the program and then the library path of the engine, e.g. "libs-jmm/compiled", for the others. Its
+ * parent is the platform class loader, so the static state of one run, including the one of the libraries, is never
+ * seen by another. The libraries are not in a parent loader shared by the runs because J-- calls their package
+ * private methods, e.g. the ones of io, which the JVM only allows within the same class loader. The standard streams
+ * of each run are its own as well, see {@link StandardStreams}.
+ * <p>
+ * Main runs on a thread of its own, which is abandoned if the timeout expires. It is interrupted, but a program stuck
+ * in a loop keeps running in the background, as a daemon thread, until the JVM exits. Its class loader is closed all
+ * the same, so the program can no longer load classes it did not load before. {@link System#exit(int)} is not
+ * intercepted and ends the whole JVM.
+ */
+public class ExecutionEngine implements AutoCloseable {
+
+    public static final long DEFAULT_TIMEOUT_MILLIS = 5_000;
+
+    private final List<File> libraryPath;
+    private final long timeoutMillis;
+    private final ExecutorService runPool;
+
+    /**
+     * @param parallelism how many programs {@link #submit(Program)} runs at the same time
+     */
+    public ExecutionEngine(List<File> libraryPath, long timeoutMillis, int parallelism) {
+        this.libraryPath = List.copyOf(libraryPath);
+        this.timeoutMillis = timeoutMillis;
+        this.runPool = Executors.newFixedThreadPool(parallelism, runnable -> {
+            var thread = new Thread(runnable, "jmm-execution");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public ExecutionEngine(List<File> libraryPath) {
+        this(libraryPath, DEFAULT_TIMEOUT_MILLIS, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Runs the program on the calling thread, waiting until main returns or the timeout expires.
+     */
+    public ExecutionResult run(Program program) {
+        StandardStreams.install();
+
+        var charset = Charset.defaultCharset();
+        var stdin = new ByteArrayInputStream(program.input().getBytes(charset));
+        var stdout = new ByteArrayOutputStream();
+        var stderr = new ByteArrayOutputStream();
+        var exitCode = new int[]{0};
+
+        var loader = newClassLoader(program);
+        try {
+            var main = new Thread(() -> {
+                StandardStreams.bind(stdin, stdout, stderr);
+                try {
+                    exitCode[0] = invokeMain(program, loader);
+                } finally {
+                    System.out.flush();
+                    System.err.flush();
+                    StandardStreams.unbind();
+                }
+            }, "main");
+            main.setDaemon(true);
+            main.setContextClassLoader(loader);
+            main.start();
+
+            try {
+                main.join(timeoutMillis);
+            } catch (InterruptedException e) {
+                main.interrupt();
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while running " + program.mainClass(), e);
+            }
+
+            if (main.isAlive()) {
+                main.interrupt();
+                // the program may still be printing, this is what it printed so far
+                return new ExecutionResult(ExecutionResult.TIMEOUT_EXIT_CODE, stdout.toString(charset),
+                        stderr.toString(charset), true);
+            }
+
+            return new ExecutionResult(exitCode[0], stdout.toString(charset), stderr.toString(charset), false);
+        } finally {
+            try {
+                loader.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Runs the program on the pool of the engine.
+     */
+    public Future<ExecutionResult> submit(Program program) {
+        return runPool.submit(() -> run(program));
+    }
+
+    /**
+     * Runs the programs concurrently, up to the parallelism of the engine at a time.
+     *
+     * @return the results, in the order of the programs
+     */
+    public List<ExecutionResult> runAll(List<Program> programs) {
+        var futures = programs.stream().map(this::submit).toList();
+
+        var results = new ArrayList<ExecutionResult>();
+        for (var future : futures) {
+            try {
+                results.add(future.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while running programs", e);
+            } catch (ExecutionException e) {
+                throw new RuntimeException("Unexpected exception while running programs", e.getCause());
+            }
+        }
+        return results;
+    }
+
+    @Override
+    public void close() {
+        runPool.shutdownNow();
+    }
+
+    /**
+     * @return 0 if main returned, or 1 after printing why it could not run or the exception it threw, as the java
+     * launcher does
+     */
+    private static int invokeMain(Program program, ClassLoader loader) {
+        try {
+            var mainClass = Class.forName(program.mainClass(), true, loader);
+            var main = mainClass.getMethod("main", String[].class);
+            if (!Modifier.isStatic(main.getModifiers())) {
+                throw new NoSuchMethodException(program.mainClass() + ".main is not static");
+            }
+            main.setAccessible(true);
+            main.invoke(null, (Object) program.args().toArray(String[]::new));
+            return 0;
+        } catch (InvocationTargetException e) {
+            System.err.print("Exception in thread \"main\" ");
+            e.getCause().printStackTrace(System.err);
+            return 1;
+        } catch (ClassNotFoundException | LinkageError e) {
+            System.err.println("Error: Could not find or load main class " + program.mainClass());
+            System.err.println("Caused by: " + e);
+            return 1;
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            System.err.println("Error: Main method not found in class " + program.mainClass()
+                    + ", please define the main method as:");
+            System.err.println("   public static void main(String[] args)");
+            return 1;
+        }
+    }
+
+    private MemoryClassLoader newClassLoader(Program program) {
+        var urls = new ArrayList<URL>();
+        for (var path : program.classpath()) {
+            urls.add(toUrl(path));
+        }
+        for (var path : libraryPath) {
+            urls.add(toUrl(path));
+        }
+
+        return new MemoryClassLoader(program.classes(), urls.toArray(URL[]::new));
+    }
+
+    private static URL toUrl(File path) {
+        try {
+            return path.getAbsoluteFile().toURI().toURL();
+        } catch (MalformedURLException e) {
+            throw new IllegalArgumentException("Invalid classpath entry '" + path + "'", e);
+        }
+    }
+
+    /**
+     * Defines the classes of a program from their bytes, or else from the folders and jars of its classpath.
+     */
+    private static class MemoryClassLoader extends URLClassLoader {
+
+        static {
+            registerAsParallelCapable();
+        }
+
+        private final Map<String, byte[]> classes;
+
+        private MemoryClassLoader(Map<String, byte[]> classes, URL[] classpath) {
+            super(classpath, ClassLoader.getPlatformClassLoader());
+            this.classes = classes;
+        }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            var bytes = classes.get(name);
+            if (bytes == null) {
+                return super.findClass(name);
+            }
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+}
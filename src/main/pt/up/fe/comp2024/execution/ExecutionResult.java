@@ -0,0 +1,14 @@
+package pt.up.fe.comp2024.execution;
+
+/**
+ * What a run of {@link ExecutionEngine} printed, and how it ended.
+ *
+ * @param exitCode 0 if main returned, 1 if it threw, as the java launcher does, and -1 if it timed out
+ * @param stdout   everything printed to the standard output
+ * @param stderr   everything printed to the standard error, including the stack trace of an uncaught exception
+ * @param timedOut true if main was still running when the timeout expired
+ */
+public record ExecutionResult(int exitCode, String stdout, String stderr, boolean timedOut) {
+
+    public static final int TIMEOUT_EXIT_CODE = -1;
+}
@@ -0,0 +1,78 @@
+package pt.up.fe.comp2024.execution;
+
+import jasmin.ClassFile;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.StringReader;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A program for {@link ExecutionEngine}: the class whose main method runs, the classes defined from memory, the
+ * folders and jars searched for the other classes, and the arguments and standard input of the run.
+ *
+ * @param mainClass the binary name of the class with the main method, e.g. "pkg.Foo"
+ * @param classes   the bytes of the .class files defined from memory, by binary name
+ * @param classpath folders and jars searched before the library path of the engine
+ * @param args      the arguments of main
+ * @param input     the text read from the standard input
+ */
+public record Program(String mainClass, Map<String, byte[]> classes, List<File> classpath, List<String> args,
+                      String input) {
+
+    public Program {
+        classes = Map.copyOf(classes);
+        classpath = List.copyOf(classpath);
+        args = List.copyOf(args);
+    }
+
+    /**
+     * @param className the internal name of the class, e.g. "pkg/Foo", as ClassFileWriter writes it
+     */
+    public static Program ofClassFile(String className, byte[] classFile) {
+        var name = className.replace('/', '.');
+        return new Program(name, Map.of(name, classFile), List.of(), List.of(), "");
+    }
+
+    /**
+     * Assembles the Jasmin code in memory, with the same assembler that would write the .class file.
+     *
+     * @throws IllegalArgumentException if the code does not assemble
+     */
+    public static Program ofJasmin(String jasminCode) {
+        var classFile = new ClassFile();
+        var bytes = new ByteArrayOutputStream();
+        // the scanner of the assembler keeps static state
+        synchronized (ClassFile.class) {
+            try {
+                classFile.readJasmin(new StringReader(jasminCode), "program.j", true);
+                if (classFile.errorCount() > 0) {
+                    throw new IllegalArgumentException("Jasmin code has " + classFile.errorCount() + " errors");
+                }
+                classFile.write(bytes);
+            } catch (IllegalArgumentException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IllegalArgumentException("Could not assemble Jasmin code", e);
+            }
+        }
+
+        return ofClassFile(classFile.getClassName(), bytes.toByteArray());
+    }
+
+    /**
+     * @param classpath the folders and jars with the main class and the classes it uses
+     */
+    public static Program ofClasspath(String mainClass, List<File> classpath) {
+        return new Program(mainClass, Map.of(), classpath, List.of(), "");
+    }
+
+    public Program withArgs(List<String> args) {
+        return new Program(mainClass, classes, classpath, args, input);
+    }
+
+    public Program withInput(String input) {
+        return new Program(mainClass, classes, classpath, args, input);
+    }
+}
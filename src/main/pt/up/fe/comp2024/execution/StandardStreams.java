@@ -0,0 +1,120 @@
+package pt.up.fe.comp2024.execution;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+
+/**
+ * Replaces System.in, System.out and System.err with streams that forward to the ones bound to the current
+ * thread, or to the original streams when there are none. This is how several programs running at the same time
+ * each read their own input and print to their own output.
+ * <p>
+ * Bindings are inherited by the threads a program starts.
+ */
+class StandardStreams {
+
+    private static final InheritableThreadLocal<Bound> BOUND = new InheritableThreadLocal<>();
+
+    private static final InputStream IN = new ThreadInputStream();
+    private static final PrintStream OUT = new PrintStream(new ThreadOutputStream(false), true,
+            Charset.defaultCharset());
+    private static final PrintStream ERR = new PrintStream(new ThreadOutputStream(true), true,
+            Charset.defaultCharset());
+
+    private static volatile InputStream originalIn;
+    private static volatile PrintStream originalOut;
+    private static volatile PrintStream originalErr;
+
+    private StandardStreams() {
+    }
+
+    /**
+     * Installs the forwarding streams, again if someone else replaced them since, e.g. a test runner capturing the
+     * output. The streams they replace become the ones used by unbound threads.
+     */
+    static synchronized void install() {
+        if (System.in != IN) {
+            originalIn = System.in;
+            System.setIn(IN);
+        }
+        if (System.out != OUT) {
+            originalOut = System.out;
+            System.setOut(OUT);
+        }
+        if (System.err != ERR) {
+            originalErr = System.err;
+            System.setErr(ERR);
+        }
+    }
+
+    /**
+     * Binds the streams to the current thread, until {@link #unbind()}.
+     */
+    static void bind(InputStream in, OutputStream out, OutputStream err) {
+        BOUND.set(new Bound(in, out, err));
+    }
+
+    static void unbind() {
+        BOUND.remove();
+    }
+
+    private record Bound(InputStream in, OutputStream out, OutputStream err) {
+    }
+
+    private static class ThreadInputStream extends InputStream {
+
+        private static InputStream target() {
+            var bound = BOUND.get();
+            return bound != null ? bound.in() : originalIn;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return target().read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return target().read(b, off, len);
+        }
+
+        @Override
+        public int available() throws IOException {
+            return target().available();
+        }
+    }
+
+    private static class ThreadOutputStream extends OutputStream {
+
+        private final boolean error;
+
+        private ThreadOutputStream(boolean error) {
+            this.error = error;
+        }
+
+        private OutputStream target() {
+            var bound = BOUND.get();
+            if (bound != null) {
+                return error ? bound.err() : bound.out();
+            }
+            return error ? originalErr : originalOut;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            target().write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            target().write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            target().flush();
+        }
+    }
+}
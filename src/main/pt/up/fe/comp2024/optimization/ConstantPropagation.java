@@ -0,0 +1,340 @@
+package pt.up.fe.comp2024.optimization;
+
+import pt.up.fe.comp.jmm.analysis.table.Symbol;
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.ast.JmmNodeImpl;
+import pt.up.fe.comp2024.ast.NodeUtils;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Propagates the constants assigned to local variables and folds the expressions that become constant, on the AST.
+ * <p>
+ * The values of the variables flow forwards through the statements: after an if they are the ones both branches agree
+ * on, and at the start of a while the ones that hold on entry and after any number of iterations, found by repeating
+ * the body until they stop changing. Ifs and whiles with a constant condition are replaced by the code that runs.
+ * Algebraic identities such as x * 1, x + 0, x * 0 and !!b are simplified as well. The whole method is processed again
+ * until nothing changes, since each simplification can make other values constant.
+ */
+public class ConstantPropagation {
+
+    /**
+     * Value of a variable that may hold different values, variables never assigned yet have no value at all.
+     */
+    private static final Object NOT_CONSTANT = new Object();
+
+    private static final List<String> POSITION = List.of("lineStart", "colStart", "lineEnd", "colEnd",
+            NodeUtils.ENCLOSING_METHOD);
+
+    private final Set<String> locals;
+    private int changes;
+
+    private ConstantPropagation(Set<String> locals) {
+        this.locals = locals;
+        this.changes = 0;
+    }
+
+    /**
+     * @return the number of changes made to the AST
+     */
+    public static int optimize(JmmNode root, SymbolTable table) {
+        var total = 0;
+
+        for (var method : root.getDescendants()) {
+            if (!method.isInstance("MethodDecl") && !method.isInstance("MainMethodDecl")) {
+                continue;
+            }
+
+            var methodName = method.isInstance("MainMethodDecl") ? "main" : method.get("name");
+            // parameters and fields may hold anything, only the locals are tracked
+            var locals = table.getLocalVariables(methodName).stream()
+                    .map(Symbol::getName)
+                    .collect(Collectors.toSet());
+            table.getParameters(methodName).forEach(param -> locals.remove(param.getName()));
+
+            int changes;
+            do {
+                var pass = new ConstantPropagation(locals);
+                pass.stmts(method.getChildren("Stmt"), new HashMap<>(), true);
+                changes = pass.changes;
+                total += changes;
+            } while (changes > 0);
+        }
+
+        return total;
+    }
+
+    /**
+     * @param rewrite if false the values are only computed, to find the values at the start of a loop
+     * @return the values of the variables after the statements
+     */
+    private Map<String, Object> stmts(List<JmmNode> stmts, Map<String, Object> values, boolean rewrite) {
+        for (var stmt : stmts) {
+            values = stmt(stmt, values, rewrite);
+        }
+        return values;
+    }
+
+    private Map<String, Object> stmt(JmmNode stmt, Map<String, Object> values, boolean rewrite) {
+        return switch (stmt.getKind()) {
+            case "AssignStmt" -> assignStmt(stmt, values, rewrite);
+            case "BlockStmt" -> stmts(stmt.getChildren("Stmt"), values, rewrite);
+            case "IfStmt" -> ifStmt(stmt, values, rewrite);
+            case "WhileStmt" -> whileStmt(stmt, values, rewrite);
+            default -> {
+                for (var child : stmt.getChildren()) {
+                    expr(child, values, rewrite);
+                }
+                yield values;
+            }
+        };
+    }
+
+    private Map<String, Object> assignStmt(JmmNode assignStmt, Map<String, Object> values, boolean rewrite) {
+        var lhs = assignStmt.getJmmChild(0);
+
+        if (!lhs.isInstance("VarRefExpr")) {
+            for (var child : lhs.getChildren()) {
+                expr(child, values, rewrite);
+            }
+            expr(assignStmt.getJmmChild(1), values, rewrite);
+            return values;
+        }
+
+        var value = expr(assignStmt.getJmmChild(1), values, rewrite);
+        var name = lhs.get("name");
+        if (locals.contains(name)) {
+            values.put(name, value == null ? NOT_CONSTANT : value);
+        }
+        return values;
+    }
+
+    private Map<String, Object> ifStmt(JmmNode ifStmt, Map<String, Object> values, boolean rewrite) {
+        var condition = expr(ifStmt.getJmmChild(0), values, rewrite);
+
+        if (condition instanceof Boolean taken) {
+            var branch = ifStmt.getJmmChild(taken ? 1 : 2);
+            if (rewrite) {
+                branch = replace(ifStmt, branch);
+            }
+            return stmt(branch, values, rewrite);
+        }
+
+        var thenValues = stmt(ifStmt.getJmmChild(1), new HashMap<>(values), rewrite);
+        var elseValues = stmt(ifStmt.getJmmChild(2), new HashMap<>(values), rewrite);
+        return merge(thenValues, elseValues);
+    }
+
+    private Map<String, Object> whileStmt(JmmNode whileStmt, Map<String, Object> values, boolean rewrite) {
+        // values at the start of the loop, for the condition of the first or any later iteration
+        var start = values;
+        while (true) {
+            var afterBody = expr(whileStmt.getJmmChild(0), start, false) == Boolean.FALSE
+                    ? start
+                    : stmt(whileStmt.getJmmChild(1), new HashMap<>(start), false);
+            var next = merge(values, afterBody);
+            if (next.equals(start)) {
+                break;
+            }
+            start = next;
+        }
+
+        var condition = expr(whileStmt.getJmmChild(0), start, rewrite);
+        if (condition == Boolean.FALSE) {
+            if (rewrite) {
+                replace(whileStmt, newNode("BlockStmt", "Stmt", whileStmt));
+            }
+            return start;
+        }
+
+        stmt(whileStmt.getJmmChild(1), new HashMap<>(start), rewrite);
+        return start;
+    }
+
+    private static Map<String, Object> merge(Map<String, Object> first, Map<String, Object> second) {
+        var names = new HashSet<>(first.keySet());
+        names.addAll(second.keySet());
+
+        var merged = new HashMap<String, Object>();
+        for (var name : names) {
+            var firstValue = first.get(name);
+            var secondValue = second.get(name);
+
+            // a variable not assigned yet on one of the paths takes the value of the other
+            if (firstValue == null || firstValue.equals(secondValue)) {
+                merged.put(name, secondValue);
+            } else if (secondValue == null) {
+                merged.put(name, firstValue);
+            } else {
+                merged.put(name, NOT_CONSTANT);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * @return the value of the expression, an Integer or a Boolean, or null if it is not constant
+     */
+    private Object expr(JmmNode expr, Map<String, Object> values, boolean rewrite) {
+        switch (expr.getKind()) {
+            case "IntegerLiteral":
+                return Integer.parseInt(expr.get("value"));
+            case "BooleanLiteral":
+                return Boolean.parseBoolean(expr.get("value"));
+            case "VarRefExpr": {
+                var value = values.get(expr.get("name"));
+                if (!locals.contains(expr.get("name")) || value == null || value == NOT_CONSTANT) {
+                    return null;
+                }
+                return fold(expr, value, rewrite);
+            }
+            case "ParenExpr": {
+                var value = expr(expr.getJmmChild(0), values, rewrite);
+                return value == null ? null : fold(expr, value, rewrite);
+            }
+            case "NotExpr":
+                return notExpr(expr, values, rewrite);
+            case "BinaryExpr":
+                return binaryExpr(expr, values, rewrite);
+            default:
+                for (var child : expr.getChildren()) {
+                    expr(child, values, rewrite);
+                }
+                return null;
+        }
+    }
+
+    private Object notExpr(JmmNode notExpr, Map<String, Object> values, boolean rewrite) {
+        var value = expr(notExpr.getJmmChild(0), values, rewrite);
+        if (value instanceof Boolean operand) {
+            return fold(notExpr, !operand, rewrite);
+        }
+
+        // !!b is b, also when the inner negation is in parentheses
+        var operand = unwrap(notExpr.getJmmChild(0));
+        if (rewrite && operand.isInstance("NotExpr")) {
+            replace(notExpr, operand.getJmmChild(0));
+        }
+        return null;
+    }
+
+    private static JmmNode unwrap(JmmNode expr) {
+        while (expr.isInstance("ParenExpr")) {
+            expr = expr.getJmmChild(0);
+        }
+        return expr;
+    }
+
+    private Object binaryExpr(JmmNode binaryExpr, Map<String, Object> values, boolean rewrite) {
+        var left = expr(binaryExpr.getJmmChild(0), values, rewrite);
+        var right = expr(binaryExpr.getJmmChild(1), values, rewrite);
+        var op = binaryExpr.get("op");
+
+        if (left != null && right != null) {
+            var value = evaluate(op, left, right);
+            return value == null ? null : fold(binaryExpr, value, rewrite);
+        }
+
+        var leftNode = binaryExpr.getJmmChild(0);
+        var rightNode = binaryExpr.getJmmChild(1);
+        JmmNode same = null;
+        Object value = null;
+
+        switch (op) {
+            case "+" -> same = Integer.valueOf(0).equals(right) ? leftNode : Integer.valueOf(0).equals(left) ? rightNode : null;
+            case "-", "/" -> same = Integer.valueOf(op.equals("-") ? 0 : 1).equals(right) ? leftNode : null;
+            case "*" -> {
+                same = Integer.valueOf(1).equals(right) ? leftNode : Integer.valueOf(1).equals(left) ? rightNode : null;
+                // the other operand must still be evaluated if it can have side effects
+                if (Integer.valueOf(0).equals(right) && isPure(leftNode)
+                        || Integer.valueOf(0).equals(left) && isPure(rightNode)) {
+                    value = 0;
+                }
+            }
+            case "&&" -> {
+                same = Boolean.TRUE.equals(right) ? leftNode : Boolean.TRUE.equals(left) ? rightNode : null;
+                // the right operand is not evaluated when the left one is false
+                if (Boolean.FALSE.equals(left) || Boolean.FALSE.equals(right) && isPure(leftNode)) {
+                    value = false;
+                }
+            }
+        }
+
+        if (value != null) {
+            return fold(binaryExpr, value, rewrite);
+        }
+        if (rewrite && same != null) {
+            replace(binaryExpr, same);
+        }
+        return null;
+    }
+
+    /**
+     * @return the value of the operation, or null if it must be left to run time, e.g. a division by zero
+     */
+    private static Object evaluate(String op, Object left, Object right) {
+        return switch (op) {
+            case "+" -> (Integer) left + (Integer) right;
+            case "-" -> (Integer) left - (Integer) right;
+            case "*" -> (Integer) left * (Integer) right;
+            case "/" -> (Integer) right == 0 ? null : (Integer) left / (Integer) right;
+            case "<" -> (Integer) left < (Integer) right;
+            case "&&" -> (Boolean) left && (Boolean) right;
+            default -> null;
+        };
+    }
+
+    /**
+     * @return true if evaluating the expression has no effect other than its value, it cannot call methods or throw
+     */
+    private static boolean isPure(JmmNode expr) {
+        var pure = switch (expr.getKind()) {
+            case "IntegerLiteral", "BooleanLiteral", "VarRefExpr", "ThisRefExpr", "ParenExpr", "NotExpr" -> true;
+            case "BinaryExpr" -> !expr.get("op").equals("/");
+            default -> false;
+        };
+
+        return pure && expr.getChildren().stream().allMatch(ConstantPropagation::isPure);
+    }
+
+    /**
+     * Replaces the expression by a literal with its value, if rewriting.
+     */
+    private Object fold(JmmNode expr, Object value, boolean rewrite) {
+        if (rewrite) {
+            var literal = value instanceof Boolean
+                    ? newNode("BooleanLiteral", "Expr", expr)
+                    : newNode("IntegerLiteral", "Expr", expr);
+            literal.put("value", value.toString());
+            replace(expr, literal);
+        }
+        return value;
+    }
+
+    private JmmNode replace(JmmNode node, JmmNode replacement) {
+        if (replacement.getParent() != null) {
+            replacement.detach();
+        }
+        node.replace(replacement);
+        changes++;
+        return replacement;
+    }
+
+    /**
+     * @return a node of the given kind, at the position of the node it replaces
+     */
+    private static JmmNode newNode(String kind, String rule, JmmNode replaced) {
+        var node = new JmmNodeImpl(kind);
+        node.setHierarchy(List.of(kind, rule));
+        for (var attribute : POSITION) {
+            replaced.getOptional(attribute).ifPresent(value -> node.put(attribute, value));
+        }
+        return node;
+    }
+}
@@ -2,9 +2,26 @@ package pt.up.fe.comp2024.optimization;
 
 import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
 import pt.up.fe.comp.jmm.ollir.JmmOptimization;
+import org.specs.comp.ollir.Method;
+import org.specs.comp.ollir.VarScope;
 import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.optimization.cfg.CallEffects;
+import pt.up.fe.comp2024.optimization.cfg.ControlFlowGraph;
+import pt.up.fe.comp2024.optimization.passes.DeadCodeElimination;
+import pt.up.fe.comp2024.optimization.ssa.ConditionalConstantPropagation;
+import pt.up.fe.comp2024.optimization.ssa.LoopInvariantCodeMotion;
+import pt.up.fe.comp2024.optimization.ssa.SsaForm;
+import pt.up.fe.comp2024.optimization.ssa.ValueNumbering;
+import pt.up.fe.comp2024.regalloc.OllirLiveness;
+import pt.up.fe.comp2024.regalloc.RegisterAllocator;
+import pt.up.fe.comp2024.stats.CompilerStats;
 
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 
 public class JmmOptimizationImpl implements JmmOptimization {
 
@@ -12,16 +29,96 @@ public class JmmOptimizationImpl implements JmmOptimization {
     public OllirResult toOllir(JmmSemanticsResult semanticsResult) {
 
         var visitor = new OllirGeneratorVisitor(semanticsResult.getSymbolTable());
-        var ollirCode = visitor.visit(semanticsResult.getRootNode());
+        var ollirCode = CompilerStats.measure("OLLIR/OllirGeneratorVisitor",
+                () -> visitor.visit(semanticsResult.getRootNode()));
 
         return new OllirResult(semanticsResult, ollirCode, Collections.emptyList());
     }
 
+    @Override
+    public JmmSemanticsResult optimize(JmmSemanticsResult semanticsResult) {
+
+        if (CompilerConfig.getOptimize(semanticsResult.getConfig())) {
+            CompilerStats.measure("OLLIR/ConstantPropagation",
+                    () -> ConstantPropagation.optimize(semanticsResult.getRootNode(), semanticsResult.getSymbolTable()));
+        }
+
+        return semanticsResult;
+    }
+
     @Override
     public OllirResult optimize(OllirResult ollirResult) {
 
-        //TODO: Do your OLLIR-based optimizations here
+        if (CompilerConfig.getOptimize(ollirResult.getConfig())) {
+            var callEffects = new CallEffects(ollirResult.getOllirClass());
+            for (var method : ollirResult.getOllirClass().getMethods()) {
+                optimizeSsa(method, callEffects);
+                CompilerStats.measure("OLLIR/DeadCodeElimination",
+                        () -> eliminateDeadCode(method, ollirResult.getReports()));
+            }
+        }
+
+        var numRegisters = CompilerConfig.getRegisterAllocation(ollirResult.getConfig());
+        if (numRegisters >= 0) {
+            var classUnit = ollirResult.getOllirClass();
+            OptUtils.buildCfgs(classUnit);
+            for (var method : classUnit.getMethods()) {
+                CompilerStats.measure("OLLIR/RegisterAllocation",
+                        () -> allocateRegisters(method, numRegisters, ollirResult.getReports()));
+            }
+        }
 
         return ollirResult;
     }
+
+    /**
+     * Propagates constants through the method in SSA form, removing the branches that can never be taken, and then
+     * removes the instructions that compute values already computed before and moves those that compute the same value
+     * on every iteration of a loop out of it.
+     */
+    private static void optimizeSsa(Method method, CallEffects callEffects) {
+        var ssa = SsaForm.build(ControlFlowGraph.of(method));
+        CompilerStats.measure("OLLIR/ConditionalConstantPropagation",
+                () -> ConditionalConstantPropagation.optimize(ssa));
+        CompilerStats.measure("OLLIR/ValueNumbering", () -> ValueNumbering.optimize(ssa));
+        CompilerStats.measure("OLLIR/LoopInvariantCodeMotion",
+                () -> LoopInvariantCodeMotion.optimize(ssa, callEffects));
+        ssa.destroy();
+    }
+
+    private static void eliminateDeadCode(Method method, List<Report> reports) {
+        var removed = DeadCodeElimination.optimize(method);
+        if (removed == 0) {
+            return;
+        }
+        reports.add(Report.newLog(Stage.OPTIMIZATION, -1, -1, "Dead code elimination removed " + removed
+                + " instructions from method '" + method.getMethodName() + "'", null));
+    }
+
+    /**
+     * Replaces the virtual registers of the variables of the method by the ones found by graph colouring, using at
+     * most the given number of registers, or as few as possible if it is 0.
+     */
+    private static void allocateRegisters(Method method, int numRegisters, List<Report> reports) {
+        var varTable = method.getVarTable();
+
+        // "this" and the parameters keep the registers the JVM puts them in
+        var fixed = new HashMap<String, Integer>();
+        varTable.forEach((name, descriptor) -> {
+            if (descriptor.getScope() == VarScope.PARAMETER || name.equals("this")) {
+                fixed.put(name, descriptor.getVirtualReg());
+            }
+        });
+
+        var allocator = new RegisterAllocator(new OllirLiveness(method).getInterferenceGraph(), fixed);
+        var registers = allocator.allocate(numRegisters);
+        if (registers.isEmpty()) {
+            var minimum = allocator.getMinimumRegisters();
+            reports.add(Report.newError(Stage.OPTIMIZATION, -1, -1, "Method '" + method.getMethodName()
+                    + "' needs at least " + minimum + " registers, but only " + numRegisters + " were given", null));
+            return;
+        }
+
+        registers.get().forEach((name, register) -> varTable.get(name).setVirtualReg(register));
+    }
 }
@@ -0,0 +1,31 @@
+package pt.up.fe.comp2024.optimization;
+
+/**
+ * State of one OLLIR generation, shared by the statement and expression generators.
+ * <p>
+ * Temporary names are numbered from zero in every method, so the code of a method only depends on the method itself,
+ * never on other methods or on other compilations running at the same time.
+ */
+public class OllirContext {
+
+    private int nextTemp;
+
+    public OllirContext() {
+        this.nextTemp = 0;
+    }
+
+    /**
+     * Restarts the numbering of temporaries, called when the generation of a method starts.
+     */
+    public void startMethod() {
+        nextTemp = 0;
+    }
+
+    public String newTemp() {
+        return newTemp("tmp");
+    }
+
+    public String newTemp(String prefix) {
+        return prefix + nextTemp++;
+    }
+}
@@ -1,5 +1,6 @@
 package pt.up.fe.comp2024.optimization;
 
+import org.specs.comp.ollir.ClassUnit;
 import org.specs.comp.ollir.Instruction;
 import pt.up.fe.comp.jmm.analysis.table.Type;
 import pt.up.fe.comp.jmm.ast.JmmNode;
@@ -12,24 +13,6 @@ import java.util.Optional;
 import static pt.up.fe.comp2024.ast.Kind.TYPE;
 
 public class OptUtils {
-    private static int tempNumber = -1;
-
-    public static String getTemp() {
-
-        return getTemp("tmp");
-    }
-
-    public static String getTemp(String prefix) {
-
-        return prefix + getNextTempNum();
-    }
-
-    public static int getNextTempNum() {
-
-        tempNumber += 1;
-        return tempNumber;
-    }
-
     public static String toOllirType(JmmNode typeNode) {
 
         TYPE.checkOrThrow(typeNode);
@@ -53,5 +36,18 @@ public class OptUtils {
         return type;
     }
 
+    /**
+     * Builds the control flow graph of every method that does not have one yet, parsing OLLIR code only builds the
+     * tables of variables. The graph of a method can only be built once.
+     */
+    public static void buildCfgs(ClassUnit classUnit) {
+        for (var method : classUnit.getMethods()) {
+            try {
+                method.getBeginNode();
+            } catch (RuntimeException e) {
+                method.buildCFG();
+            }
+        }
+    }
 
 }
@@ -0,0 +1,110 @@
+package pt.up.fe.comp2024.optimization.cfg;
+
+import org.specs.comp.ollir.Instruction;
+import org.specs.comp.ollir.InstructionType;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Instructions of a method that always run one after the other, only the first can be jumped to and only the last can
+ * jump elsewhere.
+ * <p>
+ * A block leaves through its jump target, when it ends with a goto or a conditional branch, and through its fall
+ * through block, the one that runs next when it does not jump.
+ */
+public class BasicBlock {
+
+    private final int id;
+    private final List<String> labels;
+    private final List<Instruction> instructions;
+    private final List<BasicBlock> predecessors;
+    private BasicBlock jumpTarget;
+    private BasicBlock fallthrough;
+
+    BasicBlock(int id) {
+        this.id = id;
+        this.labels = new ArrayList<>();
+        this.instructions = new ArrayList<>();
+        this.predecessors = new ArrayList<>();
+        this.jumpTarget = null;
+        this.fallthrough = null;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public List<String> getLabels() {
+        return labels;
+    }
+
+    /**
+     * @return the instructions of the block, which can be changed as long as only the last one jumps
+     */
+    public List<Instruction> getInstructions() {
+        return instructions;
+    }
+
+    /**
+     * @return the last instruction if it is a goto, a conditional branch or a return, otherwise null
+     */
+    public Instruction getTerminator() {
+        if (instructions.isEmpty()) {
+            return null;
+        }
+
+        var last = instructions.get(instructions.size() - 1);
+        return switch (last.getInstType()) {
+            case GOTO, BRANCH, RETURN -> last;
+            default -> null;
+        };
+    }
+
+    public boolean endsWith(InstructionType type) {
+        var terminator = getTerminator();
+        return terminator != null && terminator.getInstType() == type;
+    }
+
+    public BasicBlock getJumpTarget() {
+        return jumpTarget;
+    }
+
+    public void setJumpTarget(BasicBlock jumpTarget) {
+        this.jumpTarget = jumpTarget;
+    }
+
+    public BasicBlock getFallthrough() {
+        return fallthrough;
+    }
+
+    public void setFallthrough(BasicBlock fallthrough) {
+        this.fallthrough = fallthrough;
+    }
+
+    /**
+     * @return the blocks that can run right after this one, the jump target first
+     */
+    public List<BasicBlock> getSuccessors() {
+        var successors = new ArrayList<BasicBlock>(2);
+        if (jumpTarget != null) {
+            successors.add(jumpTarget);
+        }
+        if (fallthrough != null && fallthrough != jumpTarget) {
+            successors.add(fallthrough);
+        }
+        return successors;
+    }
+
+    /**
+     * @return the blocks that can run right before this one, as of the last {@link ControlFlowGraph#update()}
+     */
+    public List<BasicBlock> getPredecessors() {
+        return predecessors;
+    }
+
+    @Override
+    public String toString() {
+        return "B" + id;
+    }
+}
@@ -0,0 +1,155 @@
+package pt.up.fe.comp2024.optimization.cfg;
+
+import org.specs.comp.ollir.ArrayOperand;
+import org.specs.comp.ollir.AssignInstruction;
+import org.specs.comp.ollir.CallInstruction;
+import org.specs.comp.ollir.CallType;
+import org.specs.comp.ollir.ClassType;
+import org.specs.comp.ollir.ClassUnit;
+import org.specs.comp.ollir.ElementType;
+import org.specs.comp.ollir.Instruction;
+import org.specs.comp.ollir.LiteralElement;
+import org.specs.comp.ollir.Method;
+import org.specs.comp.ollir.Operand;
+import org.specs.comp.ollir.PutFieldInstruction;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * What the methods of a class may write when called: array elements, and which of its fields.
+ * <p>
+ * A method writes what its own instructions write and what the methods it calls do, found by repeating the analysis
+ * of every method until nothing changes, since methods can call each other. Methods of other classes are not known,
+ * so they are assumed to write any array and field, and so are the methods inherited from the super class. Methods of
+ * the class are assumed not to be overridden.
+ */
+public class CallEffects {
+
+    private static final String CONSTRUCTOR = "<init>";
+
+    private final ClassUnit classUnit;
+    private final Map<String, Effects> byMethod;
+
+    public CallEffects(ClassUnit classUnit) {
+        this.classUnit = classUnit;
+        this.byMethod = new HashMap<>();
+
+        for (var method : classUnit.getMethods()) {
+            byMethod.put(getName(method), new Effects());
+        }
+
+        var changed = true;
+        while (changed) {
+            changed = false;
+            for (var method : classUnit.getMethods()) {
+                var effects = byMethod.get(getName(method));
+                for (var instruction : method.getInstructions()) {
+                    changed |= effects.add(of(instruction));
+                }
+            }
+        }
+    }
+
+    private static String getName(Method method) {
+        return method.isConstructMethod() ? CONSTRUCTOR : method.getMethodName();
+    }
+
+    /**
+     * @return what running the instruction may write, including in the methods it calls
+     */
+    public Effects of(Instruction instruction) {
+        var effects = new Effects();
+
+        if (instruction instanceof AssignInstruction assign) {
+            effects.writesArrays = assign.getDest() instanceof ArrayOperand;
+            effects.add(of(assign.getRhs()));
+        } else if (instruction instanceof PutFieldInstruction putField) {
+            effects.fields.add(putField.getField().getName());
+        } else if (instruction instanceof CallInstruction call) {
+            effects.add(ofCall(call));
+        }
+
+        return effects;
+    }
+
+    private Effects ofCall(CallInstruction call) {
+        var invocationType = call.getInvocationType();
+        if (invocationType == CallType.NEW || invocationType == CallType.arraylength
+                || invocationType == CallType.ldc) {
+            return new Effects();
+        }
+
+        var name = ((LiteralElement) call.getMethodName()).getLiteral().replace("\"", "");
+        var ownClass = isOwnClass(call);
+
+        // the constructors of Object do nothing
+        if (name.equals(CONSTRUCTOR) && !ownClass) {
+            var superClass = classUnit.getSuperClass();
+            return superClass == null || superClass.equals("Object") || superClass.equals("java.lang.Object")
+                    ? new Effects()
+                    : Effects.unknown();
+        }
+
+        var callee = ownClass ? byMethod.get(name) : null;
+        return callee == null ? Effects.unknown() : callee;
+    }
+
+    private boolean isOwnClass(CallInstruction call) {
+        var caller = call.getCaller();
+        var type = caller.getType();
+        if (type.getTypeOfElement() == ElementType.THIS) {
+            return true;
+        }
+
+        // the callers of static methods are the names of their classes
+        var className = type instanceof ClassType classType ? classType.getName() : ((Operand) caller).getName();
+        return className.equals("this") || className.equals(classUnit.getClassName());
+    }
+
+    /**
+     * Array elements and fields some code may write.
+     */
+    public static class Effects {
+
+        private boolean writesArrays;
+        private boolean writesAllFields;
+        private final Set<String> fields;
+
+        /**
+         * Creates effects that write nothing, to add others to.
+         */
+        public Effects() {
+            this.writesArrays = false;
+            this.writesAllFields = false;
+            this.fields = new HashSet<>();
+        }
+
+        private static Effects unknown() {
+            var effects = new Effects();
+            effects.writesArrays = true;
+            effects.writesAllFields = true;
+            return effects;
+        }
+
+        public boolean writesArrays() {
+            return writesArrays;
+        }
+
+        public boolean writesField(String field) {
+            return writesAllFields || fields.contains(field);
+        }
+
+        /**
+         * @return true if the other effects added anything to these
+         */
+        public boolean add(Effects other) {
+            var changed = other.writesArrays && !writesArrays || other.writesAllFields && !writesAllFields;
+            writesArrays |= other.writesArrays;
+            writesAllFields |= other.writesAllFields;
+            return fields.addAll(other.fields) || changed;
+        }
+    }
+}
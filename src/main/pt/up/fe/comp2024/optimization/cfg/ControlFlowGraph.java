@@ -0,0 +1,325 @@
+package pt.up.fe.comp2024.optimization.cfg;
+
+import org.specs.comp.ollir.CondBranchInstruction;
+import org.specs.comp.ollir.Element;
+import org.specs.comp.ollir.ElementType;
+import org.specs.comp.ollir.GotoInstruction;
+import org.specs.comp.ollir.Instruction;
+import org.specs.comp.ollir.Method;
+import org.specs.comp.ollir.Operand;
+import org.specs.comp.ollir.VarScope;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Basic blocks of an OLLIR method, in the order their code is laid out, which passes can change and then write back
+ * to the method with {@link #write()}.
+ * <p>
+ * The control flow graph OLLIR builds links single instructions and cannot be rebuilt after the instructions change,
+ * so passes work on this one instead. Writing it back rebuilds the OLLIR graph as well.
+ */
+public class ControlFlowGraph {
+
+    private static final String LABEL_PREFIX = "block_";
+
+    private final Method method;
+    private final List<BasicBlock> blocks;
+    private final Set<String> usedLabels;
+    private int nextId;
+
+    private ControlFlowGraph(Method method) {
+        this.method = method;
+        this.blocks = new ArrayList<>();
+        this.usedLabels = new HashSet<>(method.getLabels().keySet());
+        this.nextId = 0;
+    }
+
+    public static ControlFlowGraph of(Method method) {
+        var cfg = new ControlFlowGraph(method);
+        cfg.build();
+        return cfg;
+    }
+
+    public Method getMethod() {
+        return method;
+    }
+
+    /**
+     * @return the blocks in layout order, the first being the entry of the method
+     */
+    public List<BasicBlock> getBlocks() {
+        return Collections.unmodifiableList(blocks);
+    }
+
+    public BasicBlock getEntry() {
+        return blocks.get(0);
+    }
+
+    /**
+     * @return true if the element is a local variable or parameter of the method, other than {@code this}
+     */
+    public boolean isVariable(Element element) {
+        if (!(element instanceof Operand operand) || operand.getType().getTypeOfElement() == ElementType.CLASS) {
+            return false;
+        }
+
+        var descriptor = method.getVarTable().get(operand.getName());
+        return descriptor != null && descriptor.getScope() != VarScope.FIELD && !operand.getName().equals("this");
+    }
+
+    private void build() {
+        var labelsByInstruction = new HashMap<Instruction, List<String>>();
+        method.getLabels().forEach((label, instruction) ->
+                labelsByInstruction.computeIfAbsent(instruction, key -> new ArrayList<>()).add(label));
+        labelsByInstruction.values().forEach(Collections::sort);
+
+        // a block starts at the first instruction, at every jump target and after every jump or return
+        BasicBlock current = null;
+        for (var instruction : method.getInstructions()) {
+            var labels = labelsByInstruction.getOrDefault(instruction, Collections.emptyList());
+            if (current == null || !labels.isEmpty() || current.getTerminator() != null) {
+                current = newBlock();
+                blocks.add(current);
+                current.getLabels().addAll(labels);
+            }
+            current.getInstructions().add(instruction);
+        }
+
+        if (blocks.isEmpty()) {
+            blocks.add(newBlock());
+        }
+
+        var byLabel = new HashMap<String, BasicBlock>();
+        for (var block : blocks) {
+            for (var label : block.getLabels()) {
+                byLabel.put(label, block);
+            }
+        }
+
+        for (int i = 0; i < blocks.size(); i++) {
+            var block = blocks.get(i);
+            var next = i + 1 < blocks.size() ? blocks.get(i + 1) : null;
+            var terminator = block.getTerminator();
+
+            if (terminator instanceof GotoInstruction gotoInstruction) {
+                block.setJumpTarget(byLabel.get(gotoInstruction.getLabel()));
+            } else if (terminator instanceof CondBranchInstruction branch) {
+                block.setJumpTarget(byLabel.get(branch.getLabel()));
+                block.setFallthrough(next);
+            } else if (terminator == null) {
+                block.setFallthrough(next);
+            }
+        }
+
+        update();
+    }
+
+    private BasicBlock newBlock() {
+        return new BasicBlock(nextId++);
+    }
+
+    /**
+     * Recomputes the predecessors of every block, after jump targets or fall through blocks change.
+     */
+    public void update() {
+        for (var block : blocks) {
+            block.getPredecessors().clear();
+        }
+        for (var block : blocks) {
+            for (var successor : block.getSuccessors()) {
+                successor.getPredecessors().add(block);
+            }
+        }
+    }
+
+    /**
+     * @return the blocks reachable from the entry, each one before its successors except along back edges
+     */
+    public List<BasicBlock> getReversePostorder() {
+        var postorder = new ArrayList<BasicBlock>();
+        var visited = new HashSet<BasicBlock>();
+
+        // each frame is a block and the position of the next successor to follow
+        var frames = new ArrayDeque<Map.Entry<BasicBlock, Integer>>();
+        visited.add(getEntry());
+        frames.push(Map.entry(getEntry(), 0));
+        while (!frames.isEmpty()) {
+            var frame = frames.pop();
+            var successors = frame.getKey().getSuccessors();
+
+            if (frame.getValue() < successors.size()) {
+                frames.push(Map.entry(frame.getKey(), frame.getValue() + 1));
+                var successor = successors.get(frame.getValue());
+                if (visited.add(successor)) {
+                    frames.push(Map.entry(successor, 0));
+                }
+                continue;
+            }
+
+            postorder.add(frame.getKey());
+        }
+
+        Collections.reverse(postorder);
+        return postorder;
+    }
+
+    /**
+     * Removes the blocks that cannot be reached from the entry.
+     *
+     * @return the blocks removed
+     */
+    public List<BasicBlock> removeUnreachableBlocks() {
+        var reachable = new HashSet<>(getReversePostorder());
+        var removed = blocks.stream().filter(block -> !reachable.contains(block)).toList();
+        removeBlocks(removed);
+        return removed;
+    }
+
+    /**
+     * Removes the given blocks, which no remaining block may jump or fall through to.
+     */
+    public void removeBlocks(Collection<BasicBlock> removed) {
+        var removedSet = new HashSet<>(removed);
+        if (removedSet.contains(getEntry())) {
+            throw new IllegalArgumentException("The entry block of method '" + method.getMethodName()
+                    + "' cannot be removed");
+        }
+
+        blocks.removeAll(removedSet);
+        update();
+    }
+
+    /**
+     * Places a new empty block on the edge between the two blocks, which only jumps to the second one.
+     *
+     * @return the new block
+     */
+    public BasicBlock splitEdge(BasicBlock from, BasicBlock to) {
+        var block = newBlock();
+
+        // placed right after the first block, so that it can be its fall through block
+        blocks.add(blocks.indexOf(from) + 1, block);
+        block.setFallthrough(to);
+
+        if (from.getJumpTarget() == to) {
+            from.setJumpTarget(block);
+        }
+        if (from.getFallthrough() == to) {
+            from.setFallthrough(block);
+        }
+
+        update();
+        return block;
+    }
+
+    /**
+     * Replaces the conditional branch that ends the block with a goto to its target if it is always taken, or removes
+     * it if it never is. {@link #update()} must be called afterwards.
+     */
+    public void foldBranch(BasicBlock block, boolean taken) {
+        var instructions = block.getInstructions();
+        instructions.remove(instructions.size() - 1);
+
+        if (taken) {
+            instructions.add(new GotoInstruction(getLabel(block.getJumpTarget())));
+            block.setFallthrough(null);
+        } else {
+            block.setJumpTarget(null);
+        }
+    }
+
+    /**
+     * @return the first label of the block, a new one if it has none
+     */
+    public String getLabel(BasicBlock block) {
+        if (block.getLabels().isEmpty()) {
+            var label = LABEL_PREFIX + block.getId();
+            while (!usedLabels.add(label)) {
+                label = label + "_";
+            }
+            block.getLabels().add(label);
+        }
+        return block.getLabels().get(0);
+    }
+
+    /**
+     * Replaces the instructions and labels of the method with the ones of the blocks, adding a goto wherever a block
+     * does not fall through to the block laid out after it, and rebuilds the OLLIR control flow graph.
+     */
+    public void write() {
+        var instructions = new ArrayList<Instruction>();
+        var labels = new HashMap<String, Instruction>();
+        var pendingLabels = new ArrayList<String>();
+
+        for (int i = 0; i < blocks.size(); i++) {
+            var block = blocks.get(i);
+            var next = i + 1 < blocks.size() ? blocks.get(i + 1) : null;
+
+            var terminator = block.getTerminator();
+            if (terminator instanceof GotoInstruction gotoInstruction) {
+                gotoInstruction.setLabel(getLabel(block.getJumpTarget()));
+            } else if (terminator instanceof CondBranchInstruction branch) {
+                branch.setLabel(getLabel(block.getJumpTarget()));
+            }
+
+            // a jump to the next block is not needed
+            var blockInstructions = new ArrayList<>(block.getInstructions());
+            if (terminator instanceof GotoInstruction && block.getJumpTarget() == next) {
+                blockInstructions.remove(blockInstructions.size() - 1);
+            }
+            if (block.getFallthrough() != null && block.getFallthrough() != next) {
+                blockInstructions.add(new GotoInstruction(getLabel(block.getFallthrough())));
+            }
+
+            // the labels of an empty block belong to the next instruction
+            pendingLabels.addAll(block.getLabels());
+            if (blockInstructions.isEmpty()) {
+                continue;
+            }
+            for (var label : pendingLabels) {
+                labels.put(label, blockInstructions.get(0));
+            }
+            pendingLabels.clear();
+            instructions.addAll(blockInstructions);
+        }
+
+        method.getInstructions().clear();
+        method.getInstructions().addAll(instructions);
+        method.getLabels().clear();
+        method.getLabels().putAll(labels);
+
+        rebuildOllirCfg(instructions);
+    }
+
+    private void rebuildOllirCfg(List<Instruction> instructions) {
+        var nodes = new LinkedHashSet<org.specs.comp.ollir.Node>(instructions);
+        try {
+            nodes.add(method.getBeginNode());
+            nodes.add(method.getEndNode());
+        } catch (RuntimeException e) {
+            // never built, there are no edges to clear
+        }
+
+        for (var node : nodes) {
+            node.getSuccessors().clear();
+            node.getPredecessors().clear();
+        }
+        method.buildCFG();
+    }
+
+    /**
+     * @return the number of instructions of every block, ignoring the gotos {@link #write()} may add
+     */
+    public int countInstructions() {
+        return blocks.stream().mapToInt(block -> block.getInstructions().size()).sum();
+    }
+}
@@ -0,0 +1,146 @@
+package pt.up.fe.comp2024.optimization.cfg;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immediate dominators and dominance frontiers of the blocks reachable in a control flow graph.
+ * <p>
+ * A block dominates another if every path from the entry to the second goes through the first. The immediate
+ * dominators are found with the iterative algorithm of Cooper, Harvey and Kennedy, which intersects the dominators of
+ * the predecessors of each block in reverse postorder until nothing changes.
+ */
+public class DominatorTree {
+
+    private final List<BasicBlock> order;
+    private final Map<BasicBlock, Integer> positions;
+    private final Map<BasicBlock, BasicBlock> idoms;
+    private final Map<BasicBlock, List<BasicBlock>> children;
+    private final Map<BasicBlock, Set<BasicBlock>> frontiers;
+
+    public DominatorTree(ControlFlowGraph cfg) {
+        this.order = cfg.getReversePostorder();
+        this.positions = new HashMap<>();
+        this.idoms = new HashMap<>();
+        this.children = new LinkedHashMap<>();
+        this.frontiers = new LinkedHashMap<>();
+
+        for (int i = 0; i < order.size(); i++) {
+            positions.put(order.get(i), i);
+            children.put(order.get(i), new ArrayList<>());
+            frontiers.put(order.get(i), new LinkedHashSet<>());
+        }
+
+        computeDominators();
+        computeFrontiers();
+    }
+
+    private void computeDominators() {
+        var entry = order.get(0);
+        idoms.put(entry, entry);
+
+        var changed = true;
+        while (changed) {
+            changed = false;
+            for (var block : order.subList(1, order.size())) {
+                BasicBlock idom = null;
+                for (var predecessor : block.getPredecessors()) {
+                    if (!idoms.containsKey(predecessor)) {
+                        continue;
+                    }
+                    idom = idom == null ? predecessor : intersect(predecessor, idom);
+                }
+
+                if (idoms.get(block) != idom) {
+                    idoms.put(block, idom);
+                    changed = true;
+                }
+            }
+        }
+
+        for (var block : order.subList(1, order.size())) {
+            children.get(idoms.get(block)).add(block);
+        }
+    }
+
+    private BasicBlock intersect(BasicBlock first, BasicBlock second) {
+        while (first != second) {
+            while (positions.get(first) > positions.get(second)) {
+                first = idoms.get(first);
+            }
+            while (positions.get(second) > positions.get(first)) {
+                second = idoms.get(second);
+            }
+        }
+        return first;
+    }
+
+    private void computeFrontiers() {
+        // a block is in the frontier of the dominators of its predecessors that do not strictly dominate it
+        for (var block : order) {
+            var predecessors = block.getPredecessors().stream().filter(positions::containsKey).toList();
+            if (predecessors.size() < 2) {
+                continue;
+            }
+
+            for (var predecessor : predecessors) {
+                var runner = predecessor;
+                while (runner != idoms.get(block)) {
+                    frontiers.get(runner).add(block);
+                    runner = idoms.get(runner);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the blocks reachable from the entry, in reverse postorder
+     */
+    public List<BasicBlock> getBlocks() {
+        return Collections.unmodifiableList(order);
+    }
+
+    public boolean isReachable(BasicBlock block) {
+        return positions.containsKey(block);
+    }
+
+    /**
+     * @return the immediate dominator of the block, or null for the entry
+     */
+    public BasicBlock getImmediateDominator(BasicBlock block) {
+        var idom = idoms.get(block);
+        return idom == block ? null : idom;
+    }
+
+    /**
+     * @return the blocks the given one immediately dominates
+     */
+    public List<BasicBlock> getChildren(BasicBlock block) {
+        return Collections.unmodifiableList(children.get(block));
+    }
+
+    public boolean dominates(BasicBlock dominator, BasicBlock block) {
+        var current = block;
+        while (current != null) {
+            if (current == dominator) {
+                return true;
+            }
+            current = getImmediateDominator(current);
+        }
+        return false;
+    }
+
+    /**
+     * @return the blocks where the dominance of the given one ends, i.e. those with a predecessor it dominates that it
+     * does not strictly dominate themselves
+     */
+    public Set<BasicBlock> getFrontier(BasicBlock block) {
+        return Collections.unmodifiableSet(frontiers.get(block));
+    }
+}
@@ -0,0 +1,216 @@
+package pt.up.fe.comp2024.optimization.cfg;
+
+import org.specs.comp.ollir.ArrayOperand;
+import org.specs.comp.ollir.AssignInstruction;
+import org.specs.comp.ollir.BinaryOpInstruction;
+import org.specs.comp.ollir.CallInstruction;
+import org.specs.comp.ollir.CondBranchInstruction;
+import org.specs.comp.ollir.Element;
+import org.specs.comp.ollir.ElementType;
+import org.specs.comp.ollir.GetFieldInstruction;
+import org.specs.comp.ollir.Instruction;
+import org.specs.comp.ollir.LiteralElement;
+import org.specs.comp.ollir.Operand;
+import org.specs.comp.ollir.OperationType;
+import org.specs.comp.ollir.PutFieldInstruction;
+import org.specs.comp.ollir.ReturnInstruction;
+import org.specs.comp.ollir.SingleOpInstruction;
+import org.specs.comp.ollir.UnaryOpInstruction;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.UnaryOperator;
+
+/**
+ * Operands an OLLIR instruction reads and writes, and what running it can do.
+ * <p>
+ * Variables are renamed by changing the name of the operands returned here, since the OLLIR parser creates one operand
+ * for each place a variable appears. Operands that may become a literal are replaced with {@link #replaceUses}.
+ */
+public class Instructions {
+
+    private Instructions() {
+    }
+
+    /**
+     * @return the variable the instruction writes, if it assigns to a whole variable rather than an array element
+     */
+    public static Optional<Operand> getDef(Instruction instruction) {
+        if (instruction instanceof AssignInstruction assign
+                && assign.getDest() instanceof Operand dest
+                && !(dest instanceof ArrayOperand)) {
+            return Optional.of(dest);
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * @return the operands the instruction reads, including arrays and their indexes, in the order they are evaluated;
+     * the names of classes whose static methods are called are included too and must be told apart by the caller
+     */
+    public static List<Operand> getUses(Instruction instruction) {
+        var uses = new ArrayList<Operand>();
+        addUses(instruction, uses);
+        return uses;
+    }
+
+    private static void addUses(Instruction instruction, List<Operand> uses) {
+        if (instruction instanceof AssignInstruction assign) {
+            if (assign.getDest() instanceof ArrayOperand dest) {
+                addOperands(dest, uses);
+            }
+            addUses(assign.getRhs(), uses);
+        } else if (instruction instanceof SingleOpInstruction singleOp) {
+            addOperands(singleOp.getSingleOperand(), uses);
+        } else if (instruction instanceof BinaryOpInstruction binaryOp) {
+            addOperands(binaryOp.getLeftOperand(), uses);
+            addOperands(binaryOp.getRightOperand(), uses);
+        } else if (instruction instanceof UnaryOpInstruction unaryOp) {
+            addOperands(unaryOp.getOperand(), uses);
+        } else if (instruction instanceof CondBranchInstruction branch) {
+            addUses(branch.getCondition(), uses);
+        } else if (instruction instanceof ReturnInstruction ret) {
+            if (ret.hasReturnValue()) {
+                addOperands(ret.getOperand(), uses);
+            }
+        } else if (instruction instanceof CallInstruction call) {
+            addOperands(call.getCaller(), uses);
+            call.getArguments().forEach(argument -> addOperands(argument, uses));
+        } else if (instruction instanceof GetFieldInstruction getField) {
+            addOperands(getField.getObject(), uses);
+        } else if (instruction instanceof PutFieldInstruction putField) {
+            addOperands(putField.getObject(), uses);
+            addOperands(putField.getValue(), uses);
+        }
+    }
+
+    private static void addOperands(Element element, List<Operand> operands) {
+        if (element instanceof ArrayOperand array) {
+            operands.add(array);
+            for (var index : array.getIndexOperands()) {
+                addOperands(index, operands);
+            }
+        } else if (element instanceof Operand operand) {
+            operands.add(operand);
+        }
+    }
+
+    /**
+     * Replaces the elements the instruction reads, except arrays, callers and objects whose fields are accessed,
+     * with the result of the function, which returns the element itself to keep it.
+     */
+    public static void replaceUses(Instruction instruction, UnaryOperator<Element> replacement) {
+        if (instruction instanceof AssignInstruction assign) {
+            replaceIndexes(assign.getDest(), replacement);
+            replaceUses(assign.getRhs(), replacement);
+        } else if (instruction instanceof SingleOpInstruction singleOp) {
+            singleOp.setSingleOperand(replace(singleOp.getSingleOperand(), replacement));
+        } else if (instruction instanceof BinaryOpInstruction binaryOp) {
+            binaryOp.setLeftOperand(replace(binaryOp.getLeftOperand(), replacement));
+            binaryOp.setRightOperand(replace(binaryOp.getRightOperand(), replacement));
+        } else if (instruction instanceof UnaryOpInstruction unaryOp) {
+            unaryOp.setOperand(replace(unaryOp.getOperand(), replacement));
+        } else if (instruction instanceof CondBranchInstruction branch) {
+            replaceUses(branch.getCondition(), replacement);
+        } else if (instruction instanceof ReturnInstruction ret) {
+            if (ret.hasReturnValue()) {
+                ret.setOperand(replace(ret.getOperand(), replacement));
+            }
+        } else if (instruction instanceof CallInstruction call) {
+            replaceIndexes(call.getCaller(), replacement);
+            call.getArguments().replaceAll(argument -> replace(argument, replacement));
+        } else if (instruction instanceof PutFieldInstruction putField) {
+            var operands = new ArrayList<>(putField.getOperands());
+            operands.set(2, replace(operands.get(2), replacement));
+            putField.setOperands(operands);
+        }
+    }
+
+    private static Element replace(Element element, UnaryOperator<Element> replacement) {
+        if (element instanceof ArrayOperand array) {
+            replaceIndexes(array, replacement);
+            return array;
+        }
+        return element instanceof Operand ? replacement.apply(element) : element;
+    }
+
+    private static void replaceIndexes(Element element, UnaryOperator<Element> replacement) {
+        if (element instanceof ArrayOperand array) {
+            array.getIndexOperands().replaceAll(index -> replace(index, replacement));
+        }
+    }
+
+    /**
+     * @return true if running the instruction can do more than produce its value: call methods, write to fields or
+     * arrays, jump, or throw, e.g. when reading outside an array or dividing by zero
+     */
+    public static boolean hasSideEffects(Instruction instruction) {
+        if (instruction instanceof AssignInstruction assign) {
+            return assign.getDest() instanceof ArrayOperand || hasSideEffects(assign.getRhs());
+        }
+        if (instruction instanceof SingleOpInstruction singleOp) {
+            return singleOp.getSingleOperand() instanceof ArrayOperand;
+        }
+        if (instruction instanceof UnaryOpInstruction unaryOp) {
+            return unaryOp.getOperand() instanceof ArrayOperand;
+        }
+        if (instruction instanceof BinaryOpInstruction binaryOp) {
+            var divisor = binaryOp.getRightOperand();
+            var mayDivideByZero = binaryOp.getOperation().getOpType() == OperationType.DIV
+                    && !(divisor instanceof LiteralElement literal && !literal.getLiteral().equals("0"));
+            return mayDivideByZero || binaryOp.getOperands().stream().anyMatch(ArrayOperand.class::isInstance);
+        }
+        return !(instruction instanceof GetFieldInstruction);
+    }
+
+    /**
+     * @return the value of the instruction if it only reads integer or boolean literals, booleans as 0 or 1, or null
+     */
+    public static Integer evaluate(Instruction instruction) {
+        if (instruction instanceof SingleOpInstruction singleOp) {
+            return getLiteral(singleOp.getSingleOperand());
+        }
+        if (instruction instanceof UnaryOpInstruction unaryOp) {
+            var operand = getLiteral(unaryOp.getOperand());
+            var opType = unaryOp.getOperation().getOpType();
+            return operand == null || opType != OperationType.NOTB && opType != OperationType.NOT ? null : 1 - operand;
+        }
+        if (instruction instanceof BinaryOpInstruction binaryOp) {
+            var left = getLiteral(binaryOp.getLeftOperand());
+            var right = getLiteral(binaryOp.getRightOperand());
+            return left == null || right == null ? null : fold(binaryOp.getOperation().getOpType(), left, right);
+        }
+        return null;
+    }
+
+    private static Integer getLiteral(Element element) {
+        if (!(element instanceof LiteralElement literal)) {
+            return null;
+        }
+        var type = literal.getType().getTypeOfElement();
+        return type == ElementType.INT32 || type == ElementType.BOOLEAN ? Integer.parseInt(literal.getLiteral()) : null;
+    }
+
+    /**
+     * @return the result of the operation on two integers, booleans as 0 or 1, or null if it must be left to run time,
+     * e.g. a division by zero
+     */
+    public static Integer fold(OperationType opType, int left, int right) {
+        return switch (opType) {
+            case ADD -> left + right;
+            case SUB -> left - right;
+            case MUL -> left * right;
+            case DIV -> right == 0 ? null : left / right;
+            case LTH -> left < right ? 1 : 0;
+            case GTH -> left > right ? 1 : 0;
+            case LTE -> left <= right ? 1 : 0;
+            case GTE -> left >= right ? 1 : 0;
+            case EQ -> left == right ? 1 : 0;
+            case NEQ -> left != right ? 1 : 0;
+            case ANDB, AND -> left & right;
+            case ORB, OR -> left | right;
+            default -> null;
+        };
+    }
+}
@@ -0,0 +1,77 @@
+package pt.up.fe.comp2024.optimization.cfg;
+
+import org.specs.comp.ollir.Operand;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Variables live at the start and end of each block of a control flow graph, i.e. those that may still be read before
+ * being written again.
+ */
+public class Liveness {
+
+    private final Map<BasicBlock, Set<String>> liveIn;
+    private final Map<BasicBlock, Set<String>> liveOut;
+
+    /**
+     * @param isVariable tells the operands of variables apart from those of fields, classes and {@code this}
+     */
+    public Liveness(ControlFlowGraph cfg, Predicate<Operand> isVariable) {
+        this.liveIn = new HashMap<>();
+        this.liveOut = new HashMap<>();
+
+        var uses = new HashMap<BasicBlock, Set<String>>();
+        var defs = new HashMap<BasicBlock, Set<String>>();
+        for (var block : cfg.getBlocks()) {
+            var blockUses = new HashSet<String>();
+            var blockDefs = new HashSet<String>();
+            for (var instruction : block.getInstructions()) {
+                for (var use : Instructions.getUses(instruction)) {
+                    if (isVariable.test(use) && !blockDefs.contains(use.getName())) {
+                        blockUses.add(use.getName());
+                    }
+                }
+                Instructions.getDef(instruction).filter(isVariable).ifPresent(def -> blockDefs.add(def.getName()));
+            }
+            uses.put(block, blockUses);
+            defs.put(block, blockDefs);
+            liveIn.put(block, new HashSet<>());
+            liveOut.put(block, new HashSet<>());
+        }
+
+        // the blocks are visited from the end, so that most values flow backwards in a single pass
+        var order = new ArrayList<>(cfg.getBlocks());
+        Collections.reverse(order);
+        var changed = true;
+        while (changed) {
+            changed = false;
+            for (var block : order) {
+                var out = new HashSet<String>();
+                for (var successor : block.getSuccessors()) {
+                    out.addAll(liveIn.get(successor));
+                }
+
+                var in = new HashSet<>(out);
+                in.removeAll(defs.get(block));
+                in.addAll(uses.get(block));
+
+                changed |= !out.equals(liveOut.put(block, out));
+                changed |= !in.equals(liveIn.put(block, in));
+            }
+        }
+    }
+
+    public Set<String> getLiveIn(BasicBlock block) {
+        return Collections.unmodifiableSet(liveIn.get(block));
+    }
+
+    public Set<String> getLiveOut(BasicBlock block) {
+        return Collections.unmodifiableSet(liveOut.get(block));
+    }
+}
@@ -0,0 +1,92 @@
+package pt.up.fe.comp2024.optimization.cfg;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Natural loop of a control flow graph: a header that dominates the blocks jumping back to it, and every block that
+ * can reach those without going through the header.
+ * <p>
+ * The loops of all back edges to the same header are merged into one, so loops are either nested or disjoint.
+ */
+public class Loop {
+
+    private final BasicBlock header;
+    private final Set<BasicBlock> blocks;
+
+    private Loop(BasicBlock header, Set<BasicBlock> blocks) {
+        this.header = header;
+        this.blocks = blocks;
+    }
+
+    /**
+     * @return the loops of the reachable blocks of the graph, each one before the loops it is nested in
+     */
+    public static List<Loop> find(ControlFlowGraph cfg, DominatorTree dominators) {
+        var bodies = new LinkedHashMap<BasicBlock, Set<BasicBlock>>();
+
+        for (var block : dominators.getBlocks()) {
+            for (var successor : block.getSuccessors()) {
+                if (!dominators.dominates(successor, block)) {
+                    continue;
+                }
+
+                // walks backwards from the block jumping back, the header stops the walk as it dominates all of them
+                var body = bodies.computeIfAbsent(successor, header -> new HashSet<>(List.of(header)));
+                var pending = new ArrayDeque<BasicBlock>();
+                if (body.add(block)) {
+                    pending.push(block);
+                }
+                while (!pending.isEmpty()) {
+                    for (var predecessor : pending.pop().getPredecessors()) {
+                        if (dominators.isReachable(predecessor) && body.add(predecessor)) {
+                            pending.push(predecessor);
+                        }
+                    }
+                }
+            }
+        }
+
+        return bodies.entrySet().stream()
+                .map(entry -> {
+                    var blocks = new LinkedHashSet<BasicBlock>();
+                    cfg.getBlocks().stream().filter(entry.getValue()::contains).forEach(blocks::add);
+                    return new Loop(entry.getKey(), blocks);
+                })
+                .sorted(Comparator.comparingInt(loop -> loop.blocks.size()))
+                .toList();
+    }
+
+    public BasicBlock getHeader() {
+        return header;
+    }
+
+    /**
+     * @return the blocks of the loop, the header included, in layout order
+     */
+    public Set<BasicBlock> getBlocks() {
+        return Collections.unmodifiableSet(blocks);
+    }
+
+    public boolean contains(BasicBlock block) {
+        return blocks.contains(block);
+    }
+
+    /**
+     * @return the predecessors of the header from outside the loop, the blocks the loop is entered from
+     */
+    public List<BasicBlock> getEntries() {
+        return header.getPredecessors().stream().filter(block -> !contains(block)).toList();
+    }
+
+    @Override
+    public String toString() {
+        return "Loop" + blocks;
+    }
+}
@@ -0,0 +1,136 @@
+package pt.up.fe.comp2024.optimization.passes;
+
+import org.specs.comp.ollir.CondBranchInstruction;
+import org.specs.comp.ollir.GotoInstruction;
+import org.specs.comp.ollir.Method;
+import pt.up.fe.comp2024.optimization.cfg.ControlFlowGraph;
+import pt.up.fe.comp2024.optimization.cfg.Instructions;
+import pt.up.fe.comp2024.optimization.cfg.Liveness;
+
+import java.util.HashSet;
+
+/**
+ * Removes the code of an OLLIR method that cannot run or whose result is never used.
+ * <p>
+ * Branches on conditions made only of literals become gotos or are removed, and so are the blocks no path from the
+ * start of the method reaches anymore. Assignments to variables that are not live afterwards are removed as long as
+ * computing their value has no other effect, calls are always kept. Jumps through blocks left empty go straight to
+ * where those blocks lead, and branches whose both ways lead to the same block are removed. Since removing an
+ * assignment can make the variables it reads dead too, this is repeated until nothing changes.
+ */
+public class DeadCodeElimination {
+
+    private DeadCodeElimination() {
+    }
+
+    /**
+     * @return the number of instructions removed from the method
+     */
+    public static int optimize(Method method) {
+        var before = method.getInstructions().size();
+
+        var cfg = ControlFlowGraph.of(method);
+        foldBranches(cfg);
+        cfg.removeUnreachableBlocks();
+        boolean changed;
+        do {
+            changed = removeDeadStores(cfg);
+            changed |= removeEmptyBlocks(cfg);
+        } while (changed);
+        cfg.write();
+
+        return before - method.getInstructions().size();
+    }
+
+    private static void foldBranches(ControlFlowGraph cfg) {
+        for (var block : cfg.getBlocks()) {
+            if (!(block.getTerminator() instanceof CondBranchInstruction branch)) {
+                continue;
+            }
+
+            var condition = Instructions.evaluate(branch.getCondition());
+            if (condition == null) {
+                continue;
+            }
+
+            cfg.foldBranch(block, condition != 0);
+        }
+        cfg.update();
+    }
+
+    /**
+     * Makes the jumps to blocks that only lead to another block go to that block instead, and removes the branches
+     * that lead to the same block whichever way they go.
+     *
+     * @return true if any block or branch was removed
+     */
+    private static boolean removeEmptyBlocks(ControlFlowGraph cfg) {
+        var changed = false;
+
+        for (var block : cfg.getBlocks()) {
+            var instructions = block.getInstructions();
+            var successors = block.getSuccessors();
+            var empty = instructions.isEmpty()
+                    || instructions.size() == 1 && block.getTerminator() instanceof GotoInstruction;
+            if (block == cfg.getEntry() || !empty || successors.size() != 1 || successors.get(0) == block) {
+                continue;
+            }
+
+            for (var predecessor : block.getPredecessors()) {
+                if (predecessor.getJumpTarget() == block) {
+                    predecessor.setJumpTarget(successors.get(0));
+                }
+                if (predecessor.getFallthrough() == block) {
+                    predecessor.setFallthrough(successors.get(0));
+                }
+            }
+            cfg.update();
+        }
+
+        for (var block : cfg.getBlocks()) {
+            if (block.getTerminator() instanceof CondBranchInstruction branch
+                    && block.getJumpTarget() == block.getFallthrough()
+                    && !Instructions.hasSideEffects(branch.getCondition())) {
+                cfg.foldBranch(block, false);
+                changed = true;
+            }
+        }
+        cfg.update();
+
+        return !cfg.removeUnreachableBlocks().isEmpty() || changed;
+    }
+
+    /**
+     * @return true if any assignment was removed
+     */
+    private static boolean removeDeadStores(ControlFlowGraph cfg) {
+        var liveness = new Liveness(cfg, cfg::isVariable);
+        var removed = false;
+
+        for (var block : cfg.getBlocks()) {
+            var live = new HashSet<>(liveness.getLiveOut(block));
+            var instructions = block.getInstructions();
+
+            for (int i = instructions.size() - 1; i >= 0; i--) {
+                var instruction = instructions.get(i);
+                var def = Instructions.getDef(instruction).filter(cfg::isVariable);
+
+                if (def.isPresent() && !live.contains(def.get().getName())
+                        && !Instructions.hasSideEffects(instruction)) {
+                    instructions.remove(i);
+                    removed = true;
+                    continue;
+                }
+
+                def.ifPresent(operand -> live.remove(operand.getName()));
+                for (var use : Instructions.getUses(instruction)) {
+                    if (cfg.isVariable(use)) {
+                        live.add(use.getName());
+                    }
+                }
+            }
+        }
+
+        return removed;
+    }
+}
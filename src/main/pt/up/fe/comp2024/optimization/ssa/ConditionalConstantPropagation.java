@@ -0,0 +1,323 @@
+package pt.up.fe.comp2024.optimization.ssa;
+
+import org.specs.comp.ollir.AssignInstruction;
+import org.specs.comp.ollir.BinaryOpInstruction;
+import org.specs.comp.ollir.CondBranchInstruction;
+import org.specs.comp.ollir.Element;
+import org.specs.comp.ollir.ElementType;
+import org.specs.comp.ollir.Instruction;
+import org.specs.comp.ollir.LiteralElement;
+import org.specs.comp.ollir.Operand;
+import org.specs.comp.ollir.SingleOpInstruction;
+import org.specs.comp.ollir.UnaryOpInstruction;
+import pt.up.fe.comp2024.optimization.cfg.BasicBlock;
+import pt.up.fe.comp2024.optimization.cfg.Instructions;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Sparse conditional constant propagation, of Wegman and Zadeck, over a method in SSA form.
+ * <p>
+ * Only the blocks reached through edges already known to run are evaluated, starting from the entry, and a branch
+ * whose condition is constant only makes the edge it takes run. The value of each version starts unknown and can
+ * only become a constant or then not constant, so the phis merge just the values coming from edges that run. Versions
+ * found to be constant are replaced by literals, branches on constants become gotos or are removed, and the blocks that
+ * never run are removed.
+ */
+public class ConditionalConstantPropagation {
+
+    /**
+     * Value of a version that may hold different values, versions whose value is still unknown have no value at all.
+     */
+    private static final Object NOT_CONSTANT = new Object();
+
+    private final SsaForm ssa;
+    private final Map<String, Object> values;
+    private final Map<String, List<Use>> uses;
+    private final Set<BasicBlock> executableBlocks;
+    private final Set<Edge> executableEdges;
+    private final ArrayDeque<Edge> edgeWorklist;
+    private final ArrayDeque<String> versionWorklist;
+    private int changes;
+
+    private ConditionalConstantPropagation(SsaForm ssa) {
+        this.ssa = ssa;
+        this.values = new HashMap<>();
+        this.uses = new HashMap<>();
+        this.executableBlocks = new HashSet<>();
+        this.executableEdges = new HashSet<>();
+        this.edgeWorklist = new ArrayDeque<>();
+        this.versionWorklist = new ArrayDeque<>();
+        this.changes = 0;
+    }
+
+    /**
+     * @return the number of changes made to the method
+     */
+    public static int optimize(SsaForm ssa) {
+        var pass = new ConditionalConstantPropagation(ssa);
+        pass.findUses();
+        pass.propagate();
+        pass.rewrite();
+        return pass.changes;
+    }
+
+    private void findUses() {
+        for (var block : ssa.getCfg().getBlocks()) {
+            for (var phi : ssa.getPhis(block)) {
+                for (var operand : phi.getOperands().values()) {
+                    if (ssa.isVariable(operand)) {
+                        addUse(((Operand) operand).getName(), new Use(block, phi, null));
+                    }
+                }
+            }
+            for (var instruction : block.getInstructions()) {
+                for (var use : Instructions.getUses(instruction)) {
+                    if (ssa.isVariable(use)) {
+                        addUse(use.getName(), new Use(block, null, instruction));
+                    }
+                }
+            }
+        }
+    }
+
+    private void addUse(String version, Use use) {
+        uses.computeIfAbsent(version, key -> new ArrayList<>()).add(use);
+    }
+
+    private void propagate() {
+        edgeWorklist.add(new Edge(null, ssa.getCfg().getEntry()));
+
+        while (!edgeWorklist.isEmpty() || !versionWorklist.isEmpty()) {
+            while (!edgeWorklist.isEmpty()) {
+                var edge = edgeWorklist.pop();
+                if (!executableEdges.add(edge)) {
+                    continue;
+                }
+
+                var block = edge.to();
+                for (var phi : ssa.getPhis(block)) {
+                    visitPhi(block, phi);
+                }
+                if (executableBlocks.add(block)) {
+                    for (var instruction : block.getInstructions()) {
+                        visitInstruction(instruction);
+                    }
+                    addSuccessorEdges(block);
+                }
+            }
+
+            while (!versionWorklist.isEmpty()) {
+                for (var use : uses.getOrDefault(versionWorklist.pop(), List.of())) {
+                    if (!executableBlocks.contains(use.block())) {
+                        continue;
+                    }
+                    if (use.phi() != null) {
+                        visitPhi(use.block(), use.phi());
+                    } else {
+                        visitInstruction(use.instruction());
+                        if (use.instruction() instanceof CondBranchInstruction) {
+                            addSuccessorEdges(use.block());
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private void visitPhi(BasicBlock block, Phi phi) {
+        Object value = null;
+        for (var operand : phi.getOperands().entrySet()) {
+            if (executableEdges.contains(new Edge(operand.getKey(), block))) {
+                value = meet(value, getValue(operand.getValue()));
+            }
+        }
+        setValue(phi.getDest().getName(), value);
+    }
+
+    private void visitInstruction(Instruction instruction) {
+        if (instruction instanceof AssignInstruction assign) {
+            Instructions.getDef(assign).filter(ssa::isVariable)
+                    .ifPresent(def -> setValue(def.getName(), evaluate(assign.getRhs())));
+        }
+    }
+
+    private void addSuccessorEdges(BasicBlock block) {
+        var terminator = block.getTerminator();
+
+        if (terminator instanceof CondBranchInstruction branch) {
+            var condition = evaluate(branch.getCondition());
+            if (condition == null) {
+                return;
+            }
+            if (condition == NOT_CONSTANT || (Integer) condition != 0) {
+                edgeWorklist.add(new Edge(block, block.getJumpTarget()));
+            }
+            if ((condition == NOT_CONSTANT || (Integer) condition == 0) && block.getFallthrough() != null) {
+                edgeWorklist.add(new Edge(block, block.getFallthrough()));
+            }
+            return;
+        }
+
+        for (var successor : block.getSuccessors()) {
+            edgeWorklist.add(new Edge(block, successor));
+        }
+    }
+
+    private void setValue(String version, Object value) {
+        var previous = values.get(version);
+        // values only go down, from unknown to constant to not constant
+        var next = meet(previous, value);
+        if (next != null && !next.equals(previous)) {
+            values.put(version, next);
+            versionWorklist.add(version);
+        }
+    }
+
+    private static Object meet(Object first, Object second) {
+        if (first == null) {
+            return second;
+        }
+        if (second == null || first.equals(second)) {
+            return first;
+        }
+        return NOT_CONSTANT;
+    }
+
+    /**
+     * @return the value of the element, an Integer with booleans as 0 or 1, NOT_CONSTANT, or null if still unknown
+     */
+    private Object getValue(Element element) {
+        if (element instanceof LiteralElement literal) {
+            var type = literal.getType().getTypeOfElement();
+            if (type != ElementType.INT32 && type != ElementType.BOOLEAN) {
+                return NOT_CONSTANT;
+            }
+            return Integer.parseInt(literal.getLiteral());
+        }
+
+        if (!ssa.isVariable(element)) {
+            return NOT_CONSTANT;
+        }
+
+        // the parameters hold the arguments of the call, and locals read before being written hold no constant
+        var name = ((Operand) element).getName();
+        if (name.equals(ssa.getOriginal(name))) {
+            return NOT_CONSTANT;
+        }
+        return values.get(name);
+    }
+
+    private Object evaluate(Instruction instruction) {
+        if (instruction instanceof SingleOpInstruction singleOp) {
+            return getValue(singleOp.getSingleOperand());
+        }
+
+        if (instruction instanceof UnaryOpInstruction unaryOp) {
+            var operand = getValue(unaryOp.getOperand());
+            return switch (unaryOp.getOperation().getOpType()) {
+                case NOTB, NOT -> operand instanceof Integer value ? (Object) (value == 0 ? 1 : 0) : operand;
+                default -> NOT_CONSTANT;
+            };
+        }
+
+        if (instruction instanceof BinaryOpInstruction binaryOp) {
+            var left = getValue(binaryOp.getLeftOperand());
+            var right = getValue(binaryOp.getRightOperand());
+            if (left == NOT_CONSTANT || right == NOT_CONSTANT) {
+                return NOT_CONSTANT;
+            }
+            if (left == null || right == null) {
+                return null;
+            }
+
+            var result = Instructions.fold(binaryOp.getOperation().getOpType(), (Integer) left, (Integer) right);
+            return result == null ? NOT_CONSTANT : result;
+        }
+
+        // calls, fields, arrays and objects
+        return NOT_CONSTANT;
+    }
+
+    private void rewrite() {
+        var cfg = ssa.getCfg();
+
+        // branches on constants take a single edge
+        for (var block : cfg.getBlocks()) {
+            if (!executableBlocks.contains(block) || !(block.getTerminator() instanceof CondBranchInstruction branch)) {
+                continue;
+            }
+
+            var condition = evaluate(branch.getCondition());
+            if (!(condition instanceof Integer value)) {
+                continue;
+            }
+
+            cfg.foldBranch(block, value != 0);
+            changes++;
+        }
+
+        var unreachable = cfg.getBlocks().stream().filter(block -> !executableBlocks.contains(block)).toList();
+        cfg.removeBlocks(unreachable);
+        ssa.update();
+        changes += unreachable.size();
+
+        // the operands of the phis left are kept, so that they can share a name with the phi instead of being copied
+        for (var block : cfg.getBlocks()) {
+            var phis = ssa.getPhis(block);
+            changes += phis.size();
+            phis.removeIf(phi -> getConstant(phi.getDest()) != null);
+            changes -= phis.size();
+
+            var instructions = block.getInstructions();
+            for (int i = 0; i < instructions.size(); i++) {
+                var instruction = instructions.get(i);
+                Instructions.replaceUses(instruction, this::replace);
+
+                // the value of an assignment to a constant is the literal itself
+                var def = Instructions.getDef(instruction);
+                var constant = def.map(this::getConstant).orElse(null);
+                if (constant != null && !(((AssignInstruction) instruction).getRhs() instanceof SingleOpInstruction)) {
+                    var assign = (AssignInstruction) instruction;
+                    instructions.set(i, new AssignInstruction(assign.getDest(), assign.getTypeOfAssign(),
+                            new SingleOpInstruction(constant)));
+                    changes++;
+                }
+            }
+        }
+    }
+
+    private Element replace(Element element) {
+        var constant = getConstant(element);
+        if (constant == null) {
+            return element;
+        }
+        changes++;
+        return constant;
+    }
+
+    /**
+     * @return the literal holding the value of the element, or null if it is not a constant version
+     */
+    private LiteralElement getConstant(Element element) {
+        if (!ssa.isVariable(element) || !(getValue(element) instanceof Integer value)) {
+            return null;
+        }
+        return new LiteralElement(value.toString(), element.getType());
+    }
+
+    private record Edge(BasicBlock from, BasicBlock to) {
+    }
+
+    /**
+     * Place a version is read, either a phi or an instruction of the block.
+     */
+    private record Use(BasicBlock block, Phi phi, Instruction instruction) {
+    }
+}
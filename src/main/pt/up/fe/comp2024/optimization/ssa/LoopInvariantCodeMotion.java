@@ -0,0 +1,162 @@
+package pt.up.fe.comp2024.optimization.ssa;
+
+import org.specs.comp.ollir.ArrayOperand;
+import org.specs.comp.ollir.AssignInstruction;
+import org.specs.comp.ollir.BinaryOpInstruction;
+import org.specs.comp.ollir.CallInstruction;
+import org.specs.comp.ollir.CallType;
+import org.specs.comp.ollir.ElementType;
+import org.specs.comp.ollir.GetFieldInstruction;
+import org.specs.comp.ollir.Instruction;
+import org.specs.comp.ollir.SingleOpInstruction;
+import org.specs.comp.ollir.UnaryOpInstruction;
+import pt.up.fe.comp2024.optimization.cfg.BasicBlock;
+import pt.up.fe.comp2024.optimization.cfg.CallEffects;
+import pt.up.fe.comp2024.optimization.cfg.DominatorTree;
+import pt.up.fe.comp2024.optimization.cfg.Instructions;
+import pt.up.fe.comp2024.optimization.cfg.Loop;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Moves the instructions of a loop that compute the same value on every iteration to the block the loop is entered
+ * from, its preheader, so that they run once.
+ * <p>
+ * In SSA form a value is the same on every iteration if the versions it reads are all written outside the loop, or by
+ * instructions already moved out of it. Field reads and array loads also need the loop not to write that field or any
+ * array, which calls do when the methods they call do, see {@link CallEffects}. Instructions that can throw, i.e.
+ * array loads and lengths and divisions by a value that may be zero, are only moved from the header before any
+ * instruction that does more than produce a value, since those run as soon as the loop is entered anyway. Inner loops
+ * are done first, so their invariants can move out of the outer loops too.
+ */
+public class LoopInvariantCodeMotion {
+
+    private final SsaForm ssa;
+    private final CallEffects callEffects;
+    private int hoisted;
+
+    private LoopInvariantCodeMotion(SsaForm ssa, CallEffects callEffects) {
+        this.ssa = ssa;
+        this.callEffects = callEffects;
+        this.hoisted = 0;
+    }
+
+    /**
+     * @param callEffects what the methods of the class of the method may write
+     * @return the number of instructions moved out of loops
+     */
+    public static int optimize(SsaForm ssa, CallEffects callEffects) {
+        var pass = new LoopInvariantCodeMotion(ssa, callEffects);
+        var cfg = ssa.getCfg();
+
+        // the loops are found again after each one, since adding a preheader changes the blocks of the outer loops
+        var done = new HashSet<BasicBlock>();
+        while (true) {
+            var loop = Loop.find(cfg, new DominatorTree(cfg)).stream()
+                    .filter(candidate -> !done.contains(candidate.getHeader()))
+                    .findFirst();
+            if (loop.isEmpty()) {
+                break;
+            }
+
+            done.add(loop.get().getHeader());
+            pass.hoist(loop.get());
+        }
+
+        return pass.hoisted;
+    }
+
+    private void hoist(Loop loop) {
+        // the values of the phis of loops entered from more than one block would need phis in the preheader
+        var entries = loop.getEntries();
+        if (entries.size() != 1) {
+            return;
+        }
+
+        var defined = new HashSet<String>();
+        var effects = new CallEffects.Effects();
+        for (var block : loop.getBlocks()) {
+            ssa.getPhis(block).forEach(phi -> defined.add(phi.getDest().getName()));
+            for (var instruction : block.getInstructions()) {
+                Instructions.getDef(instruction).filter(ssa::isVariable).ifPresent(def -> defined.add(def.getName()));
+                effects.add(callEffects.of(instruction));
+            }
+        }
+
+        var invariants = new ArrayList<Instruction>();
+        var changed = true;
+        while (changed) {
+            changed = false;
+            for (var block : loop.getBlocks()) {
+                var instructions = block.getInstructions();
+                for (int i = 0; i < instructions.size(); i++) {
+                    var instruction = instructions.get(i);
+                    if (!isInvariant(instruction, defined, effects) || !canMove(loop, block, i)) {
+                        continue;
+                    }
+
+                    instructions.remove(i);
+                    i--;
+                    invariants.add(instruction);
+                    defined.remove(Instructions.getDef(instruction).orElseThrow().getName());
+                    changed = true;
+                }
+            }
+        }
+
+        if (invariants.isEmpty()) {
+            return;
+        }
+
+        var entry = entries.get(0);
+        var preheader = entry.getSuccessors().size() == 1 ? entry : ssa.splitEdge(entry, loop.getHeader());
+        var instructions = preheader.getInstructions();
+        instructions.addAll(preheader.getTerminator() == null ? instructions.size() : instructions.size() - 1,
+                invariants);
+        hoisted += invariants.size();
+    }
+
+    /**
+     * @param defined the versions written in the loop
+     * @param effects what the loop may write
+     */
+    private boolean isInvariant(Instruction instruction, Set<String> defined, CallEffects.Effects effects) {
+        if (Instructions.getDef(instruction).filter(ssa::isVariable).isEmpty()) {
+            return false;
+        }
+
+        var rhs = ((AssignInstruction) instruction).getRhs();
+        var readsArrays = Instructions.getUses(rhs).stream().anyMatch(ArrayOperand.class::isInstance);
+        if (readsArrays && effects.writesArrays()) {
+            return false;
+        }
+
+        // copies and constants are left in place, moving them would only need a copy in the loop anyway
+        var computes = rhs instanceof SingleOpInstruction singleOp
+                && singleOp.getSingleOperand() instanceof ArrayOperand
+                || rhs instanceof UnaryOpInstruction
+                || rhs instanceof BinaryOpInstruction
+                || rhs instanceof CallInstruction call && call.getInvocationType() == CallType.arraylength
+                || rhs instanceof GetFieldInstruction getField
+                && getField.getObject().getType().getTypeOfElement() == ElementType.THIS
+                && !effects.writesField(getField.getField().getName());
+
+        return computes && Instructions.getUses(rhs).stream()
+                .noneMatch(use -> ssa.isVariable(use) && defined.contains(use.getName()));
+    }
+
+    /**
+     * @return true if running the instruction before the loop cannot throw where the loop would not
+     */
+    private static boolean canMove(Loop loop, BasicBlock block, int index) {
+        var instructions = block.getInstructions();
+        if (!Instructions.hasSideEffects(instructions.get(index))) {
+            return true;
+        }
+
+        return block == loop.getHeader()
+                && instructions.subList(0, index).stream().noneMatch(Instructions::hasSideEffects);
+    }
+}
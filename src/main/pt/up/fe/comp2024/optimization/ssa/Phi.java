@@ -0,0 +1,43 @@
+package pt.up.fe.comp2024.optimization.ssa;
+
+import org.specs.comp.ollir.Element;
+import org.specs.comp.ollir.Operand;
+import pt.up.fe.comp2024.optimization.cfg.BasicBlock;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Assignment at the start of a block of the value a variable has in the predecessor the block was entered from.
+ * <p>
+ * Phis only exist while a method is in SSA form, OLLIR has no instruction for them.
+ */
+public class Phi {
+
+    private final Operand dest;
+    private final Map<BasicBlock, Element> operands;
+
+    Phi(Operand dest) {
+        this.dest = dest;
+        this.operands = new LinkedHashMap<>();
+    }
+
+    public Operand getDest() {
+        return dest;
+    }
+
+    /**
+     * @return the value for each predecessor, either an operand or a literal, which can be changed
+     */
+    public Map<BasicBlock, Element> getOperands() {
+        return operands;
+    }
+
+    @Override
+    public String toString() {
+        return dest.getName() + " := phi(" + operands.entrySet().stream()
+                .map(entry -> entry.getKey() + ": " + entry.getValue())
+                .collect(Collectors.joining(", ")) + ")";
+    }
+}
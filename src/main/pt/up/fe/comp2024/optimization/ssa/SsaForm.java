@@ -0,0 +1,626 @@
+package pt.up.fe.comp2024.optimization.ssa;
+
+import org.specs.comp.ollir.AssignInstruction;
+import org.specs.comp.ollir.Descriptor;
+import org.specs.comp.ollir.Element;
+import org.specs.comp.ollir.ElementType;
+import org.specs.comp.ollir.Instruction;
+import org.specs.comp.ollir.InstructionType;
+import org.specs.comp.ollir.Operand;
+import org.specs.comp.ollir.SingleOpInstruction;
+import org.specs.comp.ollir.Type;
+import org.specs.comp.ollir.VarScope;
+import pt.up.fe.comp2024.optimization.cfg.BasicBlock;
+import pt.up.fe.comp2024.optimization.cfg.ControlFlowGraph;
+import pt.up.fe.comp2024.optimization.cfg.DominatorTree;
+import pt.up.fe.comp2024.optimization.cfg.Instructions;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Static single assignment form of an OLLIR method, where every variable is written by a single instruction.
+ * <p>
+ * Each write of a variable creates a new version of it, named after the variable and a number. Phis are placed at the
+ * iterated dominance frontiers of the blocks that write variables read in more than one block, and the versions are
+ * renamed by walking the dominator tree. The version a variable has when the method starts keeps its name.
+ * <p>
+ * {@link #destroy()} converts the method back: the versions connected through phis are given the same name unless
+ * their values are live at the same time, and copies are added to the predecessors for the phis that remain.
+ */
+public class SsaForm {
+
+    private static final String VERSION_SEPARATOR = "#";
+
+    private final ControlFlowGraph cfg;
+    private final Map<String, Descriptor> varTable;
+    private final Map<String, String> originals;
+    private final Map<BasicBlock, List<Phi>> phis;
+    private final Map<String, Integer> versions;
+
+    private SsaForm(ControlFlowGraph cfg) {
+        this.cfg = cfg;
+        this.varTable = cfg.getMethod().getVarTable();
+        this.originals = new HashMap<>();
+        this.phis = new HashMap<>();
+        this.versions = new HashMap<>();
+
+        varTable.forEach((name, descriptor) -> {
+            if (descriptor.getScope() == VarScope.FIELD || name.equals("this")) {
+                return;
+            }
+            originals.put(name, name);
+        });
+    }
+
+    /**
+     * Converts the method of the graph to SSA form, removing the blocks that cannot be reached first.
+     */
+    public static SsaForm build(ControlFlowGraph cfg) {
+        var ssa = new SsaForm(cfg);
+        cfg.removeUnreachableBlocks();
+
+        var dominators = new DominatorTree(cfg);
+        for (var block : cfg.getBlocks()) {
+            ssa.phis.put(block, new ArrayList<>());
+        }
+        ssa.placePhis(dominators);
+
+        var stacks = new HashMap<String, Deque<String>>();
+        for (var variable : ssa.originals.keySet()) {
+            stacks.put(variable, new ArrayDeque<>(List.of(variable)));
+        }
+        ssa.rename(cfg.getEntry(), dominators, stacks);
+
+        return ssa;
+    }
+
+    public ControlFlowGraph getCfg() {
+        return cfg;
+    }
+
+    /**
+     * @return the phis at the start of the block, which can be changed
+     */
+    public List<Phi> getPhis(BasicBlock block) {
+        return phis.computeIfAbsent(block, key -> new ArrayList<>());
+    }
+
+    /**
+     * @return true if the operand is a version of a local variable or parameter
+     */
+    public boolean isVariable(Element element) {
+        return element instanceof Operand operand
+                && operand.getType().getTypeOfElement() != ElementType.CLASS
+                && originals.containsKey(operand.getName());
+    }
+
+    /**
+     * @return the variable the version belongs to
+     */
+    public String getOriginal(String name) {
+        return originals.get(name);
+    }
+
+    /**
+     * Drops the phis of the blocks no longer in the graph, and the operands of the predecessors they lost, after
+     * blocks or edges are removed and {@link ControlFlowGraph#update()} is called.
+     */
+    public void update() {
+        phis.keySet().retainAll(new HashSet<>(cfg.getBlocks()));
+        phis.forEach((block, blockPhis) -> {
+            for (var phi : blockPhis) {
+                phi.getOperands().keySet().retainAll(new HashSet<>(block.getPredecessors()));
+            }
+        });
+    }
+
+    /**
+     * Places a new empty block on the edge between the two blocks, which the phis of the second one now take the
+     * values of the first one from.
+     *
+     * @return the new block
+     */
+    public BasicBlock splitEdge(BasicBlock from, BasicBlock to) {
+        var block = cfg.splitEdge(from, to);
+
+        for (var phi : getPhis(to)) {
+            var operands = new LinkedHashMap<>(phi.getOperands());
+            phi.getOperands().clear();
+            operands.forEach((predecessor, operand) ->
+                    phi.getOperands().put(predecessor == from ? block : predecessor, operand));
+        }
+
+        return block;
+    }
+
+    private void placePhis(DominatorTree dominators) {
+        // only variables read in a block before being written in it can be live across blocks and need phis
+        var globals = new LinkedHashSet<String>();
+        var defBlocks = new HashMap<String, Set<BasicBlock>>();
+        for (var block : dominators.getBlocks()) {
+            var defined = new HashSet<String>();
+            for (var instruction : block.getInstructions()) {
+                for (var use : Instructions.getUses(instruction)) {
+                    if (isVariable(use) && !defined.contains(use.getName())) {
+                        globals.add(use.getName());
+                    }
+                }
+                Instructions.getDef(instruction).filter(this::isVariable).ifPresent(def -> {
+                    defined.add(def.getName());
+                    defBlocks.computeIfAbsent(def.getName(), key -> new LinkedHashSet<>()).add(block);
+                });
+            }
+        }
+
+        for (var variable : globals) {
+            var blocks = defBlocks.getOrDefault(variable, Collections.emptySet());
+            var worklist = new ArrayDeque<>(blocks);
+            var withPhi = new HashSet<BasicBlock>();
+
+            while (!worklist.isEmpty()) {
+                for (var frontier : dominators.getFrontier(worklist.pop())) {
+                    if (!withPhi.add(frontier)) {
+                        continue;
+                    }
+                    getPhis(frontier).add(new Phi(new Operand(variable, getType(variable))));
+                    // the phi writes the variable too
+                    if (!blocks.contains(frontier)) {
+                        worklist.add(frontier);
+                    }
+                }
+            }
+        }
+    }
+
+    private void rename(BasicBlock block, DominatorTree dominators, Map<String, Deque<String>> stacks) {
+        var pushed = new ArrayList<String>();
+
+        for (var phi : getPhis(block)) {
+            var variable = phi.getDest().getName();
+            var version = newVersion(variable);
+            stacks.get(variable).push(version);
+            pushed.add(variable);
+            phi.getDest().setName(version);
+        }
+
+        for (var instruction : block.getInstructions()) {
+            for (var use : Instructions.getUses(instruction)) {
+                if (isVariable(use)) {
+                    use.setName(stacks.get(use.getName()).peek());
+                }
+            }
+
+            var def = Instructions.getDef(instruction).filter(this::isVariable);
+            if (def.isPresent()) {
+                var variable = def.get().getName();
+                var version = newVersion(variable);
+                stacks.get(variable).push(version);
+                pushed.add(variable);
+                def.get().setName(version);
+            }
+        }
+
+        for (var successor : block.getSuccessors()) {
+            for (var phi : getPhis(successor)) {
+                var variable = getOriginal(phi.getDest().getName());
+                phi.getOperands().put(block, new Operand(stacks.get(variable).peek(), getType(variable)));
+            }
+        }
+
+        for (var child : dominators.getChildren(block)) {
+            rename(child, dominators, stacks);
+        }
+
+        for (var variable : pushed) {
+            stacks.get(variable).pop();
+        }
+    }
+
+    private String newVersion(String variable) {
+        var version = variable + VERSION_SEPARATOR + versions.merge(variable, 1, Integer::sum);
+        originals.put(version, variable);
+        return version;
+    }
+
+    private Type getType(String name) {
+        return varTable.get(getOriginal(name)).getVarType();
+    }
+
+    /**
+     * Converts the method back from SSA form and writes the graph to it.
+     */
+    public void destroy() {
+        removeDeadPhis();
+
+        var interference = getInterference(getLiveOut());
+        var names = nameVersions(coalesce(interference), interference);
+
+        for (var block : cfg.getBlocks()) {
+            for (var instruction : block.getInstructions()) {
+                for (var operand : getOperands(instruction)) {
+                    operand.setName(names.get(operand.getName()));
+                }
+            }
+        }
+
+        insertCopies(names);
+        phis.clear();
+        cfg.write();
+    }
+
+    private List<Operand> getOperands(Instruction instruction) {
+        var operands = new ArrayList<Operand>();
+        Instructions.getDef(instruction).filter(this::isVariable).ifPresent(operands::add);
+        Instructions.getUses(instruction).stream().filter(this::isVariable).forEach(operands::add);
+        return operands;
+    }
+
+    private void removeDeadPhis() {
+        var changed = true;
+        while (changed) {
+            var used = new HashSet<String>();
+            for (var block : cfg.getBlocks()) {
+                for (var instruction : block.getInstructions()) {
+                    Instructions.getUses(instruction).forEach(use -> used.add(use.getName()));
+                }
+                for (var phi : getPhis(block)) {
+                    phi.getOperands().values().stream()
+                            .filter(this::isVariable)
+                            .forEach(operand -> used.add(((Operand) operand).getName()));
+                }
+            }
+
+            changed = false;
+            for (var blockPhis : phis.values()) {
+                changed |= blockPhis.removeIf(phi -> !used.contains(phi.getDest().getName()));
+            }
+        }
+    }
+
+    /**
+     * @return the versions live at the end of each block, a phi reading its operand at the end of the predecessor
+     */
+    private Map<BasicBlock, Set<String>> getLiveOut() {
+        var uses = new HashMap<BasicBlock, Set<String>>();
+        var defs = new HashMap<BasicBlock, Set<String>>();
+        for (var block : cfg.getBlocks()) {
+            var blockUses = new HashSet<String>();
+            var blockDefs = new HashSet<String>();
+            for (var phi : getPhis(block)) {
+                blockDefs.add(phi.getDest().getName());
+            }
+            for (var instruction : block.getInstructions()) {
+                for (var use : Instructions.getUses(instruction)) {
+                    if (isVariable(use) && !blockDefs.contains(use.getName())) {
+                        blockUses.add(use.getName());
+                    }
+                }
+                Instructions.getDef(instruction).filter(this::isVariable)
+                        .ifPresent(def -> blockDefs.add(def.getName()));
+            }
+            uses.put(block, blockUses);
+            defs.put(block, blockDefs);
+        }
+
+        var liveIn = new HashMap<BasicBlock, Set<String>>();
+        var liveOut = new HashMap<BasicBlock, Set<String>>();
+        for (var block : cfg.getBlocks()) {
+            liveIn.put(block, new HashSet<>());
+            liveOut.put(block, new HashSet<>());
+        }
+
+        var order = new ArrayList<>(cfg.getBlocks());
+        Collections.reverse(order);
+        var changed = true;
+        while (changed) {
+            changed = false;
+            for (var block : order) {
+                var out = new HashSet<String>();
+                for (var successor : block.getSuccessors()) {
+                    out.addAll(liveIn.get(successor));
+                    for (var phi : getPhis(successor)) {
+                        var operand = phi.getOperands().get(block);
+                        if (isVariable(operand)) {
+                            out.add(((Operand) operand).getName());
+                        }
+                    }
+                }
+
+                var in = new HashSet<>(out);
+                in.removeAll(defs.get(block));
+                in.addAll(uses.get(block));
+
+                changed |= !out.equals(liveOut.put(block, out));
+                changed |= !in.equals(liveIn.put(block, in));
+            }
+        }
+
+        return liveOut;
+    }
+
+    private Map<String, Set<String>> getInterference(Map<BasicBlock, Set<String>> liveOut) {
+        var interference = new HashMap<String, Set<String>>();
+
+        for (var block : cfg.getBlocks()) {
+            var live = new HashSet<>(liveOut.get(block));
+
+            var instructions = block.getInstructions();
+            for (int i = instructions.size() - 1; i >= 0; i--) {
+                var instruction = instructions.get(i);
+
+                var def = Instructions.getDef(instruction).filter(this::isVariable);
+                if (def.isPresent()) {
+                    var name = def.get().getName();
+                    // a copy holds the value of its source, so both can share a name
+                    var source = getCopySource(instruction);
+                    for (var other : live) {
+                        if (!other.equals(source)) {
+                            addInterference(interference, name, other);
+                        }
+                    }
+                    live.remove(name);
+                }
+
+                for (var use : Instructions.getUses(instruction)) {
+                    if (isVariable(use)) {
+                        live.add(use.getName());
+                    }
+                }
+            }
+
+            // the phis write their versions at the same time, when the values live at the start are already set,
+            // and their copies are placed at the end of each predecessor
+            var blockPhis = getPhis(block);
+            for (var phi : blockPhis) {
+                live.add(phi.getDest().getName());
+            }
+            for (var phi : blockPhis) {
+                var name = phi.getDest().getName();
+                live.forEach(other -> addInterference(interference, name, other));
+
+                phi.getOperands().forEach((predecessor, operand) -> {
+                    for (var other : liveOut.get(predecessor)) {
+                        if (!isVariable(operand) || !other.equals(((Operand) operand).getName())) {
+                            addInterference(interference, name, other);
+                        }
+                    }
+                });
+            }
+        }
+
+        return interference;
+    }
+
+    private static String getCopySource(Instruction instruction) {
+        if (instruction instanceof AssignInstruction assign
+                && assign.getRhs() instanceof SingleOpInstruction singleOp
+                && singleOp.getSingleOperand() instanceof Operand operand) {
+            return operand.getName();
+        }
+        return null;
+    }
+
+    private static void addInterference(Map<String, Set<String>> interference, String first, String second) {
+        if (first.equals(second)) {
+            return;
+        }
+        interference.computeIfAbsent(first, key -> new HashSet<>()).add(second);
+        interference.computeIfAbsent(second, key -> new HashSet<>()).add(first);
+    }
+
+    private static boolean interfere(Set<String> first, Set<String> second, Map<String, Set<String>> interference) {
+        for (var name : first) {
+            var neighbours = interference.getOrDefault(name, Collections.emptySet());
+            if (second.stream().anyMatch(neighbours::contains)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Joins each phi with its operands into webs of versions that will share a name, as long as they do not interfere.
+     *
+     * @return the versions of each web, in the order they appear in the method
+     */
+    private List<Set<String>> coalesce(Map<String, Set<String>> interference) {
+        var webs = new LinkedHashMap<String, Set<String>>();
+        var webOf = new HashMap<String, String>();
+
+        for (var block : cfg.getBlocks()) {
+            for (var phi : getPhis(block)) {
+                addVersion(phi.getDest().getName(), webs, webOf);
+            }
+            for (var instruction : block.getInstructions()) {
+                for (var operand : getOperands(instruction)) {
+                    addVersion(operand.getName(), webs, webOf);
+                }
+            }
+        }
+
+        for (var block : cfg.getBlocks()) {
+            for (var phi : getPhis(block)) {
+                for (var operand : phi.getOperands().values()) {
+                    if (!isVariable(operand)) {
+                        continue;
+                    }
+                    addVersion(((Operand) operand).getName(), webs, webOf);
+
+                    // versions of other variables, left in phis by copy propagation, keep a name of their own
+                    var destWeb = webOf.get(phi.getDest().getName());
+                    var operandWeb = webOf.get(((Operand) operand).getName());
+                    if (destWeb.equals(operandWeb)
+                            || !getOriginal(destWeb).equals(getOriginal(operandWeb))
+                            || interfere(webs.get(destWeb), webs.get(operandWeb), interference)) {
+                        continue;
+                    }
+
+                    for (var version : webs.remove(operandWeb)) {
+                        webs.get(destWeb).add(version);
+                        webOf.put(version, destWeb);
+                    }
+                }
+            }
+        }
+
+        return new ArrayList<>(webs.values());
+    }
+
+    private static void addVersion(String version, Map<String, Set<String>> webs, Map<String, String> webOf) {
+        if (!webOf.containsKey(version)) {
+            webs.put(version, new LinkedHashSet<>(List.of(version)));
+            webOf.put(version, version);
+        }
+    }
+
+    /**
+     * Gives each web the name of its variable if it can share it with the webs already using it, or a new one.
+     * The webs holding the value a variable has when the method starts are named first, so that parameters keep
+     * their names.
+     *
+     * @return the name of each version
+     */
+    private Map<String, String> nameVersions(List<Set<String>> webs, Map<String, Set<String>> interference) {
+        var ordered = new ArrayList<Set<String>>();
+        webs.stream().filter(web -> web.stream().anyMatch(version -> version.equals(getOriginal(version))))
+                .forEach(ordered::add);
+        webs.stream().filter(web -> !ordered.contains(web)).forEach(ordered::add);
+
+        // the versions already using each name
+        var namesOf = new HashMap<String, List<String>>();
+        var versionsOf = new HashMap<String, Set<String>>();
+        var names = new HashMap<String, String>();
+
+        for (var web : ordered) {
+            var variable = getOriginal(web.iterator().next());
+            var candidates = namesOf.computeIfAbsent(variable, key -> new ArrayList<>());
+
+            var name = candidates.stream()
+                    .filter(candidate -> !interfere(web, versionsOf.get(candidate), interference))
+                    .findFirst()
+                    .orElse(null);
+            if (name == null) {
+                name = candidates.isEmpty() ? variable : newVariable(variable, getType(variable));
+                candidates.add(name);
+                versionsOf.put(name, new HashSet<>());
+            }
+
+            versionsOf.get(name).addAll(web);
+            for (var version : web) {
+                names.put(version, name);
+            }
+        }
+
+        return names;
+    }
+
+    /**
+     * @return the name of a new local variable, based on the given one
+     */
+    private String newVariable(String base, Type type) {
+        var number = 1;
+        while (varTable.containsKey(base + "_" + number)) {
+            number++;
+        }
+
+        var register = varTable.values().stream().mapToInt(Descriptor::getVirtualReg).max().orElse(-1) + 1;
+        var name = base + "_" + number;
+        varTable.put(name, new Descriptor(VarScope.LOCAL, register, type));
+        return name;
+    }
+
+    private void insertCopies(Map<String, String> names) {
+        for (var block : new ArrayList<>(cfg.getBlocks())) {
+            var blockPhis = getPhis(block);
+            if (blockPhis.isEmpty()) {
+                continue;
+            }
+
+            for (var predecessor : new ArrayList<>(block.getPredecessors())) {
+                var copies = new ArrayList<Copy>();
+                for (var phi : blockPhis) {
+                    var operand = phi.getOperands().get(predecessor);
+                    if (operand == null) {
+                        continue;
+                    }
+
+                    var dest = names.get(phi.getDest().getName());
+                    var type = getType(phi.getDest().getName());
+                    if (isVariable(operand)) {
+                        var source = names.get(((Operand) operand).getName());
+                        if (!source.equals(dest)) {
+                            copies.add(new Copy(dest, type, new Operand(source, type)));
+                        }
+                    } else {
+                        copies.add(new Copy(dest, type, operand));
+                    }
+                }
+
+                if (copies.isEmpty()) {
+                    continue;
+                }
+
+                // copies for one edge only must not run when the predecessor leaves through another
+                var target = predecessor.getSuccessors().size() == 1 && !predecessor.endsWith(InstructionType.BRANCH)
+                        ? predecessor
+                        : cfg.splitEdge(predecessor, block);
+
+                var instructions = target.getInstructions();
+                var position = target.getTerminator() == null ? instructions.size() : instructions.size() - 1;
+                instructions.addAll(position, sequentialize(copies));
+            }
+        }
+    }
+
+    /**
+     * Orders the copies of the phis of one edge, which all read their sources before any destination is written.
+     */
+    private List<Instruction> sequentialize(List<Copy> copies) {
+        var pending = new ArrayList<>(copies);
+        var instructions = new ArrayList<Instruction>();
+
+        while (!pending.isEmpty()) {
+            var ready = pending.stream()
+                    .filter(copy -> pending.stream().noneMatch(other -> other != copy && other.reads(copy.dest())))
+                    .findFirst();
+
+            if (ready.isPresent()) {
+                instructions.add(ready.get().toInstruction());
+                pending.remove(ready.get());
+                continue;
+            }
+
+            // every destination is still to be read, so one of them is saved first
+            var saved = pending.get(0);
+            var temporary = newVariable(saved.dest(), saved.type());
+            var save = new Copy(temporary, saved.type(), new Operand(saved.dest(), saved.type()));
+            instructions.add(save.toInstruction());
+            pending.replaceAll(copy -> copy.reads(saved.dest())
+                    ? new Copy(copy.dest(), copy.type(), new Operand(temporary, copy.type()))
+                    : copy);
+        }
+
+        return instructions;
+    }
+
+    private record Copy(String dest, Type type, Element source) {
+
+        boolean reads(String name) {
+            return source instanceof Operand operand && operand.getName().equals(name);
+        }
+
+        Instruction toInstruction() {
+            return new AssignInstruction(new Operand(dest, type), type, new SingleOpInstruction(source));
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package pt.up.fe.comp2024.optimization.ssa;
+
+import org.specs.comp.ollir.ArrayOperand;
+import org.specs.comp.ollir.AssignInstruction;
+import org.specs.comp.ollir.BinaryOpInstruction;
+import org.specs.comp.ollir.CallInstruction;
+import org.specs.comp.ollir.CallType;
+import org.specs.comp.ollir.Element;
+import org.specs.comp.ollir.Instruction;
+import org.specs.comp.ollir.LiteralElement;
+import org.specs.comp.ollir.Operand;
+import org.specs.comp.ollir.OperationType;
+import org.specs.comp.ollir.SingleOpInstruction;
+import org.specs.comp.ollir.UnaryOpInstruction;
+import pt.up.fe.comp2024.optimization.cfg.BasicBlock;
+import pt.up.fe.comp2024.optimization.cfg.DominatorTree;
+import pt.up.fe.comp2024.optimization.cfg.Instructions;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Dominator-based value numbering over a method in SSA form, which removes the instructions that compute a value
+ * already held by another version.
+ * <p>
+ * Each block is numbered with the expressions computed in the blocks that dominate it, which always run before it,
+ * and since a version never changes the result of an expression over the same versions is the same. Copies are
+ * propagated too, so that the expressions over a copy match those over its source. Array elements can change, so
+ * the value of an array load is only reused until an array is written or a method is called, which may write to any
+ * array the variables refer to, and within the block only, unless the method does neither.
+ */
+public class ValueNumbering {
+
+    private static final Set<OperationType> COMMUTATIVE = Set.of(OperationType.ADD, OperationType.MUL,
+            OperationType.EQ, OperationType.NEQ, OperationType.ANDB, OperationType.ORB, OperationType.AND,
+            OperationType.OR);
+
+    private final SsaForm ssa;
+    private final boolean loadsAreGlobal;
+    private final Map<String, String> replacements;
+    private int removed;
+
+    private ValueNumbering(SsaForm ssa) {
+        this.ssa = ssa;
+        this.loadsAreGlobal = ssa.getCfg().getBlocks().stream()
+                .flatMap(block -> block.getInstructions().stream())
+                .noneMatch(ValueNumbering::writesMemory);
+        this.replacements = new HashMap<>();
+        this.removed = 0;
+    }
+
+    /**
+     * @return the number of instructions removed
+     */
+    public static int optimize(SsaForm ssa) {
+        var pass = new ValueNumbering(ssa);
+        var cfg = ssa.getCfg();
+        pass.visit(cfg.getEntry(), new DominatorTree(cfg), new HashMap<>());
+
+        // phis read their operands at the end of the predecessors, possibly after the versions were replaced
+        for (var block : cfg.getBlocks()) {
+            for (var phi : ssa.getPhis(block)) {
+                phi.getOperands().values().stream()
+                        .filter(ssa::isVariable)
+                        .forEach(operand -> ((Operand) operand).setName(pass.resolve(((Operand) operand).getName())));
+            }
+        }
+
+        return pass.removed;
+    }
+
+    /**
+     * @param available the version holding the value of each expression computed in the dominators of the block
+     */
+    private void visit(BasicBlock block, DominatorTree dominators, Map<String, String> available) {
+        var loads = loadsAreGlobal ? available : new HashMap<String, String>();
+        var instructions = block.getInstructions();
+
+        for (int i = 0; i < instructions.size(); i++) {
+            var instruction = instructions.get(i);
+            for (var use : Instructions.getUses(instruction)) {
+                if (ssa.isVariable(use)) {
+                    use.setName(resolve(use.getName()));
+                }
+            }
+
+            if (writesMemory(instruction)) {
+                loads.clear();
+            }
+
+            var def = Instructions.getDef(instruction).filter(ssa::isVariable);
+            if (def.isEmpty()) {
+                continue;
+            }
+
+            var assign = (AssignInstruction) instruction;
+            var rhs = assign.getRhs();
+            String value;
+            if (rhs instanceof SingleOpInstruction singleOp && ssa.isVariable(singleOp.getSingleOperand())
+                    && !(singleOp.getSingleOperand() instanceof ArrayOperand)) {
+                value = ((Operand) singleOp.getSingleOperand()).getName();
+            } else {
+                var key = getKey(rhs);
+                if (key == null) {
+                    continue;
+                }
+
+                var table = isLoad(rhs) ? loads : available;
+                value = table.get(key + ":" + assign.getTypeOfAssign());
+                if (value == null) {
+                    table.put(key + ":" + assign.getTypeOfAssign(), def.get().getName());
+                    continue;
+                }
+            }
+
+            replacements.put(def.get().getName(), value);
+            instructions.remove(i);
+            i--;
+            removed++;
+        }
+
+        for (var child : dominators.getChildren(block)) {
+            visit(child, dominators, new HashMap<>(available));
+        }
+    }
+
+    private String resolve(String version) {
+        while (replacements.containsKey(version)) {
+            version = replacements.get(version);
+        }
+        return version;
+    }
+
+    /**
+     * @return a key equal for the instructions that compute the same value, or null if the value cannot be reused
+     */
+    private String getKey(Instruction instruction) {
+        if (instruction instanceof BinaryOpInstruction binaryOp) {
+            var left = getKey(binaryOp.getLeftOperand());
+            var right = getKey(binaryOp.getRightOperand());
+            if (left == null || right == null) {
+                return null;
+            }
+
+            var opType = binaryOp.getOperation().getOpType();
+            if (COMMUTATIVE.contains(opType) && left.compareTo(right) > 0) {
+                return opType + "(" + right + ", " + left + ")";
+            }
+            return opType + "(" + left + ", " + right + ")";
+        }
+
+        if (instruction instanceof UnaryOpInstruction unaryOp) {
+            var operand = getKey(unaryOp.getOperand());
+            return operand == null ? null : unaryOp.getOperation().getOpType() + "(" + operand + ")";
+        }
+
+        if (instruction instanceof SingleOpInstruction singleOp
+                && singleOp.getSingleOperand() instanceof ArrayOperand array && ssa.isVariable(array)) {
+            var indexes = array.getIndexOperands().stream().map(this::getKey).toList();
+            if (indexes.contains(null)) {
+                return null;
+            }
+            return "load " + array.getName() + indexes.stream().collect(Collectors.joining(", ", "[", "]"));
+        }
+
+        // the length of an array never changes
+        if (instruction instanceof CallInstruction call && call.getInvocationType() == CallType.arraylength
+                && ssa.isVariable(call.getCaller())) {
+            return "arraylength(" + ((Operand) call.getCaller()).getName() + ")";
+        }
+
+        return null;
+    }
+
+    private String getKey(Element element) {
+        if (element instanceof LiteralElement literal) {
+            return literal.getLiteral() + "." + literal.getType();
+        }
+        if (ssa.isVariable(element) && !(element instanceof ArrayOperand)) {
+            return ((Operand) element).getName();
+        }
+        return null;
+    }
+
+    private static boolean isLoad(Instruction instruction) {
+        return instruction instanceof SingleOpInstruction singleOp
+                && singleOp.getSingleOperand() instanceof ArrayOperand;
+    }
+
+    /**
+     * @return true if the instruction may change the elements of an array
+     */
+    private static boolean writesMemory(Instruction instruction) {
+        if (instruction instanceof AssignInstruction assign) {
+            return assign.getDest() instanceof ArrayOperand || writesMemory(assign.getRhs());
+        }
+        return instruction instanceof CallInstruction call
+                && call.getInvocationType() != CallType.NEW
+                && call.getInvocationType() != CallType.arraylength
+                && call.getInvocationType() != CallType.ldc;
+    }
+}
@@ -3,22 +3,38 @@ package pt.up.fe.comp2024.optimization_jasmin;
 import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
 import pt.up.fe.comp.jmm.ast2jasmin.AstToJasmin;
 import pt.up.fe.comp.jmm.jasmin.JasminResult;
-
-import java.util.Collections;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.backend.JasminWriter;
+import pt.up.fe.comp2024.backend.PeepholeOptimizer;
+import pt.up.fe.comp2024.optimization.ConstantPropagation;
+import pt.up.fe.comp2024.stats.CompilerStats;
 
 public class AstToJasminImpl implements AstToJasmin {
     @Override
     public JasminResult toJasmin(JmmSemanticsResult semanticsResult) {
 
-        var generator = new JasminGeneratorVisitor(semanticsResult.getSymbolTable());
-        var code = generator.visit(semanticsResult.getRootNode());
+        var registerAllocation = CompilerConfig.getRegisterAllocation(semanticsResult.getConfig());
+        var generator = new JasminGeneratorVisitor(semanticsResult.getSymbolTable(), registerAllocation);
+        var jasminClass = generator.generate(semanticsResult.getRootNode());
+
+        var peephole = new PeepholeOptimizer(CompilerConfig.getPeepholePatterns(semanticsResult.getConfig()));
+        CompilerStats.measure("JASMIN/PeepholeOptimizer", () -> peephole.optimize(jasminClass));
+
+        var code = CompilerStats.measure("JASMIN/JasminWriter", () -> JasminWriter.write(jasminClass));
 
-        return new JasminResult(semanticsResult, code, Collections.emptyList());
+        var reports = generator.getReports();
+        reports.addAll(peephole.getReports());
+
+        return new JasminResult(semanticsResult, code, reports);
     }
 
     @Override
     public JmmSemanticsResult optimize(JmmSemanticsResult semanticsResult) {
-        // TODO: To implement for CP3
-        return AstToJasmin.super.optimize(semanticsResult);
+
+        if (CompilerConfig.getOptimize(semanticsResult.getConfig())) {
+            ConstantPropagation.optimize(semanticsResult.getRootNode(), semanticsResult.getSymbolTable());
+        }
+
+        return semanticsResult;
     }
 }
@@ -7,30 +7,30 @@ import pt.up.fe.comp.jmm.ast.AJmmNode;
 import pt.up.fe.comp.jmm.ast.JmmNode;
 import pt.up.fe.comp.jmm.ast.PostorderJmmVisitor;
 import pt.up.fe.comp2024.ast.TypeUtils;
+import pt.up.fe.comp2024.backend.JasminCode;
+import pt.up.fe.comp2024.backend.JasminInstruction;
+import pt.up.fe.comp2024.backend.JasminLabel;
+import pt.up.fe.comp2024.backend.JasminMethod;
 import pt.up.fe.specs.util.SpecsCheck;
 import pt.up.fe.specs.util.exceptions.NotImplementedException;
 
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 import java.util.Objects;
 
-public class JasminExprGeneratorVisitor extends PostorderJmmVisitor<StringBuilder, Void> {
+public class JasminExprGeneratorVisitor extends PostorderJmmVisitor<JasminMethod, Void> {
 
-    private static final String NL = "\n";
-    private static int  label_number = 0;
-    private static int max_reg_val;
-    private static Map<String, Integer> currentRegisters;
+    private final JasminMethodContext context;
     private final SymbolTable table;
     private final String CurrentMethod;
     private int max_stack_num;
     private int stack_size;
 
 
-    public JasminExprGeneratorVisitor(Map<String, Integer> currentRegisters,SymbolTable table, String CurrentMethod) {
-        JasminExprGeneratorVisitor.currentRegisters = currentRegisters;
+    public JasminExprGeneratorVisitor(JasminMethodContext context, SymbolTable table) {
+        this.context = context;
         this.table = table;
-        this.CurrentMethod = CurrentMethod;
-        max_reg_val = currentRegisters.size();
+        this.CurrentMethod = context.getMethodName();
         this.max_stack_num = 0;
         this.stack_size = 0;
     }
@@ -55,114 +55,103 @@ public class JasminExprGeneratorVisitor extends PostorderJmmVisitor<StringBuilde
         addVisit("Array", this::visitArray);
 
     }
-    private Void visitArray(JmmNode array, StringBuilder code) {
-        int num_of_reg=max_reg_val;
-        max_reg_val++;
-        max_reg_val++;
+    private Void visitArray(JmmNode array, JasminMethod code) {
+        int num_of_reg = context.newTempRegisters(2);
         add_stack_size(1);
-        code.append(optimized_literal(array.getChildren().size()) + NL); // size of array
-        code.append("newarray int" + NL);
-        code.append("astore" + parse_with_under(num_of_reg) + NL);
+        code.add(JasminInstruction.constant(array.getChildren().size())); // size of array
+        code.add("newarray", "int");
+        code.add(JasminInstruction.local("astore", num_of_reg));
 
         for (int i = array.getChildren().size()-1; i>=0; i--) {
             add_stack_size(1); // TODO : NOT sure
             // remove the top value to put the index then add it again
-            code.append("istore"+parse_with_under(num_of_reg+1)).append(NL);
-            code.append("aload"+parse_with_under(num_of_reg)).append(NL);
-            code.append(optimized_literal(i)).append(NL);
-            code.append("iload"+parse_with_under(num_of_reg+1)).append(NL);
-            code.append("iastore" + NL).append(NL);
+            code.add(JasminInstruction.local("istore", num_of_reg+1));
+            code.add(JasminInstruction.local("aload", num_of_reg));
+            code.add(JasminInstruction.constant(i));
+            code.add(JasminInstruction.local("iload", num_of_reg+1));
+            code.add("iastore");
             sub_stack_size(1);
         }
         sub_stack_size(array.getChildren().size());
-        code.append("aload"+parse_with_under(num_of_reg)).append(NL);
+        code.add(JasminInstruction.local("aload", num_of_reg));
 
         if(has_parent_stmt_pop_check(array)){
             sub_stack_size(1);
-            code.append("pop" + NL);
+            code.add("pop");
         }
         return null;
     }
 
-    private Void visitArrayAccessExpr(JmmNode arrayAccessExpr, StringBuilder code) {
+    private Void visitArrayAccessExpr(JmmNode arrayAccessExpr, JasminMethod code) {
             sub_stack_size(1);
-            code.append("iaload" + NL);
+            code.add("iaload");
             if(has_parent_stmt_pop_check(arrayAccessExpr)){
                 sub_stack_size(1);
-                code.append("pop" + NL);
+                code.add("pop");
             }
             return null;
     }
 
-    private Void visitNewArray(JmmNode newArray, StringBuilder code){
+    private Void visitNewArray(JmmNode newArray, JasminMethod code){
 
         String type = newArray.get("name");
-        code.append("newarray ").append(type).append(NL);
+        code.add("newarray", type);
         if(has_parent_stmt_pop_check(newArray)){
             sub_stack_size(1);
-            code.append("pop" + NL);
+            code.add("pop");
         }
         return null;
 
     }
 
-    private Void visitIntegerLiteral(JmmNode integerLiteral, StringBuilder code) {
+    private Void visitIntegerLiteral(JmmNode integerLiteral, JasminMethod code) {
         if(has_add_parent(integerLiteral)){
             return null;
         }
         int value = Integer.valueOf(integerLiteral.get("value"));
         add_stack_size(1);
-        if(value>=0 && value<=5){
-            code.append("iconst_" + value + NL);
-        } else if (value >= -128 && value <= 127) {
-            code.append("bipush " + value + NL);
-        } else if (value >= -32768 && value <= 32767) {
-            code.append("sipush " + value + NL);
-        } else {
-            code.append("ldc " + value + NL);
-
-        }
+        code.add(JasminInstruction.constant(value));
 
         if(has_parent_stmt_pop_check(integerLiteral)){
             sub_stack_size(1);
-            code.append("pop" + NL);
+            code.add("pop");
         }
         return null;
     }
-    private Void visitLengthExpr(JmmNode lengthExpr, StringBuilder code) {
-        code.append("arraylength" + NL);
+    private Void visitLengthExpr(JmmNode lengthExpr, JasminMethod code) {
+        code.add("arraylength");
         if(has_parent_stmt_pop_check(lengthExpr)){
             sub_stack_size(1);
-            code.append("pop" + NL);
+            code.add("pop");
         }
         return null;
     }
-    private Void visitParenExpr(JmmNode parenExpr, StringBuilder code) {
+    private Void visitParenExpr(JmmNode parenExpr, JasminMethod code) {
         return null;
     }
-    private Void visitBooleanLiteral(JmmNode booleanLiteral, StringBuilder code) {
+    private Void visitBooleanLiteral(JmmNode booleanLiteral, JasminMethod code) {
         add_stack_size(1);
         if (booleanLiteral.get("value").equals("true"))
-            code.append("iconst_1" + NL);
+            code.add("iconst_1");
         else
-            code.append("iconst_0" + NL);
+            code.add("iconst_0");
         if(has_parent_stmt_pop_check(booleanLiteral)){
             sub_stack_size(1);
-            code.append("pop" + NL);
+            code.add("pop");
         }
         return null;
     }
-    private Void visitThisRefExpr(JmmNode thisRefExpr, StringBuilder code) {
+    private Void visitThisRefExpr(JmmNode thisRefExpr, JasminMethod code) {
         add_stack_size(1);
-        code.append("aload_0" + NL);
+        code.add("aload_0");
         if(has_parent_stmt_pop_check(thisRefExpr)){
             sub_stack_size(1);
-            code.append("pop" + NL);
+            code.add("pop");
         }
         return null;
     }
 
-    private Void visitVarRefExpr(JmmNode varRefExpr, StringBuilder code) {
+    private Void visitVarRefExpr(JmmNode varRefExpr, JasminMethod code) {
         if(has_add_parent(varRefExpr)){
             return null;
         }
@@ -170,7 +159,7 @@ public class JasminExprGeneratorVisitor extends PostorderJmmVisitor<StringBuilde
         String name = varRefExpr.get("name");
         var fields = table.getFields();
         // get register
-        var reg = currentRegisters.get(name);
+        var reg = context.getRegister(name);
         var imports = table.getImports();
         Type t = TypeUtils.getVarExprType(varRefExpr, table, CurrentMethod);
 
@@ -182,19 +171,19 @@ public class JasminExprGeneratorVisitor extends PostorderJmmVisitor<StringBuilde
 
             if(has_parent_stmt_pop_check(varRefExpr)){
                 sub_stack_size(1);
-                code.append("pop" + NL);
+                code.add("pop");
             }*/
             return null;
         }
         if(reg==null){
             for (var field : fields) {
                 if (field.getName().equals(name)) {
-                    code.append("aload_0" + NL);
-                    code.append("getfield " + table.getClassName() + "/" + name+" " + getTypeToStr(field.getType()) + NL);
+                    code.add("aload_0");
+                    code.add("getfield", table.getClassName() + "/" + name, getTypeToStr(field.getType()));
 
                     if(has_parent_stmt_pop_check(varRefExpr)){
                         sub_stack_size(1);
-                        code.append("pop" + NL);
+                        code.add("pop");
                     }
                     return null;
                 }
@@ -205,30 +194,27 @@ public class JasminExprGeneratorVisitor extends PostorderJmmVisitor<StringBuilde
         SpecsCheck.checkNotNull(reg, () -> "No register mapped for variable '" + name + "'");
 
         if (t.isArray()){
-            code.append("aload");
-            code.append(parse_with_under(currentRegisters.get(name)) + NL);
+            code.add(JasminInstruction.local("aload", context.getRegister(name)));
             if(has_parent_stmt_pop_check(varRefExpr)){
                 sub_stack_size(1);
-                code.append("pop" + NL);
+                code.add("pop");
             }
 
             return null;
         }
         switch (t.getName()) {
             case "int","boolean" :
-                code.append("iload");
-                code.append(parse_with_under(currentRegisters.get(name)) + NL);
+                code.add(JasminInstruction.local("iload", context.getRegister(name)));
                 if(has_parent_stmt_pop_check(varRefExpr)){
                     sub_stack_size(1);
-                    code.append("pop" + NL);
+                    code.add("pop");
                 }
                 break;
             default :
-                code.append("aload");
-                code.append(parse_with_under(currentRegisters.get(name)) + NL);
+                code.add(JasminInstruction.local("aload", context.getRegister(name)));
                 if(has_parent_stmt_pop_check(varRefExpr)){
                     sub_stack_size(1);
-                    code.append("pop" + NL);
+                    code.add("pop");
                 }
 
                 break;
@@ -238,7 +224,7 @@ public class JasminExprGeneratorVisitor extends PostorderJmmVisitor<StringBuilde
         return null;
     }
 
-    private Void visitBinaryExpr(JmmNode binaryExpr, StringBuilder code) {
+    private Void visitBinaryExpr(JmmNode binaryExpr, JasminMethod code) {
 
         // since this is a post-order visitor that automatically visits the children
         // we can assume the value for the operation are already loaded in the stack
@@ -249,67 +235,63 @@ public class JasminExprGeneratorVisitor extends PostorderJmmVisitor<StringBuilde
         }
         var op = switch (binaryExpr.get("op")) {
             case "+" -> add_optimization(binaryExpr);
-            case "*" -> "imul";
-            case "-" -> "isub";
-            case "/" -> "idiv";
-            case "&&"-> "iand";
+            case "*" -> List.of(JasminInstruction.of("imul"));
+            case "-" -> List.of(JasminInstruction.of("isub"));
+            case "/" -> List.of(JasminInstruction.of("idiv"));
+            case "&&"-> List.of(JasminInstruction.of("iand"));
             case "<" -> {
-                StringBuilder string=new StringBuilder();
-                int local_label=label_number;
-                label_number++;
-                string.append("isub" + NL);
-                string.append("iflt " + "cmp_label_true_" + local_label + NL);
-                string.append("iconst_0" + NL);
-                string.append("goto " + "cmp_label_end_" + local_label + NL);
-                string.append("cmp_label_true_" + local_label + ":" + NL);
-                string.append("iconst_1" + NL);
-                string.append("cmp_label_end_" + local_label + ":" + NL);
-
-
-                yield  string;
+                int local_label = context.newLabel();
+                yield List.of(
+                        JasminInstruction.of("isub"),
+                        JasminInstruction.of("iflt", "cmp_label_true_" + local_label),
+                        JasminInstruction.of("iconst_0"),
+                        JasminInstruction.of("goto", "cmp_label_end_" + local_label),
+                        new JasminLabel("cmp_label_true_" + local_label),
+                        JasminInstruction.of("iconst_1"),
+                        new JasminLabel("cmp_label_end_" + local_label));
             }
             default -> throw new NotImplementedException(binaryExpr.get("op"));
         };
 
         // apply operation
-        code.append(op).append(NL);
+        code.getCode().addAll(op);
         if(has_parent_stmt_pop_check(binaryExpr)){
             sub_stack_size(1);
-            code.append("pop" + NL);
+            code.add("pop");
         }
 
         return null;
     }
-    private Void visitNotExpr(JmmNode notExpr, StringBuilder code) {
+    private Void visitNotExpr(JmmNode notExpr, JasminMethod code) {
         add_stack_size(1);
         sub_stack_size(1);
-        code.append("iconst_1" + NL);
-        code.append("ixor" + NL);
+        code.add("iconst_1");
+        code.add("ixor");
         if(has_parent_stmt_pop_check(notExpr)){
             sub_stack_size(1);
-            code.append("pop" + NL);
+            code.add("pop");
         }
         return null;
     }
-    private Void visitNewObject(JmmNode newObject, StringBuilder code) {
+    private Void visitNewObject(JmmNode newObject, JasminMethod code) {
         var className = get_parsed_class(newObject.get("classname"));
 
         add_stack_size(2);
-        code.append("new " + className + NL);
-        code.append("dup" + NL);
-        code.append("invokespecial " + className + "/<init>()V" + NL);
+        code.add("new", className);
+        code.add("dup");
+        code.add("invokespecial", className + "/<init>()V");
         sub_stack_size(1);
 
         // TODO : WHATCHOUT FOR POP
         if(has_parent_stmt_pop_check(newObject)){
             sub_stack_size(1);
-            code.append("pop" + NL);
+            code.add("pop");
         }
 
         //code.append("invokespecial " + className + "/<init>()V" + NL);
         return null;
     }
-    private Void visitMemberCallExpr(JmmNode memberCallExpr, StringBuilder code) {
+    private Void visitMemberCallExpr(JmmNode memberCallExpr, JasminMethod code) {
         var methodName = memberCallExpr.get("name");
         var className = get_parsed_class(TypeUtils.getExprType(memberCallExpr.getJmmChild(0), table, CurrentMethod).getName());
         Type t = TypeUtils.getExprType_Ollir(memberCallExpr.getJmmChild(0), table, CurrentMethod);
@@ -326,43 +308,41 @@ public class JasminExprGeneratorVisitor extends PostorderJmmVisitor<StringBuilde
 
                     for (Symbol s : params) {
                         if (s.getType().getName().equals("_varargs")) {
-                            int num_of_reg = max_reg_val;
-                            max_reg_val++;
-                            max_reg_val++;
+                            int num_of_reg = context.newTempRegisters(2);
                             int non_var_args = params.size() - 1;
                             int varg_args_num = memberCallExpr.getNumChildren() - 1 - non_var_args;
                             add_stack_size(1);
-                            code.append(optimized_literal(varg_args_num) + NL);
-                            code.append("newarray int" + NL);
-                            code.append("astore" + parse_with_under(num_of_reg) + NL);
+                            code.add(JasminInstruction.constant(varg_args_num));
+                            code.add("newarray", "int");
+                            code.add(JasminInstruction.local("astore", num_of_reg));
                             for (int i = varg_args_num - 1; i >= 0; i--) {
                                 add_stack_size(1);
                                 // remove the top value to put the index then add it again
-                                code.append("istore" + parse_with_under(num_of_reg + 1)).append(NL);
-                                code.append("aload" + parse_with_under(num_of_reg)).append(NL);
-                                code.append(optimized_literal(i)).append(NL);
-                                code.append("iload" + parse_with_under(num_of_reg + 1)).append(NL);
-                                code.append("iastore" + NL).append(NL);
+                                code.add(JasminInstruction.local("istore", num_of_reg + 1));
+                                code.add(JasminInstruction.local("aload", num_of_reg));
+                                code.add(JasminInstruction.constant(i));
+                                code.add(JasminInstruction.local("iload", num_of_reg + 1));
+                                code.add("iastore");
                                 sub_stack_size(1);
                             }
                             sub_stack_size(varg_args_num);
-                            code.append("aload" + parse_with_under(num_of_reg)).append(NL);
+                            code.add(JasminInstruction.local("aload", num_of_reg));
                         }
                     }
                 }
             }
             if(memberCallExpr.getNumChildren() == 1) {
                 sub_stack_size(1);
-                code.append("invokestatic " + className + "/" + methodName + "()");
+                var invoke = new StringBuilder(className + "/" + methodName + "()");
                 if (className.equals(table.getClassName())) {
-                    code.append(getTypeReturnToStr(table.getReturnType(methodName))).append(NL);
+                    invoke.append(getTypeReturnToStr(table.getReturnType(methodName)));
                 }else if(has_ancertor_assign(memberCallExpr)!=null){
-                    code.append(getTypeToStr(has_ancertor_assign(memberCallExpr)));
+                    invoke.append(getTypeToStr(has_ancertor_assign(memberCallExpr)));
                     add_stack_size(1);
                 }else {
-                    code.append("V").append(NL);
+                    invoke.append("V");
                 }
-                code.append(NL);
+                code.add("invokestatic", invoke);
 
 
 
@@ -371,42 +351,41 @@ public class JasminExprGeneratorVisitor extends PostorderJmmVisitor<StringBuilde
             }
             var children = memberCallExpr.getChildren();
             sub_stack_size(1);
-            code.append("invokestatic " + className + "/" + methodName + "(");
+            var invoke = new StringBuilder(className + "/" + methodName + "(");
             for (int i = 1; i<children.size(); i++) {
                 t = TypeUtils.getExprType(children.get(i), table, CurrentMethod);
-                code.append(getTypeToStr(t));
+                invoke.append(getTypeToStr(t));
             }
             sub_stack_size(children.size()-1);
-            code.append(")");
+            invoke.append(")");
             if (className.equals(table.getClassName())) {
-                code.append(getTypeReturnToStr(table.getReturnType(methodName))).append(NL);
+                invoke.append(getTypeReturnToStr(table.getReturnType(methodName)));
             }else if(has_ancertor_assign(memberCallExpr)!=null){
-                code.append(getTypeToStr(has_ancertor_assign(memberCallExpr)));
+                invoke.append(getTypeToStr(has_ancertor_assign(memberCallExpr)));
                 add_stack_size(1);
             } else {
-                code.append("V").append(NL);
+                invoke.append("V");
             }
-            code.append(NL);
+            code.add("invokestatic", invoke);
             return null;
         }else{
             if(memberCallExpr.getNumChildren() == 1) {
                 sub_stack_size(1);
-                code.append("invokevirtual " + className + "/" + methodName + "()");
+                var invoke = className + "/" + methodName + "()";
                 if (className.equals(table.getClassName())) {
                     var test= table.getReturnType(methodName);
-                    code.append(getTypeReturnToStr(table.getReturnType(methodName))).append(NL);
+                    code.add("invokevirtual", invoke + getTypeReturnToStr(table.getReturnType(methodName)));
                     add_stack_size(1);
                     if(has_parent_stmt_pop_check( memberCallExpr) && !getTypeReturnToStr(table.getReturnType(methodName)).equals("V")){
-                        code.append("pop" + NL);
+                        code.add("pop");
                         sub_stack_size(1);
                     }
                 }else if(has_ancertor_assign(memberCallExpr)!=null){
-                    code.append(getTypeToStr(has_ancertor_assign(memberCallExpr)));
+                    code.add("invokevirtual", invoke + getTypeToStr(has_ancertor_assign(memberCallExpr)));
                     add_stack_size(1);
                 }else {
-                    code.append("V").append(NL);
+                    code.add("invokevirtual", invoke + "V");
                 }
-                code.append(NL);
 
                 return null;
             }
@@ -415,93 +394,90 @@ public class JasminExprGeneratorVisitor extends PostorderJmmVisitor<StringBuilde
                 List< Symbol> params =table.getParameters(methodName);
                 for(Symbol s : params){
                     if (s.getType().getName().equals("_varargs")){
-                        int num_of_reg = max_reg_val;
-                        max_reg_val++;
-                        max_reg_val++;
+                        int num_of_reg = context.newTempRegisters(2);
                         int non_var_args = params.size()-1;
                         int varg_args_num = memberCallExpr.getNumChildren()-1-non_var_args;
                         add_stack_size(1);
-                        code.append(optimized_literal(varg_args_num) + NL);
-                        code.append("newarray int" + NL);
-                        code.append("astore" + parse_with_under(num_of_reg) + NL);
+                        code.add(JasminInstruction.constant(varg_args_num));
+                        code.add("newarray", "int");
+                        code.add(JasminInstruction.local("astore", num_of_reg));
                         for (int i=varg_args_num-1;i>=0;i--){
                             add_stack_size(1);
                             // remove the top value to put the index then add it again
-                            code.append("istore"+parse_with_under(num_of_reg+1)).append(NL);
-                            code.append("aload"+parse_with_under(num_of_reg)).append(NL);
-                            code.append(optimized_literal(i)).append(NL);
-                            code.append("iload"+parse_with_under(num_of_reg+1)).append(NL);
-                            code.append("iastore" + NL).append(NL);
+                            code.add(JasminInstruction.local("istore", num_of_reg+1));
+                            code.add(JasminInstruction.local("aload", num_of_reg));
+                            code.add(JasminInstruction.constant(i));
+                            code.add(JasminInstruction.local("iload", num_of_reg+1));
+                            code.add("iastore");
                             sub_stack_size(1);
                         }
                         sub_stack_size(varg_args_num);
-                        code.append("aload"+parse_with_under(num_of_reg)).append(NL);
+                        code.add(JasminInstruction.local("aload", num_of_reg));
                     }
                 }
                 sub_stack_size(1);
-                code.append("invokevirtual " + className + "/" + methodName + "(");
+                var invoke = new StringBuilder(className + "/" + methodName + "(");
                 for(Symbol s :table.getParameters(methodName)){
                     String param = getTypeReturnToStr(s.getType());
-                    code.append(param);
+                    invoke.append(param);
                 }
-                code.append(")");
-                code.append(getTypeReturnToStr(table.getReturnType(methodName)));
-                code.append(NL);
+                invoke.append(")");
+                invoke.append(getTypeReturnToStr(table.getReturnType(methodName)));
+                code.add("invokevirtual", invoke);
                 sub_stack_size(table.getParameters(methodName).size());
                 if(!getTypeReturnToStr(table.getReturnType(methodName)).equals("V")){
                     add_stack_size(1);
                 }
                 if(has_parent_stmt_pop_check( memberCallExpr) && !getTypeReturnToStr(table.getReturnType(methodName)).equals("V")){
-                    code.append("pop" + NL);
+                    code.add("pop");
                     sub_stack_size(1);
                 }
                 return null;
             }
             if(memberCallExpr.getNumChildren() == 1) {
                 sub_stack_size(1);
-                code.append("invokevirtual " + className + "/" + methodName + "()");
+                var invoke = className + "/" + methodName + "()";
                 if (className.equals(table.getClassName())) {
                     var test= table.getReturnType(methodName);
-                    code.append(getTypeReturnToStr(table.getReturnType(methodName))).append(NL);
+                    code.add("invokevirtual", invoke + getTypeReturnToStr(table.getReturnType(methodName)));
                     if(has_parent_stmt_pop_check( memberCallExpr) && !getTypeReturnToStr(table.getReturnType(methodName)).equals("V")){
-                        code.append("pop" + NL);
+                        code.add("pop");
                     }
                 }else if(has_ancertor_assign(memberCallExpr)!=null){
-                    code.append(getTypeToStr(has_ancertor_assign(memberCallExpr))).append(NL);
+                    code.add("invokevirtual", invoke + getTypeToStr(has_ancertor_assign(memberCallExpr)));
                     add_stack_size(1);
                 }else {
-                    code.append("V").append(NL);
+                    code.add("invokevirtual", invoke + "V");
                 }
-                code.append(NL);
 
                 return null;
             }
 
             var children = memberCallExpr.getChildren();
             sub_stack_size(1);
-            code.append("invokevirtual " + className + "/" + methodName + "(");
+            var invoke = new StringBuilder(className + "/" + methodName + "(");
             for (int i = 1; i<children.size(); i++) {
                 t = TypeUtils.getExprType(children.get(i), table, CurrentMethod);
-                code.append(getTypeToStr(t));
+                invoke.append(getTypeToStr(t));
             }
-            code.append(")");
+            invoke.append(")");
             sub_stack_size(children.size()-1);
             if (className.equals(table.getClassName())) {
-                code.append(getTypeReturnToStr(table.getReturnType(methodName))).append(NL);
+                invoke.append(getTypeReturnToStr(table.getReturnType(methodName)));
                 if(!getTypeReturnToStr(table.getReturnType(methodName)).equals("V")){
                     add_stack_size(1);
                 }
             }else if(has_ancertor_assign(memberCallExpr)!=null){
-                code.append(getTypeToStr(has_ancertor_assign(memberCallExpr)));
+                invoke.append(getTypeToStr(has_ancertor_assign(memberCallExpr)));
                 add_stack_size(1);
 
             }else {
-                code.append("V");
+                invoke.append("V");
             }
-            code.append(NL);
+            code.add("invokevirtual", invoke);
 
             if(has_parent_stmt_pop_check( memberCallExpr) && !getTypeReturnToStr(table.getReturnType(methodName)).equals("V")){
-                code.append("pop" + NL);
+                code.add("pop");
             }
 
 
@@ -512,50 +488,47 @@ public class JasminExprGeneratorVisitor extends PostorderJmmVisitor<StringBuilde
     }
 
 
-    private Void visitMethodCallExpr(JmmNode methodCallExpr, StringBuilder code) {
+    private Void visitMethodCallExpr(JmmNode methodCallExpr, JasminMethod code) {
         var methodName = methodCallExpr.get("funcname");
         var className = table.getClassName();
         var children = methodCallExpr.getChildren();
 
         if (children.isEmpty()) {
             add_stack_size(1);
-            code.append("aload_0" + NL);
+            code.add("aload_0");
             sub_stack_size(1);
-            code.append("invokevirtual " + className + "/" + methodName + "()");
-            code.append(getTypeReturnToStr(table.getReturnType(methodName)));
+            code.add("invokevirtual", className + "/" + methodName + "()" + getTypeReturnToStr(table.getReturnType(methodName)));
             if(!getTypeReturnToStr(table.getReturnType(methodName)).equals("V")){
                 add_stack_size(1);
             }
-            code.append(NL);
 
             if(has_parent_stmt_pop_check( methodCallExpr) && !getTypeReturnToStr(table.getReturnType(methodName)).equals("V")){
-                code.append("pop" + NL);
+                code.add("pop");
             }
             return null;
         }
-        int num_of_reg = max_reg_val;
-        max_reg_val+=children.size();
+        int num_of_reg = context.newTempRegisters(children.size());
 
         for(int i = children.size(); i>0; i--){
-            code.append("astore" + parse_with_under(i+num_of_reg) + NL);
+            code.add(JasminInstruction.local("astore", i+num_of_reg));
         }
-        code.append("aload_0" + NL);
+        code.add("aload_0");
         for(int i = 0; i<children.size(); i++){
-            code.append("iload" + parse_with_under(num_of_reg) + NL);
+            code.add(JasminInstruction.local("iload", num_of_reg));
             num_of_reg++;
         }
 
-        code.append("invokevirtual " + className + "/" + methodName + "(");
+        var invoke = new StringBuilder(className + "/" + methodName + "(");
 
         for (int i = 0; i<children.size(); i++) {
             var t = TypeUtils.getExprType(children.get(i), table, CurrentMethod);
-            code.append(getTypeToStr(t));
+            invoke.append(getTypeToStr(t));
         }
-        code.append(")");
-        code.append(getTypeReturnToStr(table.getReturnType(methodName)));
-        code.append(NL);
+        invoke.append(")");
+        invoke.append(getTypeReturnToStr(table.getReturnType(methodName)));
+        code.add("invokevirtual", invoke);
         if(has_parent_stmt_pop_check( methodCallExpr) && !getTypeReturnToStr(table.getReturnType(methodName)).equals("V")){
-            code.append("pop" + NL);
+            code.add("pop");
         }
 
         return null;
@@ -679,33 +652,12 @@ public class JasminExprGeneratorVisitor extends PostorderJmmVisitor<StringBuilde
         return max_stack_num;
     }
 
-    public String parse_with_under(int i){
-        if(i>=4){
-            return " "+i;
-        }else{
-            return "_"+i;
-        }
-    }
-
-    public String optimized_literal(int value){
-        if(value>=0 && value<=5){
-            return "iconst_" + value + NL;
-        } else if (value >= -128 && value <= 127) {
-            return "bipush " + value + NL;
-        } else if (value >= -32768 && value <= 32767) {
-            return "sipush " + value + NL;
-        } else {
-            return "ldc " + value + NL;
-
-        }
-    }
-
-    public String add_optimization(JmmNode node){
+    public List<JasminCode> add_optimization(JmmNode node){
         var lft=node.getChildren().get(0);
         var rgt=node.getChildren().get(1);
-        StringBuilder s=new StringBuilder();
+        var s = new ArrayList<JasminCode>();
         if(lft==null || rgt==null){
-            return s.toString();
+            return s;
         }
         while(lft.getKind().equals("ParenExpr")){
             lft=lft.getChildren().get(0);
@@ -715,13 +667,13 @@ public class JasminExprGeneratorVisitor extends PostorderJmmVisitor<StringBuilde
         }
         if(lft.getKind().equals("IntegerLiteral") && rgt.getKind().equals("IntegerLiteral")){
             add_stack_size(1);
-            s.append(optimized_literal(Integer.valueOf(lft.get("value"))+Integer.valueOf(rgt.get("value")))).append(NL);
-            return s.toString();
+            s.add(JasminInstruction.constant(Integer.valueOf(lft.get("value"))+Integer.valueOf(rgt.get("value"))));
+            return s;
         }
         if(lft.getKind().equals("IntegerLiteral") && rgt.getKind().equals("VarRefExpr")){
             var fields = table.getFields();
             String var_name=rgt.get("name");
-            var reg_num=currentRegisters.get(var_name);
+            var reg_num=context.getRegister(var_name);
             String val=lft.get("value");
             int int_val=Integer.valueOf(val);
 
@@ -729,67 +681,67 @@ public class JasminExprGeneratorVisitor extends PostorderJmmVisitor<StringBuilde
                 for (var field : fields) {
                     if (field.getName().equals(var_name)) {
                         add_stack_size(2);
-                        s.append("aload_0" + NL);
-                        s.append("getfield " + table.getClassName() + "/" + var_name+" " + getTypeToStr(field.getType()) + NL);
-                        s.append(optimized_literal(int_val)).append(NL);
-                        s.append("iadd").append(NL);
+                        s.add(JasminInstruction.of("aload_0"));
+                        s.add(JasminInstruction.of("getfield", table.getClassName() + "/" + var_name, getTypeToStr(field.getType())));
+                        s.add(JasminInstruction.constant(int_val));
+                        s.add(JasminInstruction.of("iadd"));
                         sub_stack_size(1);
-                        return s.toString();
+                        return s;
                     }
                 }
             }
             if(int_val>=-128 && int_val<=127){
                 add_stack_size(1);
-                s.append("iinc ").append(reg_num).append(" ").append(int_val).append(NL);
-                s.append("iload").append(parse_with_under(reg_num)).append(NL);
+                s.add(JasminInstruction.of("iinc", reg_num, int_val));
+                s.add(JasminInstruction.local("iload", reg_num));
             }else{
                 add_stack_size(2);
-                s.append(optimized_literal(int_val)).append(NL);
-                s.append("iload").append(parse_with_under(reg_num)).append(NL);
-                s.append("iadd").append(NL);
+                s.add(JasminInstruction.constant(int_val));
+                s.add(JasminInstruction.local("iload", reg_num));
+                s.add(JasminInstruction.of("iadd"));
                 sub_stack_size(1);
             }
-            return s.toString();
+            return s;
         }
         if(rgt.getKind().equals("IntegerLiteral") && lft.getKind().equals("VarRefExpr")){
             String var_name=lft.get("name");
             var fields= table.getFields();
-            var reg_num=currentRegisters.get(var_name);
+            var reg_num=context.getRegister(var_name);
             String val=rgt.get("value");
             int int_val=Integer.valueOf(val);
             if((reg_num==null)){
                 for (var field : fields) {
                     if (field.getName().equals(var_name)) {
                         add_stack_size(2);
-                        s.append("aload_0" + NL);
-                        s.append("getfield " + table.getClassName() + "/" + var_name+" " + getTypeToStr(field.getType()) + NL);
-                        s.append(optimized_literal(int_val)).append(NL);
-                        s.append("iadd").append(NL);
+                        s.add(JasminInstruction.of("aload_0"));
+                        s.add(JasminInstruction.of("getfield", table.getClassName() + "/" + var_name, getTypeToStr(field.getType())));
+                        s.add(JasminInstruction.constant(int_val));
+                        s.add(JasminInstruction.of("iadd"));
                         sub_stack_size(1);
-                        return s.toString();
+                        return s;
                     }
                 }
             }
             if(int_val>=-128 && int_val<=127){
                 add_stack_size(1);
-                s.append("iinc ").append(reg_num).append(" ").append(int_val).append(NL);
-                s.append("iload").append(parse_with_under(reg_num)).append(NL);
+                s.add(JasminInstruction.of("iinc", reg_num, int_val));
+                s.add(JasminInstruction.local("iload", reg_num));
             }else{
                 add_stack_size(2);
-                s.append("iload").append(parse_with_under(reg_num)).append(NL);
-                s.append(optimized_literal(int_val)).append(NL);
-                s.append("iadd").append(NL);
+                s.add(JasminInstruction.local("iload", reg_num));
+                s.add(JasminInstruction.constant(int_val));
+                s.add(JasminInstruction.of("iadd"));
                 sub_stack_size(1);
             }
-            return s.toString();
+            return s;
         }
         if(lft.getKind().equals("VarRefExpr") && rgt.getKind().equals("VarRefExpr")){
 
             String var_name1=lft.get("name");
             String var_name2=rgt.get("name");
             var fields= table.getFields();
-            var reg_num1=currentRegisters.get(var_name1);
-            var reg_num2=currentRegisters.get(var_name2);
+            var reg_num1=context.getRegister(var_name1);
+            var reg_num2=context.getRegister(var_name2);
             if((reg_num1==null)){
                 for (var field : fields) {
                     if (field.getName().equals(var_name1)) {
@@ -797,23 +749,23 @@ public class JasminExprGeneratorVisitor extends PostorderJmmVisitor<StringBuilde
                             for (var field2 : fields) {
                                 if (field2.getName().equals(var_name2)) {
                                     add_stack_size(2);
-                                    s.append("aload_0" + NL);
-                                    s.append("getfield " + table.getClassName() + "/" + var_name1+" " + getTypeToStr(field.getType()) + NL);
-                                    s.append("aload_0" + NL);
-                                    s.append("getfield " + table.getClassName() + "/" + var_name2+" " + getTypeToStr(field2.getType()) + NL);
-                                    s.append("iadd").append(NL);
+                                    s.add(JasminInstruction.of("aload_0"));
+                                    s.add(JasminInstruction.of("getfield", table.getClassName() + "/" + var_name1, getTypeToStr(field.getType())));
+                                    s.add(JasminInstruction.of("aload_0"));
+                                    s.add(JasminInstruction.of("getfield", table.getClassName() + "/" + var_name2, getTypeToStr(field2.getType())));
+                                    s.add(JasminInstruction.of("iadd"));
                                     sub_stack_size(1);
-                                    return s.toString();
+                                    return s;
                                 }
                             }
                         }else{
                             add_stack_size(2);
-                            s.append("aload_0" + NL);
-                            s.append("getfield " + table.getClassName() + "/" + var_name1+" " + getTypeToStr(field.getType()) + NL);
-                            s.append("iload").append(parse_with_under(reg_num2)).append(NL);
-                            s.append("iadd").append(NL);
+                            s.add(JasminInstruction.of("aload_0"));
+                            s.add(JasminInstruction.of("getfield", table.getClassName() + "/" + var_name1, getTypeToStr(field.getType())));
+                            s.add(JasminInstruction.local("iload", reg_num2));
+                            s.add(JasminInstruction.of("iadd"));
                             sub_stack_size(1);
-                            return s.toString();
+                            return s;
                         }
                     }
                 }
@@ -822,21 +774,21 @@ public class JasminExprGeneratorVisitor extends PostorderJmmVisitor<StringBuilde
                     for (var field : fields) {
                         if (field.getName().equals(var_name2)) {
                             add_stack_size(1);
-                            s.append("iload").append(parse_with_under(reg_num1)).append(NL);
-                            s.append("aload_0" + NL);
-                            s.append("getfield " + table.getClassName() + "/" + var_name2 + " " + getTypeToStr(field.getType()) + NL);
-                            s.append("iadd").append(NL);
+                            s.add(JasminInstruction.local("iload", reg_num1));
+                            s.add(JasminInstruction.of("aload_0"));
+                            s.add(JasminInstruction.of("getfield", table.getClassName() + "/" + var_name2, getTypeToStr(field.getType())));
+                            s.add(JasminInstruction.of("iadd"));
                             sub_stack_size(1);
-                            return s.toString();
+                            return s;
                         }
                     }
                 } else {
                     add_stack_size(2);
-                    s.append("iload").append(parse_with_under(reg_num1)).append(NL);
-                    s.append("iload").append(parse_with_under(reg_num2)).append(NL);
-                    s.append("iadd").append(NL);
+                    s.add(JasminInstruction.local("iload", reg_num1));
+                    s.add(JasminInstruction.local("iload", reg_num2));
+                    s.add(JasminInstruction.of("iadd"));
                     sub_stack_size(1);
-                    return s.toString();
+                    return s;
                 }
             }
 
@@ -844,47 +796,47 @@ public class JasminExprGeneratorVisitor extends PostorderJmmVisitor<StringBuilde
         if(lft.getKind().equals("VarRefExpr")){
             String var_name=lft.get("name");
             var fields= table.getFields();
-            var reg_num=currentRegisters.get(var_name);
+            var reg_num=context.getRegister(var_name);
             if((reg_num==null)){
                 for (var field : fields) {
                     if (field.getName().equals(var_name)) {
                         add_stack_size(1);
-                        s.append("aload_0" + NL);
-                        s.append("getfield " + table.getClassName() + "/" + var_name+" " + getTypeToStr(field.getType()) + NL);
-                        s.append("iadd").append(NL);
+                        s.add(JasminInstruction.of("aload_0"));
+                        s.add(JasminInstruction.of("getfield", table.getClassName() + "/" + var_name, getTypeToStr(field.getType())));
+                        s.add(JasminInstruction.of("iadd"));
                         sub_stack_size(1);
-                        return s.toString();
+                        return s;
                     }
                 }
             }else{
                 add_stack_size(1);
-                s.append("iload").append(parse_with_under(reg_num)).append(NL);
-                s.append("iadd").append(NL);
+                s.add(JasminInstruction.local("iload", reg_num));
+                s.add(JasminInstruction.of("iadd"));
                 sub_stack_size(1);
-                return s.toString();
+                return s;
             }
         }
         if(rgt.getKind().equals("VarRefExpr")){
             String var_name=rgt.get("name");
             var fields= table.getFields();
-            var reg_num=currentRegisters.get(var_name);
+            var reg_num=context.getRegister(var_name);
             if((reg_num==null)){
                 for (var field : fields) {
                     if (field.getName().equals(var_name)) {
                         add_stack_size(1);
-                        s.append("aload_0" + NL);
-                        s.append("getfield " + table.getClassName() + "/" + var_name+" " + getTypeToStr(field.getType()) + NL);
-                        s.append("iadd").append(NL);
+                        s.add(JasminInstruction.of("aload_0"));
+                        s.add(JasminInstruction.of("getfield", table.getClassName() + "/" + var_name, getTypeToStr(field.getType())));
+                        s.add(JasminInstruction.of("iadd"));
                         sub_stack_size(1);
-                        return s.toString();
+                        return s;
                     }
                 }
             }else{
                 add_stack_size(1);
-                s.append("iload").append(parse_with_under(reg_num)).append(NL);
-                s.append("iadd").append(NL);
+                s.add(JasminInstruction.local("iload", reg_num));
+                s.add(JasminInstruction.of("iadd"));
                 sub_stack_size(1);
-                return s.toString();
+                return s;
             }
         }
         if(lft.getKind().equals("IntegerLiteral")){
@@ -892,10 +844,10 @@ public class JasminExprGeneratorVisitor extends PostorderJmmVisitor<StringBuilde
             int int_val=Integer.valueOf(val);
 
             add_stack_size(1);
-            s.append(optimized_literal(int_val)).append(NL);
-            s.append("iadd").append(NL);
+            s.add(JasminInstruction.constant(int_val));
+            s.add(JasminInstruction.of("iadd"));
             sub_stack_size(1);
-            return s.toString();
+            return s;
 
         }
         if(rgt.getKind().equals("IntegerLiteral")){
@@ -903,14 +855,14 @@ public class JasminExprGeneratorVisitor extends PostorderJmmVisitor<StringBuilde
             int int_val=Integer.valueOf(val);
 
             add_stack_size(1);
-            s.append(optimized_literal(int_val)).append(NL);
-            s.append("iadd").append(NL);
+            s.add(JasminInstruction.constant(int_val));
+            s.add(JasminInstruction.of("iadd"));
             sub_stack_size(1);
-            return s.toString();
+            return s;
         }
         sub_stack_size(1);
-        s.append("iadd").append(NL);
-        return s.toString();
+        s.add(JasminInstruction.of("iadd"));
+        return s;
     }
 
 
@@ -6,42 +6,74 @@ import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
 import pt.up.fe.comp.jmm.analysis.table.Type;
 import pt.up.fe.comp.jmm.ast.AJmmVisitor;
 import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.Stage;
 import pt.up.fe.comp2024.ast.Kind;
+import pt.up.fe.comp2024.ast.NodeUtils;
 import pt.up.fe.comp2024.ast.TypeUtils;
+import pt.up.fe.comp2024.backend.JasminClass;
+import pt.up.fe.comp2024.backend.JasminField;
+import pt.up.fe.comp2024.backend.JasminInstruction;
+import pt.up.fe.comp2024.backend.JasminMethod;
+import pt.up.fe.comp2024.regalloc.AstLiveness;
+import pt.up.fe.comp2024.regalloc.RegisterAllocator;
 import pt.up.fe.specs.util.SpecsCheck;
-import pt.up.fe.specs.util.utilities.StringLines;
 import pt.up.fe.comp2024.symboltable.JmmSymbolTableBuilder;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.stream.Collectors;
+import java.util.Set;
 
-public class JasminGeneratorVisitor extends AJmmVisitor<Void, String> {
-
-    private static final String NL = "\n";
-    private static final String TAB = "   ";
+public class JasminGeneratorVisitor extends AJmmVisitor<JasminMethod, Void> {
 
     private final SymbolTable table;
+    private final int registerAllocation;
+    private final List<Report> reports;
 
     private JasminExprGeneratorVisitor exprGenerator;
+    private JasminClass jasminClass;
 
     private String currentMethod;
-    private static int label_number=0;
     private int nextRegister;
-    private static int max_stack_size;
 
-    private static Map<String, Integer> currentRegisters;
+    private Map<String, Integer> currentRegisters;
+    private JasminMethodContext context;
 
     public JasminGeneratorVisitor(SymbolTable table) {
+        this(table, -1);
+    }
+
+    /**
+     * @param registerAllocation the registers each method may use, 0 for as few as possible, or -1 to give every
+     *                           variable its own register
+     */
+    public JasminGeneratorVisitor(SymbolTable table, int registerAllocation) {
         this.table = table;
+        this.registerAllocation = registerAllocation;
+        this.reports = new ArrayList<>();
         this.exprGenerator = null;
+        this.jasminClass = null;
         currentMethod = null;
         nextRegister = -1;
         currentRegisters = null;
     }
 
+    public List<Report> getReports() {
+        return reports;
+    }
+
+    /**
+     * @return the class of the program, with a method for each method declaration
+     */
+    public JasminClass generate(JmmNode program) {
+        visit(program);
+        return jasminClass;
+    }
+
 
     @Override
     protected void buildVisitor() {
@@ -62,7 +94,7 @@ public class JasminGeneratorVisitor extends AJmmVisitor<Void, String> {
     }
 
 
-    private String visitProgram(JmmNode program, Void unused) {
+    private Void visitProgram(JmmNode program, JasminMethod unused) {
         var imports = table.getImports();
         // TODO : IMPLEMENT IMPORTS
         // Get class decl node
@@ -70,114 +102,70 @@ public class JasminGeneratorVisitor extends AJmmVisitor<Void, String> {
 
         return visit(classDecl);
     }
-    private String visitIfStmt(JmmNode ifStmt, Void unused) {
-        var code = new StringBuilder();
-        int local_label=label_number;
-        label_number++;
+    private Void visitIfStmt(JmmNode ifStmt, JasminMethod code) {
+        int local_label = context.newLabel();
         // expr code
         exprGenerator.visit(ifStmt.getJmmChild(0), code);
 
-        code.append("ifeq " + "if_"+local_label+ "_else" + NL);
+        code.add("ifeq", "if_"+local_label+ "_else");
 
         // if code
-        var instCode = StringLines.getLines(visit(ifStmt.getJmmChild(1))).stream()
-                .collect(Collectors.joining(NL + TAB, TAB, NL));
-        code.append(instCode);
+        visit(ifStmt.getJmmChild(1), code);
 
-        code.append("goto " + "if_" +local_label+ "_end" + NL);
+        code.add("goto", "if_" +local_label+ "_end");
 
-        code.append("if_" +local_label + "_else:" + NL);
+        code.addLabel("if_" +local_label + "_else");
 
         // else code
-        instCode = StringLines.getLines(visit(ifStmt.getJmmChild(2))).stream()
-                .collect(Collectors.joining(NL + TAB, TAB, NL));
-        code.append(instCode);
+        visit(ifStmt.getJmmChild(2), code);
 
-        code.append("if_" +local_label + "_end:" + NL);
-        return code.toString();
+        code.addLabel("if_" +local_label + "_end");
+        return null;
     }
-    private String visitWhileStmt(JmmNode whileStmt,Void unused) {
-        var code = new StringBuilder();
-        int local_label=label_number;
-        label_number++;
-        code.append("while_"+local_label+ ":" + NL);
+    private Void visitWhileStmt(JmmNode whileStmt, JasminMethod code) {
+        int local_label = context.newLabel();
+        code.addLabel("while_"+local_label);
 
         exprGenerator.visit(whileStmt.getJmmChild(0), code);
-        code.append("ifeq " + "while_" + local_label+ "_end" + NL);
-        var instCode = StringLines.getLines(visit(whileStmt.getJmmChild(1))).stream()
-                .collect(Collectors.joining(NL + TAB, TAB, NL));
-
-        code.append(instCode);
-        code.append("goto " + "while_"+local_label + NL);
-        code.append("while_"+local_label + "_end:" + NL);
-        return code.toString();
-    }
+        code.add("ifeq", "while_" + local_label+ "_end");
+        visit(whileStmt.getJmmChild(1), code);
 
-    private String visitClassDecl(JmmNode classDecl, Void unused) {
-        var code = new StringBuilder();
+        code.add("goto", "while_"+local_label);
+        code.addLabel("while_"+local_label + "_end");
+        return null;
+    }
 
+    private Void visitClassDecl(JmmNode classDecl, JasminMethod unused) {
         // generate class name
         var className = table.getClassName();
-        code.append(".class public ").append(className).append(NL).append(NL);
 
         if(table.getSuper() != null) {
-            code.append(".super ").append(get_parsed_class(table.getSuper())).append(NL).append(NL);
+            jasminClass = new JasminClass(List.of("public"), className, get_parsed_class(table.getSuper()));
         }else{
-            code.append(".super java/lang/Object").append(NL);
+            jasminClass = new JasminClass(List.of("public"), className, "java/lang/Object");
         }
         for(Symbol field : table.getFields()){
-            code.append(".field ").append("public ").append(field.getName()).append(" ").append(this.getTypeToStr(field.getType())).append(NL);
+            jasminClass.addField(new JasminField(List.of("public"), field.getName(), this.getTypeToStr(field.getType())));
         }
         // to find constructor
         boolean found=false;
         for (var method : classDecl.getChildren()) {
             if(method.getKind().equals("VarDecl")){
                 continue;
-            }else{/*
-                if(method.get("name").equals(table.getClassName())){
-                    code.append(".method public <init>()V").append(NL);
-                    code.append(TAB).append("aload_0").append(NL);
-                    code.append(TAB).append("invokespecial ").append(get_parsed_class(table.getSuper())).append("/<init>(");
-                    for(Symbol param: table.getParameters(method.get("name"))){
-                        code.append(getTypeToStr(param.getType()));
-                    }
-                    code.append(")V").append(NL);
-                    code.append(TAB).append("return").append(NL);
-                    code.append(".end method").append(NL).append(NL);
-                    found=true;
-                    continue;
-                }*/
             }
-            code.append(visit(method));
+            visit(method);
         }
         if (!found){
             // generate a single constructor method
-            code.append( """
-                ;default constructor
-                .method public <init>()V
-                    aload_0
-                    invokespecial""");
-            if(table.getSuper() != null) {
-                code.append(" ").append(get_parsed_class(table.getSuper())).append("""
-            /<init>()V
-            return
-                .end method
-            """);
-            }else{
-                code.append( """
-                 java/lang/Object/<init>()V
-                    return
-                .end method
-                """);
-            }
+            jasminClass.addDefaultConstructor();
         }
 
 
 
-        return code.toString();
+        return null;
     }
 
-    private String visitMainMethodDecl(JmmNode mainMethodDecl, Void unused) {
+    private Void visitMainMethodDecl(JmmNode mainMethodDecl, JasminMethod unused) {
     var methodName = "main";
 
     // set method
@@ -191,62 +179,47 @@ public class JasminGeneratorVisitor extends AJmmVisitor<Void, String> {
 
     // initialize register map and set parameters
     currentRegisters = new HashMap<>();
+    var paramNames = new LinkedHashSet<String>();
     if (mainMethodDecl.hasAttribute("arg")){
         currentRegisters.put(mainMethodDecl.get("arg"), nextRegister);
+        paramNames.add(mainMethodDecl.get("arg"));
         nextRegister++;
     }
     for (var local : table.getLocalVariables(currentMethod)){
         currentRegisters.put(local.getName(), nextRegister);
         nextRegister++;
     }
-    max_stack_size=0;
-    exprGenerator = new JasminExprGeneratorVisitor(currentRegisters,table,currentMethod);
-
-    var code = new StringBuilder();
-    var stms = new StringBuilder();
+    allocateRegisters(mainMethodDecl, paramNames, true);
+    context = new JasminMethodContext(currentMethod, currentRegisters, nextRegister);
+    exprGenerator = new JasminExprGeneratorVisitor(context, table);
 
     // calculate modifier
-    var modifier = mainMethodDecl.getObject("isPublic", Boolean.class) ? "public " : "";
-    var modifierStatic = mainMethodDecl.getObject("isStatic", Boolean.class) ? "static " : "";
+    var modifiers = getModifiers(mainMethodDecl);
 
 
     // TODO: Hardcoded param types and return type, needs to be expanded
-    code.append("\n.method ").append(modifier).append(modifierStatic).append(methodName).append("(");
-
-    code.append("[Ljava/lang/String;");
-
-    code.append(")V").append(NL);
-    // Add limits
-        var test=getExtraRegisters(mainMethodDecl);
-
-
+    var code = new JasminMethod(modifiers, methodName, "([Ljava/lang/String;)V");
 
     for (var stmt : mainMethodDecl.getChildren("Stmt")) {
-        // Get code for statement, split into lines and insert the necessary indentation
-        var instCode = StringLines.getLines(visit(stmt)).stream()
-                .collect(Collectors.joining(NL + TAB, TAB, NL));
-
-        stms.append(instCode);
+        visit(stmt, code);
     }
-    code.append(TAB).append(".limit stack ").append(exprGenerator.get_max_stack_num()).append(NL);
-    code.append(TAB).append(".limit locals ").append((currentRegisters.size() + test)).append(NL);
-    code.append(stms);
-    code.append(TAB).append("return").append(NL);
-
-    code.append(".end method\n");
+    code.setStackLimit(exprGenerator.get_max_stack_num());
+    code.setLocalsLimit(context.getLocalsLimit());
+    code.add("return");
 
+    jasminClass.addMethod(code);
     // reset information
-    max_stack_size=0;
     exprGenerator = null;
     nextRegister = -1;
     currentRegisters = null;
+    context = null;
     currentMethod = null;
 
-    return code.toString();
+    return null;
 }
 
 
-    private String visitMethodDecl(JmmNode methodDecl, Void unused) {
+    private Void visitMethodDecl(JmmNode methodDecl, JasminMethod unused) {
         var methodName = methodDecl.get("name");
 
 
@@ -266,6 +239,7 @@ public class JasminGeneratorVisitor extends AJmmVisitor<Void, String> {
 
         // initialize register map and set parameters
         currentRegisters = new HashMap<>();
+        var isStatic = nextRegister == 0;
         var params = methodDecl.getChildren("Params");
         var varArgs = methodDecl.getChildren("VarArgs");
         if(!params.isEmpty()) {
@@ -283,71 +257,59 @@ public class JasminGeneratorVisitor extends AJmmVisitor<Void, String> {
             currentRegisters.put(varArgs.get(0).get("val"), nextRegister);
             nextRegister++;
         }
+        var paramNames = new LinkedHashSet<>(currentRegisters.keySet());
         for (var local : table.getLocalVariables(currentMethod)){
             currentRegisters.put(local.getName(), nextRegister);
             nextRegister++;
         }
-
-        max_stack_size=0;
-        exprGenerator = new JasminExprGeneratorVisitor(currentRegisters,table,currentMethod);
-
-        var code = new StringBuilder();
-        var stms = new StringBuilder();
+        allocateRegisters(methodDecl, paramNames, isStatic);
+        context = new JasminMethodContext(currentMethod, currentRegisters, nextRegister);
+        exprGenerator = new JasminExprGeneratorVisitor(context, table);
 
         // calculate modifier
-        var modifier = methodDecl.getObject("isPublic", Boolean.class) ? "public " : "";
-        var modifierStatic = methodDecl.getObject("isStatic", Boolean.class) ? "static " : "";
+        var modifiers = getModifiers(methodDecl);
 
 
         // TODO: Hardcoded param types and return type, needs to be expanded
-        code.append("\n.method ").append(modifier).append(modifierStatic).append(methodName).append("(");
+        var descriptor = new StringBuilder("(");
 
         if(!params.isEmpty()) {
             var paramList = params.get(0);
             for (var param : paramList.getChildren("Param")) {
                  Type t= TypeUtils.getVarExprType(param,table,currentMethod);
-                code.append(getTypeToStr(t));
+                descriptor.append(getTypeToStr(t));
             }
             // varargs
             if(paramList.hasAttribute("val")){
-                code.append("[I");
+                descriptor.append("[I");
             }
         }else if (!varArgs.isEmpty()) {
-            code.append("[I");
+            descriptor.append("[I");
         }
-        code.append(")").append(get_parsed_class(getTypeReturnToStr(table.getReturnType(currentMethod)))).append(NL);
-
-        var test= getExtraRegisters(methodDecl);
-        // Add limits
+        descriptor.append(")").append(get_parsed_class(getTypeReturnToStr(table.getReturnType(currentMethod))));
+        var code = new JasminMethod(modifiers, methodName, descriptor.toString());
 
         for (var stmt : methodDecl.getChildren("Stmt")) {
-            // Get code for statement, split into lines and insert the necessary indentation
-            var instCode = StringLines.getLines(visit(stmt)).stream()
-                    .collect(Collectors.joining(NL + TAB, TAB, NL));
-
-            stms.append(instCode);
+            visit(stmt, code);
         }
-        code.append(TAB).append(".limit stack ").append(exprGenerator.get_max_stack_num()).append(NL);
-        code.append(TAB).append(".limit locals ").append((currentRegisters.size() +test+1)).append(NL);
-        code.append(stms);
+        code.setStackLimit(exprGenerator.get_max_stack_num());
+        code.setLocalsLimit(context.getLocalsLimit());
         if (table.getReturnType(currentMethod).getName().equals("void")){
-            code.append(TAB).append("return").append(NL);
+            code.add("return");
         }
 
-        code.append(".end method\n");
+        jasminClass.addMethod(code);
         // reset information
-        max_stack_size=0;
         exprGenerator = null;
         nextRegister = -1;
         currentRegisters = null;
+        context = null;
         currentMethod = null;
 
-        return code.toString();
+        return null;
     }
 
-    private String visitAssignStmt(JmmNode assignStmt, Void unused) {
-        var code = new StringBuilder();
-
+    private Void visitAssignStmt(JmmNode assignStmt, JasminMethod code) {
         // generate code that will put the value on the right on top of the stack
 
 
@@ -365,8 +327,8 @@ public class JasminGeneratorVisitor extends AJmmVisitor<Void, String> {
             exprGenerator.visit(assignStmt.getChild(1), code);
 
             exprGenerator.sub_stack_size(1);
-            code.append("iastore").append(NL);
-            return code.toString();
+            code.add("iastore");
+            return null;
         }
         var destName = lhs.get("name");
 
@@ -380,11 +342,11 @@ public class JasminGeneratorVisitor extends AJmmVisitor<Void, String> {
             for (Symbol field : fieldType) {
                 if (field.getName().equals(destName)) {
                     exprGenerator.add_stack_size(1);
-                    code.append("aload_0").append(NL);
+                    code.add("aload_0");
                     exprGenerator.visit(assignStmt.getChild(1), code);
-                    code.append("putfield ").append(table.getClassName()).append("/").append(destName).append(" ").append(getTypeToStr(field.getType())).append(NL);
+                    code.add("putfield", table.getClassName() + "/" + destName, getTypeToStr(field.getType()));
                     exprGenerator.sub_stack_size(1);
-                    return code.toString();
+                    return null;
                 }
             }
         }
@@ -393,65 +355,70 @@ public class JasminGeneratorVisitor extends AJmmVisitor<Void, String> {
         Type t = TypeUtils.getVarExprType(assignStmt.getJmmChild(0),table,currentMethod);
         if (t.isArray()){
             exprGenerator.sub_stack_size(1);
-            code.append("astore").append(exprGenerator.parse_with_under(reg)).append(NL);
-            return code.toString();
+            code.add(JasminInstruction.local("astore", reg));
+            return null;
         }
         if (t.getName().equals("int") || t.getName().equals("boolean")) {
             exprGenerator.sub_stack_size(1);
-            code.append("istore").append(exprGenerator.parse_with_under(reg)).append(NL);
+            code.add(JasminInstruction.local("istore", reg));
         }else{
             exprGenerator.sub_stack_size(1);
-            code.append("astore").append(exprGenerator.parse_with_under(reg)).append(NL);
+            code.add(JasminInstruction.local("astore", reg));
         }
 
-        return code.toString();
+        return null;
     }
 
-    private String visitReturnStmt(JmmNode returnStmt, Void unused) {
+    private Void visitReturnStmt(JmmNode returnStmt, JasminMethod code) {
 
-        var code = new StringBuilder();
         Type returnType = table.getReturnType(currentMethod);
 
         switch (returnType.getName()){
             case "void":
                 exprGenerator.visit(returnStmt.getChild(0), code);
-                code.append("return").append(NL);
+                code.add("return");
                 break;
             case "int", "boolean":
                 exprGenerator.visit(returnStmt.getChild(0), code);
-                code.append("ireturn").append(NL);
+                code.add("ireturn");
                 break;
             default:
                 exprGenerator.visit(returnStmt.getChild(0), code);
-                code.append("areturn").append(NL);
+                code.add("areturn");
                 break;
         }
 
 
-        return code.toString();
+        return null;
     }
 
-    private String visitExprStmt(JmmNode exprStmt, Void unused) {
-        var code = new StringBuilder();
-
+    private Void visitExprStmt(JmmNode exprStmt, JasminMethod code) {
         // generate code for expression
         exprGenerator.visit(exprStmt.getChild(0), code);
 
-        return code.toString();
+        return null;
     }
 
-    private String visitBlockStmt(JmmNode blockStmt, Void unused) {
-        var code = new StringBuilder();
-
+    private Void visitBlockStmt(JmmNode blockStmt, JasminMethod code) {
         for (var stmt : blockStmt.getChildren("Stmt")) {
-            // Get code for statement, split into lines and insert the necessary indentation
-            var instCode = StringLines.getLines(visit(stmt)).stream()
-                    .collect(Collectors.joining(NL + TAB, TAB, NL));
-
-            code.append(instCode);
+            visit(stmt, code);
         }
 
-        return code.toString();
+        return null;
+    }
+
+    /**
+     * @return "public" and "static", for the methods declared with them
+     */
+    private List<String> getModifiers(JmmNode methodDecl) {
+        var modifiers = new ArrayList<String>();
+        if (methodDecl.getObject("isPublic", Boolean.class)) {
+            modifiers.add("public");
+        }
+        if (methodDecl.getObject("isStatic", Boolean.class)) {
+            modifiers.add("static");
+        }
+        return modifiers;
     }
 
     private String getTypeToStr(pt.up.fe.comp.jmm.analysis.table.Type type){
@@ -506,42 +473,43 @@ public class JasminGeneratorVisitor extends AJmmVisitor<Void, String> {
         return class_name;
     }
 
-    //create a dfs to get the number of extra registers needed
-    private int getExtraRegisters(JmmNode node){
-        int extra=0;
-        if(node.getKind().equals("MemberCallExpr")) {
-            var CurrentMethod = get_Caller_method(node);
-
-            Type t1 = TypeUtils.getExprType(node.getJmmChild(0), table, CurrentMethod);
-            if (node.getJmmChild(0).getKind().equals("ThisRefExpr") || t1.getName().equals(table.getClassName())) {
-                var func = node.get("name");
-                List< Symbol> params =table.getParameters(func);
-                for(Symbol s : params) {
-                    if (s.getType().getName().equals("_varargs")) {
-                        extra++;
-                        extra++;
-                    }
-                }
-            }
-        }else if (node.getKind().equals("Array")){
-            extra++;
-            extra++;
-
+    /**
+     * Gives the variables of the method the registers found by graph colouring, if register allocation is on, and
+     * sets the next free register after them. The parameters keep their registers, right after "this".
+     */
+    private void allocateRegisters(JmmNode method, Set<String> params, boolean isStatic) {
+        if (registerAllocation < 0) {
+            return;
         }
-        for (var child : node.getChildren()) {
-            extra+=getExtraRegisters(child);
+
+        var fixed = new HashMap<String, Integer>();
+        for (var param : params) {
+            fixed.put(param, currentRegisters.get(param));
         }
-        return extra;
-    }
 
-    private String get_Caller_method(JmmNode node){
-        while (!(node.getKind()).equals("MethodDecl") && !(node.getKind()).equals("MainMethodDecl")){
-            if(node.getParent()==null){
-                return null;
+        var graph = AstLiveness.interference(method, currentRegisters.keySet(), params);
+        if (!isStatic) {
+            // "this" is never assigned and is loaded from register 0 by every field access
+            fixed.put("this", 0);
+            for (var name : currentRegisters.keySet()) {
+                graph.addInterference("this", name);
             }
-            node=node.getParent();
         }
-        return node.get("name");
+
+        var allocator = new RegisterAllocator(graph, fixed);
+        var registers = allocator.allocate(registerAllocation);
+        if (registers.isEmpty()) {
+            var minimum = allocator.getMinimumRegisters();
+            reports.add(Report.newError(Stage.OPTIMIZATION, NodeUtils.getLine(method), NodeUtils.getColumn(method),
+                    "Method '" + currentMethod + "' needs at least " + minimum + " registers, but only "
+                            + registerAllocation + " were given", null));
+            registers = allocator.allocate(minimum);
+        }
+
+        currentRegisters = new HashMap<>(registers.get());
+        currentRegisters.remove("this");
+        nextRegister = currentRegisters.values().stream().mapToInt(register -> register + 1).max().orElse(0);
+        nextRegister = Math.max(nextRegister, isStatic ? 0 : 1);
     }
 
 
@@ -0,0 +1,71 @@
+package pt.up.fe.comp2024.optimization_jasmin;
+
+import java.util.Map;
+
+/**
+ * Code generation state of a single method, shared by the statement and expression generators: the registers of its
+ * variables, the registers taken for temporaries and the next free label.
+ * <p>
+ * A new context is created for every method, so labels and temporaries only depend on the method being generated,
+ * never on other methods or on other compilations running at the same time.
+ */
+public class JasminMethodContext {
+
+    private final String methodName;
+    private final Map<String, Integer> registers;
+    private int nextTempRegister;
+    private int nextLabel;
+
+    /**
+     * @param firstTempRegister the first register after the ones of "this", the parameters and the local variables
+     */
+    public JasminMethodContext(String methodName, Map<String, Integer> registers, int firstTempRegister) {
+        this.methodName = methodName;
+        this.registers = registers;
+        this.nextTempRegister = firstTempRegister;
+        this.nextLabel = 0;
+    }
+
+    public String getMethodName() {
+        return methodName;
+    }
+
+    /**
+     * @return the registers of the parameters and local variables, by name
+     */
+    public Map<String, Integer> getRegisters() {
+        return registers;
+    }
+
+    /**
+     * @return the register of the variable, or null if it is not a parameter or local variable, e.g. a field
+     */
+    public Integer getRegister(String name) {
+        return registers.get(name);
+    }
+
+    /**
+     * Takes consecutive registers for temporaries.
+     *
+     * @return the first of the registers
+     */
+    public int newTempRegisters(int count) {
+        var first = nextTempRegister;
+        nextTempRegister += count;
+        return first;
+    }
+
+    /**
+     * @return the number of registers the method uses, the value of its ".limit locals"
+     */
+    public int getLocalsLimit() {
+        return nextTempRegister;
+    }
+
+    /**
+     * @return a number not used by any other label of the method
+     */
+    public int newLabel() {
+        return nextLabel++;
+    }
+}
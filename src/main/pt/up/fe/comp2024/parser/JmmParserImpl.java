@@ -1,14 +1,22 @@
 package pt.up.fe.comp2024.parser;
 
 import org.antlr.v4.runtime.ANTLRInputStream;
-import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.BailErrorStrategy;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
 import pt.up.fe.comp.jmm.ast.antlr.AntlrParser;
 import pt.up.fe.comp.jmm.parser.JmmParser;
 import pt.up.fe.comp.jmm.parser.JmmParserResult;
 import pt.up.fe.comp.jmm.report.Report;
 import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.stats.CompilerStats;
 
-import java.util.Collections;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.Map;
 
 /**
@@ -26,6 +34,8 @@ import java.util.Map;
 
 public class JmmParserImpl implements JmmParser {
 
+    private static final int READ_CHUNK_SIZE = 64 * 1024;
+
     @Override
     public String getDefaultRule() {
         return "program";
@@ -33,24 +43,101 @@ public class JmmParserImpl implements JmmParser {
 
     @Override
     public JmmParserResult parse(String jmmCode, String startingRule, Map<String, String> config) {
+        return parse(new ANTLRInputStream(jmmCode), startingRule, config);
+    }
 
-        try {
-            // Convert code string into a character stream
-            var input = new ANTLRInputStream(jmmCode);
-            // Transform characters into tokens using the lexer
-            var lex = new pt.up.fe.comp2024.JavammLexer(input);
-            // Wrap lexer around a token stream
-            var tokens = new CommonTokenStream(lex);
-            // Transforms tokens into a parse tree
-            var parser = new pt.up.fe.comp2024.JavammParser(tokens);
+    /**
+     * Parses a source file, decoding it straight into the lexer input, without reading it into a String first.
+     */
+    public JmmParserResult parse(File source, Map<String, String> config) {
+        ANTLRInputStream input;
+
+        // the size in bytes is an upper bound of the size in chars, but the stream doubles its buffer whenever there is
+        // less than a full chunk left, so leave room for one more chunk to never copy it
+        try (var reader = Files.newBufferedReader(source.toPath(), StandardCharsets.UTF_8)) {
+            input = new ANTLRInputStream(reader, getBufferSize(source), READ_CHUNK_SIZE);
+        } catch (IOException e) {
+            return JmmParserResult.newError(Report.newError(Stage.SYNTATIC, -1, -1, "Could not read " + source, e), config);
+        }
+
+        return parse(input, getDefaultRule(), config);
+    }
 
+    static int getBufferSize(File source) {
+        return (int) Math.min(Integer.MAX_VALUE - 8, source.length() + READ_CHUNK_SIZE);
+    }
+
+    private JmmParserResult parse(CharStream input, String startingRule, Map<String, String> config) {
+
+        try {
+            var profile = CompilerConfig.getProfileParser(config);
+            var pooled = ParserPool.acquire(input, profile);
 
-            // Convert ANTLR CST to JmmNode AST
-            return AntlrParser.parse(lex, parser, startingRule, config);
+            try {
+                return parse(pooled, input, startingRule, config, profile);
+            } finally {
+                pooled.release();
+            }
 
         } catch (Exception e) {
             // There was an uncaught exception during parsing, create an error JmmParserResult without root node
             return JmmParserResult.newError(Report.newError(Stage.SYNTATIC, -1, -1, "Exception during parsing", e), config);
         }
     }
+
+    private JmmParserResult parse(ParserPool.PooledParser pooled, CharStream input, String startingRule,
+                                  Map<String, String> config, boolean profile) {
+
+        var lex = pooled.lexer;
+        var parser = pooled.parser;
+
+        // First try SLL prediction, which is faster and enough for almost every input. The bail strategy makes
+        // the parser give up on the first error instead of recovering, since that error may be SLL's fault
+        parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+        parser.setErrorHandler(new BailErrorStrategy());
+
+        try {
+            var result = CompilerStats.measure("PARSE/SLL", () -> AntlrParser.parse(lex, parser, startingRule, config));
+            ParserTelemetry.recordSll();
+            return result;
+        } catch (RuntimeException e) {
+            if (!isParseCancellation(e)) {
+                throw e;
+            }
+        } finally {
+            if (profile) {
+                ParserTelemetry.recordProfile(parser);
+            }
+        }
+
+        // SLL failed, either the input has syntax errors or needs full context. Parse again from the start, with
+        // full LL prediction and the default error recovery, so that syntax errors are reported as usual. The code is
+        // lexed again, lexer errors were reported to the listeners of the first attempt
+        ParserTelemetry.recordFallback();
+
+        input.seek(0);
+        pooled.reset(input, profile);
+        parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+
+        try {
+            return CompilerStats.measure("PARSE/LL", () -> AntlrParser.parse(lex, parser, startingRule, config));
+        } finally {
+            if (profile) {
+                ParserTelemetry.recordProfile(parser);
+            }
+        }
+    }
+
+    /**
+     * The bail strategy throws ParseCancellationException, which reaches us wrapped by the reflective rule call.
+     */
+    private static boolean isParseCancellation(Throwable e) {
+        for (var cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ParseCancellationException) {
+                return true;
+            }
+        }
+
+        return false;
+    }
 }
@@ -0,0 +1,133 @@
+package pt.up.fe.comp2024.parser;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.DefaultErrorStrategy;
+import org.antlr.v4.runtime.atn.ATN;
+import org.antlr.v4.runtime.atn.ATNState;
+import org.antlr.v4.runtime.atn.LexerATNSimulator;
+import org.antlr.v4.runtime.atn.ParserATNSimulator;
+import org.antlr.v4.runtime.atn.PredictionContextCache;
+import org.antlr.v4.runtime.dfa.DFA;
+import pt.up.fe.comp2024.JavammLexer;
+import pt.up.fe.comp2024.JavammParser;
+
+/**
+ * Keeps one lexer/parser pair per thread, reset for every parse instead of created again.
+ * <p>
+ * Only the token stream is created again, since in this ANTLR version it cannot be reset after reaching EOF.
+ * <p>
+ * All pairs predict with the same DFA and prediction context caches, which ANTLR updates under its own locks, so what
+ * one thread learns about the grammar speeds up the others. The caches only grow, {@link #clearCaches()} drops them
+ * when memory is needed elsewhere.
+ */
+public class ParserPool {
+
+    private static volatile SharedCaches caches = new SharedCaches();
+
+    private static final ThreadLocal<PooledParser> POOL = ThreadLocal.withInitial(PooledParser::new);
+
+    private ParserPool() {
+    }
+
+    /**
+     * Replaces the shared caches by empty ones. Parsers pick up the new caches on their next reset.
+     */
+    public static void clearCaches() {
+        caches = new SharedCaches();
+    }
+
+    /**
+     * @return number of DFA states currently cached by the parser
+     */
+    public static int getCachedStates() {
+        var current = caches;
+        var states = 0;
+        for (var dfa : current.parserDfa) {
+            states += dfa.states.size();
+        }
+        return states;
+    }
+
+    /**
+     * Returns the lexer/parser pair of the current thread, ready to parse the given input.
+     * <p>
+     * The pair must be released before the next acquire on the same thread. A nested acquire gets a new pair.
+     */
+    static PooledParser acquire(CharStream input, boolean profile) {
+        var pooled = POOL.get();
+        if (pooled.inUse) {
+            pooled = new PooledParser();
+        }
+
+        pooled.reset(input, profile);
+        pooled.inUse = true;
+        return pooled;
+    }
+
+    private static DFA[] newDfa(ATN atn) {
+        var dfa = new DFA[atn.getNumberOfDecisions()];
+        for (int i = 0; i < dfa.length; i++) {
+            dfa[i] = new DFA(atn.getDecisionState(i), i);
+        }
+        return dfa;
+    }
+
+    private static class SharedCaches {
+        private final DFA[] lexerDfa = newDfa(JavammLexer._ATN);
+        private final DFA[] parserDfa = newDfa(JavammParser._ATN);
+        private final PredictionContextCache contexts = new PredictionContextCache();
+    }
+
+    static class PooledParser {
+
+        private static final String EMPTY = "";
+
+        final JavammLexer lexer;
+        final JavammParser parser;
+
+        private SharedCaches installedCaches;
+        private boolean inUse;
+
+        private PooledParser() {
+            lexer = new JavammLexer(new ANTLRInputStream(EMPTY));
+            parser = new JavammParser(new CommonTokenStream(lexer));
+            installedCaches = null;
+            inUse = false;
+        }
+
+        /**
+         * Prepares the pair for a new parse of the given input, which must be at its start.
+         */
+        void reset(CharStream input, boolean profile) {
+            var current = caches;
+            if (installedCaches != current) {
+                lexer.setInterpreter(new LexerATNSimulator(lexer, JavammLexer._ATN, current.lexerDfa, current.contexts));
+                parser.setInterpreter(new ParserATNSimulator(parser, JavammParser._ATN, current.parserDfa, current.contexts));
+                installedCaches = current;
+            }
+
+            lexer.setInputStream(input);
+            parser.setTokenStream(new CommonTokenStream(lexer));
+            parser.setErrorHandler(new DefaultErrorStrategy());
+
+            // Parser.reset() keeps the ATN state where the last parse stopped, the root context would take it as its
+            // invoking state and error recovery would follow it into rules that never ran
+            parser.setState(ATNState.INVALID_STATE_NUMBER);
+
+            // a profiling simulator keeps its stats, turn it off first so each parse starts from a clean one
+            parser.setProfile(false);
+            parser.setProfile(profile);
+        }
+
+        /**
+         * Drops the tokens and parse tree of the last parse, and returns the pair to the pool.
+         */
+        void release() {
+            lexer.setInputStream(new ANTLRInputStream(EMPTY));
+            parser.setTokenStream(new CommonTokenStream(lexer));
+            inUse = false;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package pt.up.fe.comp2024.parser;
+
+import org.antlr.v4.runtime.Parser;
+
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide counters of how {@link JmmParserImpl} predicted its parses.
+ * <p>
+ * Counts the parses solved with SLL prediction alone and the ones that had to fall back to full LL. When profiling is
+ * enabled, also accumulates the ANTLR per-decision statistics of every parse, so that expensive decisions of the
+ * grammar can be found.
+ */
+public class ParserTelemetry {
+
+    private static final AtomicLong SLL_PARSES = new AtomicLong();
+    private static final AtomicLong LL_FALLBACKS = new AtomicLong();
+    private static final Map<Integer, DecisionStats> DECISIONS = new ConcurrentHashMap<>();
+
+    private ParserTelemetry() {
+    }
+
+    static void recordSll() {
+        SLL_PARSES.incrementAndGet();
+    }
+
+    static void recordFallback() {
+        LL_FALLBACKS.incrementAndGet();
+    }
+
+    /**
+     * Adds the per-decision statistics of a parser that ran with profiling enabled.
+     */
+    static void recordProfile(Parser parser) {
+        var parseInfo = parser.getParseInfo();
+        if (parseInfo == null) {
+            return;
+        }
+
+        for (var info : parseInfo.getDecisionInfo()) {
+            if (info.invocations == 0) {
+                continue;
+            }
+
+            var ruleIndex = parser.getATN().getDecisionState(info.decision).ruleIndex;
+            var stats = DECISIONS.computeIfAbsent(info.decision,
+                    decision -> new DecisionStats(decision, parser.getRuleNames()[ruleIndex]));
+
+            synchronized (stats) {
+                stats.invocations += info.invocations;
+                stats.timeInPrediction += info.timeInPrediction;
+                stats.sllLookahead += info.SLL_TotalLook;
+                stats.llLookahead += info.LL_TotalLook;
+                stats.llFallbacks += info.LL_Fallback;
+                stats.ambiguities += info.ambiguities.size();
+            }
+        }
+    }
+
+    public static long getSllParses() {
+        return SLL_PARSES.get();
+    }
+
+    public static long getLlFallbacks() {
+        return LL_FALLBACKS.get();
+    }
+
+    public static void reset() {
+        SLL_PARSES.set(0);
+        LL_FALLBACKS.set(0);
+        DECISIONS.clear();
+    }
+
+    public static String toReport() {
+        var report = new StringBuilder();
+
+        var total = getSllParses() + getLlFallbacks();
+        report.append(String.format("Parser: %d parses, %d solved with SLL, %d fell back to LL (%.1f%%)%n",
+                total, getSllParses(), getLlFallbacks(), total == 0 ? 0.0 : 100.0 * getLlFallbacks() / total));
+
+        if (DECISIONS.isEmpty()) {
+            return report.toString();
+        }
+
+        report.append(String.format("   %-8s %-16s %12s %12s %10s %10s %10s %6s%n",
+                "decision", "rule", "time (ms)", "invocations", "SLL look", "LL look", "LL fallbk", "ambig"));
+
+        DECISIONS.values().stream()
+                .sorted(Comparator.comparingLong((DecisionStats stats) -> stats.timeInPrediction).reversed())
+                .forEach(stats -> report.append(String.format("   %-8d %-16s %12.3f %12d %10d %10d %10d %6d%n",
+                        stats.decision, stats.rule, stats.timeInPrediction / 1e6, stats.invocations,
+                        stats.sllLookahead, stats.llLookahead, stats.llFallbacks, stats.ambiguities)));
+
+        return report.toString();
+    }
+
+    private static class DecisionStats {
+        private final int decision;
+        private final String rule;
+        private long invocations;
+        private long timeInPrediction;
+        private long sllLookahead;
+        private long llLookahead;
+        private long llFallbacks;
+        private long ambiguities;
+
+        private DecisionStats(int decision, String rule) {
+            this.decision = decision;
+            this.rule = rule;
+        }
+    }
+}
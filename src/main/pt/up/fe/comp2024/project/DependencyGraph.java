@@ -0,0 +1,208 @@
+package pt.up.fe.comp2024.project;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Which source files of a project need the interface of which others before they can be compiled.
+ * <p>
+ * J-- classes have no package, so a file depends on another when it imports or extends the class the other declares
+ * by its name alone, e.g. "import A;". Anything else is left to the library path.
+ */
+public class DependencyGraph {
+
+    private final List<SourceHeader> sources;
+    private final Map<String, List<SourceHeader>> byClassName;
+    private final Map<SourceHeader, List<SourceHeader>> dependencies;
+
+    private DependencyGraph(List<SourceHeader> sources) {
+        this.sources = sources;
+        this.byClassName = new HashMap<>();
+        this.dependencies = new IdentityHashMap<>();
+
+        for (var source : sources) {
+            if (source.className() != null) {
+                byClassName.computeIfAbsent(source.className(), name -> new ArrayList<>()).add(source);
+            }
+        }
+
+        for (var source : sources) {
+            var sourceDependencies = new LinkedHashSet<SourceHeader>();
+            for (var importPath : source.imports()) {
+                if (!importPath.contains(".")) {
+                    findClass(importPath).ifPresent(sourceDependencies::add);
+                }
+            }
+            if (source.superName() != null) {
+                findClass(source.superName()).ifPresent(sourceDependencies::add);
+            }
+            dependencies.put(source, new ArrayList<>(sourceDependencies));
+        }
+    }
+
+    public static DependencyGraph of(List<SourceHeader> sources) {
+        return new DependencyGraph(sources);
+    }
+
+    public List<SourceHeader> getSources() {
+        return sources;
+    }
+
+    /**
+     * @return the sources that must be compiled before the given one
+     */
+    public List<SourceHeader> getDependencies(SourceHeader source) {
+        return dependencies.get(source);
+    }
+
+    /**
+     * @return the names of the classes declared by more than one source, with the sources that declare them
+     */
+    public Map<String, List<SourceHeader>> getDuplicateClasses() {
+        var duplicates = new HashMap<String, List<SourceHeader>>();
+        byClassName.forEach((name, declaring) -> {
+            if (declaring.size() > 1) {
+                duplicates.put(name, declaring);
+            }
+        });
+        return duplicates;
+    }
+
+    /**
+     * Finds the dependency cycles with Tarjan's algorithm.
+     *
+     * @return each cycle as the list of its sources, a source that depends on itself being a cycle of one
+     */
+    public List<List<SourceHeader>> getCycles() {
+        return new Tarjan().run();
+    }
+
+    /**
+     * Orders the sources in waves, every source of a wave depending only on sources of earlier waves, so that the
+     * sources of a wave can be compiled at the same time. Sources in a cycle, or depending on one, are left out.
+     */
+    public List<List<SourceHeader>> getWaves() {
+        var pending = new IdentityHashMap<SourceHeader, Integer>();
+        var dependents = new IdentityHashMap<SourceHeader, List<SourceHeader>>();
+        var ready = new ArrayList<SourceHeader>();
+
+        for (var source : sources) {
+            var sourceDependencies = dependencies.get(source);
+            pending.put(source, sourceDependencies.size());
+            for (var dependency : sourceDependencies) {
+                dependents.computeIfAbsent(dependency, key -> new ArrayList<>()).add(source);
+            }
+            if (sourceDependencies.isEmpty()) {
+                ready.add(source);
+            }
+        }
+
+        var waves = new ArrayList<List<SourceHeader>>();
+        while (!ready.isEmpty()) {
+            waves.add(ready);
+
+            var next = new ArrayList<SourceHeader>();
+            for (var source : ready) {
+                for (var dependent : dependents.getOrDefault(source, Collections.emptyList())) {
+                    if (pending.merge(dependent, -1, Integer::sum) == 0) {
+                        next.add(dependent);
+                    }
+                }
+            }
+            ready = next;
+        }
+
+        return waves;
+    }
+
+    private Optional<SourceHeader> findClass(String className) {
+        var declaring = byClassName.get(className);
+        return declaring == null ? Optional.empty() : Optional.of(declaring.get(0));
+    }
+
+    /**
+     * Strongly connected components, iterative so that long dependency chains do not overflow the stack.
+     */
+    private class Tarjan {
+        private final Map<SourceHeader, Integer> indexes = new IdentityHashMap<>();
+        private final Map<SourceHeader, Integer> lowLinks = new IdentityHashMap<>();
+        private final Set<SourceHeader> onStack = Collections.newSetFromMap(new IdentityHashMap<>());
+        private final ArrayDeque<SourceHeader> stack = new ArrayDeque<>();
+        private final List<List<SourceHeader>> cycles = new ArrayList<>();
+        private int nextIndex = 0;
+
+        private List<List<SourceHeader>> run() {
+            for (var source : sources) {
+                if (!indexes.containsKey(source)) {
+                    visit(source);
+                }
+            }
+            return cycles;
+        }
+
+        private void visit(SourceHeader root) {
+            // each frame is a source and the position of the next dependency to follow
+            var frames = new ArrayDeque<Map.Entry<SourceHeader, Integer>>();
+            enter(root);
+            frames.push(Map.entry(root, 0));
+
+            while (!frames.isEmpty()) {
+                var frame = frames.pop();
+                var source = frame.getKey();
+                var sourceDependencies = dependencies.get(source);
+
+                if (frame.getValue() < sourceDependencies.size()) {
+                    frames.push(Map.entry(source, frame.getValue() + 1));
+
+                    var dependency = sourceDependencies.get(frame.getValue());
+                    if (!indexes.containsKey(dependency)) {
+                        enter(dependency);
+                        frames.push(Map.entry(dependency, 0));
+                    } else if (onStack.contains(dependency)) {
+                        lowLinks.merge(source, indexes.get(dependency), Math::min);
+                    }
+                    continue;
+                }
+
+                if (!frames.isEmpty()) {
+                    lowLinks.merge(frames.peek().getKey(), lowLinks.get(source), Math::min);
+                }
+
+                if (lowLinks.get(source).equals(indexes.get(source))) {
+                    collect(source);
+                }
+            }
+        }
+
+        private void enter(SourceHeader source) {
+            indexes.put(source, nextIndex);
+            lowLinks.put(source, nextIndex);
+            nextIndex++;
+            stack.push(source);
+            onStack.add(source);
+        }
+
+        private void collect(SourceHeader root) {
+            var component = new ArrayList<SourceHeader>();
+            SourceHeader source;
+            do {
+                source = stack.pop();
+                onStack.remove(source);
+                component.add(source);
+            } while (source != root);
+
+            if (component.size() > 1 || dependencies.get(root).contains(root)) {
+                Collections.reverse(component);
+                cycles.add(component);
+            }
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package pt.up.fe.comp2024.project;
+
+import org.antlr.v4.runtime.CommonTokenFactory;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.UnbufferedCharStream;
+import pt.up.fe.comp2024.JavammLexer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+
+/**
+ * Reads the imports and the class declaration of a source file with the lexer alone, without building a parse tree.
+ * <p>
+ * The file is streamed and the scan stops right after the "extends" clause, so the class body is never read. Lexer
+ * errors are ignored, the parser reports them when the file is compiled.
+ */
+public class DependencyScanner {
+
+    private DependencyScanner() {
+    }
+
+    public static SourceHeader scan(File source) {
+        try (var reader = Files.newBufferedReader(source.toPath(), StandardCharsets.UTF_8)) {
+            var lexer = new JavammLexer(new UnbufferedCharStream(reader));
+            // tokens must keep their text, the unbuffered stream forgets the characters already read
+            lexer.setTokenFactory(new CommonTokenFactory(true));
+            lexer.removeErrorListeners();
+
+            return scan(source, lexer);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read source file '" + source + "'", e);
+        }
+    }
+
+    private static SourceHeader scan(File source, JavammLexer lexer) {
+        var imports = new ArrayList<String>();
+
+        for (var token = lexer.nextToken(); token.getType() != Token.EOF; token = lexer.nextToken()) {
+            if (token.getType() == JavammLexer.IMPORT) {
+                var importPath = new StringBuilder();
+                for (token = lexer.nextToken(); isImportPart(token); token = lexer.nextToken()) {
+                    importPath.append(token.getText());
+                }
+                imports.add(importPath.toString());
+                continue;
+            }
+
+            if (token.getType() != JavammLexer.CLASS) {
+                continue;
+            }
+
+            var className = lexer.nextToken().getText();
+            var next = lexer.nextToken();
+            var superName = next.getText().equals("extends") ? lexer.nextToken().getText() : null;
+            return new SourceHeader(source, imports, className, superName);
+        }
+
+        return new SourceHeader(source, imports, null, null);
+    }
+
+    private static boolean isImportPart(Token token) {
+        return token.getType() == JavammLexer.ID || token.getText().equals(".");
+    }
+}
@@ -0,0 +1,20 @@
+package pt.up.fe.comp2024.project;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * What a source file declares before its class body: the imports and the class, with its super class.
+ * <p>
+ * Imports are kept as written, e.g. "java.io.File". The class name is null if the file has no class declaration
+ * the scanner could recognize, and the super name is null if the class does not extend another.
+ */
+public record SourceHeader(File source, List<String> imports, String className, String superName) {
+
+    /**
+     * @return the class named by an import, e.g. "File" for "java.io.File"
+     */
+    public static String importedClass(String importPath) {
+        return importPath.substring(importPath.lastIndexOf('.') + 1);
+    }
+}
@@ -0,0 +1,135 @@
+package pt.up.fe.comp2024.regalloc;
+
+import pt.up.fe.comp.jmm.ast.JmmNode;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Liveness of the local variables of a method, computed backwards over the statements of its AST.
+ * <p>
+ * J-- only has structured control flow, so the live variables after an if are the ones live after either branch,
+ * and the ones at the start of a while are found by repeating the loop until they stop changing. Every assignment to
+ * a variable makes it interfere with the variables live after the assignment.
+ */
+public class AstLiveness {
+
+    private final Set<String> variables;
+    private final InterferenceGraph graph;
+
+    private AstLiveness(Set<String> variables) {
+        this.variables = variables;
+        this.graph = new InterferenceGraph();
+
+        for (var name : variables) {
+            graph.addVariable(name);
+        }
+    }
+
+    /**
+     * @param method    a MethodDecl or MainMethodDecl
+     * @param variables the parameters and local variables of the method, any other name is a field or a class
+     * @param params    the parameters of the method, already live when it starts
+     */
+    public static InterferenceGraph interference(JmmNode method, Set<String> variables, Set<String> params) {
+        var liveness = new AstLiveness(variables);
+
+        var live = new LinkedHashSet<String>();
+        var stmts = method.getChildren("Stmt");
+        for (int i = stmts.size() - 1; i >= 0; i--) {
+            live = liveness.stmt(stmts.get(i), live);
+        }
+
+        // the parameters are all written when the method is called
+        for (var param : params) {
+            for (var name : live) {
+                liveness.graph.addInterference(param, name);
+            }
+            for (var other : params) {
+                liveness.graph.addInterference(param, other);
+            }
+        }
+
+        return liveness.graph;
+    }
+
+    /**
+     * @return the variables live before the statement
+     */
+    private LinkedHashSet<String> stmt(JmmNode stmt, LinkedHashSet<String> liveOut) {
+        return switch (stmt.getKind()) {
+            case "AssignStmt" -> assignStmt(stmt, liveOut);
+            case "ReturnStmt" -> uses(stmt, new LinkedHashSet<>());
+            case "BlockStmt" -> {
+                var live = new LinkedHashSet<>(liveOut);
+                var stmts = stmt.getChildren("Stmt");
+                for (int i = stmts.size() - 1; i >= 0; i--) {
+                    live = stmt(stmts.get(i), live);
+                }
+                yield live;
+            }
+            case "IfStmt" -> {
+                var live = stmt(stmt.getJmmChild(1), liveOut);
+                live.addAll(stmt(stmt.getJmmChild(2), liveOut));
+                yield uses(stmt.getJmmChild(0), live);
+            }
+            case "WhileStmt" -> whileStmt(stmt, liveOut);
+            default -> uses(stmt, new LinkedHashSet<>(liveOut));
+        };
+    }
+
+    private LinkedHashSet<String> assignStmt(JmmNode assignStmt, LinkedHashSet<String> liveOut) {
+        var lhs = assignStmt.getJmmChild(0);
+        var rhs = assignStmt.getJmmChild(1);
+
+        // storing into an array element reads the array
+        if (!lhs.isInstance("VarRefExpr") || !variables.contains(lhs.get("name"))) {
+            return uses(assignStmt, new LinkedHashSet<>(liveOut));
+        }
+
+        var dest = lhs.get("name");
+        // a copy can share the register of its source, their values are the same
+        var source = rhs.isInstance("VarRefExpr") ? rhs.get("name") : null;
+        for (var name : liveOut) {
+            if (!name.equals(source)) {
+                graph.addInterference(dest, name);
+            }
+        }
+
+        var live = new LinkedHashSet<>(liveOut);
+        live.remove(dest);
+        return uses(rhs, live);
+    }
+
+    private LinkedHashSet<String> whileStmt(JmmNode whileStmt, LinkedHashSet<String> liveOut) {
+        var condition = whileStmt.getJmmChild(0);
+        var body = whileStmt.getJmmChild(1);
+
+        // the condition runs before the body and before leaving the loop
+        var live = uses(condition, new LinkedHashSet<>(liveOut));
+        while (true) {
+            var next = stmt(body, live);
+            next.addAll(liveOut);
+            next = uses(condition, next);
+            if (next.equals(live)) {
+                return live;
+            }
+            live = next;
+        }
+    }
+
+    /**
+     * Adds the variables read by the node and its descendants to the given set.
+     */
+    private LinkedHashSet<String> uses(JmmNode node, LinkedHashSet<String> live) {
+        if (node.isInstance("VarRefExpr") && variables.contains(node.get("name"))) {
+            live.add(node.get("name"));
+        }
+
+        for (var child : node.getChildren()) {
+            uses(child, live);
+        }
+
+        return live;
+    }
+}
@@ -0,0 +1,51 @@
+package pt.up.fe.comp2024.regalloc;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Variables of a method, connected when they are live at the same time and so cannot share a register.
+ * <p>
+ * Variables and neighbours are kept in insertion order, so that the registers given to them only depend on the code.
+ */
+public class InterferenceGraph {
+
+    private final Map<String, Set<String>> neighbours;
+
+    public InterferenceGraph() {
+        this.neighbours = new LinkedHashMap<>();
+    }
+
+    public void addVariable(String name) {
+        neighbours.computeIfAbsent(name, key -> new LinkedHashSet<>());
+    }
+
+    /**
+     * Marks the two variables as live at the same time, a variable never interferes with itself.
+     */
+    public void addInterference(String first, String second) {
+        if (first.equals(second)) {
+            return;
+        }
+
+        addVariable(first);
+        addVariable(second);
+        neighbours.get(first).add(second);
+        neighbours.get(second).add(first);
+    }
+
+    public Set<String> getVariables() {
+        return Collections.unmodifiableSet(neighbours.keySet());
+    }
+
+    public Set<String> getNeighbours(String name) {
+        return Collections.unmodifiableSet(neighbours.getOrDefault(name, Collections.emptySet()));
+    }
+
+    public boolean interfere(String first, String second) {
+        return getNeighbours(first).contains(second);
+    }
+}
@@ -0,0 +1,209 @@
+package pt.up.fe.comp2024.regalloc;
+
+import org.specs.comp.ollir.ArrayOperand;
+import org.specs.comp.ollir.AssignInstruction;
+import org.specs.comp.ollir.FieldInstruction;
+import org.specs.comp.ollir.Instruction;
+import org.specs.comp.ollir.Method;
+import org.specs.comp.ollir.Operand;
+import org.specs.comp.ollir.SingleOpInstruction;
+import org.specs.comp.ollir.VarScope;
+import org.specs.comp.ollir.tree.TreeNode;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Liveness of the variables of an OLLIR method, computed with the usual backward data-flow equations over its control
+ * flow graph, which must already be built:
+ * <pre>
+ * out[i] = union of in[s] for every successor s of i
+ * in[i]  = use[i] + (out[i] - def[i])
+ * </pre>
+ */
+public class OllirLiveness {
+
+    private final Method method;
+    private final Set<String> variables;
+    private final Map<Instruction, Set<String>> defs;
+    private final Map<Instruction, Set<String>> uses;
+    private final Map<Instruction, Set<String>> liveIn;
+    private final Map<Instruction, Set<String>> liveOut;
+
+    public OllirLiveness(Method method) {
+        this.method = method;
+        this.variables = new LinkedHashSet<>();
+        this.defs = new HashMap<>();
+        this.uses = new HashMap<>();
+        this.liveIn = new HashMap<>();
+        this.liveOut = new HashMap<>();
+
+        method.getVarTable().forEach((name, descriptor) -> {
+            if (descriptor.getScope() != VarScope.FIELD) {
+                variables.add(name);
+            }
+        });
+
+        for (var instruction : method.getInstructions()) {
+            var instructionDefs = new LinkedHashSet<String>();
+            var instructionUses = new LinkedHashSet<String>();
+            defsAndUses(instruction, instructionDefs, instructionUses);
+            defs.put(instruction, instructionDefs);
+            uses.put(instruction, instructionUses);
+            liveIn.put(instruction, new LinkedHashSet<>());
+            liveOut.put(instruction, new LinkedHashSet<>());
+        }
+
+        solve();
+    }
+
+    /**
+     * @return the parameters and local variables of the method, including "this"
+     */
+    public Set<String> getVariables() {
+        return variables;
+    }
+
+    public Set<String> getDefs(Instruction instruction) {
+        return defs.get(instruction);
+    }
+
+    public Set<String> getUses(Instruction instruction) {
+        return uses.get(instruction);
+    }
+
+    public Set<String> getLiveIn(Instruction instruction) {
+        return liveIn.get(instruction);
+    }
+
+    public Set<String> getLiveOut(Instruction instruction) {
+        return liveOut.get(instruction);
+    }
+
+    /**
+     * Every variable written by an instruction interferes with the ones live after it. The parameters, written when
+     * the method is called, interfere with each other and with the variables live when it starts. The backend loads
+     * "this" straight from register 0 to access fields, so it interferes with every variable.
+     */
+    public InterferenceGraph getInterferenceGraph() {
+        var graph = new InterferenceGraph();
+        for (var name : variables) {
+            graph.addVariable(name);
+        }
+
+        var params = new LinkedHashSet<String>();
+        method.getVarTable().forEach((name, descriptor) -> {
+            if (descriptor.getScope() == VarScope.PARAMETER || name.equals("this")) {
+                params.add(name);
+            }
+        });
+
+        for (var instruction : method.getInstructions()) {
+            // a copy can share the register of its source, their values are the same
+            var source = copySource(instruction);
+            for (var def : defs.get(instruction)) {
+                for (var name : liveOut.get(instruction)) {
+                    if (!name.equals(source)) {
+                        graph.addInterference(def, name);
+                    }
+                }
+            }
+        }
+
+        var instructions = method.getInstructions();
+        var liveAtStart = instructions.isEmpty() ? Set.<String>of() : liveIn.get(instructions.get(0));
+        for (var param : params) {
+            for (var name : liveAtStart) {
+                graph.addInterference(param, name);
+            }
+            for (var other : params) {
+                graph.addInterference(param, other);
+            }
+        }
+
+        if (variables.contains("this")) {
+            for (var name : variables) {
+                graph.addInterference("this", name);
+            }
+        }
+
+        return graph;
+    }
+
+    private void solve() {
+        List<Instruction> instructions = method.getInstructions();
+
+        var changed = true;
+        while (changed) {
+            changed = false;
+
+            // backwards, so that most instructions see the final values of their successors in the first pass
+            for (int i = instructions.size() - 1; i >= 0; i--) {
+                var instruction = instructions.get(i);
+
+                var out = new LinkedHashSet<String>();
+                for (var successor : instruction.getSuccessors()) {
+                    if (successor instanceof Instruction successorInstruction) {
+                        out.addAll(liveIn.get(successorInstruction));
+                    }
+                }
+
+                var in = new LinkedHashSet<>(out);
+                in.removeAll(defs.get(instruction));
+                in.addAll(uses.get(instruction));
+
+                if (!in.equals(liveIn.get(instruction)) || !out.equals(liveOut.get(instruction))) {
+                    liveIn.put(instruction, in);
+                    liveOut.put(instruction, out);
+                    changed = true;
+                }
+            }
+        }
+    }
+
+    private void defsAndUses(Instruction instruction, Set<String> instructionDefs, Set<String> instructionUses) {
+        if (instruction instanceof AssignInstruction assign) {
+            var dest = assign.getDest();
+            if (dest instanceof ArrayOperand) {
+                // storing into an array element reads the array and the index
+                addUses(dest, instructionUses);
+            } else if (dest instanceof Operand operand && variables.contains(operand.getName())) {
+                instructionDefs.add(operand.getName());
+            }
+
+            addUses(assign.getRhs(), instructionUses);
+            return;
+        }
+
+        addUses(instruction, instructionUses);
+    }
+
+    private void addUses(TreeNode node, Set<String> instructionUses) {
+        if (node instanceof Operand operand && !operand.isLiteral() && variables.contains(operand.getName())) {
+            instructionUses.add(operand.getName());
+        }
+
+        var children = node.getChildren();
+        for (int i = 0; i < children.size(); i++) {
+            // the second operand of getfield and putfield names the field
+            if (node instanceof FieldInstruction && i == 1) {
+                continue;
+            }
+            addUses(children.get(i), instructionUses);
+        }
+    }
+
+    private static String copySource(Instruction instruction) {
+        if (instruction instanceof AssignInstruction assign
+                && assign.getRhs() instanceof SingleOpInstruction singleOp
+                && singleOp.getSingleOperand() instanceof Operand operand
+                && !(operand instanceof ArrayOperand)) {
+            return operand.getName();
+        }
+
+        return null;
+    }
+}
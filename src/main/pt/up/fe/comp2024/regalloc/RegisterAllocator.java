@@ -0,0 +1,133 @@
+package pt.up.fe.comp2024.regalloc;
+
+import java.util.ArrayDeque;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Gives registers to the variables of an interference graph by graph colouring, with Chaitin's simplify and select
+ * phases and Briggs' optimistic colouring of the variables that could not be simplified.
+ * <p>
+ * Some variables have fixed registers, "this" and the parameters, which the JVM puts in the first registers of the
+ * method. The count of registers includes them, e.g. an instance method with one parameter and one local variable
+ * needs at least three.
+ */
+public class RegisterAllocator {
+
+    private final InterferenceGraph graph;
+    private final Map<String, Integer> fixed;
+
+    /**
+     * @param fixed the variables whose register cannot change
+     */
+    public RegisterAllocator(InterferenceGraph graph, Map<String, Integer> fixed) {
+        this.graph = graph;
+        this.fixed = fixed;
+
+        for (var name : fixed.keySet()) {
+            graph.addVariable(name);
+        }
+    }
+
+    /**
+     * @param numRegisters the registers available, or 0 to use as few as possible
+     * @return the register of every variable, if they fit in the registers available
+     */
+    public Optional<Map<String, Integer>> allocate(int numRegisters) {
+        if (numRegisters == 0) {
+            return colour(getMinimumRegisters());
+        }
+
+        return colour(numRegisters);
+    }
+
+    /**
+     * @return the fewest registers this allocator can colour the graph with
+     */
+    public int getMinimumRegisters() {
+        var lowerBound = fixed.values().stream().mapToInt(register -> register + 1).max().orElse(0);
+        if (lowerBound == 0 && !graph.getVariables().isEmpty()) {
+            lowerBound = 1;
+        }
+
+        // one register per variable always works, on top of the fixed ones
+        var upperBound = lowerBound + graph.getVariables().size();
+        for (int numRegisters = lowerBound; numRegisters < upperBound; numRegisters++) {
+            if (colour(numRegisters).isPresent()) {
+                return numRegisters;
+            }
+        }
+
+        return upperBound;
+    }
+
+    /**
+     * @return the register of every variable using at most the given registers, if the colouring succeeds
+     */
+    public Optional<Map<String, Integer>> colour(int numRegisters) {
+        for (var register : fixed.values()) {
+            if (register >= numRegisters) {
+                return Optional.empty();
+            }
+        }
+
+        // simplify: remove the variables with fewer neighbours than registers, or the most constrained one if none
+        var remaining = new LinkedHashSet<String>();
+        for (var name : graph.getVariables()) {
+            if (!fixed.containsKey(name)) {
+                remaining.add(name);
+            }
+        }
+
+        var degrees = new HashMap<String, Integer>();
+        for (var name : graph.getVariables()) {
+            degrees.put(name, graph.getNeighbours(name).size());
+        }
+
+        var stack = new ArrayDeque<String>();
+        while (!remaining.isEmpty()) {
+            String next = null;
+            for (var name : remaining) {
+                if (degrees.get(name) < numRegisters) {
+                    next = name;
+                    break;
+                }
+            }
+            if (next == null) {
+                next = remaining.stream().max((first, second) -> degrees.get(first) - degrees.get(second)).get();
+            }
+
+            remaining.remove(next);
+            stack.push(next);
+            for (var neighbour : graph.getNeighbours(next)) {
+                degrees.merge(neighbour, -1, Integer::sum);
+            }
+        }
+
+        // select: give each variable the lowest register none of its coloured neighbours has
+        var registers = new LinkedHashMap<String, Integer>(fixed);
+        while (!stack.isEmpty()) {
+            var name = stack.pop();
+
+            var taken = new BitSet(numRegisters);
+            for (var neighbour : graph.getNeighbours(name)) {
+                var register = registers.get(neighbour);
+                if (register != null) {
+                    taken.set(register);
+                }
+            }
+
+            var register = taken.nextClearBit(0);
+            if (register >= numRegisters) {
+                return Optional.empty();
+            }
+            registers.put(name, register);
+        }
+
+        return Optional.of(registers);
+    }
+}
@@ -0,0 +1,104 @@
+package pt.up.fe.comp2024.stats;
+
+import com.google.gson.GsonBuilder;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Wall time, CPU time and allocated bytes of the stages and passes of a single compilation.
+ * <p>
+ * The stats of the compilation running on the current thread are reached through {@link #measure(String, Supplier)},
+ * so passes do not need to receive them explicitly. Measurements are also emitted as {@link StageEvent} JFR events,
+ * even when no stats are being collected, if a recording has the event enabled.
+ */
+public class CompilerStats {
+
+    private static final ThreadLocal<CompilerStats> CURRENT = new ThreadLocal<>();
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private final String inputFile;
+    private final List<Measurement> measurements;
+
+    public CompilerStats(String inputFile) {
+        this.inputFile = inputFile;
+        this.measurements = new ArrayList<>();
+    }
+
+    public record Measurement(String name, long wallNanos, long cpuNanos, long allocatedBytes) {
+    }
+
+    public String getInputFile() {
+        return inputFile;
+    }
+
+    public List<Measurement> getMeasurements() {
+        return measurements;
+    }
+
+    /**
+     * Collects the measurements done on the current thread into these stats, until {@link #stop()} is called.
+     */
+    public void start() {
+        CURRENT.set(this);
+    }
+
+    public void stop() {
+        CURRENT.remove();
+    }
+
+    /**
+     * Runs the given action, measuring it if stats are being collected on this thread or JFR is recording.
+     * <p>
+     * Nested measurements are also counted in the enclosing ones.
+     */
+    public static <T> T measure(String name, Supplier<T> action) {
+        var stats = CURRENT.get();
+        var event = new StageEvent();
+
+        if (stats == null && !event.isEnabled()) {
+            return action.get();
+        }
+
+        var startCpu = THREADS.getCurrentThreadCpuTime();
+        var startAllocated = THREADS.getCurrentThreadAllocatedBytes();
+        var startWall = System.nanoTime();
+        event.begin();
+
+        try {
+            return action.get();
+        } finally {
+            var wall = System.nanoTime() - startWall;
+            var cpu = THREADS.getCurrentThreadCpuTime() - startCpu;
+            var allocated = THREADS.getCurrentThreadAllocatedBytes() - startAllocated;
+
+            event.end();
+            if (event.shouldCommit()) {
+                event.name = name;
+                event.inputFile = stats != null ? stats.inputFile : null;
+                event.cpuTime = cpu;
+                event.allocated = allocated;
+                event.commit();
+            }
+
+            if (stats != null) {
+                stats.measurements.add(new Measurement(name, wall, cpu, allocated));
+            }
+        }
+    }
+
+    public static void measure(String name, Runnable action) {
+        measure(name, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    public static String toJson(List<CompilerStats> stats) {
+        return new GsonBuilder().setPrettyPrinting().create().toJson(stats);
+    }
+}
@@ -0,0 +1,32 @@
+package pt.up.fe.comp2024.stats;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR event emitted for every compiler stage and pass measured by {@link CompilerStats}.
+ */
+@Name("pt.up.fe.comp2024.Stage")
+@Label("Compiler Stage")
+@Category("J-- Compiler")
+@Description("Execution of a compiler stage or pass")
+public class StageEvent extends jdk.jfr.Event {
+
+    @Label("Name")
+    public String name;
+
+    @Label("Input File")
+    public String inputFile;
+
+    @Label("CPU Time")
+    @Timespan(Timespan.NANOSECONDS)
+    public long cpuTime;
+
+    @Label("Allocated")
+    @DataAmount(DataAmount.BYTES)
+    public long allocated;
+}
@@ -0,0 +1,59 @@
+package pt.up.fe.comp2024.symboltable;
+
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.classfile.ClassHierarchy;
+import pt.up.fe.comp2024.classfile.LibraryPath;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Finds the interface summaries of imported J-- classes, searching the output folder first and then the library
+ * path. Each summary is read at most once, hits and misses are both remembered.
+ */
+public class InterfaceSummaries {
+
+    private final List<File> path;
+    private final Map<String, Optional<InterfaceSummary>> summaries;
+
+    public InterfaceSummaries(List<File> path) {
+        this.path = path;
+        this.summaries = new ConcurrentHashMap<>();
+    }
+
+    public static InterfaceSummaries empty() {
+        return new InterfaceSummaries(Collections.emptyList());
+    }
+
+    public static InterfaceSummaries fromConfig(Map<String, String> config) {
+        var path = new ArrayList<File>();
+        CompilerConfig.getOutputDir(config).ifPresent(path::add);
+        path.addAll(CompilerConfig.getLibraryPath(config));
+        return new InterfaceSummaries(path);
+    }
+
+    /**
+     * @param importPath an import as kept by the symbol table, e.g. "foo, bar, A"
+     * @return the summary of the imported class, if one was written for it
+     */
+    public Optional<InterfaceSummary> find(String importPath) {
+        return summaries.computeIfAbsent(ClassHierarchy.toInternalName(importPath), this::load);
+    }
+
+    private Optional<InterfaceSummary> load(String internalName) {
+        return LibraryPath.read(path, internalName + InterfaceSummary.EXTENSION).flatMap(bytes -> {
+            try {
+                return Optional.of(InterfaceSummary.fromBytes(bytes));
+            } catch (IOException e) {
+                // corrupted or older summary, the class is treated as if it had none
+                return Optional.empty();
+            }
+        });
+    }
+}
@@ -0,0 +1,221 @@
+package pt.up.fe.comp2024.symboltable;
+
+import pt.up.fe.comp.jmm.analysis.table.Symbol;
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+import pt.up.fe.comp.jmm.analysis.table.Type;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * The part of a compiled J-- class that other classes can use: its name, super class, fields and method signatures.
+ * <p>
+ * Written next to the generated code as "&lt;Class&gt;.jmmi", so that a class importing it is typed against the
+ * declared signatures without parsing the source of the imported class again.
+ */
+public class InterfaceSummary {
+
+    public static final String EXTENSION = ".jmmi";
+
+    private static final int MAGIC = 0x4A4D4D49; // "JMMI"
+    private static final int VERSION = 1;
+
+    private final String className;
+    private final String superName;
+    private final List<Symbol> fields;
+    private final List<Method> methods;
+
+    public InterfaceSummary(String className, String superName, List<Symbol> fields, List<Method> methods) {
+        this.className = className;
+        this.superName = superName;
+        this.fields = fields;
+        this.methods = methods;
+    }
+
+    public static InterfaceSummary of(SymbolTable table) {
+        var jmmTable = JmmSymbolTable.of(table);
+
+        var methods = new ArrayList<Method>();
+        for (var name : table.getMethods()) {
+            var params = table.getParameters(name);
+            var varargs = Boolean.TRUE.equals(jmmTable.getVarArgs(name)) ||
+                    (!params.isEmpty() && params.get(params.size() - 1).getType().getName().equals("_varargs"));
+            methods.add(new Method(name, table.getReturnType(name), params, varargs));
+        }
+
+        return new InterfaceSummary(table.getClassName(), table.getSuper(), table.getFields(), methods);
+    }
+
+    public String getClassName() {
+        return className;
+    }
+
+    /**
+     * @return the super class as written in the source, or null if the class does not extend another
+     */
+    public String getSuper() {
+        return superName;
+    }
+
+    public List<Symbol> getFields() {
+        return fields;
+    }
+
+    public List<Method> getMethods() {
+        return methods;
+    }
+
+    public Optional<Method> getMethod(String name) {
+        return methods.stream().filter(method -> method.getName().equals(name)).findFirst();
+    }
+
+    /**
+     * Writes the summary to "&lt;folder&gt;/&lt;Class&gt;.jmmi", replacing the previous one at once so that
+     * concurrent readers never see half a file.
+     */
+    public File write(File folder) {
+        var file = new File(folder, className + EXTENSION);
+        try {
+            Files.createDirectories(folder.toPath());
+            var temp = Files.createTempFile(folder.toPath(), className, ".tmp");
+            Files.write(temp, toBytes());
+            Files.move(temp, file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write interface summary '" + file + "'", e);
+        }
+        return file;
+    }
+
+    public byte[] toBytes() {
+        var bytes = new ByteArrayOutputStream();
+        try (var output = new DataOutputStream(bytes)) {
+            output.writeInt(MAGIC);
+            output.writeShort(VERSION);
+            output.writeUTF(className);
+            writeNullable(output, superName);
+
+            writeSymbols(output, fields);
+
+            output.writeShort(methods.size());
+            for (var method : methods) {
+                output.writeUTF(method.getName());
+                writeType(output, method.getReturnType());
+                output.writeBoolean(method.isVarargs());
+                writeSymbols(output, method.getParameters());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    public static InterfaceSummary fromBytes(byte[] bytes) throws IOException {
+        var input = new DataInputStream(new ByteArrayInputStream(bytes));
+
+        if (input.readInt() != MAGIC) {
+            throw new IOException("Not an interface summary, wrong magic number");
+        }
+        var version = input.readUnsignedShort();
+        if (version != VERSION) {
+            throw new IOException("Unsupported interface summary version " + version);
+        }
+
+        var className = input.readUTF();
+        var superName = readNullable(input);
+        var fields = readSymbols(input);
+
+        var methodCount = input.readUnsignedShort();
+        var methods = new ArrayList<Method>(methodCount);
+        for (int i = 0; i < methodCount; i++) {
+            var name = input.readUTF();
+            var returnType = readType(input);
+            var varargs = input.readBoolean();
+            methods.add(new Method(name, returnType, readSymbols(input), varargs));
+        }
+
+        return new InterfaceSummary(className, superName, fields, methods);
+    }
+
+    private static void writeSymbols(DataOutputStream output, List<Symbol> symbols) throws IOException {
+        output.writeShort(symbols.size());
+        for (var symbol : symbols) {
+            output.writeUTF(symbol.getName());
+            writeType(output, symbol.getType());
+        }
+    }
+
+    private static List<Symbol> readSymbols(DataInputStream input) throws IOException {
+        var count = input.readUnsignedShort();
+        var symbols = new ArrayList<Symbol>(count);
+        for (int i = 0; i < count; i++) {
+            var name = input.readUTF();
+            symbols.add(new Symbol(readType(input), name));
+        }
+        return symbols;
+    }
+
+    private static void writeType(DataOutputStream output, Type type) throws IOException {
+        writeNullable(output, type.getName());
+        output.writeBoolean(type.isArray());
+    }
+
+    private static Type readType(DataInputStream input) throws IOException {
+        var name = readNullable(input);
+        return new Type(name, input.readBoolean());
+    }
+
+    private static void writeNullable(DataOutputStream output, String value) throws IOException {
+        output.writeBoolean(value != null);
+        if (value != null) {
+            output.writeUTF(value);
+        }
+    }
+
+    private static String readNullable(DataInputStream input) throws IOException {
+        return input.readBoolean() ? input.readUTF() : null;
+    }
+
+    public static class Method {
+
+        private final String name;
+        private final Type returnType;
+        private final List<Symbol> parameters;
+        private final boolean varargs;
+
+        public Method(String name, Type returnType, List<Symbol> parameters, boolean varargs) {
+            this.name = name;
+            this.returnType = returnType;
+            this.parameters = parameters;
+            this.varargs = varargs;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Type getReturnType() {
+            return returnType;
+        }
+
+        /**
+         * @return the parameters, a varargs parameter last with type "_varargs", as in the symbol table
+         */
+        public List<Symbol> getParameters() {
+            return parameters;
+        }
+
+        public boolean isVarargs() {
+            return varargs;
+        }
+    }
+}
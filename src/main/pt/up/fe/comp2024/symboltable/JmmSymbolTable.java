@@ -3,13 +3,17 @@ package pt.up.fe.comp2024.symboltable;
 import pt.up.fe.comp.jmm.analysis.table.Symbol;
 import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
 import pt.up.fe.comp.jmm.analysis.table.Type;
-import pt.up.fe.comp.jmm.ast.JmmNode;
-import pt.up.fe.comp2024.ast.TypeUtils;
-import pt.up.fe.specs.util.exceptions.NotImplementedException;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
 
 public class JmmSymbolTable implements SymbolTable {
 
@@ -25,6 +29,12 @@ public class JmmSymbolTable implements SymbolTable {
     private final Map<String, List<Symbol>> locals;
     private final Map<String, Boolean> varArgs;
 
+    // summaries of the imported J-- classes that have one, by simple name
+    private final Map<String, InterfaceSummary> importedSummaries;
+
+    // hashed lookups by name, derived from the lists above. Not serialized, a deserialized table builds it on first use
+    private transient volatile Index index;
+
     public JmmSymbolTable(String className,
                           List<String> methods,
                           Map<String, Type> returnTypes,
@@ -34,6 +44,20 @@ public class JmmSymbolTable implements SymbolTable {
                           List<String> imports,
                           Map<String, Boolean> varArgs,
                           String parent) {
+        this(className, methods, returnTypes, params, fields, locals, imports, varArgs, parent,
+                Collections.emptyMap());
+    }
+
+    public JmmSymbolTable(String className,
+                          List<String> methods,
+                          Map<String, Type> returnTypes,
+                          Map<String, List<Symbol>> params,
+                          List<Symbol> fields,
+                          Map<String, List<Symbol>> locals,
+                          List<String> imports,
+                          Map<String, Boolean> varArgs,
+                          String parent,
+                          Map<String, InterfaceSummary> importedSummaries) {
         this.parent=parent;
         this.className = className;
         this.methods = methods;
@@ -43,6 +67,37 @@ public class JmmSymbolTable implements SymbolTable {
         this.fields = fields;
         this.imports = imports;
         this.varArgs = varArgs;
+        this.importedSummaries = importedSummaries;
+        this.index = new Index(this);
+    }
+
+    /**
+     * Returns the given table if it is already a JmmSymbolTable, otherwise an indexed copy of it.
+     */
+    public static JmmSymbolTable of(SymbolTable table) {
+        if (table instanceof JmmSymbolTable jmmTable) {
+            return jmmTable;
+        }
+
+        var returnTypes = new HashMap<String, Type>();
+        var params = new HashMap<String, List<Symbol>>();
+        var locals = new HashMap<String, List<Symbol>>();
+        for (var method : table.getMethods()) {
+            returnTypes.put(method, table.getReturnType(method));
+            params.put(method, table.getParameters(method));
+            locals.put(method, table.getLocalVariables(method));
+        }
+
+        return new JmmSymbolTable(table.getClassName(), table.getMethods(), returnTypes, params, table.getFields(),
+                locals, table.getImports(), Collections.emptyMap(), table.getSuper());
+    }
+
+    /**
+     * Imports are kept as the list of their parts, e.g. "java, io, File", the class is the last one.
+     */
+    public static String getSimpleName(String importPath) {
+        var start = Math.max(importPath.lastIndexOf(','), importPath.lastIndexOf('.')) + 1;
+        return importPath.substring(start).replace("[", "").replace("]", "").trim();
     }
 
     @Override
@@ -87,4 +142,163 @@ public class JmmSymbolTable implements SymbolTable {
     public Boolean getVarArgs(String methodSignature){
         return this.varArgs.get(methodSignature);
     }
+
+    public boolean isImported(String simpleName) {
+        return getIndex().imports.containsKey(simpleName);
+    }
+
+    /**
+     * @return the full import of the class with the given simple name, as kept by {@link #getImports()}
+     */
+    public Optional<String> getImport(String simpleName) {
+        return first(getIndex().imports, simpleName);
+    }
+
+    /**
+     * @return the interface summary of the imported class with the given simple name, if it is a J-- class
+     */
+    public Optional<InterfaceSummary> getImportedSummary(String simpleName) {
+        return importedSummaries == null ? Optional.empty() : Optional.ofNullable(importedSummaries.get(simpleName));
+    }
+
+    public boolean hasImportedSummaries() {
+        return importedSummaries != null && !importedSummaries.isEmpty();
+    }
+
+    /**
+     * @return true if the class is imported, or named by the signatures of an imported class, e.g. its super class
+     * or the return type of one of its methods
+     */
+    public boolean isImportedType(String simpleName) {
+        return isImported(simpleName) || getIndex().summaryTypes.contains(simpleName);
+    }
+
+    public int countImports(String simpleName) {
+        return count(getIndex().imports, simpleName);
+    }
+
+    public Optional<Symbol> getField(String name) {
+        return first(getIndex().fields, name);
+    }
+
+    public int countFields(String name) {
+        return count(getIndex().fields, name);
+    }
+
+    /**
+     * Local variable of the method with the given name. A null method searches every method, in declaration order.
+     */
+    public Optional<Symbol> getLocalVariable(String methodSignature, String name) {
+        return lookup(getIndex().locals, methodSignature, name);
+    }
+
+    public int countLocalVariables(String methodSignature, String name) {
+        return count(getIndex().locals.getOrDefault(methodSignature, Collections.emptyMap()), name);
+    }
+
+    /**
+     * Parameter of the method with the given name. A null method searches every method, in declaration order.
+     */
+    public Optional<Symbol> getParameter(String methodSignature, String name) {
+        return lookup(getIndex().params, methodSignature, name);
+    }
+
+    public int countParameters(String methodSignature, String name) {
+        return count(getIndex().params.getOrDefault(methodSignature, Collections.emptyMap()), name);
+    }
+
+    private Optional<Symbol> lookup(Map<String, Map<String, List<Symbol>>> scopes, String methodSignature,
+                                    String name) {
+        if (methodSignature != null) {
+            return first(scopes.getOrDefault(methodSignature, Collections.emptyMap()), name);
+        }
+
+        for (var method : methods) {
+            var symbol = first(scopes.getOrDefault(method, Collections.emptyMap()), name);
+            if (symbol.isPresent()) {
+                return symbol;
+            }
+        }
+        return Optional.empty();
+    }
+
+    private Index getIndex() {
+        var current = index;
+        if (current == null) {
+            current = new Index(this);
+            index = current;
+        }
+        return current;
+    }
+
+    private static <T> Optional<T> first(Map<String, List<T>> byName, String name) {
+        var values = byName.get(name);
+        return values == null ? Optional.empty() : Optional.of(values.get(0));
+    }
+
+    private static <T> int count(Map<String, List<T>> byName, String name) {
+        var values = byName.get(name);
+        return values == null ? 0 : values.size();
+    }
+
+    /**
+     * Symbols grouped by name, in declaration order. Repeated names are kept so that the analysis can report them.
+     */
+    private static class Index {
+        private final Map<String, List<String>> imports;
+        private final Map<String, List<Symbol>> fields;
+        private final Map<String, Map<String, List<Symbol>>> locals;
+        private final Map<String, Map<String, List<Symbol>>> params;
+        private final Set<String> summaryTypes;
+
+        private Index(JmmSymbolTable table) {
+            imports = groupByName(table.imports, JmmSymbolTable::getSimpleName);
+            fields = groupByName(table.fields, Symbol::getName);
+            locals = groupByMethod(table.locals);
+            params = groupByMethod(table.params);
+            summaryTypes = getSummaryTypes(table.importedSummaries, table.className);
+        }
+
+        private static Set<String> getSummaryTypes(Map<String, InterfaceSummary> summaries, String className) {
+            var types = new HashSet<String>();
+            if (summaries == null) {
+                return types;
+            }
+
+            for (var summary : summaries.values()) {
+                if (summary.getSuper() != null) {
+                    types.add(summary.getSuper());
+                }
+                summary.getFields().forEach(field -> types.add(field.getType().getName()));
+                for (var method : summary.getMethods()) {
+                    types.add(method.getReturnType().getName());
+                    method.getParameters().forEach(param -> types.add(param.getType().getName()));
+                }
+            }
+
+            // only other classes, the analysis already knows the built-in types and this class
+            types.removeAll(List.of("int", "boolean", "void", "String", "_varargs"));
+            types.remove(className);
+            types.remove(null);
+            return types;
+        }
+
+        private static Map<String, Map<String, List<Symbol>>> groupByMethod(Map<String, List<Symbol>> symbols) {
+            var byMethod = new HashMap<String, Map<String, List<Symbol>>>();
+            symbols.forEach((method, methodSymbols) -> byMethod.put(method, groupByName(methodSymbols, Symbol::getName)));
+            return byMethod;
+        }
+
+        private static <T> Map<String, List<T>> groupByName(List<T> values, Function<T, String> getName) {
+            var byName = new LinkedHashMap<String, List<T>>();
+            if (values == null) {
+                return byName;
+            }
+
+            for (var value : values) {
+                byName.computeIfAbsent(getName.apply(value), name -> new ArrayList<>(1)).add(value);
+            }
+            return byName;
+        }
+    }
 }
@@ -17,138 +17,99 @@ public class JmmSymbolTableBuilder {
 
 
     public static JmmSymbolTable build(JmmNode root) {
+        return build(root, InterfaceSummaries.empty());
+    }
+
+    /**
+     * Builds the table in a single walk over the class declaration, visiting each method once. Imported classes
+     * with a summary among the given ones are typed against their declared signatures.
+     */
+    public static JmmSymbolTable build(JmmNode root, InterfaceSummaries summaries) {
         var importsDecl = root.getChildren("ImportDecl");
         var classDecl = root.getChildren("ClassDecl").get(0);
         SpecsCheck.checkArgument(CLASS_DECL.check(classDecl), () -> "Expected a class declaration: " + classDecl);
         String className = classDecl.get("name");
 
-        var methods = buildMethods(classDecl);
-        var returnTypes = buildReturnTypes(classDecl);
-        var params = buildParams(classDecl);
-        var locals = buildLocals(classDecl);
-        var fields = buildFields(classDecl);
-        var Imports =buildImports(importsDecl);
-        var parent = buildParent(classDecl);
-        var varArgs = buildVarArgs(classDecl);
-
-        return new JmmSymbolTable(className, methods, returnTypes, params,fields, locals,Imports,varArgs,parent);
-    }
-
-    private static Map<String, Type> buildReturnTypes(JmmNode classDecl) {
-
-        Map<String, Type> map = new HashMap<>();
-
-        classDecl.getChildren(METHOD_DECL).stream()
-                .forEach(method -> {
-                    if(method.getChildren("Type").size()>0){
-
-                        if (method.getChildren("Type").get(0).getChildren("TypeArray").size()>0){
-                            map.put(method.get("name"), new Type(method.getChildren("Type").get(0).getChildren("TypeArray").get(0).get("name"), true));
-                    }else {
-                        map.put(method.get("name"), new Type(method.getChildren("Type").get(0).get("name"), false));
-                    }
-                    }else{
-                        map.put(method.get("name"), new Type("void", false));
-                    }
-
-                });
-        classDecl.getChildren("MainMethodDecl").stream()
-                .forEach(method -> map.put("main", new Type("void", false)));
+        List<String> methods = new ArrayList<>();
+        Map<String, Type> returnTypes = new HashMap<>();
+        Map<String, List<Symbol>> params = new HashMap<>();
+        Map<String, List<Symbol>> locals = new HashMap<>();
+        Map<String, Boolean> varArgs = new HashMap<>();
+        List<Symbol> fields = new ArrayList<>();
+        boolean hasMain = false;
+
+        for (var child : classDecl.getChildren()) {
+            if (VAR_DECL.check(child)) {
+                fields.add(new Symbol(getFieldType(child), child.get("name")));
+            } else if (METHOD_DECL.check(child)) {
+                String name = child.get("name");
+                methods.add(name);
+                returnTypes.put(name, getReturnType(child));
+                params.put(name, getParamsList(child));
+                locals.put(name, getLocalsList(child));
+                varArgs.put(name, child.getChildren("_varargs").size() == 1);
+            } else if (child.getKind().equals("MainMethodDecl")) {
+                hasMain = true;
+                returnTypes.put("main", new Type("void", false));
+                params.put("main", child.hasAttribute("arg") ?
+                        Arrays.asList(new Symbol(new Type("String", true), child.get("arg"))) : new ArrayList<>());
+                locals.put("main", getLocalsList(child));
+            }
+        }
 
-        return map;
-    }
+        // main is listed after the other methods, wherever it is declared
+        if (hasMain) {
+            methods.add("main");
+        }
 
-    private static Map<String, List<Symbol>> buildParams(JmmNode classDecl) {
-
-        Map<String, List<Symbol>> map = new HashMap<>();
-
-        var intType = new Type(TypeUtils.getIntTypeName(), false);
-
-        classDecl.getChildren(METHOD_DECL).stream()
-                .forEach(method ->
-                            {   List<Symbol> symbols = new ArrayList<Symbol>();
-                                if(method.getChildren("Paramlist").size()>0) {
-                                    method.getChildren("Paramlist").get(0).getChildren("Param").stream()
-                                            .forEach(param -> {
-                                                Type type = new Type(null, false);
-                                                // in case of an array
-                                                if (param.getChildren("Type").get(0).getChildren("TypeArray").size() > 0) {
-                                                    type = new Type(param.getChildren("Type").get(0).getChildren("TypeArray").get(0).get("name"), true);
-                                                } else {
-                                                    type = new Type(param.getChildren("Type").get(0).get("name"), false);
-                                                }
-
-                                                symbols.add(new Symbol(type, param.get("name")));
-                                            });
-
-                                }
-                                try{ // in case of varargs
-                                    symbols.add(new Symbol(new Type("_varargs",true),method.getChildren("Paramlist").get(0).get("val")));
-                                }catch (Exception e){
-                                    //do nothing
-                                }
-                                    map.put(method.get("name"), symbols);
-
-
-                            }
-                        );
-        classDecl.getChildren("MainMethodDecl").stream()
-                .forEach(method ->{
-                        try{
-                        map.put("main",Arrays.asList(new Symbol (new Type("String",true),method.get("arg"))));
-                        }catch (NullPointerException e){
-                            map.put("main",new ArrayList<Symbol>());
-                        }
+        var Imports =buildImports(importsDecl);
+        var parent = buildParent(classDecl);
 
-                });
+        var importedSummaries = buildImportedSummaries(Imports, summaries);
 
-        return map;
+        return new JmmSymbolTable(className, methods, returnTypes, params,fields, locals,Imports,varArgs,parent,
+                importedSummaries);
     }
 
-    private static Map<String, List<Symbol>> buildLocals(JmmNode classDecl) {
-
-        Map<String, List<Symbol>> map = new HashMap<>();
-
-
-        classDecl.getChildren(METHOD_DECL).stream()
-                .forEach(method -> {
-
-
-                    map.put(method.get("name"), getLocalsList(method));
-
-
-
-                });
-        classDecl.getChildren("MainMethodDecl").stream()
-                .forEach(method -> {
-
-
-                    map.put("main", getLocalsList(method));
-
-
-
-                });
+    private static Type getReturnType(JmmNode method) {
+        if (method.getChildren("Type").isEmpty()) {
+            return new Type("void", false);
+        }
 
-        return map;
+        var type = method.getChildren("Type").get(0);
+        if (type.getChildren("TypeArray").size() > 0) {
+            return new Type(type.getChildren("TypeArray").get(0).get("name"), true);
+        }
+        return new Type(type.get("name"), false);
     }
 
-    private static List<String> buildMethods(JmmNode classDecl) {
-        List<String> methods ;
-        List<String> rList = new ArrayList<String>();
-        methods = classDecl.getChildren(METHOD_DECL).stream()
-                .map(method -> method.get("name"))
-                .toList();
-        rList.addAll(methods);
-        if(classDecl.getChildren("MainMethodDecl").size()>0){
-
+    private static List<Symbol> getParamsList(JmmNode method) {
+        List<Symbol> symbols = new ArrayList<Symbol>();
+        if (method.getChildren("Paramlist").isEmpty()) {
+            return symbols;
+        }
 
-            rList.add("main");
+        var paramlist = method.getChildren("Paramlist").get(0);
+        paramlist.getChildren("Param").forEach(param -> {
+            Type type;
+            // in case of an array
+            if (param.getChildren("Type").get(0).getChildren("TypeArray").size() > 0) {
+                type = new Type(param.getChildren("Type").get(0).getChildren("TypeArray").get(0).get("name"), true);
+            } else {
+                type = new Type(param.getChildren("Type").get(0).get("name"), false);
+            }
+
+            symbols.add(new Symbol(type, param.get("name")));
+        });
+
+        // in case of varargs
+        if (paramlist.hasAttribute("val")) {
+            symbols.add(new Symbol(new Type("_varargs", true), paramlist.get("val")));
         }
 
-        return rList;
+        return symbols;
     }
 
-
     private static List<Symbol> getLocalsList(JmmNode methodDecl) {
         List<Symbol> locals= new ArrayList<Symbol>();
         if(methodDecl.getChildren("VarDecl").size()>0){
@@ -169,28 +130,18 @@ public class JmmSymbolTableBuilder {
         }
         return locals;
     }
-    private static List<Symbol> buildFields(JmmNode classDecl) {
-        var symbols = new ArrayList<Symbol>();
-
-
-        classDecl.getChildren(VAR_DECL).stream()
-                .forEach(varDecl -> {
 
-                    Type type = new Type("Typeee", false);
-                    if(varDecl.getChildren("Type").size()>0) {
-                        // in case of an array
-                        if (varDecl.getChildren("Type").get(0).getChildren("TypeArray").size() > 0) {
-                            type = new Type(varDecl.getChildren("Type").get(0).getChildren("TypeArray").get(0).get("name"), true);
-                        } else {
-                            type = new Type(varDecl.getChildren("Type").get(0).get("name"), false);
-                        }
-                    }
-                    symbols.add(new Symbol(type ,varDecl.get("name")));
-
-
-                });
-
-        return symbols;
+    private static Type getFieldType(JmmNode varDecl) {
+        Type type = new Type("Typeee", false);
+        if(varDecl.getChildren("Type").size()>0) {
+            // in case of an array
+            if (varDecl.getChildren("Type").get(0).getChildren("TypeArray").size() > 0) {
+                type = new Type(varDecl.getChildren("Type").get(0).getChildren("TypeArray").get(0).get("name"), true);
+            } else {
+                type = new Type(varDecl.getChildren("Type").get(0).get("name"), false);
+            }
+        }
+        return type;
     }
 
     private static List<String> buildImports(List<JmmNode> importsDecl) {
@@ -207,6 +158,16 @@ public class JmmSymbolTableBuilder {
         return imports;
     }
 
+    private static Map<String, InterfaceSummary> buildImportedSummaries(List<String> imports,
+                                                                        InterfaceSummaries summaries) {
+        var importedSummaries = new HashMap<String, InterfaceSummary>();
+        for (var importPath : imports) {
+            summaries.find(importPath).ifPresent(summary ->
+                    importedSummaries.putIfAbsent(JmmSymbolTable.getSimpleName(importPath), summary));
+        }
+        return importedSummaries;
+    }
+
     private static String buildParent(JmmNode classDecl) {
         try {
             var parent = classDecl.get("parent");
@@ -227,16 +188,4 @@ public class JmmSymbolTableBuilder {
         }
         return superClasses;
     }
-    private static Map<String, Boolean> buildVarArgs(JmmNode classDecl) {
-        Map<String, Boolean> map = new HashMap<>();
-        classDecl.getChildren(METHOD_DECL).stream()
-                .forEach(method -> {
-                    if (method.getChildren("_varargs").size()==1){
-                        map.put(method.get("name"),true);
-                    }else{
-                        map.put(method.get("name"),false);
-                    }
-                });
-        return map;
-    }
 }
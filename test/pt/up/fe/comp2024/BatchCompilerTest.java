@@ -0,0 +1,79 @@
+package pt.up.fe.comp2024;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import pt.up.fe.comp.jmm.report.ReportType;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.File;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class BatchCompilerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File source(String name, String code) {
+        var file = new File(folder.getRoot(), "batch/" + name + ".jmm");
+        SpecsIo.write(file, code);
+        return file;
+    }
+
+    @Test
+    public void failingFilesDoNotStopTheOthers() {
+        var first = source("A", """
+                class A {
+                    public static void main(String[] args) {
+                    }
+                }
+                """);
+        var broken = source("B", """
+                class B {
+                    public int f() {
+                        return true;
+                    }
+                }
+                """);
+        var last = source("nested/C", """
+                class C {
+                    public int f(int a) {
+                        return a + 1;
+                    }
+                }
+                """);
+
+        var sources = BatchCompiler.findSources(new File(folder.getRoot(), "batch"));
+        assertEquals(List.of(first, broken, last), sources);
+
+        var summary = new BatchCompiler(new CompilerPipeline(), 2).compile(sources, CompilerConfig.getDefault());
+
+        assertEquals(1, summary.getFailedCount());
+        var results = summary.getResults();
+        assertEquals(3, results.size());
+
+        // results keep the order of the sources, each with the reports of its own file
+        assertEquals(broken, results.get(1).source());
+        assertFalse(results.get(1).isSuccess());
+        assertNull(results.get(1).result().getJasminResult());
+        assertTrue(results.get(1).result().getReports().stream()
+                .anyMatch(report -> report.getType() == ReportType.ERROR));
+
+        for (var result : List.of(results.get(0), results.get(2))) {
+            assertTrue(result.source().toString(), result.isSuccess());
+            assertNotNull(result.result().getJasminResult());
+        }
+        assertEquals("C", results.get(2).result().getJasminResult().getClassName());
+
+        var report = summary.toReport();
+        assertTrue(report, report.contains("FAILED " + broken));
+        assertFalse(report, report.contains("FAILED " + first));
+        assertTrue(report, report.contains("Compiled 3 files (1 failed)"));
+    }
+}
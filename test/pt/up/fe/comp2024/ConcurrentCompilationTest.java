@@ -0,0 +1,129 @@
+package pt.up.fe.comp2024;
+
+import org.junit.Test;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp2024.analysis.JmmAnalysisImpl;
+import pt.up.fe.comp2024.optimization.JmmOptimizationImpl;
+import pt.up.fe.comp2024.optimization_jasmin.AstToJasminImpl;
+import pt.up.fe.comp2024.parser.JmmParserImpl;
+import pt.up.fe.comp2024.utils.ReportUtils;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ConcurrentCompilationTest {
+
+    private static final int THREADS = 8;
+
+    /**
+     * Everything the compiler produces for the source, or what stopped it, as text to compare between runs.
+     */
+    private static String compile(File source) {
+        var config = CompilerConfig.getDefault();
+        var output = new StringBuilder();
+
+        try {
+            var parserResult = new JmmParserImpl().parse(source, config);
+            if (ReportUtils.anyError(parserResult.getReports())) {
+                return "syntax errors: " + parserResult.getReports().size();
+            }
+
+            var semanticsResult = new JmmAnalysisImpl().semanticAnalysis(parserResult);
+            if (ReportUtils.anyError(semanticsResult.getReports())) {
+                return "semantic errors: " + semanticsResult.getReports().stream()
+                        .map(Report::getMessage)
+                        .collect(Collectors.joining("\n"));
+            }
+
+            output.append(new AstToJasminImpl().toJasmin(semanticsResult).getJasminCode());
+            output.append(new JmmOptimizationImpl().toOllir(semanticsResult).getOllirCode());
+        } catch (RuntimeException e) {
+            // the OLLIR generator does not support every construct yet
+            output.append("failed with ").append(e.getClass().getName());
+        }
+
+        return output.toString();
+    }
+
+    @Test
+    public void concurrentRunsMatchSerialRun() throws Exception {
+        var sources = SpecsIo.getFilesRecursive(new File("test"), "jmm");
+        sources.sort(null);
+        assertTrue(sources.size() > 50);
+
+        var expected = new HashMap<File, String>();
+        for (var source : sources) {
+            expected.put(source, compile(source));
+        }
+
+        // compiling again in the same JVM must not change anything
+        for (var source : sources) {
+            assertEquals(source.toString(), expected.get(source), compile(source));
+        }
+
+        var executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            var tasks = new ArrayList<Callable<Map<File, String>>>();
+            for (int i = 0; i < THREADS; i++) {
+                // every thread compiles the whole corpus, in its own order
+                var order = new ArrayList<>(sources);
+                Collections.shuffle(order, new Random(i));
+                tasks.add(() -> {
+                    var outputs = new HashMap<File, String>();
+                    for (var source : order) {
+                        outputs.put(source, compile(source));
+                    }
+                    return outputs;
+                });
+            }
+
+            for (var future : executor.invokeAll(tasks)) {
+                var outputs = future.get();
+                for (var source : sources) {
+                    assertEquals(source.toString(), expected.get(source), outputs.get(source));
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void labelsRestartInEveryMethod() {
+        var code = """
+                class Labels {
+                    public int first(int a) {
+                        if (a < 1) { a = 1; } else { a = 2; }
+                        return a;
+                    }
+                    public int second(int a) {
+                        while (a < 10) { a = a + 1; }
+                        return a;
+                    }
+                }
+                """;
+
+        var config = CompilerConfig.getDefault();
+        var semanticsResult = new JmmAnalysisImpl().semanticAnalysis(new JmmParserImpl().parse(code, config));
+        var jasmin = new AstToJasminImpl().toJasmin(semanticsResult).getJasminCode();
+
+        // the header, then the methods in declaration order
+        var methods = List.of(jasmin.split("\\.method"));
+        assertTrue(jasmin, methods.get(1).contains("if_0_else"));
+        assertTrue(jasmin, methods.get(1).contains("cmp_label_true_1"));
+        assertTrue(jasmin, methods.get(2).contains("while_0_end"));
+        assertTrue(jasmin, methods.get(2).contains("cmp_label_true_1"));
+    }
+}
@@ -0,0 +1,19 @@
+package pt.up.fe.comp2024;
+
+import org.junit.Test;
+
+public class LauncherTest {
+
+    private static final String HELLO_WORLD = "test/pt/up/fe/comp/cp2/apps/HelloWorld.jmm";
+
+    @Test
+    public void compilesWithoutOptions() {
+        // the default command line path, no stats, cache or output folder
+        Launcher.main(new String[]{"-i=" + HELLO_WORLD});
+    }
+
+    @Test
+    public void compilesWithStats() {
+        Launcher.main(new String[]{"-i=" + HELLO_WORLD, "-m"});
+    }
+}
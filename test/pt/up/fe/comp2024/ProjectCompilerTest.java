@@ -0,0 +1,88 @@
+package pt.up.fe.comp2024;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ProjectCompilerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File source(String name, String code) {
+        var file = new File(folder.getRoot(), "src/" + name + ".jmm");
+        SpecsIo.write(file, code);
+        return file;
+    }
+
+    private Map<String, String> config(File output) {
+        var config = CompilerConfig.getDefault();
+        config.put("outputDir", output.getAbsolutePath());
+        return config;
+    }
+
+    @Test
+    public void compilesDependenciesFirst() {
+        // kept to what the OLLIR backend of the pipeline supports
+        var user = source("User", """
+                import Child;
+                class User {
+                    public static void main(String[] args) {
+                        Child.run();
+                    }
+                }
+                """);
+        var child = source("Child", """
+                import Base;
+                class Child extends Base {
+                    public static void main(String[] args) {
+                    }
+                }
+                """);
+        var base = source("Base", """
+                class Base {
+                    int value;
+                    public static void main(String[] args) {
+                    }
+                }
+                """);
+
+        var output = new File(folder.getRoot(), "out");
+        var summary = new ProjectCompiler(new CompilerPipeline(), 2).compile(List.of(user, child, base), config(output));
+
+        assertEquals(summary.toReport(), 0, summary.getFailedCount());
+        for (var name : List.of("Base", "Child", "User")) {
+            assertTrue(new File(output, name + ".j").isFile());
+            assertTrue(new File(output, name + ".jmmi").isFile());
+        }
+        // results keep the order of the sources
+        assertEquals(user, summary.getResults().get(0).source());
+    }
+
+    @Test
+    public void reportsCyclesAndTheirDependents() {
+        var a = source("A", "import B; class A {}");
+        var b = source("B", "import A; class B {}");
+        var user = source("User", "import A; class User {}");
+        var free = source("Free", "class Free {}");
+
+        var summary = new ProjectCompiler().compile(List.of(a, b, user, free),
+                config(new File(folder.getRoot(), "out")));
+
+        var results = summary.getResults();
+        assertEquals(3, summary.getFailedCount());
+        assertTrue(results.get(0).result().getReports().get(0).getMessage().contains("Cyclic dependency"));
+        assertTrue(results.get(2).result().getReports().get(0).getMessage().contains("dependency cycle"));
+        assertTrue(results.get(3).isSuccess());
+        assertFalse(results.get(1).isSuccess());
+    }
+}
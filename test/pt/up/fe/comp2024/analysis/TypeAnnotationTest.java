@@ -0,0 +1,97 @@
+package pt.up.fe.comp2024.analysis;
+
+import org.junit.Test;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.analysis.table.Type;
+import pt.up.fe.comp2024.ast.Kind;
+import pt.up.fe.comp2024.ast.NodeUtils;
+import pt.up.fe.comp2024.ast.TypeUtils;
+import pt.up.fe.comp2024.cache.StageCodec;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TypeAnnotationTest {
+
+    private static final String CODE = """
+            class A {
+                int f;
+                public int foo(int x, int[] y) {
+                    boolean b;
+                    b = x < y[0] + 1 && !b;
+                    return [x, y.length, f][x];
+                }
+                public static void main(String[] args) {
+                    boolean x;
+                    x = true;
+                }
+            }
+            """;
+
+    @Test
+    public void annotatesExpressions() {
+        var result = TestUtils.analyse(CODE);
+        TestUtils.noErrors(result);
+
+        var expressions = result.getRootNode().getDescendants(Kind.BINARY_EXPR);
+        assertFalse(expressions.isEmpty());
+
+        for (var expr : expressions) {
+            assertTrue(expr.getObject(TypeUtils.EXPR_TYPE) instanceof Type);
+            assertEquals("foo", expr.get(NodeUtils.ENCLOSING_METHOD));
+        }
+
+        var array = result.getRootNode().getDescendants(Kind.ARRAY).get(0);
+        assertEquals(new Type("int", true), array.getObject(TypeUtils.EXPR_TYPE));
+
+        // the same name, typed in the scope of each method
+        var vars = result.getRootNode().getDescendants(Kind.VAR_REF_EXPR).stream()
+                .filter(var -> var.get("name").equals("x"))
+                .toList();
+        assertEquals(new Type("int", false), vars.get(0).getObject(TypeUtils.EXPR_TYPE));
+        assertEquals(new Type("boolean", false), vars.get(vars.size() - 1).getObject(TypeUtils.EXPR_TYPE));
+    }
+
+    @Test
+    public void recomputesDecodedAnnotations() {
+        var result = TestUtils.analyse(CODE);
+        var decoded = StageCodec.decodeAst(StageCodec.encodeAst(result.getRootNode()));
+
+        var length = decoded.getDescendants(Kind.LENGTH_EXPR).get(0);
+        assertFalse(length.getObject(TypeUtils.EXPR_TYPE) instanceof Type);
+        assertEquals("foo", NodeUtils.getEnclosingMethod(length));
+
+        assertEquals(new Type("int", false), TypeUtils.getExprType(length, result.getSymbolTable(), "foo"));
+        assertTrue(length.getObject(TypeUtils.EXPR_TYPE) instanceof Type);
+    }
+
+    @Test
+    public void backendTypesReadTheAnnotations() {
+        var result = TestUtils.analyse("""
+                import io;
+                class B {
+                    public int foo(int x) {
+                        io.println(x);
+                        return this.foo(x);
+                    }
+                    public static void main(String[] args) {
+                    }
+                }
+                """);
+        TestUtils.noErrors(result);
+        var table = result.getSymbolTable();
+        var calls = result.getRootNode().getDescendants(Kind.MEMBER_CALL_EXPR);
+
+        // a class reference is marked as the target of a static call
+        var io = calls.get(0).getJmmChild(0);
+        assertEquals(new Type("io_", false), TypeUtils.getExprType_Ollir(io, table, "foo"));
+
+        // other types are the annotated ones, not computed again
+        var x = calls.get(0).getJmmChild(1);
+        var annotated = new Type("annotated", false);
+        x.putObject(TypeUtils.EXPR_TYPE, annotated);
+        assertEquals(annotated, TypeUtils.getExprType_Ollir(x, table, "foo"));
+        assertEquals(new Type("B", false), TypeUtils.getExprType_Ollir(calls.get(1).getJmmChild(0), table, "foo"));
+    }
+}
@@ -0,0 +1,78 @@
+package pt.up.fe.comp2024.backend;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class JasminWriterTest {
+
+    @Test
+    public void instructionsKeepTheirOperands() {
+        var call = JasminCode.parse("   invokestatic io/println(I)V");
+        assertEquals(new JasminInstruction("invokestatic", List.of("io/println(I)V")), call);
+
+        var field = (JasminInstruction) JasminCode.parse("getfield Foo/x [I");
+        assertEquals(List.of("Foo/x", "[I"), field.operands());
+        assertEquals("getfield Foo/x [I", field.toString());
+
+        assertEquals(List.of("\"a b\""), ((JasminInstruction) JasminCode.parse("ldc \"a b\"")).operands());
+        assertEquals(new JasminLabel("loop"), JasminCode.parse("loop:"));
+    }
+
+    @Test
+    public void shortFormsAreUsedWhenThereAreAny() {
+        assertEquals("iload_3", JasminInstruction.local("iload", 3).toString());
+        assertEquals("astore 4", JasminInstruction.local("astore", 4).toString());
+        assertEquals("iconst_m1", JasminInstruction.constant(-1).toString());
+        assertEquals("bipush 100", JasminInstruction.constant(100).toString());
+        assertEquals("ldc 40000", JasminInstruction.constant(40000).toString());
+        assertEquals(4, JasminInstruction.parse("iinc 4 1").getLocal("iinc"));
+    }
+
+    @Test
+    public void classesAreWrittenOnce() {
+        var jasminClass = new JasminClass(List.of("public"), "Test", "java/lang/Object");
+        jasminClass.addField(new JasminField(List.of("private"), "x", "I"));
+
+        var method = new JasminMethod(List.of("public", "static"), "f", "(I)I");
+        method.add("iload_0");
+        method.add("ifeq", "zero");
+        method.add(JasminInstruction.constant(7));
+        method.add("ireturn");
+        method.addLabel("zero");
+        method.add(JasminInstruction.constant(0));
+        method.add("ireturn");
+        method.setStackLimit(StackAnalysis.getMaxDepth(method.getCode()));
+        method.setLocalsLimit(1);
+        jasminClass.addMethod(method);
+        jasminClass.addDefaultConstructor();
+
+        assertEquals("""
+                .class public Test
+                .super java/lang/Object
+                .field private x I
+
+                .method public static f(I)I
+                   .limit stack 1
+                   .limit locals 1
+                   iload_0
+                   ifeq zero
+                   bipush 7
+                   ireturn
+                   zero:
+                   iconst_0
+                   ireturn
+                .end method
+
+                .method public <init>()V
+                   .limit stack 1
+                   .limit locals 1
+                   aload_0
+                   invokespecial java/lang/Object/<init>()V
+                   return
+                .end method
+                """, JasminWriter.write(jasminClass));
+    }
+}
@@ -0,0 +1,95 @@
+package pt.up.fe.comp2024.backend;
+
+import org.junit.Test;
+import pt.up.fe.comp2024.CompilerConfig;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class PeepholeOptimizerTest {
+
+    private static List<JasminCode> code(String... lines) {
+        return Arrays.stream(lines).map(JasminCode::parse).toList();
+    }
+
+    private static List<String> optimize(String... instructions) {
+        return new PeepholeOptimizer(PeepholePatterns.ALL).optimizeMethod(code(instructions)).stream()
+                .map(JasminCode::toString)
+                .toList();
+    }
+
+    @Test
+    public void incrementsBecomeIinc() {
+        assertEquals(List.of("iinc 2 1"), optimize("iload_2", "ldc 1", "iadd", "istore_2"));
+        assertEquals(List.of("iinc 4 -3"), optimize("iload 4", "iconst_3", "isub", "istore 4"));
+        assertEquals(List.of("iinc 1 7"), optimize("bipush 7", "iload_1", "iadd", "istore_1"));
+
+        // another variable, or a value too large for iinc
+        assertEquals(List.of("iload_1", "iconst_1", "iadd", "istore_2"),
+                optimize("iload_1", "iconst_1", "iadd", "istore_2"));
+        assertEquals(List.of("iload_1", "sipush 1000", "iadd", "istore_1"),
+                optimize("iload_1", "ldc 1000", "iadd", "istore_1"));
+    }
+
+    @Test
+    public void comparisonsWithZeroUseSingleOperandBranches() {
+        assertEquals(List.of("iload_1", "iflt less", "less:"), optimize("iload_1", "ldc 0", "if_icmplt less", "less:"));
+    }
+
+    @Test
+    public void storesFollowedByLoadsKeepTheValue() {
+        assertEquals(List.of("dup", "istore_1", "ireturn"), optimize("istore_1", "iload_1", "ireturn"));
+        assertEquals(List.of("dup", "astore 5", "areturn"), optimize("astore 5", "aload 5", "areturn"));
+    }
+
+    @Test
+    public void jumpsToTheNextLabelAndPoppedPushesAreRemoved() {
+        assertEquals(List.of("next:", "return"), optimize("goto next", "next:", "return"));
+        assertEquals(List.of("return"), optimize("iload_1", "pop", "dup", "pop", "return"));
+    }
+
+    @Test
+    public void rewritesRepeatUntilNothingMatches() {
+        // the increment is only visible once the constant and the jump are gone
+        assertEquals(List.of("iinc 1 1", "end:", "return"),
+                optimize("iload_1", "ldc 1", "iadd", "istore_1", "iconst_2", "pop", "goto end", "end:", "return"));
+    }
+
+    @Test
+    public void patternsDoNotMatchAcrossLabels() {
+        var instructions = code("istore_1", "loop:", "iload_1", "goto loop");
+        assertEquals(instructions, new PeepholeOptimizer(PeepholePatterns.ALL).optimizeMethod(instructions));
+    }
+
+    @Test
+    public void firingsAreCountedAndStackLimitsComputedAgain() {
+        var optimizer = new PeepholeOptimizer(PeepholePatterns.ALL);
+        var method = new JasminMethod(List.of("public", "static"), "f", "(I)I");
+        method.getCode().addAll(code("iload_0", "ldc 2", "imul", "istore_1", "iload_1", "ireturn"));
+        method.setStackLimit(99);
+        method.setLocalsLimit(2);
+        var jasminClass = new JasminClass(List.of(), "Test", "java/lang/Object");
+        jasminClass.addMethod(method);
+
+        optimizer.optimize(jasminClass);
+
+        assertEquals(List.of("iload_0", "iconst_2", "imul", "dup", "istore_1", "ireturn"),
+                method.getCode().stream().map(JasminCode::toString).toList());
+        assertEquals(2, method.getStackLimit());
+        assertEquals(2, method.getLocalsLimit());
+        assertEquals(1, (int) optimizer.getCounts().get("constant"));
+        assertEquals(1, (int) optimizer.getCounts().get("store-load"));
+        assertEquals(2, optimizer.getReports().size());
+    }
+
+    @Test
+    public void patternsAreChosenByName() {
+        var patterns = CompilerConfig.getPeepholePatterns(Map.of("peephole", "push-pop,increment"));
+        assertEquals(List.of(PeepholePatterns.INCREMENT, PeepholePatterns.PUSH_POP), patterns);
+        assertEquals(List.of(), CompilerConfig.getPeepholePatterns(Map.of("peephole", "false")));
+        assertEquals(PeepholePatterns.ALL, CompilerConfig.getPeepholePatterns(Map.of()));
+    }
+}
@@ -0,0 +1,78 @@
+package pt.up.fe.comp2024.backend;
+
+import org.junit.Test;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class StackAnalysisTest {
+
+    private static List<JasminCode> code(String... lines) {
+        return Arrays.stream(lines).map(JasminCode::parse).toList();
+    }
+
+    @Test
+    public void straightLineCodeReachesItsDeepestPoint() {
+        assertEquals(2, StackAnalysis.getMaxDepth(code(
+                "iload 1", "iload 2", "iadd", "ldc 3", "imul", "istore 3", "iload 3", "ireturn")));
+    }
+
+    @Test
+    public void callsPopTheirArgumentsAndPushTheirResult() {
+        assertEquals(4, StackAnalysis.getMaxDepth(code(
+                "aload_0", "iload_1", "aload_2", "ldc \"x\"",
+                "invokevirtual Foo/bar(I[[ILjava/lang/String;)I",
+                "invokestatic io/println(I)V",
+                "return")));
+    }
+
+    @Test
+    public void depthsMergeAtLabels() {
+        // the loop body goes one deeper than the code around it, and every path reaches the labels empty
+        assertEquals(3, StackAnalysis.getMaxDepth(code(
+                "iconst_0", "istore_1",
+                "cond:",
+                "iload_1", "bipush 10", "if_icmpge end",
+                "aload_0", "iload_1", "iload_1", "iastore",
+                "iinc 1 1",
+                "goto cond",
+                "end:",
+                "return")));
+    }
+
+    @Test(expected = AssertionError.class)
+    public void poppingAnEmptyStackIsAsserted() {
+        StackAnalysis.getMaxDepth(code("iload_1", "iadd", "ireturn"));
+    }
+
+    @Test(expected = AssertionError.class)
+    public void labelsReachedWithDifferentDepthsAreAsserted() {
+        StackAnalysis.getMaxDepth(code("iload_1", "ifeq skip", "iconst_1", "skip:", "return"));
+    }
+
+    @Test
+    public void generatedMethodsGetExactLimits() {
+        for (var resource : List.of("pt/up/fe/comp/cp2/jasmin/OllirToJasminArithmetics.ollir",
+                "pt/up/fe/comp/cp2/jasmin/OllirToJasminInvoke.ollir",
+                "pt/up/fe/comp/cp2/jasmin/OllirToJasminFields.ollir",
+                "pt/up/fe/comp/cp2/apps/example_ollir/Simple.ollir",
+                "pt/up/fe/comp/cpf/4_jasmin/arrays/ArrayNew.ollir",
+                "pt/up/fe/comp/cpf/4_jasmin/limits/LocalLimits.ollir")) {
+            var ollirResult = new OllirResult(SpecsIo.getResource(resource), Collections.emptyMap());
+            var code = new JasminGenerator(ollirResult).build();
+            assertFalse(resource, code.contains(".limit stack 99"));
+        }
+
+        var ollirResult = new OllirResult(
+                SpecsIo.getResource("pt/up/fe/comp/cp2/jasmin/OllirToJasminArithmetics.ollir"), Collections.emptyMap());
+        var code = new JasminGenerator(ollirResult).build();
+        assertTrue(code, code.contains(".method public foo()I\n   .limit stack 2\n   .limit locals 4\n"));
+    }
+}
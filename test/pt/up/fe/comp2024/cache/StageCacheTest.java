@@ -0,0 +1,153 @@
+package pt.up.fe.comp2024.cache;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.CompilerPipeline;
+import pt.up.fe.comp2024.CompilerPipeline.Step;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class StageCacheTest {
+
+    private static final String HELLO_WORLD = "pt/up/fe/comp/cp2/apps/HelloWorld.jmm";
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void resumesFromFirstMissingStage() throws IOException {
+        var folder = temp.newFolder();
+        var cache = new StageCache(folder);
+        var pipeline = new CompilerPipeline(cache);
+        var code = SpecsIo.getResource(HELLO_WORLD);
+        var config = CompilerConfig.getDefault();
+
+        var first = pipeline.run(code, config);
+        assertFalse(first.hasErrors());
+        assertFalse(first.isCached(Step.PARSE));
+        var expected = first.getJasminResult().getJasminCode();
+
+        // everything is in the cache
+        var second = pipeline.run(code, config);
+        assertTrue(second.isCached(Step.JASMIN));
+        assertEquals(expected, second.getJasminResult().getJasminCode());
+        assertEquals(1, cache.getHits(Step.JASMIN));
+
+        // only parser and analysis results are left
+        var key = cache.key(code, config);
+        Files.delete(new File(folder, key + ".jasmin").toPath());
+        Files.delete(new File(folder, key + ".ollir").toPath());
+
+        var third = pipeline.run(code, config);
+        assertTrue(third.isCached(Step.ANALYSIS));
+        assertFalse(third.isCached(Step.OLLIR));
+        assertEquals(expected, third.getJasminResult().getJasminCode());
+        assertEquals(1, cache.getHits(Step.ANALYSIS));
+
+        // different options, different entry
+        config.put("optimize", "true");
+        assertFalse(pipeline.run(code, config).isCached(Step.PARSE));
+        config.put("peephole", "false");
+        assertFalse(pipeline.run(code, config).isCached(Step.PARSE));
+    }
+
+    @Test
+    public void cachedOllirIsOptimizedAgain() throws IOException {
+        var cache = new StageCache(temp.newFolder());
+        var pipeline = new CompilerPipeline(cache);
+        var code = SpecsIo.getResource("pt/up/fe/comp/cpf/5_optimizations/reg_alloc/regalloc.jmm");
+        var config = CompilerConfig.getDefault();
+        config.put("registerAllocation", "0");
+        // class files are not cached, the second run starts from the OLLIR code
+        config.put("classFile", "true");
+
+        var expected = pipeline.run(code, config).getClassFileResult().classFile();
+
+        var cached = pipeline.run(code, config);
+        assertTrue(cached.isCached(Step.OLLIR));
+        assertArrayEquals(expected, cached.getClassFileResult().classFile());
+    }
+
+    @Test
+    public void logReportsAreNotKept() throws IOException {
+        var cache = new StageCache(temp.newFolder());
+        var pipeline = new CompilerPipeline(cache);
+        var code = SpecsIo.getResource("pt/up/fe/comp/cpf/5_optimizations/reg_alloc/regalloc.jmm");
+        var config = CompilerConfig.getDefault();
+        config.put("optimize", "true");
+
+        // dead code elimination logs what it removed
+        var first = pipeline.run(code, config);
+        assertFalse(first.getReports().isEmpty());
+        assertFalse(first.hasErrors());
+
+        var second = pipeline.run(code, config);
+        assertTrue(second.isCached(Step.JASMIN));
+        assertEquals(first.getJasminResult().getJasminCode(), second.getJasminResult().getJasminCode());
+    }
+
+    @Test
+    public void keyDependsOnTheLibraries() throws IOException {
+        var folder = temp.newFolder();
+        var cache = new StageCache(folder);
+        var code = SpecsIo.getResource(HELLO_WORLD);
+        var library = temp.newFolder();
+        var config = CompilerConfig.getDefault();
+        config.put("libraryPath", library.getAbsolutePath());
+
+        var key = cache.key(code, config);
+        assertEquals(key, cache.key(code, config));
+
+        // a new class on the library path, seen by the next cache since each one hashes the libraries once
+        var classFile = new File(library, "Lib.class");
+        Files.write(classFile.toPath(), new byte[]{1, 2, 3});
+        assertEquals(key, cache.key(code, config));
+        var withClass = new StageCache(folder).key(code, config);
+        assertFalse(key.equals(withClass));
+
+        // the same class, changed
+        Files.write(classFile.toPath(), new byte[]{1, 2, 3, 4});
+        assertFalse(withClass.equals(new StageCache(folder).key(code, config)));
+
+        // another library path
+        config.put("libraryPath", temp.newFolder().getAbsolutePath());
+        assertFalse(key.equals(cache.key(code, config)));
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() throws IOException {
+        var folder = temp.newFolder();
+        var cache = new StageCache(folder, 10);
+
+        cache.put("a", Step.PARSE, "12345");
+        new File(folder, "a.parse").setLastModified(System.currentTimeMillis() - 10_000);
+        cache.put("b", Step.PARSE, "12345");
+        new File(folder, "b.parse").setLastModified(System.currentTimeMillis() - 5_000);
+        // at the limit, nothing is evicted yet
+        assertTrue(new File(folder, "a.parse").isFile());
+        cache.put("c", Step.PARSE, "12345");
+
+        // past the limit, entries are evicted down to three quarters of it
+        assertFalse(cache.get("a", Step.PARSE).isPresent());
+        assertFalse(cache.get("b", Step.PARSE).isPresent());
+        assertTrue(cache.get("c", Step.PARSE).isPresent());
+        assertEquals(2, cache.getMisses(Step.PARSE));
+
+        // a new cache counts what is already in the folder
+        var reopened = new StageCache(folder, 10);
+        reopened.put("d", Step.PARSE, "12345");
+        assertTrue(reopened.get("c", Step.PARSE).isPresent());
+        reopened.put("e", Step.PARSE, "12345");
+        assertFalse(new File(folder, "c.parse").isFile() && new File(folder, "d.parse").isFile());
+    }
+}
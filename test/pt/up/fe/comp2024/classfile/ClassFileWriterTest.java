@@ -0,0 +1,215 @@
+package pt.up.fe.comp2024.classfile;
+
+import org.junit.Test;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp2024.backend.JasminBackendImpl;
+import pt.up.fe.comp2024.backend.JasminClass;
+import pt.up.fe.comp2024.backend.JasminInstruction;
+import pt.up.fe.comp2024.backend.JasminMethod;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ClassFileWriterTest {
+
+    private static final long TIMEOUT_SECONDS = 10;
+
+    @Test
+    public void branchesUseRelativeOffsets() {
+        var method = new JasminMethod(List.of("public", "static"), "f", "(I)I");
+        method.add("iload_0");
+        method.add("ifeq", "zero");
+        method.add(JasminInstruction.constant(7));
+        method.add("ireturn");
+        method.addLabel("zero");
+        method.add("iinc", 0, 200);
+        method.add("iload_0");
+        method.add("ireturn");
+
+        var code = ClassFileWriter.assemble(method.getCode(), new ConstantPoolBuilder());
+
+        assertArrayEquals(new byte[]{
+                0x1a,
+                (byte) 0x99, 0x00, 0x06,
+                0x10, 0x07,
+                (byte) 0xac,
+                // 200 does not fit in a byte
+                (byte) 0xc4, (byte) 0x84, 0x00, 0x00, 0x00, (byte) 0xc8,
+                0x1a,
+                (byte) 0xac
+        }, code);
+        assertEquals(1, ClassFileWriter.getMaxLocals(method));
+    }
+
+    @Test
+    public void constantsAreAddedOnce() {
+        var pool = new ConstantPoolBuilder();
+
+        var first = pool.methodRef("io", "println", "(I)V");
+        assertEquals(first, pool.methodRef("io", "println", "(I)V"));
+        assertEquals(pool.utf8("io"), pool.utf8("io"));
+        assertTrue(pool.methodRef("io", "print", "(I)V") > first);
+    }
+
+    @Test
+    public void arraysOfEachType() {
+        var method = new JasminMethod(List.of("public", "static"), "f", "()V");
+        method.add(JasminInstruction.constant(3));
+        method.add("newarray", "int");
+        method.add("iconst_0");
+        method.add("newarray", "boolean");
+        method.add("iconst_1");
+        method.add("anewarray", "java/lang/String");
+        method.add("return");
+
+        var pool = new ConstantPoolBuilder();
+        var code = ClassFileWriter.assemble(method.getCode(), pool);
+
+        var stringClass = pool.classRef("java/lang/String");
+        assertArrayEquals(new byte[]{
+                0x06,
+                (byte) 0xbc, 0x0a,
+                0x03,
+                (byte) 0xbc, 0x04,
+                0x04,
+                (byte) 0xbd, (byte) (stringClass >> 8), (byte) stringClass,
+                (byte) 0xb1
+        }, code);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void arraysNeedAnElementType() {
+        var method = new JasminMethod(List.of("public", "static"), "f", "()V");
+        method.add("iconst_1");
+        method.add("newarray", "");
+
+        ClassFileWriter.assemble(method.getCode(), new ConstantPoolBuilder());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownInstructionsAreRejected() {
+        var jasminClass = new JasminClass(List.of("public"), "Test", "java/lang/Object");
+        var method = new JasminMethod(List.of("public", "static"), "f", "()V");
+        method.add("lreturn");
+        jasminClass.addMethod(method);
+
+        ClassFileWriter.write(jasminClass);
+    }
+
+    /**
+     * Both backends, given each OLLIR file of the test corpus, must build the same class: same members, loadable by
+     * the JVM, and printing the same output when it has a main method.
+     */
+    @Test
+    public void matchesTheJasminAssembler() throws Exception {
+        var compared = 0;
+        for (var ollirFile : getCorpus()) {
+            OllirResult ollirResult;
+            try {
+                ollirResult = new OllirResult(Files.readString(ollirFile), Collections.emptyMap());
+            } catch (RuntimeException e) {
+                // not OLLIR the parser accepts
+                continue;
+            }
+
+            byte[] direct = null;
+            RuntimeException directError = null;
+            try {
+                direct = new ClassFileBackend().toClassFile(ollirResult).classFile();
+            } catch (RuntimeException e) {
+                directError = e;
+            }
+
+            var jasminDir = Files.createTempDirectory("jasmin").toFile();
+            var directDir = Files.createTempDirectory("classfile").toFile();
+            File jasminFile;
+            try {
+                jasminFile = new JasminBackendImpl().toJasmin(ollirResult).compile(jasminDir);
+            } catch (RuntimeException e) {
+                // instructions the OLLIR backend does not generate yet, for both backends
+                continue;
+            }
+            if (directError != null) {
+                throw new AssertionError(ollirFile + " is assembled from Jasmin code but not written directly",
+                        directError);
+            }
+
+            var className = jasminFile.getName().substring(0, jasminFile.getName().length() - ".class".length());
+            Files.write(new File(directDir, jasminFile.getName()).toPath(), direct);
+
+            var expected = ClassFileReader.read(Files.readAllBytes(jasminFile.toPath()));
+            var actual = ClassFileReader.read(direct);
+            assertEquals(ollirFile.toString(), expected, actual);
+
+            // initializing the class links it, which runs the verifier
+            assertEquals(ollirFile.toString(), load(jasminDir, className), load(directDir, className));
+            var hasMain = actual.methods().stream()
+                    .anyMatch(method -> method.name().equals("main") && method.isStatic());
+            if (hasMain) {
+                assertEquals(ollirFile.toString(), run(jasminDir, className), run(directDir, className));
+            }
+
+            compared++;
+        }
+
+        assertFalse("No file of the corpus was compared", compared == 0);
+    }
+
+    private static List<Path> getCorpus() throws IOException {
+        try (var files = Files.walk(Path.of("test"))) {
+            return files.filter(file -> file.toString().endsWith(".ollir")).sorted().toList();
+        }
+    }
+
+    /**
+     * @return the name of the loaded class, or the error that prevented loading it
+     */
+    private static String load(File dir, String className) throws Exception {
+        try (var libs = new URLClassLoader(new URL[]{new File(TestUtils.getLibsClasspath()).toURI().toURL()});
+             var loader = new URLClassLoader(new URL[]{dir.toURI().toURL()}, libs)) {
+            return Class.forName(className, true, loader).getName();
+        } catch (LinkageError e) {
+            // the Jasmin assembler accepts some code the JVM rejects, which must then be rejected the same way
+            return e.getClass().getName();
+        }
+    }
+
+    /**
+     * @return the exit code and the standard output of the main method of the class
+     */
+    private static String run(File dir, String className) throws Exception {
+        var command = new ArrayList<String>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.add("-cp");
+        command.add(dir.getAbsolutePath() + File.pathSeparator + TestUtils.getLibsClasspath());
+        command.add(className);
+
+        var output = File.createTempFile("stdout", ".txt");
+        var process = new ProcessBuilder(command)
+                .redirectOutput(output)
+                .redirectError(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        process.getOutputStream().close();
+        var finished = process.waitFor(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        if (!finished) {
+            process.destroyForcibly().waitFor();
+        }
+        var stdout = Files.readString(output.toPath(), StandardCharsets.UTF_8);
+        return (finished ? process.exitValue() : "timeout") + "\n" + stdout;
+    }
+}
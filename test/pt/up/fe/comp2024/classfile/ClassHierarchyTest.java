@@ -0,0 +1,50 @@
+package pt.up.fe.comp2024.classfile;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ClassHierarchyTest {
+
+    private static ClassHierarchy newHierarchy() {
+        return new ClassHierarchy(List.of(new File("libs-jmm/compiled")));
+    }
+
+    @Test
+    public void readsClassFiles() {
+        var io = newHierarchy().find("io").orElseThrow();
+
+        assertEquals("io", io.name());
+        assertEquals(ClassHierarchy.OBJECT, io.superName());
+        assertTrue(io.fields().stream().anyMatch(field -> field.name().equals("Buffer") && field.isStatic()));
+        assertTrue(io.methods().stream().anyMatch(method -> method.name().equals("println")
+                && method.descriptor().equals("(Ljava/lang/String;I)V")));
+    }
+
+    @Test
+    public void resolvesSuperClasses() {
+        var hierarchy = newHierarchy();
+
+        assertTrue(hierarchy.isSubclassOf("inheritanceAB/B", "inheritanceAB/A"));
+        assertTrue(hierarchy.isSubclassOf("inheritanceAB/B", ClassHierarchy.OBJECT));
+        assertFalse(hierarchy.isSubclassOf("inheritanceAB/A", "inheritanceAB/B"));
+        assertFalse(hierarchy.isSubclassOf("foo/bar/B", "inheritanceAB/A"));
+        assertFalse(hierarchy.isSubclassOf("Missing", "inheritanceAB/A"));
+
+        // misses are remembered too
+        var lookups = hierarchy.getLookups();
+        hierarchy.isSubclassOf("Missing", "inheritanceAB/A");
+        assertEquals(lookups, hierarchy.getLookups());
+    }
+
+    @Test
+    public void convertsImportNames() {
+        assertEquals("foo/bar/B", ClassHierarchy.toInternalName("foo, bar, B"));
+        assertEquals("foo/bar/B", ClassHierarchy.toInternalName("foo.bar.B"));
+    }
+}
@@ -0,0 +1,99 @@
+package pt.up.fe.comp2024.daemon;
+
+import org.junit.Test;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class CompileDaemonTest {
+
+    private static final String HELLO_WORLD = "pt/up/fe/comp/cp2/apps/HelloWorld.jmm";
+
+    @Test
+    public void concurrentClients() throws Exception {
+        var code = SpecsIo.getResource(HELLO_WORLD);
+
+        try (var daemon = new CompileDaemon(0, CompileDaemon.DEFAULT_TIMEOUT_MILLIS)) {
+            daemon.start();
+            var client = new DaemonClient(daemon.getPort(), 60_000);
+
+            var executor = Executors.newFixedThreadPool(4);
+            try {
+                var futures = new ArrayList<Future<DaemonProtocol.Response>>();
+                for (int i = 0; i < 8; i++) {
+                    Callable<DaemonProtocol.Response> task = () -> client.compile(code, CompilerConfig.getDefault());
+                    futures.add(executor.submit(task));
+                }
+
+                for (var future : futures) {
+                    var response = future.get();
+                    assertEquals(DaemonProtocol.STATUS_OK, response.status);
+                    assertEquals("HelloWorld", response.className);
+                    assertNotNull(response.jasminCode);
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+
+            var stats = client.stats().stats;
+            assertEquals(8, stats.requests);
+            assertEquals(0, stats.failed);
+            assertTrue(stats.p99Millis >= stats.p50Millis);
+        }
+    }
+
+    @Test
+    public void reportsErrors() throws Exception {
+        try (var daemon = new CompileDaemon(0, CompileDaemon.DEFAULT_TIMEOUT_MILLIS)) {
+            daemon.start();
+            var client = new DaemonClient(daemon.getPort(), 60_000);
+
+            var response = client.compile("class {", CompilerConfig.getDefault());
+            assertEquals(DaemonProtocol.STATUS_FAILED, response.status);
+            assertTrue(response.reports.stream().anyMatch(report -> report.type.equals("ERROR")));
+            var stats = client.stats().stats;
+            assertEquals(1, stats.failed);
+            // still counted as a request, with its latency
+            assertEquals(1, stats.requests);
+            assertTrue(stats.p50Millis > 0);
+        }
+    }
+
+    @Test
+    public void answersUnexpectedExceptions() throws Exception {
+        try (var daemon = new CompileDaemon(0, CompileDaemon.DEFAULT_TIMEOUT_MILLIS)) {
+            daemon.start();
+            var client = new DaemonClient(daemon.getPort(), 60_000);
+
+            // a request without code makes the pipeline itself throw
+            var response = client.compile(null, CompilerConfig.getDefault());
+            assertEquals(DaemonProtocol.STATUS_FAILED, response.status);
+            assertEquals(1, response.reports.size());
+            var stats = client.stats().stats;
+            assertEquals(1, stats.failed);
+            // still counted as a request, with its latency
+            assertEquals(1, stats.requests);
+            assertTrue(stats.p50Millis > 0);
+        }
+    }
+
+    @Test
+    public void latencyPercentiles() {
+        var stats = new LatencyStats(100);
+        for (int i = 1; i <= 100; i++) {
+            stats.record(i);
+        }
+
+        assertEquals(50, stats.getPercentile(50));
+        assertEquals(99, stats.getPercentile(99));
+        assertEquals(100, stats.getCount());
+    }
+}
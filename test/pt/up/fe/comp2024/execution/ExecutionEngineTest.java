@@ -0,0 +1,114 @@
+package pt.up.fe.comp2024.execution;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ExecutionEngineTest {
+
+    private static final String ECHO = """
+            .class public Echo
+            .super java/lang/Object
+
+            .field static count I
+
+            .method public static main([Ljava/lang/String;)V
+               .limit stack 2
+               .limit locals 1
+               getstatic Echo/count I
+               iconst_1
+               iadd
+               putstatic Echo/count I
+               getstatic Echo/count I
+               invokestatic io/println(I)V
+               invokestatic io/read()I
+               invokestatic io/println(I)V
+               return
+            .end method
+            """;
+
+    private static ExecutionEngine newEngine(long timeoutMillis) {
+        return new ExecutionEngine(List.of(new File("libs-jmm/compiled")), timeoutMillis, 4);
+    }
+
+    @Test
+    public void runsMainWithItsOwnStreams() {
+        try (var engine = newEngine(ExecutionEngine.DEFAULT_TIMEOUT_MILLIS)) {
+            var result = engine.run(Program.ofJasmin(ECHO).withInput("42\n"));
+
+            assertEquals(result.stderr(), 0, result.exitCode());
+            assertFalse(result.timedOut());
+            assertEquals("1\n42\n", result.stdout().replace("\r\n", "\n"));
+        }
+    }
+
+    @Test
+    public void runsConcurrentlyInIsolation() {
+        var programs = new ArrayList<Program>();
+        for (int i = 0; i < 16; i++) {
+            programs.add(Program.ofJasmin(ECHO).withInput(i + "\n"));
+        }
+
+        try (var engine = newEngine(ExecutionEngine.DEFAULT_TIMEOUT_MILLIS)) {
+            var results = engine.runAll(programs);
+
+            for (int i = 0; i < programs.size(); i++) {
+                // static fields, of the program and of the libraries, start over in every run
+                assertEquals("1\n" + i + "\n", results.get(i).stdout().replace("\r\n", "\n"));
+            }
+        }
+    }
+
+    @Test
+    public void reportsUncaughtExceptions() {
+        var code = """
+                .class public Divide
+                .super java/lang/Object
+
+                .method public static main([Ljava/lang/String;)V
+                   .limit stack 2
+                   .limit locals 1
+                   iconst_1
+                   iconst_0
+                   idiv
+                   invokestatic io/println(I)V
+                   return
+                .end method
+                """;
+
+        try (var engine = newEngine(ExecutionEngine.DEFAULT_TIMEOUT_MILLIS)) {
+            var result = engine.run(Program.ofJasmin(code));
+
+            assertEquals(1, result.exitCode());
+            assertTrue(result.stderr(), result.stderr().contains("java.lang.ArithmeticException"));
+        }
+    }
+
+    @Test
+    public void stopsWaitingAfterTheTimeout() {
+        var code = """
+                .class public Loop
+                .super java/lang/Object
+
+                .method public static main([Ljava/lang/String;)V
+                   .limit stack 0
+                   .limit locals 1
+                   loop:
+                   goto loop
+                .end method
+                """;
+
+        try (var engine = newEngine(200)) {
+            var result = engine.run(Program.ofJasmin(code));
+
+            assertTrue(result.timedOut());
+            assertEquals(ExecutionResult.TIMEOUT_EXIT_CODE, result.exitCode());
+        }
+    }
+}
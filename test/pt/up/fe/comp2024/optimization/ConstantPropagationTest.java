@@ -0,0 +1,131 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.junit.Test;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.jasmin.JasminResult;
+
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ConstantPropagationTest {
+
+    private static final String CODE = """
+            import io;
+            class Props {
+                public int branches(boolean flag) {
+                    int a;
+                    int b;
+                    a = 3;
+                    if (flag) { b = a * 2; } else { b = 6; }
+                    if (a < 5) { a = b + 0; } else { a = 100; }
+                    return a * 1 + b;
+                }
+                public int loop(int n) {
+                    int i;
+                    int step;
+                    int total;
+                    i = 0;
+                    step = 2;
+                    total = 0;
+                    while (i < n) {
+                        total = total + step * 3;
+                        if (!!(step < 1)) { step = 7; } else { step = 2; }
+                        i = i + 1;
+                    }
+                    return total;
+                }
+                public int changedInLoop(int n) {
+                    int x;
+                    int i;
+                    x = 1;
+                    i = 0;
+                    while (i < n) {
+                        i = i + x;
+                        x = 2;
+                    }
+                    return x + i;
+                }
+                public int deadLoop() {
+                    int i;
+                    i = 10;
+                    while (i < 5) {
+                        i = i + 1;
+                    }
+                    return i * 0;
+                }
+                public boolean notNot(boolean flag) {
+                    return !(!(flag));
+                }
+                public static void main(String[] args) {
+                    Props p;
+                    p = new Props();
+                    io.println(p.branches(true));
+                    io.println(p.branches(false));
+                    io.println(p.loop(4));
+                    io.println(p.changedInLoop(5));
+                    io.println(p.deadLoop());
+                    if (p.notNot(true)) { io.println(1); } else { io.println(0); }
+                }
+            }
+            """;
+
+    private static JasminResult backend(boolean optimize) {
+        return TestUtils.backend(CODE, Map.of("optimize", Boolean.toString(optimize)));
+    }
+
+    private static String method(JasminResult result, String name) {
+        var code = result.getJasminCode();
+        var start = code.indexOf(" " + name + "(");
+        return code.substring(start, code.indexOf(".end method", start));
+    }
+
+    private static long countInstructions(String code) {
+        return code.lines()
+                .map(String::trim)
+                .filter(line -> !line.isEmpty() && !line.startsWith(".") && !line.startsWith(";") && !line.endsWith(":"))
+                .count();
+    }
+
+    @Test
+    public void sameOutputWithFewerInstructions() {
+        var original = backend(false);
+        var optimized = backend(true);
+
+        assertEquals(original.run(), optimized.run());
+        assertTrue(countInstructions(optimized.getJasminCode()) < countInstructions(original.getJasminCode()));
+    }
+
+    @Test
+    public void constantsFoldAcrossMerges() {
+        var optimized = backend(true);
+
+        // b is 6 on both branches, and a < 5 is known, so the value returned is a constant
+        var branches = method(optimized, "branches");
+        assertTrue(branches, Pattern.compile("bipush 12\\s+ireturn").matcher(branches).find());
+        assertFalse(branches, branches.contains("imul"));
+
+        // step is 2 on entry and at the end of every iteration
+        var loop = method(optimized, "loop");
+        assertTrue(loop, Pattern.compile("(bipush|iinc \\d+) 6\\s").matcher(loop).find());
+        assertFalse(loop, loop.contains("imul"));
+
+        // x changes inside the loop, so it must still be read after it
+        var changedInLoop = method(optimized, "changedInLoop");
+        assertTrue(changedInLoop, changedInLoop.substring(changedInLoop.indexOf("while_0_end:")).contains("iadd"));
+
+        var deadLoop = method(optimized, "deadLoop");
+        assertFalse(deadLoop, deadLoop.contains("while"));
+        assertTrue(deadLoop, deadLoop.contains("iconst_0"));
+    }
+
+    @Test
+    public void doubleNegationInParentheses() {
+        // !(!(flag)) is flag, the method only loads and returns it
+        var notNot = method(backend(true), "notNot");
+        assertTrue(notNot, Pattern.compile("\\.limit locals \\d+\\s+iload_1\\s+ireturn\\s*$").matcher(notNot).find());
+    }
+}
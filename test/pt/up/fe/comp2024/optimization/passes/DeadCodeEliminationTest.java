@@ -0,0 +1,88 @@
+package pt.up.fe.comp2024.optimization.passes;
+
+import org.junit.Test;
+import org.specs.comp.ollir.AssignInstruction;
+import org.specs.comp.ollir.BinaryOpInstruction;
+import org.specs.comp.ollir.CallInstruction;
+import org.specs.comp.ollir.CondBranchInstruction;
+import org.specs.comp.ollir.Method;
+import org.specs.comp.ollir.Operand;
+import org.specs.comp.ollir.SingleOpInstruction;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.optimization.JmmOptimizationImpl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DeadCodeEliminationTest {
+
+    private static final String OLLIR = """
+            import io;
+            Dead {
+                .construct Dead().V {
+                    invokespecial(this, "<init>").V;
+                }
+                .method public static stores(a.i32).i32 {
+                    x.i32 :=.i32 a.i32 +.i32 1.i32;
+                    y.i32 :=.i32 x.i32 *.i32 2.i32;
+                    z.i32 :=.i32 invokestatic(io, "read").i32;
+                    w.i32 :=.i32 a.i32 /.i32 a.i32;
+                    ret.i32 a.i32;
+                }
+                .method public static branch(a.i32).i32 {
+                    if (1.i32 <.bool 0.i32) goto never;
+                    r.i32 :=.i32 a.i32;
+                    goto end;
+                    never:
+                    r.i32 :=.i32 0.i32;
+                    end:
+                    ret.i32 r.i32;
+                }
+            }
+            """;
+
+    private static Method method(OllirResult ollirResult, String name) {
+        return ollirResult.getOllirClass().getMethods().stream()
+                .filter(method -> method.getMethodName().equals(name))
+                .findFirst()
+                .orElseThrow();
+    }
+
+    @Test
+    public void deadAssignmentsAreRemovedButCallsAreKept() {
+        var stores = method(new OllirResult(OLLIR, CompilerConfig.getDefault()), "stores");
+
+        // x only feeds y, which is never read, while the call and the division may have effects
+        assertEquals(2, DeadCodeElimination.optimize(stores));
+        var instructions = stores.getInstructions();
+        assertEquals(3, instructions.size());
+        assertTrue(((AssignInstruction) instructions.get(0)).getRhs() instanceof CallInstruction);
+        assertTrue(((AssignInstruction) instructions.get(1)).getRhs() instanceof BinaryOpInstruction);
+    }
+
+    @Test
+    public void branchesOnConstantsAndTheirBlocksAreRemoved() {
+        var branch = method(new OllirResult(OLLIR, CompilerConfig.getDefault()), "branch");
+
+        assertEquals(3, DeadCodeElimination.optimize(branch));
+        var instructions = branch.getInstructions();
+        assertEquals(2, instructions.size());
+        assertTrue(instructions.stream().noneMatch(CondBranchInstruction.class::isInstance));
+        var rhs = (SingleOpInstruction) ((AssignInstruction) instructions.get(0)).getRhs();
+        assertEquals("a", ((Operand) rhs.getSingleOperand()).getName());
+    }
+
+    @Test
+    public void removedInstructionsAreReported() {
+        var config = CompilerConfig.getDefault();
+        config.put("optimize", "true");
+        var reports = new JmmOptimizationImpl().optimize(new OllirResult(OLLIR, config)).getReports();
+
+        assertTrue(reports.toString(), reports.stream().anyMatch(report ->
+                report.getMessage().equals("Dead code elimination removed 2 instructions from method 'stores'")));
+        // the constant branch is already gone after constant propagation, methods left unchanged are not reported
+        assertTrue(reports.toString(), reports.stream().noneMatch(report ->
+                report.getMessage().endsWith("instructions from method 'branch'")));
+    }
+}
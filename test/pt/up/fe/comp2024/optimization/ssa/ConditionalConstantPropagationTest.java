@@ -0,0 +1,140 @@
+package pt.up.fe.comp2024.optimization.ssa;
+
+import org.junit.Test;
+import org.specs.comp.ollir.AssignInstruction;
+import org.specs.comp.ollir.BinaryOpInstruction;
+import org.specs.comp.ollir.CallInstruction;
+import org.specs.comp.ollir.CondBranchInstruction;
+import org.specs.comp.ollir.Instruction;
+import org.specs.comp.ollir.LiteralElement;
+import org.specs.comp.ollir.Method;
+import org.specs.comp.ollir.ReturnInstruction;
+import org.specs.comp.ollir.SingleOpInstruction;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.optimization.JmmOptimizationImpl;
+import pt.up.fe.comp2024.utils.ReportUtils;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ConditionalConstantPropagationTest {
+
+    private static final String OLLIR = """
+            Props {
+                .construct Props().V {
+                    invokespecial(this, "<init>").V;
+                }
+                .method public static branches(f.bool).i32 {
+                    a.i32 :=.i32 3.i32;
+                    if (f.bool) goto then;
+                    b.i32 :=.i32 6.i32;
+                    goto merge;
+                    then:
+                    b.i32 :=.i32 a.i32 *.i32 2.i32;
+                    merge:
+                    if (a.i32 <.bool 5.i32) goto small;
+                    a.i32 :=.i32 100.i32;
+                    goto done;
+                    small:
+                    a.i32 :=.i32 b.i32 +.i32 0.i32;
+                    done:
+                    c.i32 :=.i32 a.i32 +.i32 b.i32;
+                    ret.i32 c.i32;
+                }
+                .method public static loop(n.i32).i32 {
+                    i.i32 :=.i32 0.i32;
+                    step.i32 :=.i32 2.i32;
+                    total.i32 :=.i32 0.i32;
+                    cond:
+                    if (i.i32 >=.bool n.i32) goto end;
+                    total.i32 :=.i32 total.i32 +.i32 step.i32;
+                    if (step.i32 <.bool 1.i32) goto never;
+                    step.i32 :=.i32 2.i32;
+                    goto next;
+                    never:
+                    step.i32 :=.i32 7.i32;
+                    next:
+                    i.i32 :=.i32 i.i32 +.i32 1.i32;
+                    goto cond;
+                    end:
+                    ret.i32 total.i32;
+                }
+            }
+            """;
+
+    private static OllirResult optimize(String code) {
+        var config = CompilerConfig.getDefault();
+        config.put("optimize", "true");
+        var ollirResult = new JmmOptimizationImpl().optimize(new OllirResult(code, config));
+        assertFalse(ollirResult.getReports().toString(), ReportUtils.anyError(ollirResult.getReports()));
+        return ollirResult;
+    }
+
+    private static Method method(OllirResult ollirResult, String name) {
+        return ollirResult.getOllirClass().getMethods().stream()
+                .filter(method -> method.getMethodName().equals(name))
+                .findFirst()
+                .orElseThrow();
+    }
+
+    private static long count(List<Instruction> instructions, Class<?> type) {
+        return instructions.stream().filter(type::isInstance).count();
+    }
+
+    private static boolean assignsLiteral(List<Instruction> instructions, String value) {
+        return instructions.stream().anyMatch(instruction -> instruction instanceof AssignInstruction assign
+                && assign.getRhs() instanceof SingleOpInstruction singleOp
+                && singleOp.getSingleOperand() instanceof LiteralElement literal
+                && literal.getLiteral().equals(value));
+    }
+
+    @Test
+    public void constantsFoldAcrossMerges() {
+        var branches = method(optimize(OLLIR), "branches").getInstructions();
+
+        // b is 6 on both paths and a < 5 always holds, so the result does not depend on the parameter at all
+        assertEquals(0, count(branches, CondBranchInstruction.class));
+        var ret = (ReturnInstruction) branches.get(branches.size() - 1);
+        assertTrue(ret.getOperand() instanceof LiteralElement literal && literal.getLiteral().equals("12"));
+        assertFalse(assignsLiteral(branches, "100"));
+    }
+
+    @Test
+    public void branchesNeverTakenAreRemoved() {
+        var loop = method(optimize(OLLIR), "loop");
+        var instructions = loop.getInstructions();
+
+        // step is 2 whenever the loop starts an iteration, so it is never less than 1
+        assertEquals(1, count(instructions, CondBranchInstruction.class));
+        assertFalse(assignsLiteral(instructions, "7"));
+        assertTrue(instructions.stream().anyMatch(instruction -> instruction instanceof AssignInstruction assign
+                && assign.getRhs() instanceof BinaryOpInstruction binaryOp
+                && binaryOp.getRightOperand() instanceof LiteralElement literal
+                && literal.getLiteral().equals("2")));
+
+        // the versions of the loop variables share their names again, so no copies are needed
+        assertEquals(loop.getVarTable().keySet(), method(new OllirResult(OLLIR, CompilerConfig.getDefault()), "loop")
+                .getVarTable().keySet());
+    }
+
+    @Test
+    public void conditionsOnConstantsLeaveNoBranches() {
+        var code = SpecsIo.getResource("pt/up/fe/comp/cpf/4_jasmin/calls/ConditionArgsFuncCall.ollir");
+        var main = method(optimize(code), "main").getInstructions();
+
+        assertEquals(0, count(main, CondBranchInstruction.class));
+        var call = main.stream()
+                .filter(instruction -> instruction instanceof AssignInstruction assign
+                        && assign.getRhs() instanceof CallInstruction)
+                .map(instruction -> (CallInstruction) ((AssignInstruction) instruction).getRhs())
+                .findFirst()
+                .orElseThrow();
+        assertTrue(call.getArguments().toString(),
+                call.getArguments().stream().allMatch(argument -> argument instanceof LiteralElement));
+    }
+}
@@ -0,0 +1,168 @@
+package pt.up.fe.comp2024.optimization.ssa;
+
+import org.junit.Test;
+import org.specs.comp.ollir.AssignInstruction;
+import org.specs.comp.ollir.BinaryOpInstruction;
+import org.specs.comp.ollir.CallInstruction;
+import org.specs.comp.ollir.GetFieldInstruction;
+import org.specs.comp.ollir.Instruction;
+import org.specs.comp.ollir.Method;
+import org.specs.comp.ollir.OperationType;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.optimization.cfg.CallEffects;
+import pt.up.fe.comp2024.optimization.cfg.ControlFlowGraph;
+
+import java.util.List;
+import java.util.function.Predicate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LoopInvariantCodeMotionTest {
+
+    private static final String OLLIR = """
+            import io;
+            Loops {
+                .field private f.i32;
+                .construct Loops().V {
+                    invokespecial(this, "<init>").V;
+                }
+                .method public sum(a.array.i32, k.i32).i32 {
+                    i.i32 :=.i32 0.i32;
+                    s.i32 :=.i32 0.i32;
+                    cond:
+                    len.i32 :=.i32 arraylength(a.array.i32).i32;
+                    if (i.i32 >=.bool len.i32) goto end;
+                    x.i32 :=.i32 k.i32 *.i32 2.i32;
+                    g.i32 :=.i32 getfield(this, f.i32).i32;
+                    y.i32 :=.i32 x.i32 +.i32 g.i32;
+                    e.i32 :=.i32 a.array.i32[i.i32].i32;
+                    s.i32 :=.i32 s.i32 +.i32 e.i32;
+                    s.i32 :=.i32 s.i32 +.i32 y.i32;
+                    i.i32 :=.i32 i.i32 +.i32 1.i32;
+                    goto cond;
+                    end:
+                    ret.i32 s.i32;
+                }
+                .method public calls(k.i32).i32 {
+                    i.i32 :=.i32 0.i32;
+                    s.i32 :=.i32 0.i32;
+                    cond:
+                    if (i.i32 >=.bool k.i32) goto end;
+                    t.i32 :=.i32 invokevirtual(this, "pure", i.i32).i32;
+                    g.i32 :=.i32 getfield(this, f.i32).i32;
+                    invokevirtual(this, "bump").V;
+                    h.i32 :=.i32 getfield(this, f.i32).i32;
+                    q.i32 :=.i32 k.i32 /.i32 k.i32;
+                    s.i32 :=.i32 s.i32 +.i32 t.i32;
+                    s.i32 :=.i32 s.i32 +.i32 g.i32;
+                    s.i32 :=.i32 s.i32 +.i32 h.i32;
+                    s.i32 :=.i32 s.i32 +.i32 q.i32;
+                    i.i32 :=.i32 i.i32 +.i32 1.i32;
+                    goto cond;
+                    end:
+                    ret.i32 s.i32;
+                }
+                .method public pure(x.i32).i32 {
+                    r.i32 :=.i32 x.i32 +.i32 1.i32;
+                    ret.i32 r.i32;
+                }
+                .method public bump().V {
+                    invokestatic(io, "println", 1.i32).V;
+                    ret.V;
+                }
+                .method public static nested(n.i32, k.i32).i32 {
+                    i.i32 :=.i32 0.i32;
+                    s.i32 :=.i32 0.i32;
+                    outer:
+                    if (i.i32 >=.bool n.i32) goto done;
+                    j.i32 :=.i32 0.i32;
+                    inner:
+                    if (j.i32 >=.bool n.i32) goto next;
+                    a.i32 :=.i32 k.i32 *.i32 k.i32;
+                    b.i32 :=.i32 i.i32 *.i32 k.i32;
+                    s.i32 :=.i32 s.i32 +.i32 a.i32;
+                    s.i32 :=.i32 s.i32 +.i32 b.i32;
+                    j.i32 :=.i32 j.i32 +.i32 1.i32;
+                    goto inner;
+                    next:
+                    i.i32 :=.i32 i.i32 +.i32 1.i32;
+                    goto outer;
+                    done:
+                    ret.i32 s.i32;
+                }
+            }
+            """;
+
+    private static Method optimize(String name) {
+        var classUnit = new OllirResult(OLLIR, CompilerConfig.getDefault()).getOllirClass();
+        var method = classUnit.getMethods().stream()
+                .filter(candidate -> candidate.getMethodName().equals(name))
+                .findFirst()
+                .orElseThrow();
+
+        var ssa = SsaForm.build(ControlFlowGraph.of(method));
+        LoopInvariantCodeMotion.optimize(ssa, new CallEffects(classUnit));
+        ssa.destroy();
+        return method;
+    }
+
+    /**
+     * @return the position of the first assignment whose value matches, or -1
+     */
+    private static int indexOf(List<Instruction> instructions, Predicate<Instruction> rhs) {
+        for (int i = 0; i < instructions.size(); i++) {
+            if (instructions.get(i) instanceof AssignInstruction assign && rhs.test(assign.getRhs())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isOperation(Instruction instruction, OperationType opType) {
+        return instruction instanceof BinaryOpInstruction binaryOp && binaryOp.getOperation().getOpType() == opType;
+    }
+
+    @Test
+    public void invariantsAreMovedBeforeTheLoop() {
+        var method = optimize("sum");
+        var instructions = method.getInstructions();
+        var header = instructions.indexOf(method.getLabels().get("cond"));
+
+        // the loop does not write arrays or fields, so the length and the field are the same on every iteration
+        assertTrue(indexOf(instructions, CallInstruction.class::isInstance) < header);
+        assertTrue(indexOf(instructions, GetFieldInstruction.class::isInstance) < header);
+        assertTrue(indexOf(instructions, rhs -> isOperation(rhs, OperationType.MUL)) < header);
+        assertTrue(indexOf(instructions, rhs -> isOperation(rhs, OperationType.ADD)) < header);
+    }
+
+    @Test
+    public void fieldReadsStayAfterCallsThatMayWriteThem() {
+        var method = optimize("calls");
+        var instructions = method.getInstructions();
+        var header = instructions.indexOf(method.getLabels().get("cond"));
+
+        // bump calls a method of another class, which may write the field, and the division may throw
+        assertEquals(2, instructions.stream().filter(instruction -> instruction instanceof AssignInstruction assign
+                && assign.getRhs() instanceof GetFieldInstruction).count());
+        assertTrue(indexOf(instructions, GetFieldInstruction.class::isInstance) > header);
+        assertTrue(indexOf(instructions, rhs -> isOperation(rhs, OperationType.DIV)) > header);
+    }
+
+    @Test
+    public void invariantsOfInnerLoopsLeaveOuterLoops() {
+        var method = optimize("nested");
+        var instructions = method.getInstructions();
+
+        assertTrue(indexOf(instructions, rhs -> isOperation(rhs, OperationType.MUL)
+                && ((BinaryOpInstruction) rhs).getLeftOperand().toString().contains("k"))
+                < instructions.indexOf(method.getLabels().get("outer")));
+
+        // i changes on every iteration of the outer loop, so i * k is only invariant in the inner one
+        var product = indexOf(instructions, rhs -> isOperation(rhs, OperationType.MUL)
+                && ((BinaryOpInstruction) rhs).getLeftOperand().toString().contains(" i."));
+        assertTrue(product > instructions.indexOf(method.getLabels().get("outer")));
+        assertTrue(product < instructions.indexOf(method.getLabels().get("inner")));
+    }
+}
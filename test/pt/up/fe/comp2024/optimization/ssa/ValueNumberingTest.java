@@ -0,0 +1,112 @@
+package pt.up.fe.comp2024.optimization.ssa;
+
+import org.junit.Test;
+import org.specs.comp.ollir.ArrayOperand;
+import org.specs.comp.ollir.AssignInstruction;
+import org.specs.comp.ollir.BinaryOpInstruction;
+import org.specs.comp.ollir.CallInstruction;
+import org.specs.comp.ollir.Instruction;
+import org.specs.comp.ollir.Method;
+import org.specs.comp.ollir.OperationType;
+import org.specs.comp.ollir.SingleOpInstruction;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.optimization.cfg.ControlFlowGraph;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class ValueNumberingTest {
+
+    private static final String OLLIR = """
+            Numbers {
+                .construct Numbers().V {
+                    invokespecial(this, "<init>").V;
+                }
+                .method public static local(x.i32, y.i32).i32 {
+                    t1.i32 :=.i32 x.i32 *.i32 y.i32;
+                    t2.i32 :=.i32 y.i32 *.i32 x.i32;
+                    r.i32 :=.i32 t1.i32 +.i32 t2.i32;
+                    ret.i32 r.i32;
+                }
+                .method public static global(x.i32, y.i32, f.bool).i32 {
+                    t1.i32 :=.i32 x.i32 *.i32 y.i32;
+                    if (f.bool) goto other;
+                    t2.i32 :=.i32 x.i32 *.i32 y.i32;
+                    r.i32 :=.i32 t2.i32 +.i32 1.i32;
+                    goto end;
+                    other:
+                    r.i32 :=.i32 x.i32 -.i32 y.i32;
+                    end:
+                    t3.i32 :=.i32 x.i32 -.i32 y.i32;
+                    r.i32 :=.i32 r.i32 +.i32 t3.i32;
+                    ret.i32 r.i32;
+                }
+                .method public static arrays(a.array.i32, i.i32).i32 {
+                    t1.i32 :=.i32 a.array.i32[i.i32].i32;
+                    t2.i32 :=.i32 a.array.i32[i.i32].i32;
+                    r.i32 :=.i32 t1.i32 +.i32 t2.i32;
+                    a.array.i32[i.i32].i32 :=.i32 r.i32;
+                    t3.i32 :=.i32 a.array.i32[i.i32].i32;
+                    l1.i32 :=.i32 arraylength(a.array.i32).i32;
+                    l2.i32 :=.i32 arraylength(a.array.i32).i32;
+                    r.i32 :=.i32 t3.i32 +.i32 l1.i32;
+                    r.i32 :=.i32 r.i32 +.i32 l2.i32;
+                    ret.i32 r.i32;
+                }
+            }
+            """;
+
+    private static Method optimize(String name) {
+        var method = new OllirResult(OLLIR, CompilerConfig.getDefault()).getOllirClass().getMethods().stream()
+                .filter(candidate -> candidate.getMethodName().equals(name))
+                .findFirst()
+                .orElseThrow();
+
+        var ssa = SsaForm.build(ControlFlowGraph.of(method));
+        ValueNumbering.optimize(ssa);
+        ssa.destroy();
+        return method;
+    }
+
+    private static long countOperations(List<Instruction> instructions, OperationType opType) {
+        return instructions.stream().filter(instruction -> instruction instanceof AssignInstruction assign
+                && assign.getRhs() instanceof BinaryOpInstruction binaryOp
+                && binaryOp.getOperation().getOpType() == opType).count();
+    }
+
+    private static long countLoads(List<Instruction> instructions) {
+        return instructions.stream().filter(instruction -> instruction instanceof AssignInstruction assign
+                && !(assign.getDest() instanceof ArrayOperand)
+                && assign.getRhs() instanceof SingleOpInstruction singleOp
+                && singleOp.getSingleOperand() instanceof ArrayOperand).count();
+    }
+
+    @Test
+    public void repeatedExpressionsInABlockAreComputedOnce() {
+        var instructions = optimize("local").getInstructions();
+
+        // multiplication is commutative, so y * x is the same value as x * y
+        assertEquals(1, countOperations(instructions, OperationType.MUL));
+        assertEquals(3, instructions.size());
+    }
+
+    @Test
+    public void expressionsOfDominatingBlocksAreReused() {
+        var instructions = optimize("global").getInstructions();
+
+        // x - y in the other branch does not dominate the end of the method, unlike x * y at its start
+        assertEquals(1, countOperations(instructions, OperationType.MUL));
+        assertEquals(2, countOperations(instructions, OperationType.SUB));
+    }
+
+    @Test
+    public void arrayLoadsAreReusedUntilAStore() {
+        var instructions = optimize("arrays").getInstructions();
+
+        assertEquals(2, countLoads(instructions));
+        assertEquals(1, instructions.stream().filter(instruction -> instruction instanceof AssignInstruction assign
+                && assign.getRhs() instanceof CallInstruction).count());
+    }
+}
@@ -0,0 +1,94 @@
+package pt.up.fe.comp2024.parser;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.utils.ReportUtils;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class JmmParserImplTest {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void fallsBackToLlOnSyntaxErrors() {
+        var config = CompilerConfig.getDefault();
+
+        var sllParses = ParserTelemetry.getSllParses();
+        var fallbacks = ParserTelemetry.getLlFallbacks();
+
+        var valid = new JmmParserImpl().parse(SpecsIo.getResource("pt/up/fe/comp/cp2/apps/HelloWorld.jmm"), config);
+        assertFalse(ReportUtils.anyError(valid.getReports()));
+        assertEquals(sllParses + 1, ParserTelemetry.getSllParses());
+
+        // syntax errors are still reported by the LL parse, with their location
+        var invalid = new JmmParserImpl().parse("class A { int a }", config);
+        assertTrue(invalid.getReports().stream().anyMatch(report -> report.getLine() == 1));
+        assertTrue(ReportUtils.anyError(invalid.getReports()));
+        assertEquals(fallbacks + 1, ParserTelemetry.getLlFallbacks());
+    }
+
+    @Test
+    public void profilesDecisions() {
+        var config = CompilerConfig.getDefault();
+        config.put("profileParser", "true");
+
+        new JmmParserImpl().parse(SpecsIo.getResource("pt/up/fe/comp/cp2/apps/HelloWorld.jmm"), config);
+        assertTrue(ParserTelemetry.toReport().contains("classDecl"));
+    }
+
+    @Test
+    public void reusesParsersAcrossThreads() throws Exception {
+        var code = SpecsIo.getResource("pt/up/fe/comp/cp2/apps/HelloWorld.jmm");
+        var expected = new JmmParserImpl().parse(code, CompilerConfig.getDefault()).getRootNode().toTree();
+
+        ParserPool.clearCaches();
+        assertEquals(0, ParserPool.getCachedStates());
+
+        var executor = Executors.newFixedThreadPool(4);
+        try {
+            var futures = new ArrayList<Future<String>>();
+            for (int i = 0; i < 32; i++) {
+                futures.add(executor.submit(
+                        () -> new JmmParserImpl().parse(code, CompilerConfig.getDefault()).getRootNode().toTree()));
+            }
+
+            for (var future : futures) {
+                assertEquals(expected, future.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertTrue(ParserPool.getCachedStates() > 0);
+    }
+
+    @Test
+    public void parsesFromFile() throws Exception {
+        var code = SpecsIo.getResource("pt/up/fe/comp/cp2/apps/HelloWorld.jmm");
+        var expected = new JmmParserImpl().parse(code, CompilerConfig.getDefault()).getRootNode().toTree();
+
+        var source = temp.newFile("HelloWorld.jmm");
+        Files.writeString(source.toPath(), code, StandardCharsets.UTF_8);
+
+        var result = new JmmParserImpl().parse(source, CompilerConfig.getDefault());
+        assertEquals(expected, result.getRootNode().toTree());
+
+        // a missing file is reported instead of thrown
+        var missing = new JmmParserImpl().parse(new File(temp.getRoot(), "Missing.jmm"), CompilerConfig.getDefault());
+        assertTrue(ReportUtils.anyError(missing.getReports()));
+    }
+}
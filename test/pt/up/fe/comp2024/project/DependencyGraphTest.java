@@ -0,0 +1,86 @@
+package pt.up.fe.comp2024.project;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.File;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class DependencyGraphTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private SourceHeader scan(String name, String code) throws Exception {
+        var file = new File(folder.getRoot(), name + ".jmm");
+        SpecsIo.write(file, code);
+        return DependencyScanner.scan(file);
+    }
+
+    private static List<String> names(List<SourceHeader> sources) {
+        return sources.stream().map(SourceHeader::className).toList();
+    }
+
+    @Test
+    public void scansHeaderWithLexerOnly() throws Exception {
+        var header = scan("B", """
+                // import Commented;
+                import java.io.File;
+                import A;
+                /* class Fake */
+                class B extends A {
+                    public int foo( {
+                }
+                """);
+
+        assertEquals(List.of("java.io.File", "A"), header.imports());
+        assertEquals("B", header.className());
+        assertEquals("A", header.superName());
+        assertEquals("File", SourceHeader.importedClass("java.io.File"));
+
+        var noSuper = scan("C", "class C { }");
+        assertEquals("C", noSuper.className());
+        assertNull(noSuper.superName());
+    }
+
+    @Test
+    public void ordersInWaves() throws Exception {
+        var a = scan("A", "class A {}");
+        var b = scan("B", "import A; class B extends A {}");
+        var c = scan("C", "import A; import io; class C {}");
+        var d = scan("D", "import B; import C; class D {}");
+
+        var graph = DependencyGraph.of(List.of(d, c, b, a));
+
+        assertTrue(graph.getCycles().isEmpty());
+        var waves = graph.getWaves().stream().map(DependencyGraphTest::names).toList();
+        assertEquals(List.of(List.of("A"), List.of("C", "B"), List.of("D")), waves);
+    }
+
+    @Test
+    public void reportsCycles() throws Exception {
+        var a = scan("A", "import C; class A {}");
+        var b = scan("B", "import A; class B {}");
+        var c = scan("C", "import B; class C {}");
+        var self = scan("Self", "import Self; class Self {}");
+        var user = scan("User", "import A; class User {}");
+        var free = scan("Free", "class Free {}");
+
+        var graph = DependencyGraph.of(List.of(a, b, c, self, user, free));
+
+        var cycles = graph.getCycles().stream().map(DependencyGraphTest::names).toList();
+        assertEquals(2, cycles.size());
+        assertEquals(3, cycles.get(0).size());
+        assertTrue(cycles.get(0).containsAll(List.of("A", "B", "C")));
+        assertEquals(List.of("Self"), cycles.get(1));
+
+        // only the sources that do not need a cycle are scheduled
+        assertEquals(List.of(List.of("Free")), graph.getWaves().stream().map(DependencyGraphTest::names).toList());
+    }
+}
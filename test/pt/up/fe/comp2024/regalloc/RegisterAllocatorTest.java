@@ -0,0 +1,148 @@
+package pt.up.fe.comp2024.regalloc;
+
+import org.junit.Test;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.analysis.JmmAnalysisImpl;
+import pt.up.fe.comp2024.backend.JasminBackendImpl;
+import pt.up.fe.comp2024.optimization.JmmOptimizationImpl;
+import pt.up.fe.comp2024.optimization_jasmin.AstToJasminImpl;
+import pt.up.fe.comp2024.parser.JmmParserImpl;
+import pt.up.fe.comp2024.utils.ReportUtils;
+
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RegisterAllocatorTest {
+
+    private static final String CODE = """
+            class Chain {
+                public int chain(int arg) {
+                    int a;
+                    int b;
+                    int c;
+                    a = arg + 1;
+                    b = a + 1;
+                    c = b + 1;
+                    return c;
+                }
+                public int loop(int n) {
+                    int i;
+                    int sum;
+                    i = 0;
+                    sum = 0;
+                    while (i < n) {
+                        sum = sum + i;
+                        i = i + 1;
+                    }
+                    return sum;
+                }
+                public static void main(String[] args) {
+                }
+            }
+            """;
+
+    private static final String OLLIR = """
+            Chain {
+                .construct Chain().V {
+                    invokespecial(this, "<init>").V;
+                }
+                .method public static main(args.array.String).V {
+                    a.i32 :=.i32 1.i32;
+                    b.i32 :=.i32 a.i32;
+                    c.i32 :=.i32 b.i32;
+                    ret.V;
+                }
+            }
+            """;
+
+    private static Map<String, String> config(int registers) {
+        var config = CompilerConfig.getDefault();
+        config.put("registerAllocation", Integer.toString(registers));
+        return config;
+    }
+
+    private static String toJasmin(int registers) {
+        var semanticsResult = new JmmAnalysisImpl().semanticAnalysis(new JmmParserImpl().parse(CODE, config(registers)));
+        var jasminResult = new AstToJasminImpl().toJasmin(semanticsResult);
+        assertFalse(jasminResult.getReports().toString(), ReportUtils.anyError(jasminResult.getReports()));
+        return jasminResult.getJasminCode();
+    }
+
+    private static int localsLimit(String jasmin, String method) {
+        var matcher = Pattern.compile("\\.method[^\\n]*" + method + "\\([\\s\\S]*?\\.limit locals (\\d+)").matcher(jasmin);
+        assertTrue(jasmin, matcher.find());
+        return Integer.parseInt(matcher.group(1));
+    }
+
+    @Test
+    public void coloursAsFewRegistersAsPossible() {
+        var graph = new InterferenceGraph();
+        graph.addInterference("a", "b");
+        graph.addInterference("b", "c");
+        graph.addInterference("c", "a");
+        graph.addInterference("c", "d");
+
+        var allocator = new RegisterAllocator(graph, Map.of());
+        assertEquals(3, allocator.getMinimumRegisters());
+        assertTrue(allocator.colour(2).isEmpty());
+
+        var registers = allocator.allocate(0).orElseThrow();
+        assertNotEquals(registers.get("a"), registers.get("b"));
+        assertNotEquals(registers.get("b"), registers.get("c"));
+        assertNotEquals(registers.get("c"), registers.get("a"));
+        assertNotEquals(registers.get("c"), registers.get("d"));
+    }
+
+    @Test
+    public void fixedRegistersAreKept() {
+        var graph = new InterferenceGraph();
+        graph.addInterference("this", "x");
+        graph.addInterference("p", "x");
+
+        var registers = new RegisterAllocator(graph, Map.of("this", 0, "p", 1)).allocate(0).orElseThrow();
+        assertEquals(0, (int) registers.get("this"));
+        assertEquals(1, (int) registers.get("p"));
+        assertEquals(2, (int) registers.get("x"));
+    }
+
+    @Test
+    public void variablesShareRegistersWhenNotLiveTogether() {
+        var unallocated = toJasmin(-1);
+        assertEquals(5, localsLimit(unallocated, "chain"));
+        assertEquals(4, localsLimit(unallocated, "loop"));
+
+        var minimal = toJasmin(0);
+        // the parameter is dead once a is written, so a, b and c take its register one after the other
+        assertEquals(2, localsLimit(minimal, "chain"));
+        // n, i and sum are live together in the loop
+        assertEquals(4, localsLimit(minimal, "loop"));
+    }
+
+    @Test
+    public void tooFewRegistersReportsTheMinimum() {
+        var semanticsResult = new JmmAnalysisImpl().semanticAnalysis(new JmmParserImpl().parse(CODE, config(3)));
+        var reports = new AstToJasminImpl().toJasmin(semanticsResult).getReports();
+
+        assertTrue(ReportUtils.anyError(reports));
+        assertTrue(reports.toString(), reports.stream()
+                .anyMatch(report -> report.getMessage().equals("Method 'loop' needs at least 4 registers, but only 3 were given")));
+    }
+
+    @Test
+    public void ollirVariablesShareRegisters() {
+        var unallocated = new JasminBackendImpl().toJasmin(new OllirResult(OLLIR, config(-1))).getJasminCode();
+        assertEquals(4, localsLimit(unallocated, "main"));
+
+        var ollirResult = new JmmOptimizationImpl().optimize(new OllirResult(OLLIR, config(0)));
+        assertFalse(ReportUtils.anyError(ollirResult.getReports()));
+        // the unused parameter and the chain of copies all fit in one register
+        var jasmin = new JasminBackendImpl().toJasmin(ollirResult).getJasminCode();
+        assertEquals(1, localsLimit(jasmin, "main"));
+    }
+}
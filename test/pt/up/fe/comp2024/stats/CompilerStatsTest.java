@@ -0,0 +1,34 @@
+package pt.up.fe.comp2024.stats;
+
+import org.junit.Test;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.CompilerPipeline;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.util.List;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CompilerStatsTest {
+
+    private static final String HELLO_WORLD = "pt/up/fe/comp/cp2/apps/HelloWorld.jmm";
+
+    @Test
+    public void measuresStagesAndPasses() {
+        var config = CompilerConfig.getDefault();
+        config.put("stats", "true");
+
+        var result = new CompilerPipeline().run(SpecsIo.getResource(HELLO_WORLD), config);
+        var names = result.getStats().getMeasurements().stream().map(CompilerStats.Measurement::name).toList();
+
+        assertTrue(names.containsAll(List.of("PARSE", "ANALYSIS", "ANALYSIS/Analyser", "OLLIR", "JASMIN")));
+        assertTrue(result.getStats().getMeasurements().stream().allMatch(m -> m.wallNanos() > 0));
+    }
+
+    @Test
+    public void disabledByDefault() {
+        var result = new CompilerPipeline().run(SpecsIo.getResource(HELLO_WORLD), CompilerConfig.getDefault());
+        assertNull(result.getStats());
+    }
+}
@@ -0,0 +1,131 @@
+package pt.up.fe.comp2024.symboltable;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.analysis.table.Type;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.ast.TypeUtils;
+import pt.up.fe.comp2024.parser.JmmParserImpl;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class InterfaceSummaryTest {
+
+    private static final String LIBRARY = """
+            class Lib extends Base {
+                int count;
+                public int get() {
+                    return count;
+                }
+                public boolean check(int x, int... rest) {
+                    return true;
+                }
+            }
+            """;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static InterfaceSummary summarize(String code) {
+        var parserResult = new JmmParserImpl().parse(code, CompilerConfig.getDefault());
+        return InterfaceSummary.of(JmmSymbolTableBuilder.build(parserResult.getRootNode()));
+    }
+
+    private Map<String, String> configWithLibrary() {
+        var output = folder.getRoot();
+        summarize(LIBRARY).write(output);
+
+        var config = CompilerConfig.getDefault();
+        config.put("outputDir", output.getAbsolutePath());
+        return config;
+    }
+
+    @Test
+    public void roundTrips() throws Exception {
+        var summary = InterfaceSummary.fromBytes(summarize(LIBRARY).toBytes());
+
+        assertEquals("Lib", summary.getClassName());
+        assertEquals("Base", summary.getSuper());
+        assertEquals(new Type("int", false), summary.getFields().get(0).getType());
+
+        var get = summary.getMethod("get").get();
+        assertEquals(new Type("int", false), get.getReturnType());
+        assertTrue(get.getParameters().isEmpty());
+        assertFalse(get.isVarargs());
+
+        var check = summary.getMethod("check").get();
+        assertEquals(2, check.getParameters().size());
+        assertTrue(check.isVarargs());
+    }
+
+    @Test
+    public void findsWrittenSummaries() {
+        var output = folder.getRoot();
+        var file = summarize(LIBRARY).write(output);
+
+        assertEquals(new File(output, "Lib.jmmi"), file);
+        assertTrue(new InterfaceSummaries(List.of(output)).find("Lib").isPresent());
+        assertFalse(new InterfaceSummaries(List.of(output)).find("other, Lib").isPresent());
+    }
+
+    @Test
+    public void typesCallsOnImportedClasses() {
+        var code = """
+                import Lib;
+                class User {
+                    public int use(Lib lib) {
+                        int x;
+                        x = lib.get();
+                        return x;
+                    }
+                }
+                """;
+
+        var result = TestUtils.analyse(code, configWithLibrary());
+        TestUtils.noErrors(result);
+
+        var table = JmmSymbolTable.of(result.getSymbolTable());
+        assertTrue(table.getImportedSummary("Lib").isPresent());
+        // the super class of an imported class is a known type
+        assertTrue(TypeUtils.check_for_imports_type(new Type("Base", false), table));
+
+        var call = result.getRootNode().getDescendants("MemberCallExpr").get(0);
+        assertEquals(new Type("int", false), TypeUtils.getExprType(call, table, "use"));
+    }
+
+    @Test
+    public void reportsWrongUseOfDeclaredReturnType() {
+        var code = """
+                import Lib;
+                class User {
+                    public int use(Lib lib) {
+                        int[] x;
+                        x = lib.get();
+                        return 0;
+                    }
+                }
+                """;
+
+        // without the summary the call could return anything
+        TestUtils.noErrors(TestUtils.analyse(code));
+        TestUtils.mustFail(TestUtils.analyse(code, configWithLibrary()));
+    }
+
+    @Test
+    public void readsNothingWithoutSummaries() {
+        var parserResult = new JmmParserImpl().parse("import Lib; class User {}", CompilerConfig.getDefault());
+        var table = JmmSymbolTableBuilder.build(parserResult.getRootNode());
+
+        assertFalse(table.getImportedSummary("Lib").isPresent());
+        assertNull(table.getSuper());
+    }
+}
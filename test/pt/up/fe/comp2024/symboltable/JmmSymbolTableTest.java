@@ -0,0 +1,81 @@
+package pt.up.fe.comp2024.symboltable;
+
+import com.google.gson.Gson;
+import org.junit.Test;
+import pt.up.fe.comp.jmm.analysis.table.Type;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.parser.JmmParserImpl;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class JmmSymbolTableTest {
+
+    private static final String CODE = """
+            import java.io.File;
+            import Other;
+            class A extends File {
+                int count;
+                boolean flag;
+                public int foo(int x, int[] y) {
+                    int z;
+                    return x;
+                }
+                public boolean bar(int z, int... rest) {
+                    boolean x;
+                    return x;
+                }
+                public static void main(String[] args) {
+                    int x;
+                }
+            }
+            """;
+
+    private static JmmSymbolTable build() {
+        var parserResult = new JmmParserImpl().parse(CODE, CompilerConfig.getDefault());
+        return JmmSymbolTableBuilder.build(parserResult.getRootNode());
+    }
+
+    @Test
+    public void looksUpByScope() {
+        var table = build();
+
+        assertEquals(List.of("foo", "bar", "main"), table.getMethods());
+
+        assertEquals(new Type("int", false), table.getParameter("foo", "x").get().getType());
+        assertEquals(new Type("boolean", false), table.getLocalVariable("bar", "x").get().getType());
+        assertEquals(new Type("int", false), table.getLocalVariable("main", "x").get().getType());
+        assertEquals(new Type("_varargs", true), table.getParameter("bar", "rest").get().getType());
+        assertFalse(table.getLocalVariable("foo", "rest").isPresent());
+
+        // without a method, the first method that declares the name wins
+        assertEquals(new Type("boolean", false), table.getLocalVariable(null, "x").get().getType());
+
+        assertTrue(table.getField("flag").isPresent());
+        assertEquals(1, table.countFields("count"));
+        assertEquals(1, table.countParameters("foo", "y"));
+    }
+
+    @Test
+    public void importsBySimpleName() {
+        var table = build();
+
+        assertTrue(table.isImported("File"));
+        assertTrue(table.isImported("Other"));
+        assertFalse(table.isImported("ile"));
+        assertFalse(table.isImported("io"));
+        assertEquals(1, table.countImports("File"));
+    }
+
+    @Test
+    public void indexesDeserializedTables() {
+        var gson = new Gson();
+        var table = gson.fromJson(gson.toJson(build()), JmmSymbolTable.class);
+
+        assertTrue(table.isImported("File"));
+        assertTrue(table.getParameter("foo", "y").get().getType().isArray());
+    }
+}
@@ -1,12 +1,14 @@
 package utils;
 
 import org.specs.comp.ollir.*;
+import pt.up.fe.comp.TestUtils;
 import pt.up.fe.comp.jmm.jasmin.JasminResult;
 import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp2024.execution.ExecutionEngine;
+import pt.up.fe.comp2024.execution.Program;
 import pt.up.fe.specs.util.SpecsCollections;
 import pt.up.fe.specs.util.SpecsIo;
 import pt.up.fe.specs.util.SpecsStrings;
-import pt.up.fe.specs.util.SpecsSystem;
 import pt.up.fe.specs.util.exceptions.NotImplementedException;
 import pt.up.fe.specs.util.system.ProcessOutputAsString;
 import pt.up.fe.specs.util.utilities.LineStream;
@@ -18,13 +20,17 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.function.Predicate;
 import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 public class ProjectTestUtils {
 
+    /**
+     * Runs the compiler and the generated programs inside the test JVM, each with its own class loaders.
+     */
+    private static final ExecutionEngine ENGINE = new ExecutionEngine(List.of(new File(TestUtils.getLibsClasspath())));
+
     // private static final File RANDOM_TEST_FOLDER = SpecsIo.newRandomFolder();
 
     public static File getRandomFolder() {
@@ -236,40 +242,34 @@ public class ProjectTestUtils {
         classpath.add(new File(repoFolderCanonical, "libs/ollir.jar").getAbsolutePath());
         classpath.add(new File(repoFolderCanonical, "libs/jasmin.jar").getAbsolutePath());
 
-        List<String> command = new ArrayList<>();
-        command.add("java");
-        command.add("-cp");
-        command.add(classpath.stream().collect(Collectors.joining(System.getProperty("path.separator"))));
-        command.add(mainClass);
-        command.addAll(args);
-
-        return SpecsSystem.runProcess(command, workingDir, true, true);
-        // java -cp
-        // "%~dp0comp2021-1e.jar;%~dp0libs/utils.jar;%~dp0libs/gson-2.8.2.jar;%~dp0libs/ollir.jar;%~dp0libs/jasmin.jar"
-        // %*
-
-        // System.out.println("REPO FOLDER: " + SpecsIo.getCanonicalFile(repoFolder).getName());
-        // System.out.println("WORKING DIR: " + workingDir.getAbsolutePath());
-
-        // OLD METHOD
-        /*
-        try {
-        
-            // Get class with main
-            Class<?> analysisClass = Class.forName(mainClass);
-        
-            Method[] methods = analysisClass.getMethods();
-            for (Method m : methods) {
-                if ("main".equals(m.getName())) {
-                    // for static methods we can use null as instance of class
-                    m.invoke(null, new Object[] { args });
-                    break;
-                }
+        // the libraries of the compiler that are not in the list above, e.g. ANTLR, come from the test classpath
+        for (var entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            classpath.add(new File(entry).getAbsolutePath());
+        }
+
+        var program = Program.ofClasspath(mainClass, classpath.stream().map(File::new).toList())
+                .withArgs(resolveArgs(workingDir, args));
+        var result = ENGINE.run(program);
+
+        return new ProcessOutputAsString(result.exitCode(), result.stdout(), result.stderr());
+    }
+
+    /**
+     * The compiler runs in the test JVM, whose working directory cannot change. Option values that name a file or
+     * folder of the working directory are made absolute instead.
+     */
+    private static List<String> resolveArgs(File workingDir, List<String> args) {
+        var resolved = new ArrayList<String>();
+        for (var arg : args) {
+            var equals = arg.indexOf('=');
+            var value = equals == -1 ? arg : arg.substring(equals + 1);
+            var file = new File(workingDir, value);
+            if (!value.isEmpty() && !new File(value).isAbsolute() && file.exists()) {
+                arg = arg.substring(0, equals + 1) + file.getAbsolutePath();
             }
-        } catch (Exception e) {
-            throw new RuntimeException("Could not invoke main of compiler", e);
+            resolved.add(arg);
         }
-        */
+        return resolved;
     }
 
     private static String extractMainClass(File gradleFile) {
@@ -324,7 +324,9 @@ public class ProjectTestUtils {
     }
 
     public static void runJasmin(JasminResult jasminResult, String expected) {
-        var output = SpecsStrings.normalizeFileContents(jasminResult.run(), true);
+        var result = ENGINE.run(Program.ofJasmin(jasminResult.getJasminCode()));
+        var runOutput = new ProcessOutputAsString(result.exitCode(), result.stdout(), result.stderr()).getOutput();
+        var output = SpecsStrings.normalizeFileContents(runOutput, true);
 
         // No expected output, just run test
         if (expected == null) {